@@ -0,0 +1,52 @@
+package app.benchmark;
+
+import app.model.ReservationReporting;
+import app.web.dto.ReservationDetails;
+import app.web.dto.ReservationResponse;
+import app.web.mapper.DtoMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DtoMapperBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int size;
+
+    private List<ReservationReporting> reservations;
+    private List<ReservationDetails> details;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        reservations = ReservationDataset.reservations(size);
+        details = ReservationDataset.details(size);
+    }
+
+    @Benchmark
+    public void fromReservation(Blackhole blackhole) {
+        for (ReservationReporting reservation : reservations) {
+            ReservationResponse response = DtoMapper.fromReservation(reservation);
+            blackhole.consume(response);
+        }
+    }
+
+    @Benchmark
+    public void fromReservationDetails(Blackhole blackhole) {
+        for (ReservationDetails reservationDetails : details) {
+            blackhole.consume(DtoMapper.fromReservationDetails(reservationDetails));
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package app.benchmark;
+
+import app.model.ReservationReporting;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The database-side aggregation that replaced the in-memory reduction, measured against an
+ * embedded H2 in MySQL mode with the same table and index layout Hibernate generates: apartment and
+ * user stored as integer keys into the {@code apartment} and {@code reservation_user} dimension
+ * tables. Compare with {@link StatsAggregationBenchmark} at the same size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class H2StatsQueryBenchmark {
+
+    private static final String GROUP_BY_APARTMENT = """
+            SELECT apartment_id, SUM(total_price), SUM(reservation_length), SUM(guests), COUNT(*)
+            FROM reservation_reporting
+            GROUP BY apartment_id
+            """;
+
+    private static final String GROUP_BY_APARTMENT_BETWEEN = """
+            SELECT apartment_id, SUM(total_price), SUM(reservation_length), SUM(guests), COUNT(*)
+            FROM reservation_reporting
+            WHERE check_in_date >= ? AND check_in_date < ?
+            GROUP BY apartment_id
+            """;
+
+    @Param({"10000", "1000000"})
+    private int size;
+
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:bench;MODE=MYSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS reservation_reporting");
+            statement.execute("DROP TABLE IF EXISTS apartment");
+            statement.execute("DROP TABLE IF EXISTS reservation_user");
+            statement.execute("""
+                    CREATE TABLE apartment (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        name VARCHAR(255) NOT NULL,
+                        CONSTRAINT uk_apartment_name UNIQUE (name)
+                    )
+                    """);
+            statement.execute("""
+                    CREATE TABLE reservation_user (
+                        id INT AUTO_INCREMENT PRIMARY KEY,
+                        name VARCHAR(255) NOT NULL,
+                        CONSTRAINT uk_reservation_user_name UNIQUE (name)
+                    )
+                    """);
+            statement.execute("""
+                    CREATE TABLE reservation_reporting (
+                        id UUID PRIMARY KEY,
+                        reservation_id UUID NOT NULL UNIQUE,
+                        check_in_date DATE NOT NULL,
+                        check_out_date DATE NOT NULL,
+                        guests INT NOT NULL,
+                        reservation_length BIGINT NOT NULL,
+                        total_price NUMERIC(38, 2) NOT NULL,
+                        user_id INT NOT NULL,
+                        apartment_id INT NOT NULL,
+                        created_on TIMESTAMP NOT NULL,
+                        updated_on TIMESTAMP NOT NULL
+                    )
+                    """);
+            statement.execute("CREATE INDEX idx_reservation_created_on_id ON reservation_reporting (created_on, id)");
+            statement.execute("CREATE INDEX idx_reservation_apartment_check_in ON reservation_reporting (apartment_id, check_in_date)");
+            statement.execute("CREATE INDEX idx_reservation_check_in ON reservation_reporting (check_in_date)");
+            statement.execute("CREATE INDEX idx_reservation_user_created_on_id ON reservation_reporting (user_id, created_on, id)");
+        }
+        load();
+    }
+
+    private void load() throws SQLException {
+        Random random = new Random(42);
+        String[] apartments = new String[ReservationDataset.APARTMENTS];
+        for (int i = 0; i < apartments.length; i++) {
+            apartments[i] = "Apartment " + i;
+        }
+        String[] users = new String[ReservationDataset.USERS];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = "user-" + i;
+        }
+
+        connection.setAutoCommit(false);
+        Map<String, Integer> apartmentIds = insertDimension("apartment", apartments);
+        Map<String, Integer> userIds = insertDimension("reservation_user", users);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO reservation_reporting VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < size; i++) {
+                ReservationReporting r = ReservationDataset.reservation(random, apartments, users, i);
+                insert.setObject(1, r.getId());
+                insert.setObject(2, r.getReservationId());
+                insert.setDate(3, Date.valueOf(r.getCheckInDate()));
+                insert.setDate(4, Date.valueOf(r.getCheckOutDate()));
+                insert.setInt(5, r.getGuests());
+                insert.setLong(6, r.getReservationLength());
+                insert.setBigDecimal(7, r.getTotalPrice());
+                insert.setInt(8, userIds.get(r.getUser()));
+                insert.setInt(9, apartmentIds.get(r.getApartment()));
+                insert.setTimestamp(10, Timestamp.valueOf(r.getCreatedOn()));
+                insert.setTimestamp(11, Timestamp.valueOf(r.getUpdatedOn()));
+                insert.addBatch();
+                if (i % 10_000 == 9_999) {
+                    insert.executeBatch();
+                    connection.commit();
+                }
+            }
+            insert.executeBatch();
+            connection.commit();
+        }
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE");
+        }
+    }
+
+    // Registers every name once, the way DimensionDictionary does on first sight, and returns the keys
+    private Map<String, Integer> insertDimension(String table, String[] names) throws SQLException {
+        Map<String, Integer> ids = new HashMap<>();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO " + table + " (name) VALUES (?)", Statement.RETURN_GENERATED_KEYS)) {
+            for (String name : names) {
+                insert.setString(1, name);
+                insert.executeUpdate();
+                try (ResultSet keys = insert.getGeneratedKeys()) {
+                    keys.next();
+                    ids.put(name, keys.getInt(1));
+                }
+            }
+        }
+        connection.commit();
+        return ids;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public void groupByApartment(Blackhole blackhole) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(GROUP_BY_APARTMENT)) {
+            consume(rs, blackhole);
+        }
+    }
+
+    @Benchmark
+    public void groupByApartmentForOneMonth(Blackhole blackhole) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(GROUP_BY_APARTMENT_BETWEEN)) {
+            statement.setDate(1, Date.valueOf("2021-03-01"));
+            statement.setDate(2, Date.valueOf("2021-04-01"));
+            try (ResultSet rs = statement.executeQuery()) {
+                consume(rs, blackhole);
+            }
+        }
+    }
+
+    private static void consume(ResultSet rs, Blackhole blackhole) throws SQLException {
+        while (rs.next()) {
+            blackhole.consume(rs.getInt(1));
+            blackhole.consume(rs.getBigDecimal(2));
+            blackhole.consume(rs.getLong(3));
+            blackhole.consume(rs.getLong(4));
+            blackhole.consume(rs.getLong(5));
+        }
+    }
+}
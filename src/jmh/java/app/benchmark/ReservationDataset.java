@@ -0,0 +1,80 @@
+package app.benchmark;
+
+import app.model.ReservationReporting;
+import app.web.dto.ReservationDetails;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic synthetic reservations shared by the benchmarks.
+ */
+final class ReservationDataset {
+
+    static final int APARTMENTS = 200;
+    static final int USERS = 50_000;
+
+    private static final LocalDate FIRST_CHECK_IN = LocalDate.of(2020, 1, 1);
+    private static final LocalDateTime CREATED_ON = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+    private ReservationDataset() {
+    }
+
+    static List<ReservationReporting> reservations(int size) {
+        Random random = new Random(42);
+        String[] apartments = names("Apartment ", APARTMENTS);
+        String[] users = names("user-", USERS);
+
+        List<ReservationReporting> reservations = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            reservations.add(reservation(random, apartments, users, i));
+        }
+        return reservations;
+    }
+
+    static List<ReservationDetails> details(int size) {
+        return reservations(size).stream()
+                .map(r -> ReservationDetails.builder()
+                        .reservationId(r.getReservationId())
+                        .checkInDate(r.getCheckInDate())
+                        .checkOutDate(r.getCheckOutDate())
+                        .guests(r.getGuests())
+                        .reservationLength(r.getReservationLength())
+                        .totalPrice(r.getTotalPrice())
+                        .user(r.getUser())
+                        .apartment(r.getApartment())
+                        .build())
+                .toList();
+    }
+
+    static ReservationReporting reservation(Random random, String[] apartments, String[] users, int i) {
+        LocalDate checkIn = FIRST_CHECK_IN.plusDays(random.nextInt(2_000));
+        int nights = 1 + random.nextInt(14);
+        return ReservationReporting.builder()
+                .id(new UUID(random.nextLong(), random.nextLong()))
+                .reservationId(new UUID(random.nextLong(), random.nextLong()))
+                .checkInDate(checkIn)
+                .checkOutDate(checkIn.plusDays(nights))
+                .guests(1 + random.nextInt(6))
+                .reservationLength(nights)
+                .totalPrice(BigDecimal.valueOf(5_000 + random.nextInt(200_000), 2))
+                .user(users[random.nextInt(users.length)])
+                .apartment(apartments[random.nextInt(apartments.length)])
+                .createdOn(CREATED_ON.plusSeconds(i))
+                .updatedOn(CREATED_ON.plusSeconds(i))
+                .build();
+    }
+
+    private static String[] names(String prefix, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = prefix + i;
+        }
+        return names;
+    }
+}
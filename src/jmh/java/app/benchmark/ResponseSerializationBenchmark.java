@@ -0,0 +1,147 @@
+package app.benchmark;
+
+import app.web.ReservationColumnarJsonConverter;
+import app.web.dto.ReservationResponse;
+import app.web.mapper.DtoMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Jackson serialization of a history response, configured like Spring Boot's ObjectMapper
+ * (ISO dates, not timestamps), in each encoding a client can negotiate, with and without the gzip
+ * that Tomcat applies on top. Output goes to a counting sink, not a buffer; the bytes per encoding
+ * are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResponseSerializationBenchmark {
+
+    @Param({"10000", "100000"})
+    private int size;
+
+    private List<ReservationResponse> responses;
+    private ObjectWriter writer;
+    private ObjectWriter smileWriter;
+    private ReservationColumnarJsonConverter columnarConverter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        responses = ReservationDataset.reservations(size).stream()
+                .map(DtoMapper::fromReservation)
+                .toList();
+        JsonMapper jsonMapper = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        writer = jsonMapper.writerFor(List.class);
+        smileWriter = SmileMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build()
+                .writerFor(List.class);
+        columnarConverter = new ReservationColumnarJsonConverter(jsonMapper.getFactory());
+
+        System.out.printf("%n%d reservations: json %d bytes, json+gzip %d, smile %d, smile+gzip %d, columnar %d, columnar+gzip %d%n",
+                size, serializeHistory(), serializeHistoryGzip(), serializeHistorySmile(), serializeHistorySmileGzip(),
+                serializeHistoryColumnar(), serializeHistoryColumnarGzip());
+    }
+
+    @Benchmark
+    public long serializeHistory() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        writer.writeValue(out, responses);
+        return out.count;
+    }
+
+    @Benchmark
+    public long serializeHistoryGzip() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            writer.writeValue(gzip, responses);
+        }
+        return out.count;
+    }
+
+    @Benchmark
+    public long serializeHistorySmile() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        smileWriter.writeValue(out, responses);
+        return out.count;
+    }
+
+    @Benchmark
+    public long serializeHistorySmileGzip() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            smileWriter.writeValue(gzip, responses);
+        }
+        return out.count;
+    }
+
+    @Benchmark
+    public long serializeHistoryColumnar() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        columnarConverter.write(responses, null, ReservationColumnarJsonConverter.APPLICATION_COLUMNAR_JSON, message(out));
+        return out.count;
+    }
+
+    @Benchmark
+    public long serializeHistoryColumnarGzip() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            columnarConverter.write(responses, null, ReservationColumnarJsonConverter.APPLICATION_COLUMNAR_JSON, message(gzip));
+        }
+        return out.count;
+    }
+
+    private static HttpOutputMessage message(OutputStream body) {
+        HttpHeaders headers = new HttpHeaders();
+        return new HttpOutputMessage() {
+            @Override
+            public OutputStream getBody() {
+                return body;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+    }
+
+    static final class CountingOutputStream extends OutputStream {
+
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package app.benchmark;
+
+import app.model.ApartmentSummary;
+import app.model.ReservationReporting;
+import app.service.StatsAggregator;
+import app.web.dto.Summary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory per-apartment aggregation: the Summary reduction getStats() used to do over findAll(),
+ * against the mutable {@link StatsAggregator}. Run with the gc profiler to compare gc.alloc.rate.norm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StatsAggregationBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int size;
+
+    private List<ReservationReporting> reservations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        reservations = ReservationDataset.reservations(size);
+    }
+
+    @Benchmark
+    public Map<String, Summary> summaryReduction() {
+        return reservations.stream()
+                .collect(Collectors.groupingBy(
+                        ReservationReporting::getApartment,
+                        Collectors.reducing(
+                                new Summary(BigDecimal.ZERO, 0, 0),
+                                r -> new Summary(r.getTotalPrice(), (int) r.getReservationLength(), r.getGuests()),
+                                Summary::combine
+                        )
+                ));
+    }
+
+    @Benchmark
+    public List<ApartmentSummary> statsAggregator() {
+        return StatsAggregator.of(reservations).summaries();
+    }
+}
@@ -0,0 +1,26 @@
+package app.benchmark;
+
+import app.web.dto.Summary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SummaryCombineBenchmark {
+
+    private final Summary left = new Summary(new BigDecimal("1234.56"), 3, 2);
+    private final Summary right = new Summary(new BigDecimal("99.99"), 1, 4);
+
+    @Benchmark
+    public Summary combine() {
+        return Summary.combine(left, right);
+    }
+}
@@ -0,0 +1,26 @@
+package app;
+
+import app.service.ReportingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Gives the stats cache its own, short expiry. Its evictions run after the writing transaction
+ * commits, and a reader that missed the cache before the commit can still put its older totals
+ * back after them; the expiry bounds how long such an entry is served. Recomputing an entry costs
+ * one read of the materialized stats, so a short expiry is cheap.
+ */
+@Configuration
+public class CacheConfiguration {
+
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> statsCacheCustomizer(
+            @Value("${reporting.stats.cache-spec}") String statsCacheSpec) {
+        return cacheManager -> cacheManager.registerCustomCache(ReportingCache.STATS,
+                Caffeine.from(statsCacheSpec).build());
+    }
+}
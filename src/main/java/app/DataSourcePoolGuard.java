@@ -0,0 +1,55 @@
+package app;
+
+import app.service.ParallelStatsAggregationService;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Fails startup when the connection pool cannot carry the configured concurrency.
+ * <p>
+ * With platform threads Tomcat's worker pool caps how many requests wait on the database at once.
+ * With virtual threads that cap is gone and Hikari is the only limit, so the pool must leave room
+ * for request traffic next to the stats workers, and a request that cannot get a connection must
+ * give up quickly instead of piling up behind the others.
+ */
+@Component
+@Slf4j
+public class DataSourcePoolGuard {
+
+    @Autowired
+    public DataSourcePoolGuard(DataSource dataSource,
+                               ParallelStatsAggregationService parallelStatsAggregationService,
+                               @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                               @Value("${reporting.datasource.reserved-connections:4}") int reservedConnections,
+                               @Value("${reporting.datasource.max-connection-timeout-ms:5000}") long maxConnectionTimeoutMs)
+            throws SQLException {
+
+        if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+            log.info("Connection pool is not Hikari, skipping pool size checks");
+            return;
+        }
+        HikariDataSource hikari = dataSource.unwrap(HikariDataSource.class);
+
+        int required = parallelStatsAggregationService.getParallelism() + reservedConnections;
+        if (hikari.getMaximumPoolSize() < required) {
+            throw new IllegalStateException("spring.datasource.hikari.maximum-pool-size is "
+                    + hikari.getMaximumPoolSize() + " but the " + parallelStatsAggregationService.getParallelism()
+                    + " stats workers and " + reservedConnections + " reserved request connections need " + required);
+        }
+
+        if (virtualThreads && hikari.getConnectionTimeout() > maxConnectionTimeoutMs) {
+            throw new IllegalStateException("spring.datasource.hikari.connection-timeout is "
+                    + hikari.getConnectionTimeout() + " ms; with virtual threads it must not exceed "
+                    + maxConnectionTimeoutMs + " ms");
+        }
+
+        log.info("Connection pool: {} connections, {} ms connection timeout, virtual threads {}",
+                hikari.getMaximumPoolSize(), hikari.getConnectionTimeout(), virtualThreads ? "on" : "off");
+    }
+}
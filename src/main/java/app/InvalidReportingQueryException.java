@@ -0,0 +1,7 @@
+package app;
+
+public class InvalidReportingQueryException extends RuntimeException {
+    public InvalidReportingQueryException(String message) {
+        super(message);
+    }
+}
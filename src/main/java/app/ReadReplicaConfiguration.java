@@ -0,0 +1,78 @@
+package app;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces Boot's single pool with a primary pool and one pool per read replica when
+ * {@code reporting.datasource.read-replicas.enabled} is set. The primary is configured by the usual
+ * {@code spring.datasource.*} properties; every replica takes the {@code spring.datasource.hikari}
+ * settings, overridden by its own entry under {@code reporting.datasource.read-replicas.pools}.
+ * Each pool publishes its own hikaricp.* meters, tagged with its pool name.
+ */
+@Configuration
+@ConditionalOnProperty(name = "reporting.datasource.read-replicas.enabled", havingValue = "true")
+@Slf4j
+public class ReadReplicaConfiguration {
+
+    static final String REPLICAS_PREFIX = "reporting.datasource.read-replicas.pools";
+
+    @Bean
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(
+            DataSourceProperties dataSourceProperties,
+            Environment environment,
+            MeterRegistry meterRegistry,
+            @Value("${reporting.datasource.read-replicas.max-lag:PT5S}") Duration maxLag) {
+
+        Binder binder = Binder.get(environment);
+
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName(ReadWriteRoutingDataSource.PRIMARY);
+        primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; environment.containsProperty(REPLICAS_PREFIX + "[" + i + "].jdbc-url"); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            binder.bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+            binder.bind(REPLICAS_PREFIX + "[" + i + "]", Bindable.ofInstance(replica));
+            replica.setPoolName("replica-" + i);
+            replica.setReadOnly(true);
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.add(replica);
+        }
+        if (replicas.isEmpty()) {
+            throw new IllegalStateException("reporting.datasource.read-replicas.enabled is set but "
+                    + REPLICAS_PREFIX + "[0].jdbc-url is missing");
+        }
+
+        log.info("Routing read-only transactions to {} replicas at most {} behind the primary", replicas.size(), maxLag);
+        return new ReadWriteRoutingDataSource(primary, replicas, maxLag, meterRegistry);
+    }
+
+    // Lazy, so the connection is only taken once the transaction is marked read-only
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+    }
+}
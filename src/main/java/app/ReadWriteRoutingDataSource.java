@@ -0,0 +1,186 @@
+package app;
+
+import app.model.ReplicationHeartbeat;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out replica connections to read-only transactions and primary connections to everything
+ * else. Replicas take turns; one that is more than the allowed lag behind, or whose lag is unknown,
+ * is skipped, and when none is left reads fall back to the primary.
+ * <p>
+ * Lag is measured with a heartbeat: {@link #checkReplicas()} rewrites the
+ * {@link ReplicationHeartbeat} row on the primary and reads it back from every replica, so a
+ * replica's lag is at most one check interval more than its replication delay. The decision is
+ * made when the connection is taken, so this must sit behind a lazy connection proxy: the
+ * transaction is only marked read-only after it has begun.
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private static final long UNKNOWN = Long.MAX_VALUE;
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final JdbcTemplate primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<String, Counter> routed = new HashMap<>();
+    private final Counter fallbacks;
+
+    private static final class Replica {
+
+        private final String name;
+        private final JdbcTemplate jdbcTemplate;
+        private volatile long lagMillis = UNKNOWN;
+
+        private Replica(String name, HikariDataSource dataSource) {
+            this.name = name;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+        }
+
+        private boolean isWithin(long maxLagMillis) {
+            return lagMillis <= maxLagMillis;
+        }
+    }
+
+    public ReadWriteRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, Duration maxLag,
+                                      MeterRegistry meterRegistry) {
+        this.pools.add(primary);
+        this.pools.addAll(replicas);
+        this.primary = new JdbcTemplate(primary);
+        this.maxLagMillis = maxLag.toMillis();
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        routed.put(PRIMARY, routedCounter(PRIMARY, meterRegistry));
+        for (HikariDataSource dataSource : replicas) {
+            Replica replica = new Replica(dataSource.getPoolName(), dataSource);
+            this.replicas.add(replica);
+            targets.put(replica.name, dataSource);
+            routed.put(replica.name, routedCounter(replica.name, meterRegistry));
+            TimeGauge.builder("reporting.datasource.replica.lag", replica, TimeUnit.MILLISECONDS,
+                            r -> r.lagMillis == UNKNOWN ? Double.NaN : r.lagMillis)
+                    .description("Age of the heartbeat the replica returned at the last check")
+                    .tag("pool", replica.name)
+                    .register(meterRegistry);
+        }
+        this.fallbacks = Counter.builder("reporting.datasource.replica.fallbacks")
+                .description("Read-only connections taken from the primary because no replica was close enough")
+                .register(meterRegistry);
+
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String pool = PRIMARY;
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            Replica replica = nextReplica();
+            if (replica == null) {
+                fallbacks.increment();
+            } else {
+                pool = replica.name;
+            }
+        }
+        routed.get(pool).increment();
+        return pool;
+    }
+
+    // True when a read-only transaction would get a replica connection right now
+    public boolean hasReplicaWithinLag() {
+        return replicas.stream().anyMatch(replica -> replica.isWithin(maxLagMillis));
+    }
+
+    @Scheduled(fixedDelayString = "${reporting.datasource.read-replicas.check-interval:PT1S}")
+    public void checkReplicas() {
+        LocalDateTime now = LocalDateTime.now();
+        beat(now);
+        for (Replica replica : replicas) {
+            boolean wasWithin = replica.isWithin(maxLagMillis);
+            replica.lagMillis = lagOf(replica, now);
+            boolean within = replica.isWithin(maxLagMillis);
+            if (wasWithin && !within) {
+                log.warn("Replica {} is {} behind (limit {} ms), its reads go elsewhere", replica.name,
+                        replica.lagMillis == UNKNOWN ? "an unknown time" : replica.lagMillis + " ms", maxLagMillis);
+            } else if (!wasWithin && within) {
+                log.info("Replica {} is {} ms behind, taking reads", replica.name, replica.lagMillis);
+            }
+        }
+    }
+
+    // Picked up as the bean's destroy method
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    private Replica nextReplica() {
+        int size = replicas.size();
+        if (size == 0) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.isWithin(maxLagMillis)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private void beat(LocalDateTime now) {
+        try {
+            int updated = primary.update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = ?",
+                    now, ReplicationHeartbeat.ID);
+            if (updated == 0) {
+                primary.update("INSERT INTO replication_heartbeat (id, beat_at) VALUES (?, ?)",
+                        ReplicationHeartbeat.ID, now);
+            }
+        } catch (DataAccessException e) {
+            // Another instance inserted it first, or the primary is down: the replicas' lag will tell
+            log.debug("Could not write the replication heartbeat: {}", e.getMessage());
+        }
+    }
+
+    private long lagOf(Replica replica, LocalDateTime now) {
+        try {
+            LocalDateTime beatAt = replica.jdbcTemplate.queryForObject(
+                    "SELECT beat_at FROM replication_heartbeat WHERE id = ?", LocalDateTime.class, ReplicationHeartbeat.ID);
+            return beatAt == null ? UNKNOWN : Math.max(0, Duration.between(beatAt, now).toMillis());
+        } catch (EmptyResultDataAccessException e) {
+            return UNKNOWN;
+        } catch (DataAccessException e) {
+            log.debug("Could not read the replication heartbeat from {}: {}", replica.name, e.getMessage());
+            return UNKNOWN;
+        }
+    }
+
+    private static Counter routedCounter(String pool, MeterRegistry meterRegistry) {
+        return Counter.builder("reporting.datasource.connections.routed")
+                .description("Connections taken from each pool")
+                .tag("pool", pool)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,217 @@
+package app.archive;
+
+import app.model.ReservationReporting;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * A decoded segment: one primitive array per column, rows in history order {@code (createdOn, id)}.
+ * Apartment and user names are dictionary codes into the segment's own name tables. Rows are only
+ * turned into {@link ReservationReporting} entities (detached, never persisted) when a query
+ * returns them; aggregations read the columns directly.
+ */
+final class ArchiveSegment {
+
+    // Prices whose unscaled value does not fit a long are kept exactly, out of line
+    static final int EXACT_PRICE = Integer.MIN_VALUE;
+
+    private final int size;
+    private final long[] idMost;
+    private final long[] idLeast;
+    private final long[] reservationMost;
+    private final long[] reservationLeast;
+    private final long[] createdSeconds;
+    private final int[] createdNanos;
+    private final long[] updatedSeconds;
+    private final int[] updatedNanos;
+    private final int[] checkIn;
+    private final int[] checkOut;
+    private final int[] guests;
+    private final long[] reservationLength;
+    private final int[] priceScale;
+    private final long[] priceUnscaled;
+    private final Map<Integer, BigDecimal> exactPrices;
+    private final int[] apartment;
+    private final int[] user;
+    private final String[] apartments;
+    private final String[] users;
+    private final Map<String, Integer> apartmentCodes;
+    private final Map<String, Integer> userCodes;
+    // Row numbers sorted by reservationId, for lookups
+    private final int[] byReservationId;
+
+    ArchiveSegment(int size, long[] idMost, long[] idLeast, long[] reservationMost, long[] reservationLeast,
+                   long[] createdSeconds, int[] createdNanos, long[] updatedSeconds, int[] updatedNanos,
+                   int[] checkIn, int[] checkOut, int[] guests, long[] reservationLength,
+                   int[] priceScale, long[] priceUnscaled, Map<Integer, BigDecimal> exactPrices,
+                   int[] apartment, int[] user, String[] apartments, String[] users) {
+        this.size = size;
+        this.idMost = idMost;
+        this.idLeast = idLeast;
+        this.reservationMost = reservationMost;
+        this.reservationLeast = reservationLeast;
+        this.createdSeconds = createdSeconds;
+        this.createdNanos = createdNanos;
+        this.updatedSeconds = updatedSeconds;
+        this.updatedNanos = updatedNanos;
+        this.checkIn = checkIn;
+        this.checkOut = checkOut;
+        this.guests = guests;
+        this.reservationLength = reservationLength;
+        this.priceScale = priceScale;
+        this.priceUnscaled = priceUnscaled;
+        this.exactPrices = exactPrices;
+        this.apartment = apartment;
+        this.user = user;
+        this.apartments = apartments;
+        this.users = users;
+        this.apartmentCodes = codes(apartments);
+        this.userCodes = codes(users);
+        this.byReservationId = IntStream.range(0, size)
+                .boxed()
+                .sorted((a, b) -> compareUnsigned(reservationMost[a], reservationLeast[a], reservationMost[b], reservationLeast[b]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    int size() {
+        return size;
+    }
+
+    ReservationReporting row(int row) {
+        return ReservationReporting.builder()
+                .id(new UUID(idMost[row], idLeast[row]))
+                .reservationId(new UUID(reservationMost[row], reservationLeast[row]))
+                .checkInDate(LocalDate.ofEpochDay(checkIn[row]))
+                .checkOutDate(LocalDate.ofEpochDay(checkOut[row]))
+                .guests(guests[row])
+                .reservationLength(reservationLength[row])
+                .totalPrice(price(row))
+                .user(users[user[row]])
+                .apartment(apartments[apartment[row]])
+                .createdOn(LocalDateTime.ofEpochSecond(createdSeconds[row], createdNanos[row], ZoneOffset.UTC))
+                .updatedOn(LocalDateTime.ofEpochSecond(updatedSeconds[row], updatedNanos[row], ZoneOffset.UTC))
+                .build();
+    }
+
+    Stream<ReservationReporting> rows() {
+        return IntStream.range(0, size).mapToObj(this::row);
+    }
+
+    // Row number of the reservation, or -1
+    int find(UUID reservationId) {
+        long most = reservationId.getMostSignificantBits();
+        long least = reservationId.getLeastSignificantBits();
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int row = byReservationId[middle];
+            int cmp = compareUnsigned(reservationMost[row], reservationLeast[row], most, least);
+            if (cmp < 0) {
+                low = middle + 1;
+            } else if (cmp > 0) {
+                high = middle - 1;
+            } else {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    // First row strictly after the keyset position, or size when there is none; 0 without a position
+    int firstAfter(LocalDateTime createdOn, UUID id) {
+        if (createdOn == null) {
+            return 0;
+        }
+        long seconds = createdOn.toEpochSecond(ZoneOffset.UTC);
+        int nanos = createdOn.getNano();
+        long most = id.getMostSignificantBits();
+        long least = id.getLeastSignificantBits();
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareToPosition(middle, seconds, nanos, most, least) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // -1 when the name does not occur in the segment
+    int apartmentCode(String name) {
+        return apartmentCodes.getOrDefault(name, -1);
+    }
+
+    int userCode(String name) {
+        return userCodes.getOrDefault(name, -1);
+    }
+
+    int user(int row) {
+        return user[row];
+    }
+
+    /**
+     * Visits the rows checking in within [fromDay, toDay) (epoch days), only those of one
+     * apartment unless {@code apartmentCode} is -1.
+     */
+    void forEachCheckingIn(int fromDay, int toDay, int apartmentCode, ReservationArchive.StatsVisitor visitor) {
+        for (int row = 0; row < size; row++) {
+            int day = checkIn[row];
+            if (day >= fromDay && day < toDay && (apartmentCode < 0 || apartment[row] == apartmentCode)) {
+                visit(row, visitor);
+            }
+        }
+    }
+
+    void forEachOfUser(int userCode, ReservationArchive.StatsVisitor visitor) {
+        for (int row = 0; row < size; row++) {
+            if (user[row] == userCode) {
+                visit(row, visitor);
+            }
+        }
+    }
+
+    private void visit(int row, ReservationArchive.StatsVisitor visitor) {
+        visitor.visit(apartments[apartment[row]], users[user[row]], price(row), reservationLength[row], guests[row]);
+    }
+
+    private BigDecimal price(int row) {
+        return priceScale[row] == EXACT_PRICE
+                ? exactPrices.get(row)
+                : BigDecimal.valueOf(priceUnscaled[row], priceScale[row]);
+    }
+
+    private int compareToPosition(int row, long seconds, int nanos, long most, long least) {
+        int cmp = Long.compare(createdSeconds[row], seconds);
+        if (cmp == 0) {
+            cmp = Integer.compare(createdNanos[row], nanos);
+        }
+        return cmp != 0 ? cmp : compareUnsigned(idMost[row], idLeast[row], most, least);
+    }
+
+    // Byte order, as the database compares its binary(16) ids
+    static int compareUnsigned(long mostA, long leastA, long mostB, long leastB) {
+        int cmp = Long.compareUnsigned(mostA, mostB);
+        return cmp != 0 ? cmp : Long.compareUnsigned(leastA, leastB);
+    }
+
+    private static Map<String, Integer> codes(String[] names) {
+        Map<String, Integer> codes = new HashMap<>(names.length * 2);
+        for (int code = 0; code < names.length; code++) {
+            codes.put(names[code], code);
+        }
+        return codes;
+    }
+}
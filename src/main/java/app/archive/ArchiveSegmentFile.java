@@ -0,0 +1,321 @@
+package app.archive;
+
+import app.model.ReservationReporting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads and writes segment files. A segment is written once and never changed:
+ * <pre>
+ *   header  magic, version, row count, check-in and createdOn ranges, apartment names,
+ *           reservation id and user bloom filters                             (plain)
+ *   body    user names, then each column in turn for all rows                 (gzip)
+ * </pre>
+ * Rows are sorted by {@code (createdOn, id)}, so createdOn is stored as deltas from the previous
+ * row, updatedOn relative to createdOn, check-in relative to the segment's first check-in and
+ * check-out relative to check-in: mostly small numbers that compress to a few bits each.
+ * Apartments and users are written as codes into the name tables.
+ */
+final class ArchiveSegmentFile {
+
+    static final String SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x52415243; // "RARC"
+    private static final short VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ArchiveSegmentFile() {
+    }
+
+    /**
+     * Writes the rows to a temporary file next to {@code path}, forces it to disk and moves it into
+     * place, so the segment either exists complete or not at all.
+     */
+    static SegmentMetadata write(Path path, List<ReservationReporting> reservations) throws IOException {
+        if (reservations.isEmpty()) {
+            throw new IllegalArgumentException("A segment needs at least one reservation");
+        }
+        List<ReservationReporting> rows = new ArrayList<>(reservations);
+        rows.sort(ReservationArchive.HISTORY_ORDER);
+        int n = rows.size();
+
+        Map<String, Integer> apartments = new LinkedHashMap<>();
+        Map<String, Integer> users = new LinkedHashMap<>();
+        SegmentBloomFilter reservationIds = SegmentBloomFilter.forKeys(n);
+        LocalDate minCheckIn = LocalDate.MAX;
+        LocalDate maxCheckIn = LocalDate.MIN;
+        for (ReservationReporting row : rows) {
+            apartments.putIfAbsent(row.getApartment(), apartments.size());
+            users.putIfAbsent(row.getUser(), users.size());
+            reservationIds.add(row.getReservationId());
+            minCheckIn = row.getCheckInDate().isBefore(minCheckIn) ? row.getCheckInDate() : minCheckIn;
+            maxCheckIn = row.getCheckInDate().isAfter(maxCheckIn) ? row.getCheckInDate() : maxCheckIn;
+        }
+        SegmentBloomFilter userFilter = SegmentBloomFilter.forKeys(users.size());
+        users.keySet().forEach(userFilter::add);
+
+        SegmentMetadata metadata = new SegmentMetadata(n, minCheckIn, maxCheckIn,
+                rows.get(0).getCreatedOn(), rows.get(n - 1).getCreatedOn(),
+                List.copyOf(apartments.keySet()), reservationIds, userFilter);
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            // The streams are flushed but not closed: closing them would close the channel before the force
+            OutputStream file = Channels.newOutputStream(channel);
+            DataOutputStream header = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE));
+            writeHeader(header, metadata);
+            header.flush();
+
+            GZIPOutputStream gzip = new GZIPOutputStream(file, BUFFER_SIZE);
+            DataOutputStream body = new DataOutputStream(new BufferedOutputStream(gzip, BUFFER_SIZE));
+            writeBody(body, rows, minCheckIn, apartments, users);
+            body.flush();
+            gzip.finish();
+
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return metadata;
+    }
+
+    static SegmentMetadata readMetadata(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE))) {
+            return readHeader(in, path);
+        }
+    }
+
+    static ArchiveSegment read(Path path) throws IOException {
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE)) {
+            SegmentMetadata metadata = readHeader(new DataInputStream(file), path);
+            DataInputStream body = new DataInputStream(new BufferedInputStream(new GZIPInputStream(file, BUFFER_SIZE), BUFFER_SIZE));
+            return readBody(body, metadata);
+        }
+    }
+
+    private static void writeHeader(DataOutputStream out, SegmentMetadata metadata) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(metadata.rows());
+        out.writeLong(metadata.minCheckIn().toEpochDay());
+        out.writeLong(metadata.maxCheckIn().toEpochDay());
+        writeDateTime(out, metadata.minCreatedOn());
+        writeDateTime(out, metadata.maxCreatedOn());
+        out.writeInt(metadata.apartments().size());
+        for (String apartment : metadata.apartments()) {
+            out.writeUTF(apartment);
+        }
+        writeWords(out, metadata.reservationIds().words());
+        writeWords(out, metadata.users().words());
+    }
+
+    private static SegmentMetadata readHeader(DataInputStream in, Path path) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an archive segment: " + path);
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported archive segment version " + version + ": " + path);
+        }
+        int rows = in.readInt();
+        LocalDate minCheckIn = LocalDate.ofEpochDay(in.readLong());
+        LocalDate maxCheckIn = LocalDate.ofEpochDay(in.readLong());
+        LocalDateTime minCreatedOn = readDateTime(in);
+        LocalDateTime maxCreatedOn = readDateTime(in);
+        List<String> apartments = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            apartments.add(in.readUTF());
+        }
+        return new SegmentMetadata(rows, minCheckIn, maxCheckIn, minCreatedOn, maxCreatedOn, List.copyOf(apartments),
+                new SegmentBloomFilter(readWords(in)), new SegmentBloomFilter(readWords(in)));
+    }
+
+    private static void writeBody(DataOutputStream out, List<ReservationReporting> rows, LocalDate minCheckIn,
+                                  Map<String, Integer> apartments, Map<String, Integer> users) throws IOException {
+        out.writeInt(users.size());
+        for (String user : users.keySet()) {
+            out.writeUTF(user);
+        }
+
+        for (ReservationReporting row : rows) {
+            out.writeLong(row.getId().getMostSignificantBits());
+        }
+        for (ReservationReporting row : rows) {
+            out.writeLong(row.getId().getLeastSignificantBits());
+        }
+        for (ReservationReporting row : rows) {
+            out.writeLong(row.getReservationId().getMostSignificantBits());
+        }
+        for (ReservationReporting row : rows) {
+            out.writeLong(row.getReservationId().getLeastSignificantBits());
+        }
+        long previous = 0;
+        for (ReservationReporting row : rows) {
+            long seconds = row.getCreatedOn().toEpochSecond(ZoneOffset.UTC);
+            out.writeLong(seconds - previous);
+            previous = seconds;
+        }
+        for (ReservationReporting row : rows) {
+            out.writeInt(row.getCreatedOn().getNano());
+        }
+        for (ReservationReporting row : rows) {
+            out.writeLong(row.getUpdatedOn().toEpochSecond(ZoneOffset.UTC) - row.getCreatedOn().toEpochSecond(ZoneOffset.UTC));
+        }
+        for (ReservationReporting row : rows) {
+            out.writeInt(row.getUpdatedOn().getNano());
+        }
+        long firstDay = minCheckIn.toEpochDay();
+        for (ReservationReporting row : rows) {
+            out.writeInt(Math.toIntExact(row.getCheckInDate().toEpochDay() - firstDay));
+        }
+        for (ReservationReporting row : rows) {
+            out.writeInt(Math.toIntExact(row.getCheckOutDate().toEpochDay() - row.getCheckInDate().toEpochDay()));
+        }
+        for (ReservationReporting row : rows) {
+            out.writeInt(row.getGuests());
+        }
+        for (ReservationReporting row : rows) {
+            out.writeLong(row.getReservationLength());
+        }
+
+        // Prices as scale and unscaled long; the rare one that does not fit is appended as text
+        List<Integer> exactRows = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            BigDecimal price = rows.get(i).getTotalPrice();
+            if (price.unscaledValue().bitLength() < Long.SIZE && price.scale() != ArchiveSegment.EXACT_PRICE) {
+                out.writeInt(price.scale());
+            } else {
+                out.writeInt(ArchiveSegment.EXACT_PRICE);
+                exactRows.add(i);
+            }
+        }
+        for (ReservationReporting row : rows) {
+            BigDecimal price = row.getTotalPrice();
+            out.writeLong(price.unscaledValue().bitLength() < Long.SIZE ? price.unscaledValue().longValue() : 0);
+        }
+        out.writeInt(exactRows.size());
+        for (int row : exactRows) {
+            out.writeInt(row);
+            out.writeUTF(rows.get(row).getTotalPrice().toString());
+        }
+
+        for (ReservationReporting row : rows) {
+            out.writeInt(apartments.get(row.getApartment()));
+        }
+        for (ReservationReporting row : rows) {
+            out.writeInt(users.get(row.getUser()));
+        }
+    }
+
+    private static ArchiveSegment readBody(DataInputStream in, SegmentMetadata metadata) throws IOException {
+        int n = metadata.rows();
+        String[] users = new String[in.readInt()];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = in.readUTF();
+        }
+
+        long[] idMost = readLongs(in, n);
+        long[] idLeast = readLongs(in, n);
+        long[] reservationMost = readLongs(in, n);
+        long[] reservationLeast = readLongs(in, n);
+        long[] createdSeconds = readLongs(in, n);
+        for (int i = 1; i < n; i++) {
+            createdSeconds[i] += createdSeconds[i - 1];
+        }
+        int[] createdNanos = readInts(in, n);
+        long[] updatedSeconds = readLongs(in, n);
+        for (int i = 0; i < n; i++) {
+            updatedSeconds[i] += createdSeconds[i];
+        }
+        int[] updatedNanos = readInts(in, n);
+        int[] checkIn = readInts(in, n);
+        int firstDay = Math.toIntExact(metadata.minCheckIn().toEpochDay());
+        for (int i = 0; i < n; i++) {
+            checkIn[i] += firstDay;
+        }
+        int[] checkOut = readInts(in, n);
+        for (int i = 0; i < n; i++) {
+            checkOut[i] += checkIn[i];
+        }
+        int[] guests = readInts(in, n);
+        long[] reservationLength = readLongs(in, n);
+
+        int[] priceScale = readInts(in, n);
+        long[] priceUnscaled = readLongs(in, n);
+        Map<Integer, BigDecimal> exactPrices = new HashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            int row = in.readInt();
+            exactPrices.put(row, new BigDecimal(in.readUTF()));
+        }
+
+        int[] apartment = readInts(in, n);
+        int[] user = readInts(in, n);
+
+        return new ArchiveSegment(n, idMost, idLeast, reservationMost, reservationLeast,
+                createdSeconds, createdNanos, updatedSeconds, updatedNanos, checkIn, checkOut, guests,
+                reservationLength, priceScale, priceUnscaled, exactPrices, apartment, user,
+                metadata.apartments().toArray(String[]::new), users);
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value.getNano());
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+
+    private static void writeWords(DataOutputStream out, long[] words) throws IOException {
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static long[] readWords(DataInputStream in) throws IOException {
+        return readLongs(in, in.readInt());
+    }
+
+    private static long[] readLongs(DataInputStream in, int count) throws IOException {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
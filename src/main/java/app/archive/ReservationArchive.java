@@ -0,0 +1,440 @@
+package app.archive;
+
+import app.model.ArchivedReservation;
+import app.model.ArchivedSegment;
+import app.model.ReservationReporting;
+import app.repository.ArchivedReservationRepository;
+import app.repository.ArchivedSegmentRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Cold tier of the reservation history: reservations past the archive horizon, moved out of the
+ * table into immutable, compressed columnar segment files (see {@link ArchiveSegmentFile}).
+ * <p>
+ * The segments in use are the ones listed in the {@link ArchivedSegment} manifest table. Only
+ * their headers are kept in memory; a query first prunes by check-in range, apartments, createdOn
+ * range or bloom filter, and only the segments left are decoded, through a small cache.
+ * <p>
+ * A segment is written under an uncommitted name and renamed to its listed name once the
+ * archival transaction has committed, by the archiver or by whichever instance first finds it
+ * listed but not yet renamed. Files that are not in the manifest are either being written by an
+ * archival run still in progress, on this or another instance, or left over from one that did
+ * not commit; only those older than {@code orphan-grace-period} are deleted, on start.
+ * <p>
+ * Every instance reads every segment, so with several instances the directory has to be shared
+ * storage. The rows of a segment leave the table in the transaction that lists it, so every read
+ * first compares the size of the manifest with the one last loaded, in the caller's transaction,
+ * and reloads it when they differ: a reader never sees the rows gone from the table without
+ * their segment. Whether a reservation is archived is answered by the
+ * {@link ArchivedReservation} table, not by the segments loaded here.
+ */
+@Component
+@Slf4j
+public class ReservationArchive implements SmartLifecycle {
+
+    // Keyset order of the history; ids compare as the database compares binary(16)
+    public static final Comparator<ReservationReporting> HISTORY_ORDER = Comparator
+            .comparing(ReservationReporting::getCreatedOn)
+            .thenComparing(ReservationReporting::getId, ReservationArchive::compareIds);
+
+    @FunctionalInterface
+    public interface StatsVisitor {
+        void visit(String apartment, String user, BigDecimal totalPrice, long reservationLength, int guests);
+    }
+
+    // Suffix of a segment file written by an archival run that has not committed (yet)
+    public static final String UNCOMMITTED_SUFFIX = ".uncommitted";
+
+    private record Segment(String name, Path path, SegmentMetadata metadata) {
+    }
+
+    private final ArchivedSegmentRepository archivedSegmentRepository;
+    private final ArchivedReservationRepository archivedReservationRepository;
+    private final boolean enabled;
+    private final Path directory;
+    private final Duration orphanGracePeriod;
+    private final Cache<String, ArchiveSegment> decoded;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    // Ordered by createdOn; replaced as a whole on refresh
+    private volatile List<Segment> segments = List.of();
+    // Manifest entries loaded by the last refresh; one that could not be read is retried by the next read
+    private volatile long manifestSize;
+    private final Set<String> reportedUnreadable = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+
+    @Autowired
+    public ReservationArchive(ArchivedSegmentRepository archivedSegmentRepository,
+                              ArchivedReservationRepository archivedReservationRepository,
+                              @Value("${reporting.archive.enabled:false}") boolean enabled,
+                              @Value("${reporting.archive.directory:./data/archive}") Path directory,
+                              @Value("${reporting.archive.cached-segments:16}") int cachedSegments,
+                              @Value("${reporting.archive.orphan-grace-period:PT1H}") Duration orphanGracePeriod) {
+        this.archivedSegmentRepository = archivedSegmentRepository;
+        this.archivedReservationRepository = archivedReservationRepository;
+        this.enabled = enabled;
+        this.directory = directory;
+        this.orphanGracePeriod = orphanGracePeriod;
+        this.decoded = Caffeine.newBuilder()
+                .maximumSize(cachedSegments)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public long size() {
+        return current().stream().mapToLong(segment -> segment.metadata().rows()).sum();
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create the archive directory " + directory, e);
+        }
+        refresh();
+        deleteOrphans();
+        recordArchivedReservations();
+        running = true;
+        log.info("Reservation archive opened in {}: {} segments, {} reservations", directory, segmentCount(), size());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Ready before the event log is replayed, which must not re-insert archived reservations
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 8192 - 2;
+    }
+
+    @Scheduled(fixedDelayString = "${reporting.archive.refresh-interval:PT1M}")
+    public void scheduledRefresh() {
+        if (running) {
+            refresh();
+        }
+    }
+
+    /**
+     * Reloads the manifest. Headers of segments already known are kept; a listed segment still
+     * under its uncommitted name is published first. One whose file cannot be read is logged and
+     * left out, since its reservations cannot be served, and tried again by the next read.
+     */
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            Map<String, Segment> known = new HashMap<>();
+            segments.forEach(segment -> known.put(segment.name(), segment));
+
+            List<Segment> loaded = new ArrayList<>();
+            List<ArchivedSegment> manifest = archivedSegmentRepository.findAll(Sort.by("minCreatedOn", "name"));
+            for (ArchivedSegment entry : manifest) {
+                Segment segment = known.get(entry.getName());
+                if (segment == null) {
+                    Path path = directory.resolve(entry.getName());
+                    try {
+                        // Listed, so committed: the archiver may just not have renamed it yet
+                        publish(entry.getName());
+                        segment = new Segment(entry.getName(), path, ArchiveSegmentFile.readMetadata(path));
+                    } catch (IOException | UncheckedIOException e) {
+                        if (reportedUnreadable.add(entry.getName())) {
+                            log.error("Archive segment {} is in the manifest but cannot be read, its {} reservations are missing: {}",
+                                    path, entry.getReservations(), e.getMessage());
+                        }
+                        continue;
+                    }
+                }
+                loaded.add(segment);
+            }
+            segments = List.copyOf(loaded);
+            manifestSize = loaded.size();
+            known.keySet().removeAll(loaded.stream().map(Segment::name).toList());
+            decoded.invalidateAll(known.keySet());
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the reservations to a new segment file, under its uncommitted name, and returns its
+     * manifest entry. The segment is not used until the entry is saved and the file published.
+     */
+    public ArchivedSegment write(List<ReservationReporting> reservations) {
+        String name = "segment-" + UUID.randomUUID() + ArchiveSegmentFile.SUFFIX;
+        SegmentMetadata metadata;
+        try {
+            metadata = ArchiveSegmentFile.write(uncommitted(name), reservations);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write archive segment " + name, e);
+        }
+        return ArchivedSegment.builder()
+                .name(name)
+                .reservations(metadata.rows())
+                .minCheckInDate(metadata.minCheckIn())
+                .maxCheckInDate(metadata.maxCheckIn())
+                .minCreatedOn(metadata.minCreatedOn())
+                .maxCreatedOn(metadata.maxCreatedOn())
+                .archivedOn(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * Renames a segment whose manifest entry has committed to its listed name. Does nothing when
+     * that is done already, by this or another instance.
+     */
+    public void publish(String name) {
+        Path uncommitted = uncommitted(name);
+        try {
+            if (Files.exists(uncommitted) && !Files.exists(directory.resolve(name))) {
+                Files.move(uncommitted, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (NoSuchFileException | FileAlreadyExistsException e) {
+            // Renamed concurrently by another instance
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not publish archive segment " + name, e);
+        }
+    }
+
+    // Removes a segment written by an archival run that did not commit
+    public void discard(String name) {
+        try {
+            Files.deleteIfExists(uncommitted(name));
+        } catch (IOException e) {
+            log.warn("Could not delete uncommitted archive segment {}, it is removed on the next start: {}", name, e.getMessage());
+        }
+    }
+
+    public Optional<ReservationReporting> find(UUID reservationId) {
+        for (Segment segment : current()) {
+            if (segment.metadata().mayContainReservation(reservationId)) {
+                ArchiveSegment decodedSegment = load(segment);
+                int row = decodedSegment.find(reservationId);
+                if (row >= 0) {
+                    return Optional.of(decodedSegment.row(row));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Up to {@code limit} archived reservations after the keyset position (from the start when
+     * {@code afterCreatedOn} is null), in history order, optionally of one user only.
+     */
+    public List<ReservationReporting> page(LocalDateTime afterCreatedOn, UUID afterId, String user, int limit) {
+        List<ReservationReporting> rows = new ArrayList<>();
+        for (Segment segment : current()) {
+            SegmentMetadata metadata = segment.metadata();
+            if (!metadata.mayHaveRowsAfter(afterCreatedOn) || !metadata.mayContainUser(user)) {
+                continue;
+            }
+            ArchiveSegment decodedSegment = load(segment);
+            int userCode = user == null ? -1 : decodedSegment.userCode(user);
+            if (user != null && userCode < 0) {
+                continue;
+            }
+            // Segments can overlap in time, so each contributes up to a full page
+            int taken = 0;
+            for (int row = decodedSegment.firstAfter(afterCreatedOn, afterId); row < decodedSegment.size() && taken < limit; row++) {
+                if (userCode < 0 || decodedSegment.user(row) == userCode) {
+                    rows.add(decodedSegment.row(row));
+                    taken++;
+                }
+            }
+        }
+        rows.sort(HISTORY_ORDER);
+        return rows.size() <= limit ? rows : new ArrayList<>(rows.subList(0, limit));
+    }
+
+    // Whether any segment may hold reservations checking in within [from, to); reads headers only
+    public boolean mayHaveCheckInsBetween(LocalDate from, LocalDate to) {
+        return current().stream().anyMatch(segment -> segment.metadata().overlapsCheckIn(from, to));
+    }
+
+    /**
+     * Visits the archived reservations checking in within [from, to), optionally of one
+     * apartment. Either bound may be null.
+     */
+    public void forEachCheckingIn(LocalDate from, LocalDate to, String apartment, StatsVisitor visitor) {
+        int fromDay = from == null ? Integer.MIN_VALUE : Math.toIntExact(from.toEpochDay());
+        int toDay = to == null ? Integer.MAX_VALUE : Math.toIntExact(to.toEpochDay());
+        for (Segment segment : current()) {
+            SegmentMetadata metadata = segment.metadata();
+            if (!metadata.overlapsCheckIn(from, to) || !metadata.mayContainApartment(apartment)) {
+                continue;
+            }
+            ArchiveSegment decodedSegment = load(segment);
+            int apartmentCode = apartment == null ? -1 : decodedSegment.apartmentCode(apartment);
+            decodedSegment.forEachCheckingIn(fromDay, toDay, apartmentCode, visitor);
+        }
+    }
+
+    public void forEachOfUser(String user, StatsVisitor visitor) {
+        for (Segment segment : current()) {
+            if (!segment.metadata().mayContainUser(user)) {
+                continue;
+            }
+            ArchiveSegment decodedSegment = load(segment);
+            int userCode = decodedSegment.userCode(user);
+            if (userCode >= 0) {
+                decodedSegment.forEachOfUser(userCode, visitor);
+            }
+        }
+    }
+
+    // Every archived reservation, segment by segment; each segment is decoded as the stream reaches it
+    public Stream<ReservationReporting> stream() {
+        return current().stream().flatMap(segment -> load(segment).rows());
+    }
+
+    // Merges two pages in history order, keeping one copy of a row present in both
+    public static List<ReservationReporting> merge(List<ReservationReporting> first, List<ReservationReporting> second,
+                                                   int limit) {
+        List<ReservationReporting> merged = new ArrayList<>(Math.min(limit, first.size() + second.size()));
+        int i = 0;
+        int j = 0;
+        while (merged.size() < limit && (i < first.size() || j < second.size())) {
+            int cmp = i == first.size() ? 1 : j == second.size() ? -1 : HISTORY_ORDER.compare(first.get(i), second.get(j));
+            if (cmp <= 0) {
+                merged.add(first.get(i++));
+                if (cmp == 0) {
+                    j++;
+                }
+            } else {
+                merged.add(second.get(j++));
+            }
+        }
+        return merged;
+    }
+
+    static int compareIds(UUID a, UUID b) {
+        return ArchiveSegment.compareUnsigned(a.getMostSignificantBits(), a.getLeastSignificantBits(),
+                b.getMostSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    // The segments as listed in the manifest now, as seen by the caller's transaction
+    private List<Segment> current() {
+        if (enabled && archivedSegmentRepository.count() != manifestSize) {
+            refresh();
+        }
+        return segments;
+    }
+
+    // Segments archived before their reservation ids were recorded get them now
+    private void recordArchivedReservations() {
+        for (Segment segment : segments) {
+            if (archivedReservationRepository.countBySegment(segment.name()) > 0) {
+                continue;
+            }
+            List<ArchivedReservation> archived = load(segment).rows()
+                    .map(row -> ArchivedReservation.builder()
+                            .reservationId(row.getReservationId())
+                            .segment(segment.name())
+                            .build())
+                    .toList();
+            try {
+                archivedReservationRepository.saveAll(archived);
+                log.info("Recorded the {} reservation ids of archive segment {}", archived.size(), segment.name());
+            } catch (DataIntegrityViolationException e) {
+                log.info("Reservation ids of archive segment {} were recorded by another instance", segment.name());
+            }
+        }
+    }
+
+    private ArchiveSegment load(Segment segment) {
+        return decoded.get(segment.name(), name -> {
+            try {
+                return ArchiveSegmentFile.read(segment.path());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read archive segment " + segment.path(), e);
+            }
+        });
+    }
+
+    private Path uncommitted(String name) {
+        return directory.resolve(name + UNCOMMITTED_SUFFIX);
+    }
+
+    private void deleteOrphans() {
+        // Against the manifest itself: a listed segment that failed to load must not be deleted
+        Set<String> listed = new HashSet<>();
+        archivedSegmentRepository.findAll().forEach(entry -> listed.add(entry.getName()));
+        Instant writtenBefore = Instant.now().minus(orphanGracePeriod);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                String segment = segmentName(name);
+                if (segment == null || listed.contains(segment)) {
+                    continue;
+                }
+                // Younger files may belong to an archival run still in progress, maybe on another instance
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(writtenBefore)) {
+                    log.info("Deleting archive segment {}, left over from an archival run that did not commit", file);
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not clean up the archive directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    // The segment a file in the archive directory belongs to, or null for any other file
+    private static String segmentName(String fileName) {
+        String name = fileName.endsWith(".tmp") ? fileName.substring(0, fileName.length() - ".tmp".length()) : fileName;
+        if (name.endsWith(UNCOMMITTED_SUFFIX)) {
+            name = name.substring(0, name.length() - UNCOMMITTED_SUFFIX.length());
+        }
+        return name.endsWith(ArchiveSegmentFile.SUFFIX) ? name : null;
+    }
+}
@@ -0,0 +1,93 @@
+package app.archive;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Bloom filter over 128-bit keys, stored in a segment's header. At 10 bits per key and 7 probes
+ * about 1% of the keys a segment does not hold still match; a key it does hold always matches, so
+ * a lookup can skip every segment whose filter says no without decoding it.
+ */
+final class SegmentBloomFilter {
+
+    static final int BITS_PER_KEY = 10;
+    static final int PROBES = 7;
+
+    private final long[] words;
+
+    SegmentBloomFilter(long[] words) {
+        if (words.length == 0) {
+            throw new IllegalArgumentException("A bloom filter needs at least one word");
+        }
+        this.words = words;
+    }
+
+    static SegmentBloomFilter forKeys(int keys) {
+        long bits = Math.max(64L, (long) keys * BITS_PER_KEY);
+        return new SegmentBloomFilter(new long[Math.toIntExact((bits + 63) >>> 6)]);
+    }
+
+    long[] words() {
+        return words;
+    }
+
+    void add(UUID key) {
+        add(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    void add(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        add(fnv1a(bytes), bytes.length);
+    }
+
+    boolean mightContain(UUID key) {
+        return mightContain(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    boolean mightContain(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        return mightContain(fnv1a(bytes), bytes.length);
+    }
+
+    private void add(long most, long least) {
+        long h1 = mix(most ^ mix(least));
+        long h2 = mix(h1 ^ least) | 1;
+        long bits = words.length * 64L;
+        for (int i = 0; i < PROBES; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(long most, long least) {
+        long h1 = mix(most ^ mix(least));
+        long h2 = mix(h1 ^ least) | 1;
+        long bits = words.length * 64L;
+        for (int i = 0; i < PROBES; i++) {
+            long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+            if ((words[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Murmur3's 64-bit finalizer: every input bit affects every output bit
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long fnv1a(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
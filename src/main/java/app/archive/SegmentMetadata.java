@@ -0,0 +1,43 @@
+package app.archive;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The uncompressed header of a segment file: enough to decide whether a query needs the segment
+ * at all. Check-in and creation ranges are inclusive; the apartments are listed in full, the
+ * reservation ids and users only as bloom filters.
+ */
+record SegmentMetadata(int rows,
+                       LocalDate minCheckIn,
+                       LocalDate maxCheckIn,
+                       LocalDateTime minCreatedOn,
+                       LocalDateTime maxCreatedOn,
+                       List<String> apartments,
+                       SegmentBloomFilter reservationIds,
+                       SegmentBloomFilter users) {
+
+    // Whether a check-in within [from, to) can be in the segment; a missing bound is open
+    boolean overlapsCheckIn(LocalDate from, LocalDate to) {
+        return (from == null || !maxCheckIn.isBefore(from)) && (to == null || minCheckIn.isBefore(to));
+    }
+
+    boolean mayContainApartment(String apartment) {
+        return apartment == null || apartments.contains(apartment);
+    }
+
+    boolean mayContainUser(String user) {
+        return user == null || users.mightContain(user);
+    }
+
+    boolean mayContainReservation(UUID reservationId) {
+        return reservationIds.mightContain(reservationId);
+    }
+
+    // Whether a row can follow the keyset position; rows created at the same instant can, by id
+    boolean mayHaveRowsAfter(LocalDateTime createdOn) {
+        return createdOn == null || !maxCreatedOn.isBefore(createdOn);
+    }
+}
@@ -0,0 +1,20 @@
+package app.eventlog;
+
+import app.model.ReservationReporting;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record ReservationEvent(ReservationEventType type, ReservationReporting reservation) {
+
+    public static ReservationEvent created(ReservationReporting reservation) {
+        return new ReservationEvent(ReservationEventType.CREATED, reservation);
+    }
+
+    public static ReservationEvent touched(UUID reservationId, LocalDateTime updatedOn) {
+        return new ReservationEvent(ReservationEventType.TOUCHED, ReservationReporting.builder()
+                .reservationId(reservationId)
+                .updatedOn(updatedOn)
+                .build());
+    }
+}
@@ -0,0 +1,165 @@
+package app.eventlog;
+
+import app.model.ReservationReporting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Binary encoding of the event log records. Fixed-width fields come first so replay can decode a
+ * record without scanning; strings are length-prefixed UTF-8. The first byte is the record kind.
+ */
+final class ReservationEventCodec {
+
+    static final byte CREATED = 1;
+    static final byte TOUCHED = 2;
+    // Written when a transaction that had logged events rolls back; lists the positions to skip
+    static final byte ABORTED = 3;
+
+    private static final byte PRICE_COMPACT = 0;
+    private static final byte PRICE_BIG = 1;
+
+    private ReservationEventCodec() {
+    }
+
+    static byte[] encode(ReservationEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            ReservationReporting r = event.reservation();
+            switch (event.type()) {
+                case CREATED -> {
+                    out.writeByte(CREATED);
+                    writeUuid(out, r.getId());
+                    writeUuid(out, r.getReservationId());
+                    out.writeLong(r.getCheckInDate().toEpochDay());
+                    out.writeLong(r.getCheckOutDate().toEpochDay());
+                    out.writeInt(r.getGuests());
+                    out.writeLong(r.getReservationLength());
+                    writePrice(out, r.getTotalPrice());
+                    writeDateTime(out, r.getCreatedOn());
+                    writeDateTime(out, r.getUpdatedOn());
+                    writeString(out, r.getUser());
+                    writeString(out, r.getApartment());
+                }
+                case TOUCHED -> {
+                    out.writeByte(TOUCHED);
+                    writeUuid(out, r.getReservationId());
+                    writeDateTime(out, r.getUpdatedOn());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static byte[] encodeAborted(long[] positions) {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + positions.length * Long.BYTES);
+        buffer.put(ABORTED).putInt(positions.length);
+        for (long position : positions) {
+            buffer.putLong(position);
+        }
+        return buffer.array();
+    }
+
+    static byte kind(ByteBuffer payload) {
+        return payload.get(0);
+    }
+
+    static long[] decodeAborted(ByteBuffer payload) {
+        ByteBuffer in = payload.duplicate().position(1);
+        long[] positions = new long[in.getInt()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = in.getLong();
+        }
+        return positions;
+    }
+
+    static ReservationEvent decode(ByteBuffer payload) {
+        ByteBuffer in = payload.duplicate();
+        byte kind = in.get();
+        if (kind == TOUCHED) {
+            return ReservationEvent.touched(readUuid(in), readDateTime(in));
+        }
+        if (kind != CREATED) {
+            throw new IllegalArgumentException("Not a reservation event: " + kind);
+        }
+        return ReservationEvent.created(ReservationReporting.builder()
+                .id(readUuid(in))
+                .reservationId(readUuid(in))
+                .checkInDate(LocalDate.ofEpochDay(in.getLong()))
+                .checkOutDate(LocalDate.ofEpochDay(in.getLong()))
+                .guests(in.getInt())
+                .reservationLength(in.getLong())
+                .totalPrice(readPrice(in))
+                .createdOn(readDateTime(in))
+                .updatedOn(readDateTime(in))
+                .user(readString(in))
+                .apartment(readString(in))
+                .build());
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(ByteBuffer in) {
+        return new UUID(in.getLong(), in.getLong());
+    }
+
+    private static void writePrice(DataOutputStream out, BigDecimal price) throws IOException {
+        out.writeInt(price.scale());
+        BigInteger unscaled = price.unscaledValue();
+        if (unscaled.bitLength() < Long.SIZE) {
+            out.writeByte(PRICE_COMPACT);
+            out.writeLong(unscaled.longValue());
+        } else {
+            byte[] magnitude = unscaled.toByteArray();
+            out.writeByte(PRICE_BIG);
+            out.writeInt(magnitude.length);
+            out.write(magnitude);
+        }
+    }
+
+    private static BigDecimal readPrice(ByteBuffer in) {
+        int scale = in.getInt();
+        if (in.get() == PRICE_COMPACT) {
+            return BigDecimal.valueOf(in.getLong(), scale);
+        }
+        byte[] magnitude = new byte[in.getInt()];
+        in.get(magnitude);
+        return new BigDecimal(new BigInteger(magnitude), scale);
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime dateTime) throws IOException {
+        out.writeLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(dateTime.getNano());
+    }
+
+    private static LocalDateTime readDateTime(ByteBuffer in) {
+        return LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] utf8 = new byte[in.getInt()];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,319 @@
+package app.eventlog;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Every reservation write, recorded in a local {@link SegmentedLog} from which the reservation
+ * table, the stats tables and the lookup index can all be rebuilt.
+ * <p>
+ * Events are appended just before their transaction commits. Until the transaction completes their
+ * positions are in flight, and {@link #lowWaterMark()} stays below them, so a checkpoint never
+ * skips an event whose outcome is unknown. If the transaction rolls back after all, an
+ * {@code ABORTED} record marks the events to be skipped on replay. A crash between the append and
+ * the commit leaves the events in the log; replaying them applies the reservation, which the
+ * client had not been told either way.
+ * <p>
+ * The log belongs to one process: its directory is locked for as long as the log is open, and a
+ * second process opening it fails to start. Each log has an id, kept in its directory, so the
+ * projections of several instances' logs can keep their checkpoints apart.
+ */
+@Service
+@Slf4j
+public class ReservationEventLog {
+
+    @FunctionalInterface
+    public interface EventVisitor {
+        void visit(long position, ReservationEvent event);
+    }
+
+    static final String LOCK_FILE = "log.lock";
+    static final String ID_FILE = "log.id";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final boolean fsync;
+    private final FileChannel lockChannel;
+    private final String logId;
+    private final SegmentedLog segmentedLog;
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+    private final List<EventVisitor> commitListeners = new CopyOnWriteArrayList<>();
+    // Makes an append and its in-flight entry one step for lowWaterMark()
+    private final ReentrantLock positionLock = new ReentrantLock();
+
+    @Autowired
+    public ReservationEventLog(@Value("${reporting.event-log.enabled:false}") boolean enabled,
+                               @Value("${reporting.event-log.directory:./data/event-log}") Path directory,
+                               @Value("${reporting.event-log.segment-size:64MB}") DataSize segmentSize,
+                               @Value("${reporting.event-log.fsync:false}") boolean fsync) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.fsync = fsync;
+        if (!enabled) {
+            this.lockChannel = null;
+            this.logId = null;
+            this.segmentedLog = null;
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            this.lockChannel = lock(directory);
+            this.logId = readOrCreateId(directory);
+            this.segmentedLog = new SegmentedLog(directory, Math.toIntExact(segmentSize.toBytes()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the event log in " + directory, e);
+        }
+        log.info("Event log {} opened in {}: {} segments, {} bytes", logId, directory, segmentedLog.segmentCount(),
+                segmentedLog.end());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Stays the same for as long as the log directory is kept
+    public String getLogId() {
+        return logId;
+    }
+
+    // Called with every event once its transaction has committed, in commit order per transaction
+    public void addCommitListener(EventVisitor listener) {
+        commitListeners.add(listener);
+    }
+
+    /**
+     * Records the events as part of the current transaction, or right away when there is none.
+     */
+    public void append(List<ReservationEvent> events) {
+        if (!enabled || events.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            appendCommitted(events);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+
+            private long[] positions;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                positions = write(events);
+            }
+
+            @Override
+            public void afterCommit() {
+                notifyCommitted(positions, events);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (positions == null) {
+                    return;
+                }
+                if (status != STATUS_COMMITTED) {
+                    abort(positions);
+                }
+                release(positions);
+            }
+        });
+    }
+
+    /**
+     * Records events whose changes are already committed, regardless of the current transaction.
+     */
+    public void appendCommitted(List<ReservationEvent> events) {
+        if (!enabled || events.isEmpty()) {
+            return;
+        }
+        long[] positions = write(events);
+        notifyCommitted(positions, events);
+        release(positions);
+    }
+
+    /**
+     * Position up to which every logged event belongs to a completed transaction; a safe
+     * checkpoint for any projection that is kept up to date by commit.
+     */
+    public long lowWaterMark() {
+        if (!enabled) {
+            return 0;
+        }
+        positionLock.lock();
+        try {
+            return inFlight.isEmpty() ? segmentedLog.end() : inFlight.first();
+        } finally {
+            positionLock.unlock();
+        }
+    }
+
+    public long end() {
+        return enabled ? segmentedLog.end() : 0;
+    }
+
+    public ReservationEvent read(long position) {
+        return ReservationEventCodec.decode(segmentedLog.read(position));
+    }
+
+    /**
+     * Visits the events from the given position up to the {@link #lowWaterMark()}, skipping events
+     * whose transaction rolled back. Returns the position replay stopped at, to continue from.
+     */
+    public long replay(long from, EventVisitor visitor) {
+        if (!enabled) {
+            return from;
+        }
+        long limit = lowWaterMark();
+
+        // Aborts are always logged after the events they cancel, so one pass over the tail finds them.
+        // The pass runs to the end of the log: an event below the limit may have been aborted after
+        // a transaction still in flight appended, and its abort then lies past the limit.
+        Set<Long> aborted = new HashSet<>();
+        segmentedLog.replay(from, (position, payload) -> {
+            if (ReservationEventCodec.kind(payload) == ReservationEventCodec.ABORTED) {
+                for (long abortedPosition : ReservationEventCodec.decodeAborted(payload)) {
+                    aborted.add(abortedPosition);
+                }
+            }
+        });
+
+        segmentedLog.replay(from, (position, payload) -> {
+            if (position < limit
+                    && ReservationEventCodec.kind(payload) != ReservationEventCodec.ABORTED
+                    && !aborted.contains(position)) {
+                visitor.visit(position, ReservationEventCodec.decode(payload));
+            }
+        });
+        return limit;
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (enabled) {
+            try {
+                segmentedLog.close();
+            } finally {
+                // Closing the channel releases the lock
+                lockChannel.close();
+            }
+        }
+    }
+
+    // Held until close(); the operating system releases it if the process dies
+    private static FileChannel lock(Path directory) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IllegalStateException("The event log in " + directory + " is in use by another process;"
+                    + " every instance needs its own reporting.event-log.directory");
+        }
+        return channel;
+    }
+
+    private static String readOrCreateId(Path directory) throws IOException {
+        Path idFile = directory.resolve(ID_FILE);
+        if (Files.exists(idFile)) {
+            return Files.readString(idFile, StandardCharsets.UTF_8).strip();
+        }
+        String id = UUID.randomUUID().toString();
+        Path temporary = idFile.resolveSibling(ID_FILE + ".tmp");
+        Files.writeString(temporary, id, StandardCharsets.UTF_8);
+        Files.move(temporary, idFile, StandardCopyOption.ATOMIC_MOVE);
+        return id;
+    }
+
+    private long[] write(List<ReservationEvent> events) {
+        long[] positions = new long[events.size()];
+        int written = 0;
+        try {
+            for (ReservationEvent event : events) {
+                positions[written] = append(ReservationEventCodec.encode(event));
+                written++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to the event log", e);
+        } finally {
+            if (written < positions.length && written > 0) {
+                // The transaction fails with this exception, so cancel what made it into the log
+                long[] partial = Arrays.copyOf(positions, written);
+                abort(partial);
+                release(partial);
+            }
+        }
+        if (fsync) {
+            segmentedLog.force(positions[0], segmentedLog.end());
+        }
+        return positions;
+    }
+
+    // The record stays in flight, holding back lowWaterMark(), until release()
+    private long append(byte[] record) throws IOException {
+        positionLock.lock();
+        try {
+            long position = segmentedLog.append(record);
+            inFlight.add(position);
+            return position;
+        } finally {
+            positionLock.unlock();
+        }
+    }
+
+    private void abort(long[] positions) {
+        try {
+            long position = append(ReservationEventCodec.encodeAborted(positions));
+            release(new long[]{position});
+        } catch (IOException e) {
+            log.error("Could not mark {} rolled back events in the event log", positions.length, e);
+        }
+    }
+
+    private void notifyCommitted(long[] positions, List<ReservationEvent> events) {
+        for (EventVisitor listener : commitListeners) {
+            for (int i = 0; i < positions.length; i++) {
+                listener.visit(positions[i], events.get(i));
+            }
+        }
+    }
+
+    private void release(long[] positions) {
+        for (long position : positions) {
+            inFlight.remove(position);
+        }
+    }
+}
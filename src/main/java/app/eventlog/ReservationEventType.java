@@ -0,0 +1,10 @@
+package app.eventlog;
+
+public enum ReservationEventType {
+
+    // A reservation stored for the first time; carries the whole row
+    CREATED,
+
+    // A redelivered reservation; carries only reservationId and the new updatedOn
+    TOUCHED
+}
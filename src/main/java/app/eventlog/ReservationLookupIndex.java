@@ -0,0 +1,182 @@
+package app.eventlog;
+
+import app.model.ReservationReporting;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory projection of the event log: where each reservation was created in the log, and when
+ * it was last touched. A lookup reads the reservation straight from the mapped segment instead of
+ * the database.
+ * <p>
+ * The index is kept current by the log's commit listener and saved to {@code lookup.snapshot}
+ * together with the log position it covers, so a restart loads the snapshot and replays only the
+ * tail written after it.
+ */
+@Component
+@Slf4j
+public class ReservationLookupIndex implements SmartLifecycle {
+
+    static final String SNAPSHOT_FILE = "lookup.snapshot";
+
+    private final ReservationEventLog reservationEventLog;
+    private final Map<UUID, Location> locations = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+
+    private record Location(long position, LocalDateTime updatedOn) {
+    }
+
+    @Autowired
+    public ReservationLookupIndex(ReservationEventLog reservationEventLog) {
+        this.reservationEventLog = reservationEventLog;
+    }
+
+    public Optional<ReservationReporting> find(UUID reservationId) {
+        if (!running) {
+            return Optional.empty();
+        }
+        Location location = locations.get(reservationId);
+        if (location == null) {
+            return Optional.empty();
+        }
+        ReservationReporting reservation = reservationEventLog.read(location.position()).reservation();
+        reservation.setUpdatedOn(location.updatedOn());
+        return Optional.of(reservation);
+    }
+
+    public int size() {
+        return locations.size();
+    }
+
+    @Scheduled(fixedDelayString = "${reporting.event-log.snapshot-interval:PT1M}")
+    public void scheduledSnapshot() {
+        if (running) {
+            snapshot();
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!reservationEventLog.isEnabled()) {
+            return;
+        }
+        reservationEventLog.addCommitListener(this::apply);
+
+        long from = loadSnapshot();
+        int loaded = locations.size();
+        long started = System.nanoTime();
+        reservationEventLog.replay(from, this::apply);
+        log.info("Reservation lookup index ready: {} reservations from the snapshot, {} after replaying from {} in {} ms",
+                loaded, locations.size(), from, (System.nanoTime() - started) / 1_000_000);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (running) {
+            snapshot();
+            running = false;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Ready before the web server and the write-behind writer start
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 8192;
+    }
+
+    void snapshot() {
+        // Taken before the copy: events past it may be in the copy too, and are simply applied again
+        long position = reservationEventLog.lowWaterMark();
+        Map<UUID, Location> copy = new HashMap<>(locations);
+
+        Path snapshotPath = reservationEventLog.getDirectory().resolve(SNAPSHOT_FILE);
+        Path temporary = snapshotPath.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeLong(position);
+                out.writeInt(copy.size());
+                for (Map.Entry<UUID, Location> entry : copy.entrySet()) {
+                    out.writeLong(entry.getKey().getMostSignificantBits());
+                    out.writeLong(entry.getKey().getLeastSignificantBits());
+                    out.writeLong(entry.getValue().position());
+                    out.writeLong(entry.getValue().updatedOn().toEpochSecond(ZoneOffset.UTC));
+                    out.writeInt(entry.getValue().updatedOn().getNano());
+                }
+            }
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Not fatal: the next start replays from the previous snapshot
+            log.warn("Could not write the reservation lookup snapshot: {}", e.getMessage());
+        }
+    }
+
+    // Returns the log position the snapshot covers, or 0 when there is none to use
+    private long loadSnapshot() {
+        Path snapshotPath = reservationEventLog.getDirectory().resolve(SNAPSHOT_FILE);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            long position = in.readLong();
+            if (position > reservationEventLog.end()) {
+                log.warn("Reservation lookup snapshot is ahead of the event log, rebuilding the index from the log");
+                return 0;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                UUID reservationId = new UUID(in.readLong(), in.readLong());
+                long eventPosition = in.readLong();
+                LocalDateTime updatedOn = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+                locations.put(reservationId, new Location(eventPosition, updatedOn));
+            }
+            return position;
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            log.warn("Could not read the reservation lookup snapshot, rebuilding the index from the log: {}", e.getMessage());
+            locations.clear();
+            return 0;
+        }
+    }
+
+    // Events can arrive twice, from the commit listener and from replay, so applying one is idempotent
+    private void apply(long position, ReservationEvent event) {
+        ReservationReporting reservation = event.reservation();
+        switch (event.type()) {
+            case CREATED -> locations.merge(reservation.getReservationId(),
+                    new Location(position, reservation.getUpdatedOn()), ReservationLookupIndex::latest);
+            case TOUCHED -> locations.computeIfPresent(reservation.getReservationId(),
+                    (reservationId, location) -> latest(location, new Location(location.position(), reservation.getUpdatedOn())));
+        }
+    }
+
+    private static Location latest(Location current, Location update) {
+        return update.updatedOn().isAfter(current.updatedOn())
+                ? new Location(current.position(), update.updatedOn())
+                : current;
+    }
+}
@@ -0,0 +1,230 @@
+package app.eventlog;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only record log on local disk, split into fixed-size memory-mapped segment files.
+ * <p>
+ * A record is {@code [int length][int crc32c][payload]}. Positions are global byte offsets: a
+ * segment file is named after the position of its first record and the next segment starts where
+ * the previous one ends, so a position identifies one record for the lifetime of the log. On open,
+ * every segment is scanned and the log ends at the first record that is empty or fails its
+ * checksum, which drops a record torn by a crash.
+ * <p>
+ * Appends are serialized; reads are lock-free and see every record up to {@link #end()}.
+ */
+@Slf4j
+final class SegmentedLog implements Closeable {
+
+    static final int HEADER_SIZE = 8;
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    // Not synchronized: appends run on request threads, which may be virtual
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    private Segment active;
+    private volatile long end;
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        // The payload is a read-only view, valid only during the call
+        void visit(long position, ByteBuffer payload);
+    }
+
+    private static final class Segment {
+
+        private final long base;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        // Bytes in use; written under the append lock, published through SegmentedLog.end
+        private int size;
+
+        private Segment(long base, FileChannel channel, MappedByteBuffer buffer) {
+            this.base = base;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.capacity = buffer.capacity();
+        }
+    }
+
+    SegmentedLog(Path directory, int segmentSize) throws IOException {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Segment segment = map(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+            recover(segment);
+            segments.put(segment.base, segment);
+            active = segment;
+        }
+        if (active == null) {
+            active = map(0);
+            segments.put(0L, active);
+        }
+        end = active.base + active.size;
+    }
+
+    // Returns the position of the new record
+    long append(byte[] payload) throws IOException {
+        int recordSize = HEADER_SIZE + payload.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit a segment of " + segmentSize);
+        }
+        appendLock.lock();
+        try {
+            if (active.capacity - active.size < recordSize) {
+                roll();
+            }
+            int offset = active.size;
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            // Payload first and length last, so a reader never sees a length without its bytes
+            active.buffer.put(offset + HEADER_SIZE, payload);
+            active.buffer.putInt(offset + 4, (int) crc.getValue());
+            active.buffer.putInt(offset, payload.length);
+            active.size = offset + recordSize;
+            long position = active.base + offset;
+            end = active.base + active.size;
+            return position;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Forces the records in [from, to) to disk
+    void force(long from, long to) {
+        for (Segment segment : segments.subMap(segments.floorKey(from), true, to, false).values()) {
+            int start = (int) Math.max(0, from - segment.base);
+            int stop = (int) Math.min(segment.size, to - segment.base);
+            if (stop > start) {
+                segment.buffer.force(start, stop - start);
+            }
+        }
+    }
+
+    long end() {
+        return end;
+    }
+
+    ByteBuffer read(long position) {
+        Map.Entry<Long, Segment> entry = segments.floorEntry(position);
+        if (entry == null || position >= end) {
+            throw new IllegalArgumentException("No record at position " + position);
+        }
+        Segment segment = entry.getValue();
+        int offset = (int) (position - segment.base);
+        int length = segment.buffer.getInt(offset);
+        return segment.buffer.slice(offset + HEADER_SIZE, length).asReadOnlyBuffer();
+    }
+
+    // Visits every record from the given position up to the end as of this call
+    void replay(long from, RecordVisitor visitor) {
+        long limit = end;
+        Long first = segments.floorKey(from);
+        if (first == null || from >= limit) {
+            return;
+        }
+        for (Segment segment : segments.tailMap(first, true).values()) {
+            ByteBuffer buffer = segment.buffer.asReadOnlyBuffer();
+            int offset = (int) Math.max(0, from - segment.base);
+            int stop = (int) Math.min(segment.size, limit - segment.base);
+            while (offset < stop) {
+                int length = buffer.getInt(offset);
+                visitor.visit(segment.base + offset, buffer.slice(offset + HEADER_SIZE, length));
+                offset += HEADER_SIZE + length;
+            }
+            if (segment.base + stop >= limit) {
+                return;
+            }
+        }
+    }
+
+    int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void roll() throws IOException {
+        active.buffer.force(0, active.size);
+        Segment next = map(active.base + active.size);
+        segments.put(next.base, next);
+        active = next;
+    }
+
+    private Segment map(long base) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(String.format("%020d%s", base, SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // Existing segments keep their size if the configured one has changed since
+        long capacity = Math.max(segmentSize, channel.size());
+        return new Segment(base, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+    }
+
+    private void recover(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (segment.capacity - offset >= HEADER_SIZE) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || length > segment.capacity - offset - HEADER_SIZE) {
+                break;
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(offset + HEADER_SIZE, length));
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                break;
+            }
+            offset += HEADER_SIZE + length;
+        }
+        segment.size = offset;
+
+        // Clear what a torn append left behind, so the next appends start on zeroed space
+        if (segment.capacity - offset >= HEADER_SIZE && buffer.getInt(offset) != 0) {
+            log.warn("Event log segment {} ends in a partially written record at {}, truncating", segment.base, offset);
+            int torn = buffer.getInt(offset);
+            int stop = torn > 0 && torn <= segment.capacity - offset - HEADER_SIZE ? offset + HEADER_SIZE + torn : segment.capacity;
+            for (int i = offset; i < stop; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force();
+        }
+    }
+}
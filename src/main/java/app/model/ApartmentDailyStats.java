@@ -0,0 +1,40 @@
+package app.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Revenue and occupancy of one apartment for one night. Each reservation is split across the
+ * nights it covers, so any day/week/month series is a sum over these rows only.
+ */
+@Entity
+@IdClass(ApartmentNightId.class)
+@Table(indexes = {
+        @Index(name = "idx_apartment_daily_stats_night", columnList = "night")
+})
+@Data
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApartmentDailyStats {
+
+    @Id
+    private String apartment;
+
+    @Id
+    private LocalDate night;
+
+    @Column(nullable = false)
+    private BigDecimal revenue;
+
+    @Column(nullable = false)
+    private long bookedNights;
+
+    @Column(nullable = false)
+    private long guestNights;
+}
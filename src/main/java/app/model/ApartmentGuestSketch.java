@@ -0,0 +1,39 @@
+package app.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * One register of the HyperLogLog sketch of the distinct guests of an apartment, for reservations
+ * checking in within one month. Only registers that were raised have a row, so a quiet month
+ * costs a few rows instead of the whole sketch; the sketch of any range of months is the MAX of
+ * each register over their rows.
+ */
+@Entity
+@IdClass(ApartmentGuestSketchId.class)
+@Table(indexes = {
+        @Index(name = "idx_apartment_guest_sketch_month", columnList = "checkInMonth")
+})
+@Data
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApartmentGuestSketch {
+
+    @Id
+    private String apartment;
+
+    // First day of the month
+    @Id
+    private LocalDate checkInMonth;
+
+    @Id
+    private short registerIndex;
+
+    @Column(nullable = false)
+    private byte registerValue;
+}
@@ -0,0 +1,20 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ApartmentGuestSketchId implements Serializable {
+
+    private String apartment;
+
+    private LocalDate checkInMonth;
+
+    private short registerIndex;
+}
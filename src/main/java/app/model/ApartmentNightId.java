@@ -0,0 +1,18 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ApartmentNightId implements Serializable {
+
+    private String apartment;
+
+    private LocalDate night;
+}
@@ -0,0 +1,41 @@
+package app.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Running totals per apartment, incremented in the same transaction as every saved reservation
+ * so that /stats is a read of one row per apartment.
+ */
+@Entity
+@Data
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApartmentStats {
+
+    @Id
+    private String apartment;
+
+    @Column(nullable = false)
+    private BigDecimal totalRevenue;
+
+    @Column(nullable = false)
+    private long totalBookedDays;
+
+    @Column(nullable = false)
+    private long totalGuestsVisited;
+
+    @Column(nullable = false)
+    private long reservationCount;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedOn;
+}
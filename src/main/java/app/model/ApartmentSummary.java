@@ -0,0 +1,26 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Per-apartment totals computed by the database with a {@code GROUP BY apartment}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ApartmentSummary {
+
+    private String apartment;
+
+    private BigDecimal totalRevenue;
+
+    private Long totalBookedDays;
+
+    private Long totalGuestsVisited;
+
+    private Long reservationCount;
+}
@@ -0,0 +1,47 @@
+package app.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.util.UUID;
+
+/**
+ * A reservation that was moved to an archive segment. Inserted in the same transaction that
+ * deletes it from the reservation table, so a redelivery is recognized as a duplicate by the
+ * database, whether or not this instance has loaded the segment yet.
+ */
+@Entity
+@Table(indexes = {
+        @Index(name = "idx_archived_reservation_segment", columnList = "segment")
+})
+@Data
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedReservation implements Persistable<UUID> {
+
+    @Id
+    private UUID reservationId;
+
+    // Name of the segment file holding it
+    @Column(nullable = false)
+    private String segment;
+
+    @Override
+    public UUID getId() {
+        return reservationId;
+    }
+
+    // Only ever inserted, so saving does not look the row up first
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
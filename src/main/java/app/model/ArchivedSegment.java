@@ -0,0 +1,46 @@
+package app.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Manifest entry of a segment file in the reservation archive. Inserted in the same transaction
+ * that deletes the segment's rows from the reservation table, so every reservation is counted
+ * either in the table or in a listed segment; a segment file without an entry is ignored.
+ */
+@Entity
+@Data
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchivedSegment {
+
+    // File name within reporting.archive.directory
+    @Id
+    private String name;
+
+    @Column(nullable = false)
+    private int reservations;
+
+    @Column(nullable = false)
+    private LocalDate minCheckInDate;
+
+    @Column(nullable = false)
+    private LocalDate maxCheckInDate;
+
+    @Column(nullable = false)
+    private LocalDateTime minCreatedOn;
+
+    @Column(nullable = false)
+    private LocalDateTime maxCreatedOn;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedOn;
+}
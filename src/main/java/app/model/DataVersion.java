@@ -0,0 +1,35 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Validator for the responses derived from the reservations, read from the materialized apartment
+ * stats: one row per apartment, so it costs next to nothing compared with the responses. Every
+ * stored reservation moves the count and the timestamp; a rebuild or a reconciliation that
+ * rewrites the stats moves the timestamp.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DataVersion {
+
+    // Null while nothing is stored
+    private LocalDateTime lastModified;
+
+    private Long reservationCount;
+
+    // Weak: the same data may be sent with different encodings
+    public String toETag() {
+        return "W/\"" + (reservationCount == null ? 0 : reservationCount) + "-" + toEpochMilli() + "\"";
+    }
+
+    // -1 when unknown, which leaves Last-Modified out
+    public long toEpochMilli() {
+        return lastModified == null ? -1 : lastModified.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,26 @@
+package app.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Reservation totals for one value of a grouping dimension (an apartment or a user).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class GroupSummary {
+
+    private String key;
+
+    private BigDecimal totalRevenue;
+
+    private Long totalBookedDays;
+
+    private Long totalGuestsVisited;
+
+    private Long reservationCount;
+}
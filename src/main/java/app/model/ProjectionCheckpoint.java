@@ -0,0 +1,32 @@
+package app.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Event log position up to which a projection stored in this database is known to be complete.
+ * Written in the same transaction as the projected rows, so the two never disagree. A one-off
+ * backfill records that it is done the same way, at position 0.
+ */
+@Entity
+@Data
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectionCheckpoint {
+
+    @Id
+    private String name;
+
+    @Column(nullable = false)
+    private long position;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedOn;
+}
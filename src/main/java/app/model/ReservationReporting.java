@@ -1,6 +1,9 @@
 package app.model;
 
 
+import app.repository.ApartmentConverter;
+import app.repository.ReservationUserConverter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -10,6 +13,16 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
+@Table(
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_reservation_reservation_id", columnNames = "reservationId")
+        },
+        indexes = {
+                @Index(name = "idx_reservation_created_on_id", columnList = "createdOn, id"),
+                @Index(name = "idx_reservation_apartment_check_in", columnList = "apartment_id, checkInDate"),
+                @Index(name = "idx_reservation_check_in", columnList = "checkInDate"),
+                @Index(name = "idx_reservation_user_created_on_id", columnList = "user_id, createdOn, id")
+        })
 @Data
 @Builder
 @Getter
@@ -40,12 +53,29 @@ public class ReservationReporting {
     @Column(nullable = false)
     private BigDecimal totalPrice;
 
-    @Column(nullable = false, name = "\"user\"")
+    // Apartment and user are stored as keys into their dimension tables, see DimensionDictionary
+    @Convert(converter = ReservationUserConverter.class)
+    @Column(nullable = false, name = "user_id")
     private String user;
 
-    @Column(nullable = false)
+    @Convert(converter = ApartmentConverter.class)
+    @Column(nullable = false, name = "apartment_id")
     private String apartment;
 
+    // The same two keys, read-only, for grouping in memory on integers rather than names. Set on
+    // load, and by DimensionDictionary.register before insert; null on archived reservations.
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Column(name = "user_id", insertable = false, updatable = false)
+    private Integer userKey;
+
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Column(name = "apartment_id", insertable = false, updatable = false)
+    private Integer apartmentKey;
+
     @Column(nullable = false)
     private LocalDateTime createdOn;
 
@@ -0,0 +1,28 @@
+package app.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * User dimension: every user name once, under the integer key that reservations store instead of
+ * the name.
+ */
+@Entity
+@Table(uniqueConstraints = {
+        @UniqueConstraint(name = "uk_reservation_user_name", columnNames = "name")
+})
+@Data
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationUser {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(nullable = false)
+    private String name;
+}
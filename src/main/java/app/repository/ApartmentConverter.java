@@ -0,0 +1,29 @@
+package app.repository;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+// Stores an apartment name as the key of its row in the apartment dimension table
+@Converter
+public class ApartmentConverter implements AttributeConverter<String, Integer> {
+
+    private final DimensionDictionary dimensionDictionary;
+
+    // Lazy: Hibernate creates its converters while building the entity manager the dictionary needs
+    @Autowired
+    public ApartmentConverter(@Lazy DimensionDictionary dimensionDictionary) {
+        this.dimensionDictionary = dimensionDictionary;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String apartment) {
+        return apartment == null ? null : dimensionDictionary.apartmentId(apartment);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer id) {
+        return id == null ? null : dimensionDictionary.apartmentName(id);
+    }
+}
@@ -0,0 +1,48 @@
+package app.repository;
+
+import app.model.ApartmentDailyStats;
+import app.model.ApartmentNightId;
+import app.model.ApartmentSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ApartmentDailyStatsRepository extends JpaRepository<ApartmentDailyStats, ApartmentNightId>,
+        ApartmentDailyStatsRepositoryCustom {
+
+    @Query("""
+            SELECT s FROM ApartmentDailyStats s
+            WHERE s.night >= :from AND s.night < :to
+            ORDER BY s.apartment, s.night
+            """)
+    List<ApartmentDailyStats> findBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("""
+            SELECT s FROM ApartmentDailyStats s
+            WHERE s.apartment = :apartment AND s.night >= :from AND s.night < :to
+            ORDER BY s.night
+            """)
+    List<ApartmentDailyStats> findForApartmentBetween(@Param("apartment") String apartment,
+                                                      @Param("from") LocalDate from,
+                                                      @Param("to") LocalDate to);
+
+    // What each apartment's nights add up to, against its totals; totalGuestsVisited holds the guest nights
+    @Query("""
+            SELECT new app.model.ApartmentSummary(
+                s.apartment, SUM(s.revenue), SUM(s.bookedNights), SUM(s.guestNights), COUNT(s))
+            FROM ApartmentDailyStats s
+            GROUP BY s.apartment
+            """)
+    List<ApartmentSummary> summarizeByApartment();
+
+    @Modifying
+    @Query("DELETE FROM ApartmentDailyStats s WHERE s.apartment IN :apartments")
+    int deleteForApartments(@Param("apartments") Collection<String> apartments);
+}
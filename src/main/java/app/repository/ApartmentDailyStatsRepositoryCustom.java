@@ -0,0 +1,14 @@
+package app.repository;
+
+import app.model.ApartmentDailyStats;
+
+import java.util.List;
+
+public interface ApartmentDailyStatsRepositoryCustom {
+
+    /**
+     * Adds each row's revenue, booked nights and guest nights to the stored row of its apartment
+     * and night, creating the ones that do not exist yet. Sent as JDBC batches, in list order.
+     */
+    void incrementAll(List<ApartmentDailyStats> increments);
+}
@@ -0,0 +1,40 @@
+package app.repository;
+
+import app.model.ApartmentDailyStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.util.List;
+
+class ApartmentDailyStatsRepositoryCustomImpl implements ApartmentDailyStatsRepositoryCustom {
+
+    // Rows per JDBC batch, aligned with hibernate.jdbc.batch_size
+    private static final int BATCH_SIZE = 500;
+
+    // The update takes the row's own values, so MySQL's rewriteBatchedStatements can send a
+    // batch as one multi-row INSERT
+    private static final String INCREMENT = """
+            INSERT INTO apartment_daily_stats (apartment, night, revenue, booked_nights, guest_nights)
+            VALUES (?, ?, ?, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                revenue = revenue + VALUES(revenue),
+                booked_nights = booked_nights + VALUES(booked_nights),
+                guest_nights = guest_nights + VALUES(guest_nights)
+            """;
+
+    // On the connection of the caller's transaction
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void incrementAll(List<ApartmentDailyStats> increments) {
+        jdbcTemplate.batchUpdate(INCREMENT, increments, BATCH_SIZE, (statement, increment) -> {
+            statement.setString(1, increment.getApartment());
+            statement.setDate(2, Date.valueOf(increment.getNight()));
+            statement.setBigDecimal(3, increment.getRevenue());
+            statement.setLong(4, increment.getBookedNights());
+            statement.setLong(5, increment.getGuestNights());
+        });
+    }
+}
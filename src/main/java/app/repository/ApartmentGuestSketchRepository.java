@@ -0,0 +1,48 @@
+package app.repository;
+
+import app.model.ApartmentGuestSketch;
+import app.model.ApartmentGuestSketchId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ApartmentGuestSketchRepository extends JpaRepository<ApartmentGuestSketch, ApartmentGuestSketchId> {
+
+    // Registers only ever grow, so replaying or redelivering a guest leaves the sketch unchanged
+    @Modifying
+    @Query(value = """
+            INSERT INTO apartment_guest_sketch (apartment, check_in_month, register_index, register_value)
+            VALUES (:apartment, :checkInMonth, :registerIndex, :registerValue)
+            ON DUPLICATE KEY UPDATE
+                register_value = GREATEST(register_value, :registerValue)
+            """, nativeQuery = true)
+    int raise(@Param("apartment") String apartment,
+              @Param("checkInMonth") LocalDate checkInMonth,
+              @Param("registerIndex") int registerIndex,
+              @Param("registerValue") int registerValue);
+
+    // Each apartment's sketch merged over the months in [from, to): [apartment, registerIndex, registerValue]
+    @Query("""
+            SELECT s.apartment, s.registerIndex, MAX(s.registerValue)
+            FROM ApartmentGuestSketch s
+            WHERE s.checkInMonth >= :from AND s.checkInMonth < :to
+            GROUP BY s.apartment, s.registerIndex
+            """)
+    List<Object[]> mergeBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("""
+            SELECT s.apartment, s.registerIndex, MAX(s.registerValue)
+            FROM ApartmentGuestSketch s
+            WHERE s.apartment = :apartment AND s.checkInMonth >= :from AND s.checkInMonth < :to
+            GROUP BY s.apartment, s.registerIndex
+            """)
+    List<Object[]> mergeForApartmentBetween(@Param("apartment") String apartment,
+                                            @Param("from") LocalDate from,
+                                            @Param("to") LocalDate to);
+}
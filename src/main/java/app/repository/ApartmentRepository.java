@@ -0,0 +1,13 @@
+package app.repository;
+
+import app.model.Apartment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ApartmentRepository extends JpaRepository<Apartment, Integer> {
+
+    Optional<Apartment> findByName(String name);
+}
@@ -0,0 +1,46 @@
+package app.repository;
+
+import app.model.ApartmentStats;
+import app.model.DataVersion;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ApartmentStatsRepository extends JpaRepository<ApartmentStats, String> {
+
+    // Single-statement upsert; the increments are applied by the database under the row lock
+    @Modifying
+    @Query(value = """
+            INSERT INTO apartment_stats
+                (apartment, total_revenue, total_booked_days, total_guests_visited, reservation_count, updated_on)
+            VALUES (:apartment, :revenue, :bookedDays, :guests, :reservations, :updatedOn)
+            ON DUPLICATE KEY UPDATE
+                total_revenue = total_revenue + :revenue,
+                total_booked_days = total_booked_days + :bookedDays,
+                total_guests_visited = total_guests_visited + :guests,
+                reservation_count = reservation_count + :reservations,
+                updated_on = :updatedOn
+            """, nativeQuery = true)
+    int increment(@Param("apartment") String apartment,
+                  @Param("revenue") BigDecimal revenue,
+                  @Param("bookedDays") long bookedDays,
+                  @Param("guests") long guests,
+                  @Param("reservations") long reservations,
+                  @Param("updatedOn") LocalDateTime updatedOn);
+
+    @Query("SELECT new app.model.DataVersion(MAX(s.updatedOn), SUM(s.reservationCount)) FROM ApartmentStats s")
+    DataVersion findDataVersion();
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ApartmentStats s")
+    List<ApartmentStats> findAllForUpdate();
+}
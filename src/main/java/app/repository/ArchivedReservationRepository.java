@@ -0,0 +1,20 @@
+package app.repository;
+
+import app.model.ArchivedReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ArchivedReservationRepository extends JpaRepository<ArchivedReservation, UUID> {
+
+    @Query("SELECT a.reservationId FROM ArchivedReservation a WHERE a.reservationId IN :reservationIds")
+    List<UUID> findArchivedReservationIds(@Param("reservationIds") Collection<UUID> reservationIds);
+
+    long countBySegment(String segment);
+}
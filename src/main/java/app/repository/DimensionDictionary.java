@@ -0,0 +1,237 @@
+package app.repository;
+
+import app.model.ReservationReporting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Id &lt;-&gt; name cache over the apartment and user dimension tables, behind the converters that
+ * store {@link ReservationReporting}'s apartment and user as integer keys.
+ * <p>
+ * A name is resolved against the database once per instance and kept for good: dimension rows are
+ * never updated or deleted. A name seen for the first time is inserted in the caller's
+ * transaction, on its connection, so a reservation transaction never holds a second pooled
+ * connection. Its row commits or rolls back with the reservations that refer to it, and its id is
+ * only cached once that transaction has committed; until then it is kept with the transaction.
+ * Names read back are interned, so every loaded reservation shares one instance per apartment and
+ * user.
+ * <p>
+ * The statements go through JDBC rather than the entity manager: the converters call in here
+ * while Hibernate is binding or loading reservations.
+ */
+@Component
+public class DimensionDictionary {
+
+    private final Dimension apartments;
+    private final Dimension users;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public DimensionDictionary(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        // Joins the caller's transaction, or opens one when there is none
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.apartments = new Dimension(jdbcTemplate, "apartment");
+        this.users = new Dimension(jdbcTemplate, "reservation_user");
+    }
+
+    /**
+     * Makes sure every apartment and user of the reservations has its key, before they are
+     * flushed, and sets the keys on them. New names are inserted in sorted order, apartments
+     * first, so two transactions inserting the same names wait on each other instead of
+     * deadlocking.
+     */
+    public void register(Collection<ReservationReporting> reservations) {
+        TreeSet<String> newApartments = new TreeSet<>();
+        TreeSet<String> newUsers = new TreeSet<>();
+        for (ReservationReporting reservation : reservations) {
+            if (reservation.getApartmentKey() == null && !apartments.isCached(reservation.getApartment())) {
+                newApartments.add(reservation.getApartment());
+            }
+            if (reservation.getUserKey() == null && !users.isCached(reservation.getUser())) {
+                newUsers.add(reservation.getUser());
+            }
+        }
+        newApartments.forEach(apartments::idOf);
+        newUsers.forEach(users::idOf);
+        for (ReservationReporting reservation : reservations) {
+            if (reservation.getApartmentKey() == null) {
+                reservation.setApartmentKey(apartments.idOf(reservation.getApartment()));
+            }
+            if (reservation.getUserKey() == null) {
+                reservation.setUserKey(users.idOf(reservation.getUser()));
+            }
+        }
+    }
+
+    public int apartmentId(String apartment) {
+        return apartments.idOf(apartment);
+    }
+
+    // Lookup only: a name that was never stored does not get a key
+    public Optional<Integer> findApartmentId(String apartment) {
+        return apartments.find(apartment);
+    }
+
+    public String apartmentName(int id) {
+        return apartments.nameOf(id);
+    }
+
+    public int userId(String user) {
+        return users.idOf(user);
+    }
+
+    public Optional<Integer> findUserId(String user) {
+        return users.find(user);
+    }
+
+    public String userName(int id) {
+        return users.nameOf(id);
+    }
+
+    private final class Dimension {
+
+        private final JdbcTemplate jdbcTemplate;
+        private final String selectId;
+        private final String lockId;
+        private final String selectName;
+        private final String insert;
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+        private Dimension(JdbcTemplate jdbcTemplate, String table) {
+            this.jdbcTemplate = jdbcTemplate;
+            this.selectId = "SELECT id FROM " + table + " WHERE name = ?";
+            // A locking read sees rows committed after the transaction's snapshot was taken
+            this.lockId = selectId + " FOR UPDATE";
+            this.selectName = "SELECT name FROM " + table + " WHERE id = ?";
+            this.insert = "INSERT IGNORE INTO " + table + " (name) VALUES (?)";
+        }
+
+        boolean isCached(String name) {
+            return ids.containsKey(name);
+        }
+
+        int idOf(String name) {
+            Integer id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            return transactionTemplate.execute(status -> {
+                Map<String, Integer> uncommitted = uncommitted();
+                Integer inserted = uncommitted.get(name);
+                if (inserted != null) {
+                    return inserted;
+                }
+                Optional<Integer> stored = first(jdbcTemplate.queryForList(selectId, Integer.class, name));
+                if (stored.isPresent()) {
+                    cache(stored.get(), name);
+                    return stored.get();
+                }
+                // Ignored when another transaction holds or committed the name; the unique key
+                // makes this one wait for it, and the locking read then finds its row
+                boolean insertedHere = jdbcTemplate.update(insert, name) > 0;
+                int storedId = first(jdbcTemplate.queryForList(lockId, Integer.class, name))
+                        .orElseThrow(() -> new IllegalStateException("No dimension row for " + name + " after insert"));
+                if (insertedHere && TransactionSynchronizationManager.isSynchronizationActive()) {
+                    uncommitted.put(name, storedId);
+                } else {
+                    cache(storedId, name);
+                }
+                return storedId;
+            });
+        }
+
+        Optional<Integer> find(String name) {
+            Integer id = ids.get(name);
+            if (id != null) {
+                return Optional.of(id);
+            }
+            return transactionTemplate.execute(status -> {
+                Integer inserted = uncommitted().get(name);
+                if (inserted != null) {
+                    return Optional.of(inserted);
+                }
+                Optional<Integer> stored = first(jdbcTemplate.queryForList(selectId, Integer.class, name));
+                stored.ifPresent(storedId -> cache(storedId, name));
+                return stored;
+            });
+        }
+
+        String nameOf(int id) {
+            String name = names.get(id);
+            if (name != null) {
+                return name;
+            }
+            // A row the current transaction inserted is cached once it commits
+            return transactionTemplate.execute(status -> {
+                String stored = first(jdbcTemplate.queryForList(selectName, String.class, id))
+                        .orElseThrow(() -> new IllegalStateException("No dimension row with id " + id));
+                return uncommitted().containsValue(id) ? stored : cache(id, stored);
+            });
+        }
+
+        /**
+         * Names this dimension inserted in the current transaction, cached once it commits and
+         * forgotten if it rolls back. Empty, and not kept, without transaction synchronization.
+         */
+        @SuppressWarnings("unchecked")
+        private Map<String, Integer> uncommitted() {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                return new HashMap<>();
+            }
+            Map<String, Integer> uncommitted = (Map<String, Integer>) TransactionSynchronizationManager.getResource(this);
+            if (uncommitted == null) {
+                Map<String, Integer> bound = new HashMap<>();
+                TransactionSynchronizationManager.bindResource(this, bound);
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    // Kept with its transaction while a REQUIRES_NEW one runs in between
+                    @Override
+                    public void suspend() {
+                        TransactionSynchronizationManager.unbindResource(Dimension.this);
+                    }
+
+                    @Override
+                    public void resume() {
+                        TransactionSynchronizationManager.bindResource(Dimension.this, bound);
+                    }
+
+                    @Override
+                    public void afterCommit() {
+                        bound.forEach((name, id) -> cache(id, name));
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(Dimension.this);
+                    }
+                });
+                uncommitted = bound;
+            }
+            return uncommitted;
+        }
+
+        // Returns the interned name for the id
+        private String cache(int id, String name) {
+            String interned = names.computeIfAbsent(id, key -> name);
+            ids.putIfAbsent(interned, id);
+            return interned;
+        }
+    }
+
+    private static <T> Optional<T> first(List<T> rows) {
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+}
@@ -0,0 +1,13 @@
+package app.repository;
+
+import app.model.ProjectionCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProjectionCheckpointRepository extends JpaRepository<ProjectionCheckpoint, String> {
+
+    List<ProjectionCheckpoint> findByNameStartingWith(String prefix);
+}
@@ -1,13 +1,233 @@
 package app.repository;
 
+import app.model.ApartmentSummary;
+import app.model.GroupSummary;
 import app.model.ReservationReporting;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface ReservationRepository extends JpaRepository<ReservationReporting, UUID> {
+public interface ReservationRepository extends JpaRepository<ReservationReporting, UUID>, ReservationRepositoryCustom {
 
     ReservationReporting findByReservationId(UUID reservationId);
+
+    @Query("SELECT r.reservationId FROM ReservationReporting r WHERE r.reservationId IN :reservationIds")
+    List<UUID> findExistingReservationIds(@Param("reservationIds") Collection<UUID> reservationIds);
+
+    // A redelivered reservation only refreshes updatedOn, it is never inserted twice
+    @Modifying
+    @Query("UPDATE ReservationReporting r SET r.updatedOn = :updatedOn WHERE r.reservationId IN :reservationIds")
+    int touch(@Param("reservationIds") Collection<UUID> reservationIds, @Param("updatedOn") LocalDateTime updatedOn);
+
+    // Apartment and user columns hold dimension keys: the database groups on integers and the
+    // converters turn the keys back into names, one per group
+    @Query("""
+            SELECT new app.model.ApartmentSummary(
+                r.apartment, SUM(r.totalPrice), SUM(r.reservationLength), SUM(r.guests), COUNT(r))
+            FROM ReservationReporting r
+            GROUP BY r.apartment
+            """)
+    List<ApartmentSummary> summarizeByApartment();
+
+    // Date-filtered stats, attributed to the check-in day; [from, to) is served by idx_reservation_check_in
+    @Query("""
+            SELECT new app.model.ApartmentSummary(
+                r.apartment, SUM(r.totalPrice), SUM(r.reservationLength), SUM(r.guests), COUNT(r))
+            FROM ReservationReporting r
+            WHERE r.checkInDate >= :from AND r.checkInDate < :to
+            GROUP BY r.apartment
+            """)
+    List<ApartmentSummary> summarizeByApartmentBetween(@Param("from") LocalDate from,
+                                                       @Param("to") LocalDate to);
+
+    // Served by idx_reservation_apartment_check_in
+    @Query("""
+            SELECT new app.model.ApartmentSummary(
+                r.apartment, SUM(r.totalPrice), SUM(r.reservationLength), SUM(r.guests), COUNT(r))
+            FROM ReservationReporting r
+            WHERE r.apartment = :apartment AND r.checkInDate >= :from AND r.checkInDate < :to
+            GROUP BY r.apartment
+            """)
+    List<ApartmentSummary> summarizeApartmentBetween(@Param("apartment") String apartment,
+                                                     @Param("from") LocalDate from,
+                                                     @Param("to") LocalDate to);
+
+    @Query("""
+            SELECT new app.model.GroupSummary(
+                r.user, SUM(r.totalPrice), SUM(r.reservationLength), SUM(r.guests), COUNT(r))
+            FROM ReservationReporting r
+            WHERE r.checkInDate >= :from AND r.checkInDate < :to
+            GROUP BY r.user
+            """)
+    List<GroupSummary> summarizeByUserBetween(@Param("from") LocalDate from,
+                                              @Param("to") LocalDate to);
+
+    // Served by idx_reservation_apartment_check_in
+    @Query("""
+            SELECT new app.model.GroupSummary(
+                r.user, SUM(r.totalPrice), SUM(r.reservationLength), SUM(r.guests), COUNT(r))
+            FROM ReservationReporting r
+            WHERE r.apartment = :apartment AND r.checkInDate >= :from AND r.checkInDate < :to
+            GROUP BY r.user
+            """)
+    List<GroupSummary> summarizeUsersOfApartmentBetween(@Param("apartment") String apartment,
+                                                        @Param("from") LocalDate from,
+                                                        @Param("to") LocalDate to);
+
+    // Top-N groups for [from, to): the database ranks the groups and the page size becomes its LIMIT,
+    // so only N rows come back. Ties are broken on the name, joined from the dimension table, the way
+    // TopMetric.ranking() breaks them for the snapshot and in-memory paths.
+
+    @Query("""
+            SELECT new app.model.GroupSummary(
+                r.apartment, SUM(r.totalPrice), SUM(r.reservationLength), SUM(r.guests), COUNT(r))
+            FROM ReservationReporting r JOIN Apartment d ON d.id = r.apartmentKey
+            WHERE r.checkInDate >= :from AND r.checkInDate < :to
+            GROUP BY r.apartment, d.name
+            ORDER BY SUM(r.totalPrice) DESC, d.name
+            """)
+    List<GroupSummary> findTopApartmentsByRevenueBetween(@Param("from") LocalDate from,
+                                                         @Param("to") LocalDate to,
+                                                         Pageable pageable);
+
+    @Query("""
+            SELECT new app.model.GroupSummary(
+                r.apartment, SUM(r.totalPrice), SUM(r.reservationLength), SUM(r.guests), COUNT(r))
+            FROM ReservationReporting r JOIN Apartment d ON d.id = r.apartmentKey
+            WHERE r.checkInDate >= :from AND r.checkInDate < :to
+            GROUP BY r.apartment, d.name
+            ORDER BY SUM(r.reservationLength) DESC, d.name
+            """)
+    List<GroupSummary> findTopApartmentsByNightsBetween(@Param("from") LocalDate from,
+                                                        @Param("to") LocalDate to,
+                                                        Pageable pageable);
+
+    @Query("""
+            SELECT new app.model.GroupSummary(
+                r.user, SUM(r.totalPrice), SUM(r.reservationLength), SUM(r.guests), COUNT(r))
+            FROM ReservationReporting r JOIN ReservationUser d ON d.id = r.userKey
+            WHERE r.checkInDate >= :from AND r.checkInDate < :to
+            GROUP BY r.user, d.name
+            ORDER BY SUM(r.totalPrice) DESC, d.name
+            """)
+    List<GroupSummary> findTopUsersByRevenueBetween(@Param("from") LocalDate from,
+                                                    @Param("to") LocalDate to,
+                                                    Pageable pageable);
+
+    @Query("""
+            SELECT new app.model.GroupSummary(
+                r.user, SUM(r.totalPrice), SUM(r.reservationLength), SUM(r.guests), COUNT(r))
+            FROM ReservationReporting r JOIN ReservationUser d ON d.id = r.userKey
+            WHERE r.checkInDate >= :from AND r.checkInDate < :to
+            GROUP BY r.user, d.name
+            ORDER BY SUM(r.reservationLength) DESC, d.name
+            """)
+    List<GroupSummary> findTopUsersByNightsBetween(@Param("from") LocalDate from,
+                                                   @Param("to") LocalDate to,
+                                                   Pageable pageable);
+
+    // Raw rows for in-process aggregation, fetched one check-in slice at a time
+
+    @Query("SELECT MIN(r.checkInDate) FROM ReservationReporting r")
+    LocalDate findFirstCheckInDate();
+
+    @Query("SELECT MAX(r.checkInDate) FROM ReservationReporting r")
+    LocalDate findLastCheckInDate();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT r FROM ReservationReporting r WHERE r.checkInDate >= :from AND r.checkInDate < :to")
+    List<ReservationReporting> findCheckingInBetween(@Param("from") LocalDate from,
+                                                     @Param("to") LocalDate to);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("""
+            SELECT r FROM ReservationReporting r
+            WHERE r.apartment = :apartment AND r.checkInDate >= :from AND r.checkInDate < :to
+            """)
+    List<ReservationReporting> findForApartmentCheckingInBetween(@Param("apartment") String apartment,
+                                                                 @Param("from") LocalDate from,
+                                                                 @Param("to") LocalDate to);
+
+    // Keyset pagination over (createdOn, id), served by idx_reservation_created_on_id
+
+    @Query("SELECT r FROM ReservationReporting r ORDER BY r.createdOn, r.id")
+    List<ReservationReporting> findFirstPage(Pageable pageable);
+
+    @Query("""
+            SELECT r FROM ReservationReporting r
+            WHERE r.createdOn > :createdOn OR (r.createdOn = :createdOn AND r.id > :id)
+            ORDER BY r.createdOn, r.id
+            """)
+    List<ReservationReporting> findPageAfter(@Param("createdOn") LocalDateTime createdOn,
+                                             @Param("id") UUID id,
+                                             Pageable pageable);
+
+    // One user's reservations in the same keyset order, served by idx_reservation_user_created_on_id
+
+    @Query("SELECT r FROM ReservationReporting r WHERE r.user = :user ORDER BY r.createdOn, r.id")
+    List<ReservationReporting> findFirstPageForUser(@Param("user") String user, Pageable pageable);
+
+    @Query("""
+            SELECT r FROM ReservationReporting r
+            WHERE r.user = :user
+              AND (r.createdOn > :createdOn OR (r.createdOn = :createdOn AND r.id > :id))
+            ORDER BY r.createdOn, r.id
+            """)
+    List<ReservationReporting> findPageForUserAfter(@Param("user") String user,
+                                                    @Param("createdOn") LocalDateTime createdOn,
+                                                    @Param("id") UUID id,
+                                                    Pageable pageable);
+
+    // Null when the user has no reservations; reads only that user's index range
+    @Query("""
+            SELECT new app.model.GroupSummary(
+                r.user, SUM(r.totalPrice), SUM(r.reservationLength), SUM(r.guests), COUNT(r))
+            FROM ReservationReporting r
+            WHERE r.user = :user
+            GROUP BY r.user
+            """)
+    GroupSummary summarizeUser(@Param("user") String user);
+
+    // Guest nights per apartment, the total its daily stats must add up to
+    @Query("SELECT r.apartment, SUM(r.guests * r.reservationLength) FROM ReservationReporting r GROUP BY r.apartment")
+    List<Object[]> sumGuestNightsByApartment();
+
+    // Rows past the archive horizon, oldest first, so each archived segment covers one stretch of the history
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT r FROM ReservationReporting r WHERE r.createdOn < :cutoff ORDER BY r.createdOn, r.id")
+    List<ReservationReporting> findArchivable(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    // Cursor over the whole table for exports; the caller must consume it inside a transaction
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT r FROM ReservationReporting r ORDER BY r.createdOn, r.id")
+    Stream<ReservationReporting> streamAll();
+
+    // Only the columns of the analytics snapshot, as scalars: no entities are hydrated or tracked
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+            SELECT r.reservationId, r.checkInDate, r.guests, r.reservationLength, r.totalPrice, r.apartment, r.user
+            FROM ReservationReporting r
+            """)
+    Stream<Object[]> streamColumns();
 }
@@ -0,0 +1,28 @@
+package app.repository;
+
+import app.model.ReservationReporting;
+
+public interface ReservationRepositoryCustom {
+
+    // Rows affected by upsert() when the reservation was inserted
+    int INSERTED = 1;
+
+    /**
+     * Inserts the reservation unless one with the same reservationId already exists, which is left
+     * as it is. Used on replay, where a repeated event must not change the stored row.
+     *
+     * @return 1 when the row was inserted, 0 when the reservationId was already stored
+     */
+    int insertIfAbsent(ReservationReporting reservation);
+
+    /**
+     * Inserts the reservation, or, when its reservationId is already stored, sets the stored row's
+     * updatedOn to the reservation's. One statement, guarded by the unique key on reservationId, so
+     * concurrent redeliveries neither read before writing nor insert twice.
+     *
+     * @return {@link #INSERTED} when the row was inserted. Anything else means the reservationId was
+     * already stored: 2 when its updatedOn changed, 0 when it already had that value (MySQL with
+     * {@code useAffectedRows=true}; H2 in MySQL mode reports 2 for both)
+     */
+    int upsert(ReservationReporting reservation);
+}
@@ -0,0 +1,77 @@
+package app.repository;
+
+import app.model.ReservationReporting;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+
+class ReservationRepositoryCustomImpl implements ReservationRepositoryCustom {
+
+    // One statement, guarded by the unique key on reservationId. Hibernate renders the conflict clause
+    // per dialect: ON DUPLICATE KEY UPDATE with a no-op assignment on MySQL, MERGE ... WHEN NOT MATCHED on H2
+    private static final String INSERT_IF_ABSENT = """
+            INSERT INTO ReservationReporting
+                (id, reservationId, checkInDate, checkOutDate, guests, reservationLength,
+                 totalPrice, user, apartment, createdOn, updatedOn)
+            VALUES
+                (:id, :reservationId, :checkInDate, :checkOutDate, :guests, :reservationLength,
+                 :totalPrice, :user, :apartment, :createdOn, :updatedOn)
+            ON CONFLICT (reservationId) DO NOTHING
+            """;
+
+    // Native, since HQL's DO UPDATE becomes a MERGE on H2, which reports 1 whether it inserted or updated
+    private static final String UPSERT = """
+            INSERT INTO reservation_reporting
+                (id, reservation_id, check_in_date, check_out_date, guests, reservation_length,
+                 total_price, user_id, apartment_id, created_on, updated_on)
+            VALUES
+                (:id, :reservationId, :checkInDate, :checkOutDate, :guests, :reservationLength,
+                 :totalPrice, :userKey, :apartmentKey, :createdOn, :updatedOn)
+            ON DUPLICATE KEY UPDATE updated_on = VALUES(updated_on)
+            """;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private DimensionDictionary dimensionDictionary;
+
+    @Override
+    public int insertIfAbsent(ReservationReporting reservation) {
+        // Keys for new names are inserted before the statement is prepared, not while binding it
+        dimensionDictionary.register(List.of(reservation));
+        return entityManager.createQuery(INSERT_IF_ABSENT)
+                .setParameter("id", reservation.getId())
+                .setParameter("reservationId", reservation.getReservationId())
+                .setParameter("checkInDate", reservation.getCheckInDate())
+                .setParameter("checkOutDate", reservation.getCheckOutDate())
+                .setParameter("guests", reservation.getGuests())
+                .setParameter("reservationLength", reservation.getReservationLength())
+                .setParameter("totalPrice", reservation.getTotalPrice())
+                .setParameter("user", reservation.getUser())
+                .setParameter("apartment", reservation.getApartment())
+                .setParameter("createdOn", reservation.getCreatedOn())
+                .setParameter("updatedOn", reservation.getUpdatedOn())
+                .executeUpdate();
+    }
+
+    @Override
+    public int upsert(ReservationReporting reservation) {
+        dimensionDictionary.register(List.of(reservation));
+        return entityManager.createNativeQuery(UPSERT)
+                .setParameter("id", reservation.getId())
+                .setParameter("reservationId", reservation.getReservationId())
+                .setParameter("checkInDate", reservation.getCheckInDate())
+                .setParameter("checkOutDate", reservation.getCheckOutDate())
+                .setParameter("guests", reservation.getGuests())
+                .setParameter("reservationLength", reservation.getReservationLength())
+                .setParameter("totalPrice", reservation.getTotalPrice())
+                .setParameter("userKey", reservation.getUserKey())
+                .setParameter("apartmentKey", reservation.getApartmentKey())
+                .setParameter("createdOn", reservation.getCreatedOn())
+                .setParameter("updatedOn", reservation.getUpdatedOn())
+                .executeUpdate();
+    }
+}
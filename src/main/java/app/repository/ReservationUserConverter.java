@@ -0,0 +1,28 @@
+package app.repository;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+// Stores a user name as the key of its row in the user dimension table
+@Converter
+public class ReservationUserConverter implements AttributeConverter<String, Integer> {
+
+    private final DimensionDictionary dimensionDictionary;
+
+    @Autowired
+    public ReservationUserConverter(@Lazy DimensionDictionary dimensionDictionary) {
+        this.dimensionDictionary = dimensionDictionary;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String user) {
+        return user == null ? null : dimensionDictionary.userId(user);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer id) {
+        return id == null ? null : dimensionDictionary.userName(id);
+    }
+}
@@ -0,0 +1,13 @@
+package app.repository;
+
+import app.model.ReservationUser;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ReservationUserRepository extends JpaRepository<ReservationUser, Integer> {
+
+    Optional<ReservationUser> findByName(String name);
+}
@@ -0,0 +1,232 @@
+package app.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Brings a reservation table created by an earlier version up to the current mapping, for what
+ * {@code ddl-auto: update} cannot do: it only adds columns, indexes and constraints, and adds
+ * them whether or not the rows already stored fit them.
+ * <p>
+ * Every step checks the schema first and does nothing when it is already current, so it runs on
+ * every start; a start that fails half way is completed by the next one. It runs after Hibernate
+ * has updated the schema and before anything reads or replays reservations.
+ */
+@Component
+@Slf4j
+public class SchemaMigration implements SmartLifecycle {
+
+    static final String RESERVATION_TABLE = "reservation_reporting";
+    static final String RESERVATION_ID_KEY = "uk_reservation_reservation_id";
+
+    // Key column, name column it replaces, and the dimension table the key points into
+    private record DimensionColumn(String keyColumn, String legacyColumn, String dimensionTable) {
+    }
+
+    private static final List<DimensionColumn> DIMENSION_COLUMNS = List.of(
+            new DimensionColumn("apartment_id", "apartment", "apartment"),
+            new DimensionColumn("user_id", "user", "reservation_user"));
+
+    // The indexes on the key columns, which Hibernate cannot create while the columns are missing
+    private static final Map<String, String> KEY_INDEXES = Map.of(
+            "idx_reservation_apartment_check_in", "apartment_id, check_in_date",
+            "idx_reservation_user_created_on_id", "user_id, created_on, id");
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile boolean running;
+
+    // Outside a transaction, so always on the primary
+    @Autowired
+    public SchemaMigration(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void start() {
+        for (DimensionColumn column : DIMENSION_COLUMNS) {
+            migrateToKeys(column);
+        }
+        addReservationIdKey();
+        createMissingIndexes();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Before the archive, the event log replay and the lookup index
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 16384;
+    }
+
+    /**
+     * Earlier versions stored the apartment and user name in every reservation row. The names are
+     * copied into the dimension table, the key column is filled from it, and the name column is
+     * dropped: it is NOT NULL and no longer written, so it would reject every insert.
+     */
+    private void migrateToKeys(DimensionColumn column) {
+        Map<String, Column> columns = columns(RESERVATION_TABLE);
+        Column legacy = columns.get(column.legacyColumn());
+        if (legacy == null) {
+            return;
+        }
+        log.info("Migrating {}.{} to keys into {}", RESERVATION_TABLE, column.legacyColumn(), column.dimensionTable());
+        String name = quote(legacy.name());
+        if (!columns.containsKey(column.keyColumn())) {
+            jdbcTemplate.execute("ALTER TABLE " + RESERVATION_TABLE + " ADD COLUMN " + column.keyColumn() + " INTEGER");
+        }
+
+        int names = jdbcTemplate.update("INSERT INTO " + column.dimensionTable() + " (name)"
+                + " SELECT DISTINCT r." + name + " FROM " + RESERVATION_TABLE + " r"
+                + " WHERE NOT EXISTS (SELECT 1 FROM " + column.dimensionTable() + " d WHERE d.name = r." + name + ")");
+        // ddl-auto adds the key column as NOT NULL, which gives the rows already stored a 0
+        int keyed = jdbcTemplate.update("UPDATE " + RESERVATION_TABLE + " SET " + column.keyColumn() + " ="
+                + " (SELECT d.id FROM " + column.dimensionTable() + " d WHERE d.name = " + RESERVATION_TABLE + "." + name + ")"
+                + " WHERE " + column.keyColumn() + " IS NULL OR " + column.keyColumn() + " = 0");
+        Integer unkeyed = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + RESERVATION_TABLE
+                + " WHERE " + column.keyColumn() + " IS NULL OR " + column.keyColumn() + " = 0", Integer.class);
+        if (unkeyed != null && unkeyed > 0) {
+            throw new IllegalStateException(unkeyed + " reservations have no " + column.keyColumn()
+                    + " after the migration of " + RESERVATION_TABLE + "." + column.legacyColumn());
+        }
+
+        if (columns(RESERVATION_TABLE).get(column.keyColumn()).nullable()) {
+            jdbcTemplate.execute("ALTER TABLE " + RESERVATION_TABLE + " MODIFY COLUMN " + column.keyColumn() + " INTEGER NOT NULL");
+        }
+        jdbcTemplate.execute("ALTER TABLE " + RESERVATION_TABLE + " DROP COLUMN " + name);
+        log.info("Migrated {}.{}: {} new {} rows, {} reservations keyed", RESERVATION_TABLE, column.legacyColumn(),
+                names, column.dimensionTable(), keyed);
+    }
+
+    /**
+     * Earlier versions stored a redelivered reservation again, so the unique key on reservation_id
+     * that Hibernate tries to add fails on such tables. The first stored row of every reservationId
+     * is kept, with the latest updatedOn of its copies, the others are deleted, and the key is added.
+     * The apartment stats counted the copies; the next reconciliation repairs them.
+     */
+    private void addReservationIdKey() {
+        if (hasUniqueIndexOn(RESERVATION_TABLE, "reservation_id")) {
+            return;
+        }
+        List<Object> duplicated = jdbcTemplate.queryForList("SELECT reservation_id FROM " + RESERVATION_TABLE
+                + " GROUP BY reservation_id HAVING COUNT(*) > 1", Object.class);
+        int deleted = 0;
+        for (Object reservationId : duplicated) {
+            List<Object> copies = jdbcTemplate.queryForList("SELECT id FROM " + RESERVATION_TABLE
+                    + " WHERE reservation_id = ? ORDER BY created_on, id", Object.class, reservationId);
+            Object latest = jdbcTemplate.queryForObject("SELECT MAX(updated_on) FROM " + RESERVATION_TABLE
+                    + " WHERE reservation_id = ?", Object.class, reservationId);
+            jdbcTemplate.update("UPDATE " + RESERVATION_TABLE + " SET updated_on = ? WHERE id = ?", latest, copies.get(0));
+            deleted += jdbcTemplate.batchUpdate("DELETE FROM " + RESERVATION_TABLE + " WHERE id = ?",
+                    copies.subList(1, copies.size()).stream().map(id -> new Object[]{id}).toList()).length;
+        }
+        if (deleted > 0) {
+            log.warn("Deleted {} stored copies of {} redelivered reservations; reconcile the apartment stats to drop them from the totals",
+                    deleted, duplicated.size());
+        }
+        log.info("Adding unique key {} on {}.reservation_id", RESERVATION_ID_KEY, RESERVATION_TABLE);
+        jdbcTemplate.execute("ALTER TABLE " + RESERVATION_TABLE + " ADD CONSTRAINT " + RESERVATION_ID_KEY
+                + " UNIQUE (reservation_id)");
+    }
+
+    private void createMissingIndexes() {
+        Set<String> existing = indexes(RESERVATION_TABLE);
+        KEY_INDEXES.forEach((index, columnList) -> {
+            if (!existing.contains(index)) {
+                log.info("Creating index {} on {} ({})", index, RESERVATION_TABLE, columnList);
+                jdbcTemplate.execute("CREATE INDEX " + index + " ON " + RESERVATION_TABLE + " (" + columnList + ")");
+            }
+        });
+    }
+
+    private record Column(String name, boolean nullable) {
+    }
+
+    // By lower-cased name; the name as stored is kept for quoting
+    private Map<String, Column> columns(String table) {
+        return jdbcTemplate.execute((ConnectionCallback<Map<String, Column>>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            Map<String, Column> columns = new LinkedHashMap<>();
+            try (ResultSet rs = metaData.getColumns(connection.getCatalog(), connection.getSchema(),
+                    storedName(metaData, table), null)) {
+                while (rs.next()) {
+                    String name = rs.getString("COLUMN_NAME");
+                    columns.put(name.toLowerCase(Locale.ROOT),
+                            new Column(name, rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls));
+                }
+            }
+            return columns;
+        });
+    }
+
+    private Set<String> indexes(String table) {
+        return jdbcTemplate.execute((ConnectionCallback<Set<String>>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            Set<String> indexes = new HashSet<>();
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(),
+                    storedName(metaData, table), false, false)) {
+                while (rs.next()) {
+                    String name = rs.getString("INDEX_NAME");
+                    if (name != null) {
+                        indexes.add(name.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            return indexes;
+        });
+    }
+
+    // Whatever the database named the index behind the key
+    private boolean hasUniqueIndexOn(String table, String column) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            Map<String, List<String>> uniqueIndexes = new HashMap<>();
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(),
+                    storedName(metaData, table), true, false)) {
+                while (rs.next()) {
+                    String name = rs.getString("INDEX_NAME");
+                    String indexed = rs.getString("COLUMN_NAME");
+                    if (name != null && indexed != null) {
+                        uniqueIndexes.computeIfAbsent(name, key -> new ArrayList<>()).add(indexed.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            return uniqueIndexes.containsValue(List.of(column));
+        }));
+    }
+
+    private static String storedName(DatabaseMetaData metaData, String name) throws SQLException {
+        return metaData.storesUpperCaseIdentifiers() ? name.toUpperCase(Locale.ROOT) : name;
+    }
+
+    // "user" is a reserved word, and H2 stores it quoted, in lower case
+    private String quote(String column) {
+        String quote = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getIdentifierQuoteString());
+        return quote == null || quote.isBlank() ? column : quote + column + quote;
+    }
+}
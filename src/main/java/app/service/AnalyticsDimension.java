@@ -0,0 +1,8 @@
+package app.service;
+
+// What /analytics groups reservations by
+public enum AnalyticsDimension {
+
+    APARTMENT,
+    USER
+}
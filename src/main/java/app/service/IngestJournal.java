@@ -0,0 +1,169 @@
+package app.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only, line-per-entry journal behind the write-behind queue. An entry is appended (and
+ * optionally forced to disk) before the request is acknowledged; the writer acknowledges offsets
+ * once they are committed, and the file is truncated whenever everything in it has been.
+ * <p>
+ * Replaying an acknowledged entry is harmless because reservation writes are idempotent, so the
+ * checkpoint only needs to be written after the commit, never before it.
+ */
+@Slf4j
+final class IngestJournal implements Closeable {
+
+    static final String JOURNAL_FILE = "reservations.journal";
+    static final String CHECKPOINT_FILE = "reservations.checkpoint";
+    // NDJSON that can be re-posted to /reservations/batch as is
+    static final String DEAD_LETTER_FILE = "reservations.rejected.ndjson";
+
+    private static final byte NEWLINE = '\n';
+
+    private final Path checkpointPath;
+    private final Path deadLetterPath;
+    private final FileChannel channel;
+    private final boolean fsync;
+    // Not synchronized: a virtual thread blocking on disk I/O inside a monitor would pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long acknowledged;
+
+    record Entry(long endOffset, String line) {
+    }
+
+    IngestJournal(Path directory, boolean fsync) throws IOException {
+        Files.createDirectories(directory);
+        this.checkpointPath = directory.resolve(CHECKPOINT_FILE);
+        this.deadLetterPath = directory.resolve(DEAD_LETTER_FILE);
+        this.channel = FileChannel.open(directory.resolve(JOURNAL_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.fsync = fsync;
+        this.acknowledged = readCheckpoint();
+    }
+
+    // Returns the offset just past the entry, to be acknowledged once it is committed
+    long append(byte[] entry) throws IOException {
+        lock.lock();
+        try {
+            long position = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(entry.length + 1).put(entry).put(NEWLINE).flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            return position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void acknowledge(long offset) throws IOException {
+        lock.lock();
+        try {
+            if (offset <= acknowledged) {
+                return;
+            }
+            if (offset == channel.size()) {
+                // Nothing left to replay: start over instead of growing forever
+                channel.truncate(0);
+                channel.force(true);
+                offset = 0;
+            }
+            writeCheckpoint(offset);
+            acknowledged = offset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void deadLetter(byte[] entry) throws IOException {
+        lock.lock();
+        try {
+            byte[] line = new byte[entry.length + 1];
+            System.arraycopy(entry, 0, line, 0, entry.length);
+            line[entry.length] = NEWLINE;
+            Files.write(deadLetterPath, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND,
+                    StandardOpenOption.SYNC);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Entries appended after the last acknowledged offset. A torn last line, left by a crash in the
+     * middle of an append, was never acknowledged to a client and is cut off.
+     */
+    List<Entry> unacknowledged() throws IOException {
+        lock.lock();
+        try {
+            List<Entry> entries = new ArrayList<>();
+            long size = channel.size();
+            long position = acknowledged;
+            long lineEnd = acknowledged;
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                buffer.flip();
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer.get(i);
+                    if (b == NEWLINE) {
+                        lineEnd = position + i + 1;
+                        entries.add(new Entry(lineEnd, line.toString(StandardCharsets.UTF_8)));
+                        line.reset();
+                    } else {
+                        line.write(b);
+                    }
+                }
+                position += read;
+            }
+
+            if (lineEnd < size) {
+                log.warn("Discarding {} bytes of a partially written journal entry", size - lineEnd);
+                channel.truncate(lineEnd);
+            }
+            return entries;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointPath)) {
+            return 0;
+        }
+        long checkpoint = Long.parseLong(Files.readString(checkpointPath).trim());
+        // A checkpoint past the end means the truncate landed but its checkpoint did not
+        return checkpoint > channel.size() ? 0 : checkpoint;
+    }
+
+    private void writeCheckpoint(long offset) throws IOException {
+        Path temporary = checkpointPath.resolveSibling(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(temporary, Long.toString(offset));
+        Files.move(temporary, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
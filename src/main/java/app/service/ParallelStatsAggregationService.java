@@ -0,0 +1,112 @@
+package app.service;
+
+import app.model.ReservationReporting;
+import app.repository.ReservationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes per-apartment totals in-process from the raw reservation rows. The check-in range is
+ * split into slices that the pool's workers fetch and aggregate concurrently, each into its own
+ * {@link StatsAggregator}; the partial results are merged as the slices complete.
+ * <p>
+ * Every worker holds a connection while it fetches, so the parallelism should stay below the
+ * connection pool size.
+ */
+@Service
+@Slf4j
+public class ParallelStatsAggregationService {
+
+    // Rows per leaf when the rows are already in memory
+    static final int LEAF_SIZE = 10_000;
+
+    private final ReservationRepository reservationRepository;
+    private final ForkJoinPool pool;
+    private final int sliceDays;
+
+    @Autowired
+    public ParallelStatsAggregationService(ReservationRepository reservationRepository,
+                                           @Value("${reporting.stats.parallelism:0}") int parallelism,
+                                           @Value("${reporting.stats.slice-days:31}") int sliceDays) {
+        if (sliceDays < 1) {
+            throw new IllegalArgumentException("reporting.stats.slice-days must be positive, got: " + sliceDays);
+        }
+        this.reservationRepository = reservationRepository;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.sliceDays = sliceDays;
+    }
+
+    public StatsAggregator aggregate(List<ReservationReporting> reservations) {
+        return StatsAggregator.parallel(reservations, pool, LEAF_SIZE);
+    }
+
+    // Reservations checking in within [from, to); a missing bound means the first/last stored check-in
+    public StatsAggregator aggregateStored(LocalDate from, LocalDate to, String apartment) {
+
+        LocalDate lower = from;
+        LocalDate upper = to;
+        if (lower == null) {
+            lower = reservationRepository.findFirstCheckInDate();
+        }
+        if (upper == null) {
+            LocalDate last = reservationRepository.findLastCheckInDate();
+            upper = last == null ? null : last.plusDays(1);
+        }
+        if (lower == null || upper == null || !lower.isBefore(upper)) {
+            return new StatsAggregator();
+        }
+
+        long started = System.nanoTime();
+        StatsAggregator aggregator = pool.invoke(new SliceTask(lower, upper, apartment));
+        log.info("Aggregated {} apartments for check-ins in [{}, {}) on {} workers in {} ms",
+                aggregator.size(), lower, upper, pool.getParallelism(), (System.nanoTime() - started) / 1_000_000);
+        return aggregator;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private final class SliceTask extends RecursiveTask<StatsAggregator> {
+
+        private final LocalDate from;
+        private final LocalDate to;
+        private final String apartment;
+
+        SliceTask(LocalDate from, LocalDate to, String apartment) {
+            this.from = from;
+            this.to = to;
+            this.apartment = apartment;
+        }
+
+        @Override
+        protected StatsAggregator compute() {
+            long days = ChronoUnit.DAYS.between(from, to);
+            if (days <= sliceDays) {
+                List<ReservationReporting> rows = apartment == null
+                        ? reservationRepository.findCheckingInBetween(from, to)
+                        : reservationRepository.findForApartmentCheckingInBetween(apartment, from, to);
+                return StatsAggregator.of(rows);
+            }
+            LocalDate middle = from.plusDays(days / 2);
+            SliceTask left = new SliceTask(from, middle, apartment);
+            left.fork();
+            StatsAggregator right = new SliceTask(middle, to, apartment).compute();
+            return left.join().merge(right);
+        }
+    }
+}
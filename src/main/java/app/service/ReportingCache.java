@@ -0,0 +1,66 @@
+package app.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Names and keys of the reporting caches, and precise eviction for writes.
+ * Evictions are deferred until the surrounding transaction commits, so a concurrent reader
+ * cannot re-cache the pre-commit state.
+ */
+@Component
+public class ReportingCache {
+
+    public static final String RESERVATIONS = "reservations";
+    public static final String STATS = "stats";
+
+    // Key of the all-apartments /stats entry; single-apartment entries are keyed by statsKey(name),
+    // which always carries the prefix, so no apartment name can reach this key
+    public static final String ALL_APARTMENTS = "all";
+    private static final String APARTMENT_PREFIX = "apartment:";
+
+    private final CacheManager cacheManager;
+
+    @Autowired
+    public ReportingCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    public void evictReservations(Collection<UUID> reservationIds) {
+        Cache cache = cache(RESERVATIONS);
+        if (cache != null) {
+            reservationIds.forEach(cache::evict);
+        }
+    }
+
+    // Key of the /stats entry of one apartment, or of all of them for null
+    public static String statsKey(String apartment) {
+        return apartment == null ? ALL_APARTMENTS : APARTMENT_PREFIX + apartment;
+    }
+
+    public void evictStats(Collection<String> apartments) {
+        Cache cache = cache(STATS);
+        if (cache != null) {
+            apartments.forEach(apartment -> cache.evict(statsKey(apartment)));
+            cache.evict(ALL_APARTMENTS);
+        }
+    }
+
+    public void clearStats() {
+        Cache cache = cache(STATS);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private Cache cache(String name) {
+        Cache cache = cacheManager.getCache(name);
+        return cache == null ? null : new TransactionAwareCacheDecorator(cache);
+    }
+}
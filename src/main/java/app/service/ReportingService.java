@@ -1,76 +1,538 @@
 package app.service;
 
+import app.InvalidReportingQueryException;
 import app.ReservationNotFoundException;
+import app.archive.ReservationArchive;
+import app.eventlog.ReservationLookupIndex;
+import app.model.ApartmentDailyStats;
+import app.model.ApartmentStats;
+import app.model.ApartmentSummary;
+import app.model.DataVersion;
+import app.model.GroupSummary;
 import app.model.ReservationReporting;
+import app.repository.ApartmentDailyStatsRepository;
+import app.repository.ApartmentGuestSketchRepository;
+import app.repository.ApartmentStatsRepository;
+import app.repository.ArchivedReservationRepository;
+import app.repository.DimensionDictionary;
 import app.repository.ReservationRepository;
+import app.web.dto.AnalyticsResponse;
+import app.web.dto.ApartmentUniqueGuests;
 import app.web.dto.ReservationDetails;
+import app.web.dto.ReservationHistoryPage;
 import app.web.dto.ReservationResponse;
 import app.web.dto.ReservationStatsResponse;
-import app.web.dto.Summary;
+import app.web.dto.StatsTimeseriesPoint;
+import app.web.dto.UniqueGuestsResponse;
+import app.web.dto.UserReservationSummary;
 import app.web.mapper.DtoMapper;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
+// One reporting.service timer per public method, tagged with the method name; cache hits are answered before it.
+// Read-only transactions go to a read replica when replicas are configured, see ReadWriteRoutingDataSource.
+// Lookups by reservation id stay on the primary, since clients read their reservation right after writing it,
+// and so do the reads that fill the stats cache.
+// Reservations past the archive horizon live in ReservationArchive segments, which every read below merges in.
 @Service
 @Slf4j
+@Timed("reporting.service")
 public class ReportingService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // Open-ended date filters, kept within the range every supported database can store
+    static final LocalDate MIN_DATE = LocalDate.of(1, 1, 1);
+    static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+
     private final ReservationRepository reservationRepository;
+    private final ApartmentStatsRepository apartmentStatsRepository;
+    private final ApartmentDailyStatsRepository apartmentDailyStatsRepository;
+    private final ReservationProjectionService reservationProjectionService;
+    private final ParallelStatsAggregationService parallelStatsAggregationService;
+    private final ReportingCache reportingCache;
+    private final ReservationLookupIndex reservationLookupIndex;
+    private final ReservationColumnarSnapshot reservationColumnarSnapshot;
+    private final DimensionDictionary dimensionDictionary;
+    private final ReservationArchive reservationArchive;
+    private final ApartmentGuestSketchRepository apartmentGuestSketchRepository;
+    private final ArchivedReservationRepository archivedReservationRepository;
+    // Reads whose result is cached: on the primary, so the cache never keeps what a lagging replica returned
+    private final TransactionTemplate primaryReadTransaction;
+    private final TransactionTemplate readOnlyTransaction;
 
     @Autowired
-    public ReportingService(ReservationRepository reservationRepository) {
+    public ReportingService(ReservationRepository reservationRepository,
+                            ApartmentStatsRepository apartmentStatsRepository,
+                            ApartmentDailyStatsRepository apartmentDailyStatsRepository,
+                            ReservationProjectionService reservationProjectionService,
+                            ParallelStatsAggregationService parallelStatsAggregationService,
+                            ReportingCache reportingCache,
+                            ReservationLookupIndex reservationLookupIndex,
+                            ReservationColumnarSnapshot reservationColumnarSnapshot,
+                            DimensionDictionary dimensionDictionary,
+                            ReservationArchive reservationArchive,
+                            ApartmentGuestSketchRepository apartmentGuestSketchRepository,
+                            ArchivedReservationRepository archivedReservationRepository,
+                            PlatformTransactionManager transactionManager) {
         this.reservationRepository = reservationRepository;
+        this.apartmentStatsRepository = apartmentStatsRepository;
+        this.apartmentDailyStatsRepository = apartmentDailyStatsRepository;
+        this.reservationProjectionService = reservationProjectionService;
+        this.parallelStatsAggregationService = parallelStatsAggregationService;
+        this.reportingCache = reportingCache;
+        this.reservationLookupIndex = reservationLookupIndex;
+        this.reservationColumnarSnapshot = reservationColumnarSnapshot;
+        this.dimensionDictionary = dimensionDictionary;
+        this.reservationArchive = reservationArchive;
+        this.apartmentGuestSketchRepository = apartmentGuestSketchRepository;
+        this.archivedReservationRepository = archivedReservationRepository;
+        this.primaryReadTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
+    // Idempotent on reservationId: a redelivered event refreshes updatedOn and leaves the stats untouched
+    @Transactional
     public ReservationReporting saveReservation(ReservationDetails reservationDetails) {
 
         ReservationReporting reservation = DtoMapper.fromReservationDetails(reservationDetails);
+        reservation.setId(UUID.randomUUID());
 
-        return reservationRepository.save(reservation);
+        // An archived reservation is no longer in the table, but it is stored; its segment is immutable
+        if (archivedReservationRepository.existsById(reservation.getReservationId())) {
+            log.info("Reservation [{}] already archived", reservation.getReservationId());
+            return reservationArchive.find(reservation.getReservationId())
+                    .orElseThrow(() -> new IllegalStateException("Reservation " + reservation.getReservationId()
+                            + " is archived, but its segment cannot be read"));
+        }
+
+        // A stored reservationId gets its updatedOn refreshed by the same statement
+        if (reservationRepository.upsert(reservation) == ReservationRepository.INSERTED) {
+            reservationProjectionService.apply(List.of(reservation));
+            return reservation;
+        }
+
+        log.info("Reservation [{}] already stored, refreshed updatedOn", reservation.getReservationId());
+        reservationProjectionService.recordTouched(List.of(reservation.getReservationId()), reservation.getUpdatedOn());
+        reportingCache.evictReservations(List.of(reservation.getReservationId()));
+
+        return reservationRepository.findByReservationId(reservation.getReservationId());
     }
 
-    public List<ReservationReporting> getReservationHistory() {
-        return reservationRepository.findAll();
+    @Transactional(readOnly = true)
+    public ReservationHistoryPage getReservationHistoryPage(int limit, String cursor) {
+        return historyPage(limit, cursor,
+                reservationRepository::findFirstPage,
+                (position, pageRequest) -> reservationRepository.findPageAfter(position.createdOn(), position.id(), pageRequest),
+                null);
     }
 
-    public ReservationResponse getReservationDetails(UUID reservationId) {
-        ReservationReporting reservation = reservationRepository.findByReservationId(reservationId);
-        if (reservation == null) {
-            throw new ReservationNotFoundException("Reservation not found with ID: " + reservationId);
+    // One user's reservations, in the same keyset order and with the same cursors as the full history
+    @Transactional(readOnly = true)
+    public ReservationHistoryPage getUserReservationHistoryPage(String user, int limit, String cursor) {
+        // A user that was never stored has no rows, and must not get a dimension key from a read
+        if (dimensionDictionary.findUserId(user).isEmpty()) {
+            return historyPage(limit, cursor, pageRequest -> List.of(), (position, pageRequest) -> List.of(), user);
+        }
+        return historyPage(limit, cursor,
+                pageRequest -> reservationRepository.findFirstPageForUser(user, pageRequest),
+                (position, pageRequest) -> reservationRepository.findPageForUserAfter(
+                        user, position.createdOn(), position.id(), pageRequest),
+                user);
+    }
+
+    // Total spend, nights and reservations of one user; zeros for a user without reservations
+    @Transactional(readOnly = true)
+    public UserReservationSummary getUserSummary(String user) {
+        GroupSummary summary = dimensionDictionary.findUserId(user).isEmpty()
+                ? null
+                : reservationRepository.summarizeUser(user);
+        if (summary == null) {
+            summary = new GroupSummary(user, BigDecimal.ZERO, 0L, 0L, 0L);
+        }
+        StatsAccumulator archived = new StatsAccumulator();
+        reservationArchive.forEachOfUser(user, (apartment, owner, price, bookedDays, guests) ->
+                archived.add(price, bookedDays, guests));
+        if (archived.reservations() > 0) {
+            archived.addTotals(summary.getTotalRevenue(), summary.getTotalBookedDays(), summary.getTotalGuestsVisited(),
+                    summary.getReservationCount());
+            summary = new GroupSummary(user, archived.revenue(), archived.bookedDays(), archived.guests(),
+                    archived.reservations());
+        }
+        return DtoMapper.fromUserSummary(summary);
+    }
+
+    // The user, when given, restricts the archived rows merged into the page
+    private ReservationHistoryPage historyPage(int limit, String cursor,
+                                               Function<PageRequest, List<ReservationReporting>> firstPage,
+                                               BiFunction<ReservationCursor, PageRequest, List<ReservationReporting>> pageAfter,
+                                               String user) {
+
+        if (limit < 1) {
+            throw new InvalidReportingQueryException("Page limit must be positive, got: " + limit);
+        }
+        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+
+        // One extra row tells whether another page exists without a count query
+        PageRequest pageRequest = PageRequest.ofSize(pageSize + 1);
+        ReservationCursor position = cursor == null || cursor.isBlank() ? null : ReservationCursor.decode(cursor);
+        List<ReservationReporting> rows = position == null
+                ? firstPage.apply(pageRequest)
+                : pageAfter.apply(position, pageRequest);
+
+        // Archived rows are the oldest, so once the cursor is past them no segment is read
+        List<ReservationReporting> archived = position == null
+                ? reservationArchive.page(null, null, user, pageSize + 1)
+                : reservationArchive.page(position.createdOn(), position.id(), user, pageSize + 1);
+        if (!archived.isEmpty()) {
+            rows = ReservationArchive.merge(archived, rows, pageSize + 1);
+        }
+
+        if (rows.size() <= pageSize) {
+            return ReservationHistoryPage.builder()
+                    .reservations(rows)
+                    .build();
         }
+
+        List<ReservationReporting> page = rows.subList(0, pageSize);
+        return ReservationHistoryPage.builder()
+                .reservations(page)
+                .nextCursor(ReservationCursor.after(page.get(pageSize - 1)).encode())
+                .build();
+    }
+
+    @Cacheable(cacheNames = ReportingCache.RESERVATIONS, key = "#reservationId")
+    public ReservationResponse getReservationDetails(UUID reservationId) {
+        // Served from the event log when it is enabled; the table covers reservations not indexed yet,
+        // the archive those moved out of the table
+        ReservationReporting reservation = reservationLookupIndex.find(reservationId)
+                .or(() -> Optional.ofNullable(reservationRepository.findByReservationId(reservationId)))
+                .or(() -> reservationArchive.find(reservationId))
+                .orElseThrow(() -> new ReservationNotFoundException("Reservation not found with ID: " + reservationId));
         return DtoMapper.fromReservation(reservation);
     }
 
-    public List<ReservationStatsResponse> getStats() {
+    // Validator for conditional GETs on the history and stats, without running their queries. Read on
+    // the primary: the body is read in another transaction, and a validator from a replica further
+    // ahead than the body's would label older data with a newer ETag until the next write.
+    public DataVersion getDataVersion() {
+        return primaryReadTransaction.execute(status -> apartmentStatsRepository.findDataVersion());
+    }
+
+    /**
+     * Per-apartment totals, optionally restricted to one apartment and to reservations checking in
+     * within [from, to). Either bound may be omitted. Unbounded queries are read from the
+     * materialized apartment stats, which include archived reservations; bounded ones are aggregated
+     * by the database and over the archive segments whose check-in range overlaps.
+     * <p>
+     * Only the unbounded totals are cached, and they are read on the primary: a replica may be up
+     * to the allowed lag behind, and totals read from it before a write reaches it would be cached
+     * long after the write's eviction. Bounded queries are not cached and go to a replica.
+     */
+    @Cacheable(cacheNames = ReportingCache.STATS,
+            key = "T(app.service.ReportingCache).statsKey(#apartment)",
+            condition = "#from == null && #to == null")
+    public List<ReservationStatsResponse> getStats(LocalDate from, LocalDate to, String apartment) {
+
+        validateRange(from, to);
+
+        if (from == null && to == null) {
+            List<ApartmentStats> stats = primaryReadTransaction.execute(status -> apartment == null
+                    ? apartmentStatsRepository.findAll(Sort.by("apartment"))
+                    : apartmentStatsRepository.findById(apartment).map(List::of).orElse(List.of()));
+            return stats.stream()
+                    .map(DtoMapper::fromApartmentStats)
+                    .toList();
+        }
+
+        return readOnlyTransaction.execute(status -> getStatsBetween(from, to, apartment));
+    }
+
+    private List<ReservationStatsResponse> getStatsBetween(LocalDate from, LocalDate to, String apartment) {
+        if (isUnknownApartment(apartment)) {
+            return List.of();
+        }
+        LocalDate lower = from == null ? MIN_DATE : from;
+        LocalDate upper = to == null ? MAX_DATE : to;
+        List<ApartmentSummary> summaries = apartment == null
+                ? reservationRepository.summarizeByApartmentBetween(lower, upper)
+                : reservationRepository.summarizeApartmentBetween(apartment, lower, upper);
+
+        return withArchived(summaries, lower, upper, apartment).stream()
+                .sorted(Comparator.comparing(ApartmentSummary::getApartment))
+                .map(DtoMapper::fromApartmentSummary)
+                .toList();
+    }
 
-        Map<String, Summary> reservationsSummary = getReservationHistory()
+    private List<ApartmentSummary> withArchived(List<ApartmentSummary> summaries, LocalDate from, LocalDate to,
+                                                String apartment) {
+        StatsAggregator aggregator = new StatsAggregator();
+        reservationArchive.forEachCheckingIn(from, to, apartment, (name, user, price, bookedDays, guests) ->
+                aggregator.accumulator(name).add(price, bookedDays, guests));
+        if (aggregator.size() == 0) {
+            return summaries;
+        }
+        summaries.forEach(summary -> aggregator.accumulator(summary.getApartment()).addTotals(summary.getTotalRevenue(),
+                summary.getTotalBookedDays(), summary.getTotalGuestsVisited(), summary.getReservationCount()));
+        return aggregator.summaries();
+    }
+
+    /**
+     * Same totals as {@link #getStats}, recomputed in-process from the raw reservation rows on all
+     * aggregation workers. Bypasses the materialized stats and the cache, so it is the slow path for
+     * verifying them.
+     */
+    public List<ReservationStatsResponse> recomputeStats(LocalDate from, LocalDate to, String apartment) {
+
+        validateRange(from, to);
+        if (isUnknownApartment(apartment)) {
+            return List.of();
+        }
+
+        StatsAggregator aggregator = parallelStatsAggregationService.aggregateStored(from, to, apartment);
+        reservationArchive.forEachCheckingIn(from, to, apartment, (name, user, price, bookedDays, guests) ->
+                aggregator.accumulator(name).add(price, bookedDays, guests));
+        return aggregator.summaries()
                 .stream()
-                .collect(Collectors.groupingBy(
-                        ReservationReporting::getApartment,
-                        Collectors.reducing(
-                                new Summary(BigDecimal.ZERO, 0, 0),
-                                r -> new Summary(r.getTotalPrice(), (int) r.getReservationLength(), r.getGuests()),
-                                Summary::combine
-                        )
-                ));
-
-        return fromSummaryMap(reservationsSummary);
-    }
-
-    public static List<ReservationStatsResponse> fromSummaryMap(Map<String, Summary> summaryMap) {
-        return summaryMap.entrySet().stream()
-                .map(entry -> ReservationStatsResponse.builder()
-                        .apartment(entry.getKey())
-                        .totalRevenue(entry.getValue().getTotalRevenue()) // Convert BigDecimal to String
-                        .totalBookedDays(String.valueOf(entry.getValue().getTotalBookedDays()))
-                        .totalGuestsVisited(String.valueOf(entry.getValue().getTotalGuestsVisited()))
+                .map(DtoMapper::fromApartmentSummary)
+                .toList();
+    }
+
+    /**
+     * Totals per apartment or per user for reservations checking in within [from, to), optionally
+     * for one apartment. Computed over the in-memory columnar snapshot while it is fresh, otherwise
+     * by the database.
+     */
+    @Transactional(readOnly = true)
+    public AnalyticsResponse queryAnalytics(AnalyticsDimension groupBy, LocalDate from, LocalDate to, String apartment) {
+
+        validateRange(from, to);
+        LocalDate lower = from == null ? MIN_DATE : from;
+        LocalDate upper = to == null ? MAX_DATE : to;
+
+        return reservationColumnarSnapshot.query(groupBy, lower, upper, apartment)
+                .map(groups -> AnalyticsResponse.builder()
+                        .source("snapshot")
+                        .groups(groups)
+                        .build())
+                .orElseGet(() -> AnalyticsResponse.builder()
+                        .source("database")
+                        .groups(queryAnalyticsDatabase(groupBy, lower, upper, apartment))
+                        .build());
+    }
+
+    private List<GroupSummary> queryAnalyticsDatabase(AnalyticsDimension groupBy, LocalDate from, LocalDate to,
+                                                      String apartment) {
+        return summarizeDatabase(groupBy, from, to, apartment).stream()
+                .sorted(Comparator.comparing(GroupSummary::getKey))
+                .toList();
+    }
+
+    /**
+     * The first {@code limit} apartments or users by revenue or nights, for reservations checking in
+     * within [from, to), best first. Over a fresh snapshot, or when archive segments overlap the
+     * range, every group is aggregated in memory and the top ones are picked with a bounded heap;
+     * otherwise the database ranks the groups and returns only the top ones (ORDER BY ... LIMIT).
+     */
+    @Transactional(readOnly = true)
+    public AnalyticsResponse queryTop(AnalyticsDimension groupBy, TopMetric metric, int limit, LocalDate from,
+                                      LocalDate to) {
+
+        if (limit < 1) {
+            throw new InvalidReportingQueryException("Top limit must be positive, got: " + limit);
+        }
+        validateRange(from, to);
+        int n = Math.min(limit, MAX_PAGE_SIZE);
+        LocalDate lower = from == null ? MIN_DATE : from;
+        LocalDate upper = to == null ? MAX_DATE : to;
+
+        return reservationColumnarSnapshot.queryTop(groupBy, metric, n, lower, upper)
+                .map(groups -> AnalyticsResponse.builder()
+                        .source("snapshot")
+                        .groups(groups)
                         .build())
-                .collect(Collectors.toList());
+                .orElseGet(() -> AnalyticsResponse.builder()
+                        .source("database")
+                        .groups(reservationArchive.mayHaveCheckInsBetween(lower, upper)
+                                ? TopN.select(summarizeDatabase(groupBy, lower, upper, null), n, metric.ranking())
+                                : findTop(groupBy, metric, lower, upper, PageRequest.ofSize(n)))
+                        .build());
+    }
+
+    private List<GroupSummary> findTop(AnalyticsDimension groupBy, TopMetric metric, LocalDate from, LocalDate to,
+                                       PageRequest pageRequest) {
+        return switch (groupBy) {
+            case APARTMENT -> metric == TopMetric.REVENUE
+                    ? reservationRepository.findTopApartmentsByRevenueBetween(from, to, pageRequest)
+                    : reservationRepository.findTopApartmentsByNightsBetween(from, to, pageRequest);
+            case USER -> metric == TopMetric.REVENUE
+                    ? reservationRepository.findTopUsersByRevenueBetween(from, to, pageRequest)
+                    : reservationRepository.findTopUsersByNightsBetween(from, to, pageRequest);
+        };
+    }
+
+    // Database totals per group with the archived ones added, in no particular order
+    private List<GroupSummary> summarizeDatabase(AnalyticsDimension groupBy, LocalDate from, LocalDate to,
+                                                 String apartment) {
+        if (isUnknownApartment(apartment)) {
+            return List.of();
+        }
+        List<GroupSummary> groups = switch (groupBy) {
+            case APARTMENT -> (apartment == null
+                    ? reservationRepository.summarizeByApartmentBetween(from, to)
+                    : reservationRepository.summarizeApartmentBetween(apartment, from, to))
+                    .stream()
+                    .map(summary -> new GroupSummary(summary.getApartment(), summary.getTotalRevenue(),
+                            summary.getTotalBookedDays(), summary.getTotalGuestsVisited(), summary.getReservationCount()))
+                    .toList();
+            case USER -> apartment == null
+                    ? reservationRepository.summarizeByUserBetween(from, to)
+                    : reservationRepository.summarizeUsersOfApartmentBetween(apartment, from, to);
+        };
+        return withArchived(groups, groupBy, from, to, apartment);
+    }
+
+    private List<GroupSummary> withArchived(List<GroupSummary> groups, AnalyticsDimension groupBy, LocalDate from,
+                                            LocalDate to, String apartment) {
+        Map<String, StatsAccumulator> totals = new HashMap<>();
+        reservationArchive.forEachCheckingIn(from, to, apartment, (name, user, price, bookedDays, guests) ->
+                totals.computeIfAbsent(groupBy == AnalyticsDimension.APARTMENT ? name : user, key -> new StatsAccumulator())
+                        .add(price, bookedDays, guests));
+        if (totals.isEmpty()) {
+            return groups;
+        }
+        groups.forEach(group -> totals.computeIfAbsent(group.getKey(), key -> new StatsAccumulator())
+                .addTotals(group.getTotalRevenue(), group.getTotalBookedDays(), group.getTotalGuestsVisited(),
+                        group.getReservationCount()));
+        List<GroupSummary> merged = new ArrayList<>(totals.size());
+        totals.forEach((key, total) -> merged.add(new GroupSummary(key, total.revenue(), total.bookedDays(),
+                total.guests(), total.reservations())));
+        return merged;
+    }
+
+    // Filtering on a name that was never stored must not register it as a new apartment
+    private boolean isUnknownApartment(String apartment) {
+        return apartment != null && dimensionDictionary.findApartmentId(apartment).isEmpty();
+    }
+
+    private static void validateRange(LocalDate from, LocalDate to) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new InvalidReportingQueryException("'from' must be before 'to', got: " + from + " / " + to);
+        }
+    }
+
+    /**
+     * Revenue and occupancy per apartment and day/week/month bucket for the nights in [from, to),
+     * read from the nightly rollups only.
+     */
+    @Transactional(readOnly = true)
+    public List<StatsTimeseriesPoint> getStatsTimeseries(StatsGranularity granularity, LocalDate from, LocalDate to,
+                                                         String apartment) {
+
+        if (!from.isBefore(to)) {
+            throw new InvalidReportingQueryException("'from' must be before 'to', got: " + from + " / " + to);
+        }
+
+        // Rows arrive ordered by apartment and night, so every bucket is contiguous
+        List<ApartmentDailyStats> nights = apartment == null
+                ? apartmentDailyStatsRepository.findBetween(from, to)
+                : apartmentDailyStatsRepository.findForApartmentBetween(apartment, from, to);
+
+        List<StatsTimeseriesPoint> points = new ArrayList<>();
+        StatsAccumulator bucket = new StatsAccumulator();
+        String bucketApartment = null;
+        LocalDate bucketStart = null;
+        for (ApartmentDailyStats night : nights) {
+            LocalDate start = granularity.bucketStart(night.getNight());
+            if (!night.getApartment().equals(bucketApartment) || !start.equals(bucketStart)) {
+                if (bucketApartment != null) {
+                    points.add(toTimeseriesPoint(bucketApartment, bucketStart, bucket));
+                }
+                bucket.reset();
+                bucketApartment = night.getApartment();
+                bucketStart = start;
+            }
+            bucket.add(night.getRevenue(), night.getBookedNights(), night.getGuestNights());
+        }
+        if (bucketApartment != null) {
+            points.add(toTimeseriesPoint(bucketApartment, bucketStart, bucket));
+        }
+
+        return points;
+    }
+
+    /**
+     * Estimated distinct guests per apartment, and over all of them, for reservations checking in
+     * within the months [from, to); either bound may be omitted. Read from the per-month
+     * {@link HyperLogLog} guest sketches: the database merges each apartment's months, at most
+     * {@link HyperLogLog#REGISTERS} rows per apartment come back, and the apartments are merged here.
+     */
+    @Transactional(readOnly = true)
+    public UniqueGuestsResponse getUniqueGuests(YearMonth from, YearMonth to, String apartment) {
+
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new InvalidReportingQueryException("'from' must be before 'to', got: " + from + " / " + to);
+        }
+        LocalDate lower = from == null ? MIN_DATE : from.atDay(1);
+        LocalDate upper = to == null ? MAX_DATE : to.atDay(1);
+        List<Object[]> registers = apartment == null
+                ? apartmentGuestSketchRepository.mergeBetween(lower, upper)
+                : apartmentGuestSketchRepository.mergeForApartmentBetween(apartment, lower, upper);
+
+        Map<String, HyperLogLog> sketches = new TreeMap<>();
+        for (Object[] register : registers) {
+            sketches.computeIfAbsent((String) register[0], name -> new HyperLogLog())
+                    .set(((Number) register[1]).intValue(), ((Number) register[2]).intValue());
+        }
+
+        HyperLogLog allGuests = new HyperLogLog();
+        List<ApartmentUniqueGuests> apartments = new ArrayList<>(sketches.size());
+        sketches.forEach((name, sketch) -> {
+            allGuests.merge(sketch);
+            apartments.add(ApartmentUniqueGuests.builder()
+                    .apartment(name)
+                    .estimatedGuests(sketch.estimate())
+                    .build());
+        });
+
+        return UniqueGuestsResponse.builder()
+                .relativeStandardError(HyperLogLog.RELATIVE_STANDARD_ERROR)
+                .apartments(apartments)
+                .estimatedGuests(allGuests.estimate())
+                .build();
+    }
+
+    private static StatsTimeseriesPoint toTimeseriesPoint(String apartment, LocalDate bucketStart,
+                                                          StatsAccumulator bucket) {
+        return StatsTimeseriesPoint.builder()
+                .apartment(apartment)
+                .bucketStart(bucketStart)
+                .revenue(bucket.revenue())
+                .bookedNights(bucket.bookedDays())
+                .guestNights(bucket.guests())
+                .build();
     }
 }
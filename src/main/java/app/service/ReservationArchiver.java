@@ -0,0 +1,166 @@
+package app.service;
+
+import app.InvalidReportingQueryException;
+import app.archive.ReservationArchive;
+import app.model.ArchivedReservation;
+import app.model.ArchivedSegment;
+import app.model.ReservationReporting;
+import app.repository.ArchivedReservationRepository;
+import app.repository.ArchivedSegmentRepository;
+import app.repository.ReservationRepository;
+import app.web.dto.ArchiveReport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Moves reservations created before the archive horizon out of the reservation table into
+ * {@link ReservationArchive} segments, oldest first and at most {@code segment-rows} per segment.
+ * <p>
+ * Each segment is one transaction: read the rows, write and sync the file under its uncommitted
+ * name, record the archived reservation ids, delete the rows and save the manifest entry. The file
+ * is renamed to its listed name only after the commit; if the transaction fails it is deleted
+ * again (or, after a crash, on a start past the orphan grace period), so a reservation is never
+ * in both places or in neither. The materialized stats keep counting archived reservations and are left
+ * alone. Readers on every instance pick the segment up with their next read of the manifest.
+ */
+@Service
+@Slf4j
+public class ReservationArchiver {
+
+    // Ids per DELETE statement
+    private static final int DELETE_BATCH = 1000;
+
+    private final ReservationRepository reservationRepository;
+    private final ArchivedSegmentRepository archivedSegmentRepository;
+    private final ArchivedReservationRepository archivedReservationRepository;
+    private final ReservationArchive reservationArchive;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration horizon;
+    private final int segmentRows;
+
+    // One archival run at a time, on this instance
+    private final ReentrantLock archiveLock = new ReentrantLock();
+
+    @Autowired
+    public ReservationArchiver(ReservationRepository reservationRepository,
+                               ArchivedSegmentRepository archivedSegmentRepository,
+                               ArchivedReservationRepository archivedReservationRepository,
+                               ReservationArchive reservationArchive,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${reporting.archive.horizon:365d}") Duration horizon,
+                               @Value("${reporting.archive.segment-rows:50000}") int segmentRows) {
+        if (segmentRows < 1) {
+            throw new IllegalArgumentException("reporting.archive.segment-rows must be positive, got: " + segmentRows);
+        }
+        this.reservationRepository = reservationRepository;
+        this.archivedSegmentRepository = archivedSegmentRepository;
+        this.archivedReservationRepository = archivedReservationRepository;
+        this.reservationArchive = reservationArchive;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.horizon = horizon;
+        this.segmentRows = segmentRows;
+    }
+
+    @Scheduled(cron = "${reporting.archive.cron:-}")
+    public void scheduledArchive() {
+        if (reservationArchive.isRunning()) {
+            archive();
+        }
+    }
+
+    public ArchiveReport archive() {
+        if (!reservationArchive.isEnabled()) {
+            throw new InvalidReportingQueryException("The archive is disabled, see reporting.archive.enabled");
+        }
+        archiveLock.lock();
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(horizon);
+            long started = System.nanoTime();
+            int segments = 0;
+            long archived = 0;
+
+            int rows;
+            do {
+                rows = archiveSegment(cutoff);
+                if (rows > 0) {
+                    segments++;
+                    archived += rows;
+                }
+            } while (rows == segmentRows);
+
+            long durationMillis = (System.nanoTime() - started) / 1_000_000;
+            log.info("Archived {} reservations created before {} into {} segments in {} ms",
+                    archived, cutoff, segments, durationMillis);
+            return ArchiveReport.builder()
+                    .cutoff(cutoff)
+                    .segmentsWritten(segments)
+                    .reservationsArchived(archived)
+                    .durationMillis(durationMillis)
+                    .build();
+        } finally {
+            archiveLock.unlock();
+        }
+    }
+
+    // Returns the number of reservations archived, 0 when none are left before the cutoff
+    private int archiveSegment(LocalDateTime cutoff) {
+        String[] written = new String[1];
+        int archived;
+        try {
+            archived = transactionTemplate.execute(status -> {
+                List<ReservationReporting> rows = reservationRepository.findArchivable(cutoff, PageRequest.ofSize(segmentRows));
+                if (rows.isEmpty()) {
+                    return 0;
+                }
+                ArchivedSegment segment = reservationArchive.write(rows);
+                written[0] = segment.getName();
+
+                // Redeliveries are recognized by this table, not by the segments an instance has loaded
+                archivedReservationRepository.saveAll(rows.stream()
+                        .map(row -> ArchivedReservation.builder()
+                                .reservationId(row.getReservationId())
+                                .segment(segment.getName())
+                                .build())
+                        .toList());
+                List<UUID> ids = rows.stream().map(ReservationReporting::getId).toList();
+                for (int from = 0; from < ids.size(); from += DELETE_BATCH) {
+                    reservationRepository.deleteAllByIdInBatch(ids.subList(from, Math.min(ids.size(), from + DELETE_BATCH)));
+                }
+                archivedSegmentRepository.save(segment);
+                return rows.size();
+            });
+        } catch (RuntimeException e) {
+            // A commit that failed on the way back may still have gone through: keep the file if it is listed
+            if (written[0] != null) {
+                if (archivedSegmentRepository.existsById(written[0])) {
+                    reservationArchive.publish(written[0]);
+                } else {
+                    reservationArchive.discard(written[0]);
+                }
+            }
+            throw e;
+        }
+        if (written[0] != null) {
+            try {
+                reservationArchive.publish(written[0]);
+            } catch (UncheckedIOException e) {
+                // Committed all the same: the next read of the manifest renames it
+                log.warn("Could not publish archive segment {}: {}", written[0], e.getMessage());
+            }
+        }
+        return archived;
+    }
+}
@@ -0,0 +1,394 @@
+package app.service;
+
+import app.archive.ReservationArchive;
+import app.model.GroupSummary;
+import app.model.ReservationReporting;
+import app.repository.ReservationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory columnar copy of the reservation table for ad-hoc analytics: one primitive array per
+ * field, with check-in dates as epoch days, prices as cents and apartment and user names replaced
+ * by dictionary codes. A row costs about 50 bytes instead of a hydrated entity, and filters run as
+ * branch-free loops over int arrays that the JIT can vectorize.
+ * <p>
+ * The snapshot is loaded from the table and the archive in full, then extended with every reservation inserted
+ * through this instance once its transaction commits. Rows written elsewhere (another instance, a
+ * manual fix) only show up with the next full reload, so the snapshot reports itself stale, and
+ * callers go to the database, once the last reload is older than {@code max-staleness}.
+ */
+@Component
+@Slf4j
+public class ReservationColumnarSnapshot {
+
+    // Prices that do not fit whole cents in a long are kept exactly, out of line
+    static final long EXACT_PRICE = Long.MIN_VALUE;
+
+    private static final int CENTS_SCALE = 2;
+    private static final int MAX_WHOLE_DIGITS = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Rows filtered per pass, so the selection mask stays in cache
+    private static final int BLOCK = 4096;
+
+    private final ReservationRepository reservationRepository;
+    private final ReservationArchive reservationArchive;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration maxStaleness;
+
+    // Appends and reloads are serialized; queries read whichever Columns was last published
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private volatile Columns columns;
+    private volatile long loadedAtNanos;
+    // Rows committed while a reload is running, applied on top of it unless it already saw them
+    private List<ReservationReporting> pending;
+
+    /**
+     * An immutable view of the first {@code size} rows. Appends fill the slots after {@code size}
+     * and publish a new view, so a query never sees a half-written row.
+     */
+    private record Columns(int size,
+                           long[] idMost,
+                           long[] idLeast,
+                           int[] checkIn,
+                           int[] guests,
+                           long[] bookedDays,
+                           long[] priceCents,
+                           int[] apartment,
+                           int[] user,
+                           Map<Integer, BigDecimal> exactPrices,
+                           Dictionary apartments,
+                           Dictionary users) {
+    }
+
+    // Code <-> name; codes are dense so they can index the per-group accumulators
+    private static final class Dictionary {
+
+        // Read by queries while appends add to it
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private volatile String[] names = new String[64];
+        private volatile int size;
+
+        int encode(String name) {
+            Integer code = codes.get(name);
+            if (code != null) {
+                return code;
+            }
+            if (size == names.length) {
+                names = Arrays.copyOf(names, size * 2);
+            }
+            names[size] = name;
+            codes.put(name, size);
+            return size++;
+        }
+
+        // -1 when the name was never seen: no row can match it
+        int find(String name) {
+            Integer code = codes.get(name);
+            return code == null ? -1 : code;
+        }
+
+        String name(int code) {
+            return names[code];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    @Autowired
+    public ReservationColumnarSnapshot(ReservationRepository reservationRepository,
+                                       ReservationArchive reservationArchive,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${reporting.analytics.snapshot.enabled:false}") boolean enabled,
+                                       @Value("${reporting.analytics.snapshot.max-staleness:PT30M}") Duration maxStaleness) {
+        this.reservationRepository = reservationRepository;
+        this.reservationArchive = reservationArchive;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.maxStaleness = maxStaleness;
+    }
+
+    public boolean isFresh() {
+        return columns != null && System.nanoTime() - loadedAtNanos <= maxStaleness.toNanos();
+    }
+
+    public int size() {
+        Columns current = columns;
+        return current == null ? 0 : current.size();
+    }
+
+    @Scheduled(fixedDelayString = "${reporting.analytics.snapshot.refresh-interval:PT15M}")
+    public void scheduledReload() {
+        reload();
+    }
+
+    /**
+     * Reads the whole table into a new set of columns and publishes it. Only the scalar columns
+     * are selected, so no entity is hydrated. Archived reservations are added from their segments.
+     */
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        reloadLock.lock();
+        try {
+            writeLock.lock();
+            try {
+                pending = new ArrayList<>();
+            } finally {
+                writeLock.unlock();
+            }
+
+            long started = System.nanoTime();
+            Columns loaded = transactionTemplate.execute(status -> {
+                Columns building = empty(INITIAL_CAPACITY);
+                try (Stream<Object[]> rows = reservationRepository.streamColumns()) {
+                    Iterator<Object[]> iterator = rows.iterator();
+                    while (iterator.hasNext()) {
+                        Object[] row = iterator.next();
+                        building = appendRow(building, (UUID) row[0], (LocalDate) row[1], (Integer) row[2],
+                                (Long) row[3], (BigDecimal) row[4], (String) row[5], (String) row[6]);
+                    }
+                }
+                try (Stream<ReservationReporting> archived = reservationArchive.stream()) {
+                    Iterator<ReservationReporting> iterator = archived.iterator();
+                    while (iterator.hasNext()) {
+                        building = appendRow(building, iterator.next());
+                    }
+                }
+                return building;
+            });
+
+            writeLock.lock();
+            try {
+                // A row can be both committed before the load read it and reported to append() after,
+                // so pending rows are checked against the loaded ids
+                Set<UUID> pendingIds = new HashSet<>();
+                pending.forEach(reservation -> pendingIds.add(reservation.getReservationId()));
+                for (int i = 0; i < loaded.size() && !pendingIds.isEmpty(); i++) {
+                    pendingIds.remove(new UUID(loaded.idMost()[i], loaded.idLeast()[i]));
+                }
+                for (ReservationReporting reservation : pending) {
+                    if (pendingIds.contains(reservation.getReservationId())) {
+                        loaded = appendRow(loaded, reservation);
+                    }
+                }
+                columns = loaded;
+                loadedAtNanos = System.nanoTime();
+            } finally {
+                pending = null;
+                writeLock.unlock();
+            }
+            log.info("Columnar reservation snapshot loaded: {} rows, {} apartments, {} users in {} ms",
+                    loaded.size(), loaded.apartments().size(), loaded.users().size(), (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException e) {
+            writeLock.lock();
+            try {
+                pending = null;
+            } finally {
+                writeLock.unlock();
+            }
+            throw e;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the snapshot until the next reload, for when rows are removed from the table.
+     */
+    public void invalidate() {
+        writeLock.lock();
+        try {
+            columns = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Called with committed inserts only
+    void append(List<ReservationReporting> inserted) {
+        if (!enabled) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            if (pending != null) {
+                pending.addAll(inserted);
+                return;
+            }
+            Columns current = columns;
+            if (current == null) {
+                return;
+            }
+            for (ReservationReporting reservation : inserted) {
+                current = appendRow(current, reservation);
+            }
+            columns = current;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Totals per apartment or per user for the reservations checking in within [from, to),
+     * optionally for one apartment only. Empty when the snapshot is stale and the database has to
+     * answer instead.
+     */
+    public Optional<List<GroupSummary>> query(AnalyticsDimension groupBy, LocalDate from, LocalDate to, String apartment) {
+        return aggregate(groupBy, from, to, apartment).map(summaries -> {
+            summaries.sort(Comparator.comparing(GroupSummary::getKey));
+            return summaries;
+        });
+    }
+
+    /**
+     * The first {@code limit} groups by {@code metric} for the reservations checking in within
+     * [from, to), best first. The groups are picked with a bounded heap instead of sorting all of
+     * them. Empty when the snapshot is stale.
+     */
+    public Optional<List<GroupSummary>> queryTop(AnalyticsDimension groupBy, TopMetric metric, int limit,
+                                                 LocalDate from, LocalDate to) {
+        return aggregate(groupBy, from, to, null).map(summaries -> TopN.select(summaries, limit, metric.ranking()));
+    }
+
+    // One summary per group, in dictionary order
+    private Optional<List<GroupSummary>> aggregate(AnalyticsDimension groupBy, LocalDate from, LocalDate to,
+                                                   String apartment) {
+
+        Columns current = columns;
+        if (current == null || !isFresh()) {
+            return Optional.empty();
+        }
+
+        int n = current.size();
+        int lower = (int) from.toEpochDay();
+        int upper = (int) to.toEpochDay();
+        int apartmentCode = apartment == null ? -1 : current.apartments().find(apartment);
+        if (apartment != null && apartmentCode < 0) {
+            return Optional.of(new ArrayList<>());
+        }
+
+        int[] checkIn = current.checkIn();
+        int[] apartmentColumn = current.apartment();
+        int[] keys = groupBy == AnalyticsDimension.APARTMENT ? current.apartment() : current.user();
+        Dictionary dictionary = groupBy == AnalyticsDimension.APARTMENT ? current.apartments() : current.users();
+        StatsAccumulator[] groups = new StatsAccumulator[dictionary.size()];
+        int[] mask = new int[BLOCK];
+
+        for (int start = 0; start < n; start += BLOCK) {
+            int length = Math.min(BLOCK, n - start);
+
+            // 1 where lower <= checkIn < upper: both differences are negative only inside the range
+            for (int i = 0; i < length; i++) {
+                int day = checkIn[start + i];
+                mask[i] = ((lower - 1 - day) & (day - upper)) >>> 31;
+            }
+            if (apartmentCode >= 0) {
+                // Codes are non-negative, so (code ^ wanted) - 1 is negative only on a match
+                for (int i = 0; i < length; i++) {
+                    mask[i] &= ((apartmentColumn[start + i] ^ apartmentCode) - 1) >>> 31;
+                }
+            }
+
+            for (int i = 0; i < length; i++) {
+                if (mask[i] != 0) {
+                    int row = start + i;
+                    StatsAccumulator group = groups[keys[row]];
+                    if (group == null) {
+                        group = groups[keys[row]] = new StatsAccumulator();
+                    }
+                    long cents = current.priceCents()[row];
+                    if (cents == EXACT_PRICE) {
+                        group.add(current.exactPrices().get(row), current.bookedDays()[row], current.guests()[row]);
+                    } else {
+                        group.addCents(cents, current.bookedDays()[row], current.guests()[row]);
+                    }
+                }
+            }
+        }
+
+        List<GroupSummary> summaries = new ArrayList<>();
+        for (int code = 0; code < groups.length; code++) {
+            StatsAccumulator group = groups[code];
+            if (group != null) {
+                summaries.add(new GroupSummary(dictionary.name(code), group.revenue(), group.bookedDays(),
+                        group.guests(), group.reservations()));
+            }
+        }
+        return Optional.of(summaries);
+    }
+
+    private static Columns empty(int capacity) {
+        return new Columns(0, new long[capacity], new long[capacity], new int[capacity], new int[capacity],
+                new long[capacity], new long[capacity], new int[capacity], new int[capacity],
+                new ConcurrentHashMap<>(), new Dictionary(), new Dictionary());
+    }
+
+    private static Columns appendRow(Columns columns, ReservationReporting reservation) {
+        return appendRow(columns, reservation.getReservationId(), reservation.getCheckInDate(),
+                reservation.getGuests(), reservation.getReservationLength(), reservation.getTotalPrice(),
+                reservation.getApartment(), reservation.getUser());
+    }
+
+    // Writes the row past the current size, growing the arrays when full, and returns the longer view
+    private static Columns appendRow(Columns c, UUID reservationId, LocalDate checkIn, int guests, long bookedDays,
+                                     BigDecimal price, String apartment, String user) {
+        if (c.size() == c.checkIn().length) {
+            int capacity = c.size() * 2;
+            c = new Columns(c.size(),
+                    Arrays.copyOf(c.idMost(), capacity),
+                    Arrays.copyOf(c.idLeast(), capacity),
+                    Arrays.copyOf(c.checkIn(), capacity),
+                    Arrays.copyOf(c.guests(), capacity),
+                    Arrays.copyOf(c.bookedDays(), capacity),
+                    Arrays.copyOf(c.priceCents(), capacity),
+                    Arrays.copyOf(c.apartment(), capacity),
+                    Arrays.copyOf(c.user(), capacity),
+                    c.exactPrices(), c.apartments(), c.users());
+        }
+        int row = c.size();
+        c.idMost()[row] = reservationId.getMostSignificantBits();
+        c.idLeast()[row] = reservationId.getLeastSignificantBits();
+        c.checkIn()[row] = Math.toIntExact(checkIn.toEpochDay());
+        c.guests()[row] = guests;
+        c.bookedDays()[row] = bookedDays;
+        if (price.scale() <= CENTS_SCALE && price.precision() - price.scale() <= MAX_WHOLE_DIGITS) {
+            c.priceCents()[row] = price.movePointRight(CENTS_SCALE).longValue();
+        } else {
+            c.priceCents()[row] = EXACT_PRICE;
+            c.exactPrices().put(row, price);
+        }
+        c.apartment()[row] = c.apartments().encode(apartment);
+        c.user()[row] = c.users().encode(user);
+        return new Columns(row + 1, c.idMost(), c.idLeast(), c.checkIn(), c.guests(), c.bookedDays(),
+                c.priceCents(), c.apartment(), c.user(), c.exactPrices(), c.apartments(), c.users());
+    }
+}
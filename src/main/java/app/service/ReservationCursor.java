@@ -0,0 +1,43 @@
+package app.service;
+
+import app.InvalidReportingQueryException;
+import app.model.ReservationReporting;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Keyset position in the reservation history, ordered by {@code (createdOn, id)}.
+ * Clients only see it as an opaque URL-safe token.
+ */
+public record ReservationCursor(LocalDateTime createdOn, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static ReservationCursor after(ReservationReporting reservation) {
+        return new ReservationCursor(reservation.getCreatedOn(), reservation.getId());
+    }
+
+    public static ReservationCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new InvalidReportingQueryException("Invalid cursor: " + token);
+            }
+            return new ReservationCursor(
+                    LocalDateTime.parse(value.substring(0, separator)),
+                    UUID.fromString(value.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidReportingQueryException("Invalid cursor: " + token);
+        }
+    }
+
+    public String encode() {
+        String value = createdOn + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,333 @@
+package app.service;
+
+import app.InvalidReportingQueryException;
+import app.archive.ReservationArchive;
+import app.eventlog.ReservationEvent;
+import app.eventlog.ReservationEventLog;
+import app.model.ProjectionCheckpoint;
+import app.model.ReservationReporting;
+import app.repository.ApartmentDailyStatsRepository;
+import app.repository.ApartmentGuestSketchRepository;
+import app.repository.ApartmentStatsRepository;
+import app.repository.ArchivedReservationRepository;
+import app.repository.ProjectionCheckpointRepository;
+import app.repository.ReservationRepository;
+import app.web.dto.EventLogReplayReport;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the reservation table and the stats tables in step with the {@link ReservationEventLog}.
+ * <p>
+ * Writes update the tables and the log in one transaction, so in normal operation there is
+ * nothing to do here but record a checkpoint now and then. On start, the events after the
+ * checkpoint are replayed: an event that reached the log but whose transaction never committed
+ * (a crash in between) is applied, everything else is skipped by the idempotent insert. A
+ * {@link #rebuild()} empties the tables and replays the whole log into them.
+ * <p>
+ * Every instance has its own log, so the checkpoint is kept per log, under its id. A rebuild
+ * replays only this instance's log, and is refused while any other log has a checkpoint here:
+ * the reservations written through that instance would be lost.
+ */
+@Service
+@Slf4j
+public class ReservationEventProjector implements SmartLifecycle {
+
+    public static final String CHECKPOINT_PREFIX = "reservation-tables/";
+    // The single checkpoint of earlier versions, taken over by the first log that starts
+    static final String LEGACY_CHECKPOINT = "reservation-tables";
+
+    private final ReservationEventLog reservationEventLog;
+    private final ReservationRepository reservationRepository;
+    private final ApartmentStatsRepository apartmentStatsRepository;
+    private final ApartmentDailyStatsRepository apartmentDailyStatsRepository;
+    private final ApartmentGuestSketchRepository apartmentGuestSketchRepository;
+    private final ProjectionCheckpointRepository projectionCheckpointRepository;
+    private final ReservationProjectionService reservationProjectionService;
+    private final ReportingCache reportingCache;
+    private final ReservationColumnarSnapshot reservationColumnarSnapshot;
+    private final ReservationArchive reservationArchive;
+    private final ArchivedReservationRepository archivedReservationRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+
+    // Replays and checkpoints run one at a time; a checkpoint must not overtake a replay in progress
+    private final ReentrantLock replayLock = new ReentrantLock();
+    private volatile boolean running;
+
+    @Autowired
+    public ReservationEventProjector(ReservationEventLog reservationEventLog,
+                                     ReservationRepository reservationRepository,
+                                     ApartmentStatsRepository apartmentStatsRepository,
+                                     ApartmentDailyStatsRepository apartmentDailyStatsRepository,
+                                     ApartmentGuestSketchRepository apartmentGuestSketchRepository,
+                                     ProjectionCheckpointRepository projectionCheckpointRepository,
+                                     ReservationProjectionService reservationProjectionService,
+                                     ReportingCache reportingCache,
+                                     ReservationColumnarSnapshot reservationColumnarSnapshot,
+                                     ReservationArchive reservationArchive,
+                                     ArchivedReservationRepository archivedReservationRepository,
+                                     EntityManager entityManager,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${reporting.event-log.replay-chunk-size:1000}") int chunkSize) {
+        this.reservationEventLog = reservationEventLog;
+        this.reservationRepository = reservationRepository;
+        this.apartmentStatsRepository = apartmentStatsRepository;
+        this.apartmentDailyStatsRepository = apartmentDailyStatsRepository;
+        this.apartmentGuestSketchRepository = apartmentGuestSketchRepository;
+        this.projectionCheckpointRepository = projectionCheckpointRepository;
+        this.reservationProjectionService = reservationProjectionService;
+        this.reportingCache = reportingCache;
+        this.reservationColumnarSnapshot = reservationColumnarSnapshot;
+        this.reservationArchive = reservationArchive;
+        this.archivedReservationRepository = archivedReservationRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void start() {
+        if (!reservationEventLog.isEnabled()) {
+            return;
+        }
+        adoptLegacyCheckpoint();
+        if (reservationEventLog.end() == 0) {
+            bootstrap();
+        }
+        EventLogReplayReport report = catchUp();
+        log.info("Reservation tables caught up with the event log: {} events replayed, {} reservations restored in {} ms",
+                report.getEventsReplayed(), report.getReservationsInserted(), report.getDurationMillis());
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (running) {
+            checkpoint();
+            running = false;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Caught up before the lookup index, the web server and the write-behind writer start
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 8192 - 1;
+    }
+
+    @Scheduled(fixedDelayString = "${reporting.event-log.checkpoint-interval:PT10S}")
+    public void scheduledCheckpoint() {
+        if (running) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Records the log's low-water mark as the tables' checkpoint: every event before it belongs to
+     * a transaction that has completed, so the tables already reflect it.
+     */
+    public void checkpoint() {
+        replayLock.lock();
+        try {
+            long position = reservationEventLog.lowWaterMark();
+            transactionTemplate.executeWithoutResult(status -> saveCheckpoint(position));
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    /**
+     * Replays the events after the checkpoint into the tables, one transaction per chunk with the
+     * checkpoint moved along in the same transaction.
+     */
+    public EventLogReplayReport catchUp() {
+        replayLock.lock();
+        try {
+            long from = projectionCheckpointRepository.findById(checkpointName())
+                    .map(ProjectionCheckpoint::getPosition)
+                    .orElse(0L);
+            return replay(from, false);
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the reservation and stats tables and replays the whole log into them. Meant for
+     * recovery with ingest paused: reservations written while it runs are kept, but their stats may
+     * be counted against the tables being emptied. Archived reservations stay in their segments and
+     * are only counted in the stats again.
+     */
+    public EventLogReplayReport rebuild() {
+        if (!reservationEventLog.isEnabled()) {
+            throw new InvalidReportingQueryException("The event log is disabled, there is nothing to rebuild from");
+        }
+        List<String> otherLogs = projectionCheckpointRepository.findByNameStartingWith(LEGACY_CHECKPOINT).stream()
+                .map(ProjectionCheckpoint::getName)
+                .filter(name -> !name.equals(checkpointName()))
+                .toList();
+        if (!otherLogs.isEmpty()) {
+            throw new InvalidReportingQueryException("Other event logs have written to the reservation tables "
+                    + otherLogs + "; a rebuild from this instance's log would lose their reservations."
+                    + " Retire those instances and delete their checkpoints first");
+        }
+        replayLock.lock();
+        try {
+            reservationColumnarSnapshot.invalidate();
+            transactionTemplate.executeWithoutResult(status -> {
+                apartmentDailyStatsRepository.deleteAllInBatch();
+                apartmentGuestSketchRepository.deleteAllInBatch();
+                apartmentStatsRepository.deleteAllInBatch();
+                reservationRepository.deleteAllInBatch();
+                saveCheckpoint(0);
+            });
+            EventLogReplayReport report = replay(0, true);
+            reportingCache.clearStats();
+            reservationColumnarSnapshot.reload();
+            log.info("Reservation tables rebuilt from the event log: {} events replayed, {} reservations in {} ms",
+                    report.getEventsReplayed(), report.getReservationsInserted(), report.getDurationMillis());
+            return report;
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    private EventLogReplayReport replay(long from, boolean rebuilding) {
+        long started = System.nanoTime();
+        long[] counts = new long[2];
+        List<ReservationEvent> chunk = new ArrayList<>(chunkSize);
+
+        long end = reservationEventLog.replay(from, (position, event) -> {
+            if (chunk.size() == chunkSize) {
+                // Checkpoint at the first event of the next chunk: positions are record starts
+                counts[1] += applyChunk(chunk, position, rebuilding);
+                counts[0] += chunk.size();
+                chunk.clear();
+            }
+            chunk.add(event);
+        });
+        counts[1] += applyChunk(chunk, end, rebuilding);
+        counts[0] += chunk.size();
+
+        return EventLogReplayReport.builder()
+                .fromPosition(from)
+                .toPosition(end)
+                .eventsReplayed(counts[0])
+                .reservationsInserted(counts[1])
+                .durationMillis((System.nanoTime() - started) / 1_000_000)
+                .build();
+    }
+
+    // Returns how many reservations were missing from the table
+    private int applyChunk(List<ReservationEvent> chunk, long checkpoint, boolean rebuilding) {
+        return transactionTemplate.execute(status -> {
+            List<ReservationReporting> inserted = new ArrayList<>();
+            List<ReservationReporting> projected = new ArrayList<>();
+            for (ReservationEvent event : chunk) {
+                ReservationReporting reservation = event.reservation();
+                switch (event.type()) {
+                    case CREATED -> {
+                        if (archivedReservationRepository.existsById(reservation.getReservationId())) {
+                            // Never back into the table; only a rebuild, which emptied the stats, counts it again
+                            if (rebuilding) {
+                                projected.add(reservation);
+                            }
+                        } else if (reservationRepository.insertIfAbsent(reservation) == 1) {
+                            inserted.add(reservation);
+                            projected.add(reservation);
+                        }
+                    }
+                    case TOUCHED -> reservationRepository.touch(List.of(reservation.getReservationId()),
+                            reservation.getUpdatedOn());
+                }
+            }
+            if (!projected.isEmpty()) {
+                reservationProjectionService.project(projected);
+            }
+            saveCheckpoint(checkpoint);
+            return inserted.size();
+        });
+    }
+
+    // Turning the log on for a database that already has reservations: they become its first events,
+    // archived ones included
+    private void bootstrap() {
+        long count = reservationRepository.count() + reservationArchive.size();
+        if (count == 0) {
+            return;
+        }
+        log.info("Event log is empty, recording the {} stored reservations as its first events", count);
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<ReservationReporting> reservations = reservationRepository.streamAll()) {
+                List<ReservationEvent> events = new ArrayList<>(chunkSize);
+                Iterator<ReservationReporting> iterator = reservations.iterator();
+                while (iterator.hasNext()) {
+                    ReservationReporting reservation = iterator.next();
+                    entityManager.detach(reservation);
+                    events.add(ReservationEvent.created(reservation));
+                    if (events.size() == chunkSize) {
+                        reservationEventLog.appendCommitted(events);
+                        events.clear();
+                    }
+                }
+                try (Stream<ReservationReporting> archived = reservationArchive.stream()) {
+                    Iterator<ReservationReporting> archivedIterator = archived.iterator();
+                    while (archivedIterator.hasNext()) {
+                        events.add(ReservationEvent.created(archivedIterator.next()));
+                        if (events.size() == chunkSize) {
+                            reservationEventLog.appendCommitted(events);
+                            events.clear();
+                        }
+                    }
+                }
+                reservationEventLog.appendCommitted(events);
+            }
+            saveCheckpoint(reservationEventLog.end());
+        });
+    }
+
+    public String checkpointName() {
+        return CHECKPOINT_PREFIX + reservationEventLog.getLogId();
+    }
+
+    // Earlier versions kept one checkpoint, for the one log they allowed
+    private void adoptLegacyCheckpoint() {
+        transactionTemplate.executeWithoutResult(status ->
+                projectionCheckpointRepository.findById(LEGACY_CHECKPOINT).ifPresent(legacy -> {
+                    if (!projectionCheckpointRepository.existsById(checkpointName())) {
+                        log.info("Taking over the event log checkpoint {} for log {}", legacy.getPosition(),
+                                reservationEventLog.getLogId());
+                        saveCheckpoint(legacy.getPosition());
+                    }
+                    projectionCheckpointRepository.delete(legacy);
+                }));
+    }
+
+    private void saveCheckpoint(long position) {
+        projectionCheckpointRepository.save(ProjectionCheckpoint.builder()
+                .name(checkpointName())
+                .position(position)
+                .updatedOn(LocalDateTime.now())
+                .build());
+    }
+}
@@ -0,0 +1,130 @@
+package app.service;
+
+import app.archive.ReservationArchive;
+import app.model.ReservationReporting;
+import app.repository.ReservationRepository;
+import app.web.dto.ReservationResponse;
+import app.web.mapper.DtoMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the whole reservation history row by row from a database cursor, so heap usage
+ * does not depend on the size of the table. Archived reservations come first, one decoded
+ * segment at a time.
+ */
+@Service
+@Slf4j
+public class ReservationExportService {
+
+    static final String CSV_HEADER =
+            "reservationId,checkInDate,checkOutDate,guests,reservationLength,totalPrice,user,apartment";
+
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private final ReservationRepository reservationRepository;
+    private final ReservationArchive reservationArchive;
+    private final EntityManager entityManager;
+    private final ObjectWriter jsonWriter;
+
+    @Autowired
+    public ReservationExportService(ReservationRepository reservationRepository,
+                                    ReservationArchive reservationArchive,
+                                    EntityManager entityManager,
+                                    ObjectMapper objectMapper) {
+        this.reservationRepository = reservationRepository;
+        this.reservationArchive = reservationArchive;
+        this.entityManager = entityManager;
+        this.jsonWriter = objectMapper.writerFor(ReservationResponse.class);
+    }
+
+    @Transactional(readOnly = true)
+    public long export(ExportFormat format, OutputStream outputStream) throws IOException {
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        long rows = 0;
+
+        if (format == ExportFormat.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        try (Stream<ReservationReporting> archived = reservationArchive.stream()) {
+            Iterator<ReservationReporting> iterator = archived.iterator();
+            while (iterator.hasNext()) {
+                writeRow(format, writer, DtoMapper.fromReservation(iterator.next()));
+                if (++rows % FLUSH_EVERY_ROWS == 0) {
+                    writer.flush();
+                }
+            }
+        }
+
+        try (Stream<ReservationReporting> reservations = reservationRepository.streamAll()) {
+            Iterator<ReservationReporting> iterator = reservations.iterator();
+            while (iterator.hasNext()) {
+                ReservationReporting reservation = iterator.next();
+                ReservationResponse response = DtoMapper.fromReservation(reservation);
+                // Drop the entity from the persistence context, otherwise it keeps every row reachable
+                entityManager.detach(reservation);
+
+                writeRow(format, writer, response);
+                if (++rows % FLUSH_EVERY_ROWS == 0) {
+                    writer.flush();
+                }
+            }
+        }
+
+        writer.flush();
+        log.info("Exported {} reservations as {}", rows, format);
+        return rows;
+    }
+
+    private void writeRow(ExportFormat format, Writer writer, ReservationResponse response) throws IOException {
+        if (format == ExportFormat.NDJSON) {
+            writer.write(jsonWriter.writeValueAsString(response));
+            writer.write('\n');
+        } else {
+            writeCsvRow(writer, response);
+        }
+    }
+
+    private static void writeCsvRow(Writer writer, ReservationResponse response) throws IOException {
+        writer.write(String.valueOf(response.getReservationId()));
+        writer.write(',');
+        writer.write(String.valueOf(response.getCheckInDate()));
+        writer.write(',');
+        writer.write(String.valueOf(response.getCheckOutDate()));
+        writer.write(',');
+        writer.write(String.valueOf(response.getGuests()));
+        writer.write(',');
+        writer.write(String.valueOf(response.getReservationLength()));
+        writer.write(',');
+        writer.write(response.getTotalPrice().toPlainString());
+        writer.write(',');
+        writer.write(csvField(response.getUser()));
+        writer.write(',');
+        writer.write(csvField(response.getApartment()));
+        writer.write('\n');
+    }
+
+    static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,250 @@
+package app.service;
+
+import app.model.ReservationReporting;
+import app.repository.ArchivedReservationRepository;
+import app.repository.DimensionDictionary;
+import app.repository.ReservationRepository;
+import app.web.dto.BatchItemResult;
+import app.web.dto.BatchItemStatus;
+import app.web.dto.ReservationDetails;
+import app.web.mapper.DtoMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk ingest: items are validated one by one and persisted in chunked transactions so that
+ * Hibernate can send the inserts as JDBC batches.
+ */
+@Service
+@Slf4j
+public class ReservationIngestService {
+
+    private final ReservationRepository reservationRepository;
+    private final DimensionDictionary dimensionDictionary;
+    private final ReservationProjectionService reservationProjectionService;
+    private final ReportingCache reportingCache;
+    private final ArchivedReservationRepository archivedReservationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectReader reservationReader;
+    private final int chunkSize;
+    private final long maxStayNights;
+
+    @Autowired
+    public ReservationIngestService(ReservationRepository reservationRepository,
+                                    DimensionDictionary dimensionDictionary,
+                                    ReservationProjectionService reservationProjectionService,
+                                    ReportingCache reportingCache,
+                                    ArchivedReservationRepository archivedReservationRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    Validator validator,
+                                    ObjectMapper objectMapper,
+                                    @Value("${reporting.ingest.chunk-size:500}") int chunkSize,
+                                    @Value("${reporting.ingest.max-stay-nights:366}") long maxStayNights) {
+        this.reservationRepository = reservationRepository;
+        this.dimensionDictionary = dimensionDictionary;
+        this.reservationProjectionService = reservationProjectionService;
+        this.reportingCache = reportingCache;
+        this.archivedReservationRepository = archivedReservationRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.reservationReader = objectMapper.readerFor(ReservationDetails.class);
+        this.chunkSize = chunkSize;
+        this.maxStayNights = maxStayNights;
+    }
+
+    public List<BatchItemResult> ingest(List<ReservationDetails> reservations) {
+
+        List<BatchItemResult> results = new ArrayList<>(reservations.size());
+        List<PendingItem> chunk = new ArrayList<>(chunkSize);
+
+        for (int index = 0; index < reservations.size(); index++) {
+            chunk.add(new PendingItem(index, reservations.get(index)));
+            if (chunk.size() == chunkSize) {
+                results.addAll(persistChunk(chunk));
+                chunk.clear();
+            }
+        }
+        results.addAll(persistChunk(chunk));
+
+        return sorted(results);
+    }
+
+    // One JSON document per line; a malformed line only fails its own item
+    public List<BatchItemResult> ingestNdjson(InputStream inputStream) throws IOException {
+
+        List<BatchItemResult> results = new ArrayList<>();
+        List<PendingItem> chunk = new ArrayList<>(chunkSize);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+
+        int index = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                chunk.add(new PendingItem(index, reservationReader.readValue(line)));
+            } catch (JsonProcessingException e) {
+                results.add(failed(index, null, "Malformed reservation: " + e.getOriginalMessage()));
+            }
+            index++;
+
+            if (chunk.size() == chunkSize) {
+                results.addAll(persistChunk(chunk));
+                chunk.clear();
+            }
+        }
+        results.addAll(persistChunk(chunk));
+
+        return sorted(results);
+    }
+
+    private List<BatchItemResult> persistChunk(List<PendingItem> chunk) {
+
+        List<BatchItemResult> results = new ArrayList<>(chunk.size());
+        List<PendingItem> valid = new ArrayList<>(chunk.size());
+
+        for (PendingItem item : chunk) {
+            String violation = validate(item.details());
+            if (violation == null) {
+                valid.add(item);
+            } else {
+                results.add(failed(item.index(), item.details() == null ? null : item.details().getReservationId(), violation));
+            }
+        }
+
+        if (valid.isEmpty()) {
+            return results;
+        }
+
+        try {
+            Set<Integer> duplicates = transactionTemplate.execute(status -> persistValid(valid));
+            valid.forEach(item -> results.add(duplicates.contains(item.index())
+                    ? result(item, BatchItemStatus.DUPLICATE)
+                    : result(item, BatchItemStatus.CREATED)));
+        } catch (RuntimeException e) {
+            if (valid.size() == 1) {
+                PendingItem item = valid.get(0);
+                log.warn("Failed to ingest reservation [{}]: {}", item.details().getReservationId(), e.getMessage());
+                results.add(failed(item.index(), item.details().getReservationId(), e.getMessage()));
+            } else {
+                // Isolate the offending rows (or a concurrent insert of the same reservationId)
+                // by replaying the chunk one item per transaction
+                log.warn("Chunk of {} reservations failed, retrying item by item: {}", valid.size(), e.getMessage());
+                valid.forEach(item -> results.addAll(persistChunk(List.of(item))));
+            }
+        }
+
+        return results;
+    }
+
+    // Returns the indexes of items whose reservationId was already stored, in the table, the archive or
+    // earlier in the chunk. Archived ones are not touched: their segment is immutable.
+    private Set<Integer> persistValid(List<PendingItem> valid) {
+
+        Set<UUID> reservationIds = valid.stream()
+                .map(item -> item.details().getReservationId())
+                .collect(Collectors.toSet());
+        Set<UUID> stored = new HashSet<>(reservationRepository.findExistingReservationIds(reservationIds));
+        Set<UUID> archived = new HashSet<>(archivedReservationRepository.findArchivedReservationIds(reservationIds));
+
+        Set<Integer> duplicates = new HashSet<>();
+        Set<UUID> seen = new HashSet<>();
+        List<ReservationReporting> inserts = new ArrayList<>(valid.size());
+        for (PendingItem item : valid) {
+            UUID reservationId = item.details().getReservationId();
+            if (stored.contains(reservationId) || archived.contains(reservationId) || !seen.add(reservationId)) {
+                duplicates.add(item.index());
+            } else {
+                inserts.add(DtoMapper.fromReservationDetails(item.details()));
+            }
+        }
+
+        if (!stored.isEmpty()) {
+            LocalDateTime now = LocalDateTime.now();
+            reservationRepository.touch(stored, now);
+            reservationProjectionService.recordTouched(stored, now);
+            reportingCache.evictReservations(stored);
+        }
+        dimensionDictionary.register(inserts);
+        reservationProjectionService.apply(reservationRepository.saveAll(inserts));
+
+        return duplicates;
+    }
+
+    // Constraint violations as one message, or null when the reservation is valid. The stay is
+    // split into one daily stats row per night, so its length is bounded as well.
+    public String validate(ReservationDetails details) {
+        if (details == null) {
+            return "Reservation must not be null";
+        }
+        Set<ConstraintViolation<ReservationDetails>> violations = validator.validate(details);
+        List<String> messages = new ArrayList<>(violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .toList());
+        if (details.getCheckInDate() != null && details.getCheckOutDate() != null) {
+            long nights = ChronoUnit.DAYS.between(details.getCheckInDate(), details.getCheckOutDate());
+            if (nights < 0) {
+                messages.add("checkOutDate must not be before checkInDate");
+            } else if (nights > maxStayNights) {
+                messages.add("checkOutDate must be at most " + maxStayNights + " nights after checkInDate");
+            }
+        }
+        if (messages.isEmpty()) {
+            return null;
+        }
+        return messages.stream()
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private static List<BatchItemResult> sorted(List<BatchItemResult> results) {
+        results.sort(Comparator.comparingInt(BatchItemResult::getIndex));
+        return results;
+    }
+
+    private static BatchItemResult result(PendingItem item, BatchItemStatus status) {
+        return BatchItemResult.builder()
+                .index(item.index())
+                .reservationId(item.details().getReservationId())
+                .status(status)
+                .build();
+    }
+
+    private static BatchItemResult failed(int index, UUID reservationId, String error) {
+        return BatchItemResult.builder()
+                .index(index)
+                .reservationId(reservationId)
+                .status(BatchItemStatus.FAILED)
+                .error(error)
+                .build();
+    }
+
+    private record PendingItem(int index, ReservationDetails details) {
+    }
+}
@@ -0,0 +1,232 @@
+package app.service;
+
+import app.eventlog.ReservationEvent;
+import app.eventlog.ReservationEventLog;
+import app.model.ApartmentDailyStats;
+import app.model.ApartmentGuestSketchId;
+import app.model.ApartmentNightId;
+import app.model.ReservationReporting;
+import app.repository.ApartmentDailyStatsRepository;
+import app.repository.ApartmentGuestSketchRepository;
+import app.repository.ApartmentStatsRepository;
+import app.repository.DimensionDictionary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Applies newly inserted reservations to the derived tables, within the caller's transaction, and
+ * records them in the {@link ReservationEventLog} when it is enabled.
+ */
+@Service
+public class ReservationProjectionService {
+
+    private static final Comparator<ApartmentNightId> APARTMENT_NIGHT_ORDER = Comparator
+            .comparing(ApartmentNightId::getApartment)
+            .thenComparing(ApartmentNightId::getNight);
+    private static final Comparator<ApartmentGuestSketchId> SKETCH_REGISTER_ORDER = Comparator
+            .comparing(ApartmentGuestSketchId::getApartment)
+            .thenComparing(ApartmentGuestSketchId::getCheckInMonth)
+            .thenComparingInt(ApartmentGuestSketchId::getRegisterIndex);
+
+    private final ApartmentStatsRepository apartmentStatsRepository;
+    private final ApartmentDailyStatsRepository apartmentDailyStatsRepository;
+    private final ApartmentGuestSketchRepository apartmentGuestSketchRepository;
+    private final ReportingCache reportingCache;
+    private final ReservationEventLog reservationEventLog;
+    private final ReservationColumnarSnapshot reservationColumnarSnapshot;
+    private final DimensionDictionary dimensionDictionary;
+
+    @Autowired
+    public ReservationProjectionService(ApartmentStatsRepository apartmentStatsRepository,
+                                        ApartmentDailyStatsRepository apartmentDailyStatsRepository,
+                                        ApartmentGuestSketchRepository apartmentGuestSketchRepository,
+                                        ReportingCache reportingCache,
+                                        ReservationEventLog reservationEventLog,
+                                        ReservationColumnarSnapshot reservationColumnarSnapshot,
+                                        DimensionDictionary dimensionDictionary) {
+        this.apartmentStatsRepository = apartmentStatsRepository;
+        this.apartmentDailyStatsRepository = apartmentDailyStatsRepository;
+        this.apartmentGuestSketchRepository = apartmentGuestSketchRepository;
+        this.reportingCache = reportingCache;
+        this.reservationEventLog = reservationEventLog;
+        this.reservationColumnarSnapshot = reservationColumnarSnapshot;
+        this.dimensionDictionary = dimensionDictionary;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void apply(List<ReservationReporting> inserted) {
+        project(inserted);
+        reservationEventLog.append(inserted.stream().map(ReservationEvent::created).toList());
+    }
+
+    // Logs a refresh of already stored reservations, so replaying the log restores their updatedOn
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordTouched(Collection<UUID> reservationIds, LocalDateTime updatedOn) {
+        reservationEventLog.append(reservationIds.stream()
+                .map(reservationId -> ReservationEvent.touched(reservationId, updatedOn))
+                .toList());
+    }
+
+    /**
+     * Applies the reservations to the derived tables only, without logging them again; used when
+     * they are replayed from the event log.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void project(List<ReservationReporting> inserted) {
+
+        // One upsert per apartment (and per apartment night) per chunk; the sorted order keeps
+        // concurrent chunks from deadlocking. Apartments are grouped on their dimension keys,
+        // which the inserts have already set.
+        dimensionDictionary.register(inserted);
+        Map<Integer, StatsDelta> deltas = new TreeMap<>();
+        Map<ApartmentNightId, NightDelta> nightDeltas = newNightDeltas();
+        Map<ApartmentGuestSketchId, Integer> sketchRegisters = newSketchRegisters();
+        for (ReservationReporting reservation : inserted) {
+            deltas.computeIfAbsent(reservation.getApartmentKey(), key -> new StatsDelta(reservation.getApartment()))
+                    .add(reservation);
+            splitIntoNights(reservation, nightDeltas);
+            addGuest(reservation.getApartment(), reservation.getCheckInDate(), reservation.getUser(), sketchRegisters);
+        }
+
+        deltas.values().forEach(delta -> apartmentStatsRepository.increment(
+                delta.apartment,
+                delta.revenue,
+                delta.bookedDays,
+                delta.guests,
+                delta.reservations,
+                delta.updatedOn));
+
+        incrementDailyStats(nightDeltas);
+
+        raiseGuestSketches(sketchRegisters);
+
+        reportingCache.evictReservations(inserted.stream().map(ReservationReporting::getReservationId).toList());
+        reportingCache.evictStats(deltas.values().stream().map(delta -> delta.apartment).toList());
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reservationColumnarSnapshot.append(inserted);
+            }
+        });
+    }
+
+    /**
+     * Adds the nights to the daily stats. One row per apartment night, so these go out as JDBC
+     * batches; also used by the rebuild in {@link StatsReconciliationService}.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void incrementDailyStats(Map<ApartmentNightId, NightDelta> nightDeltas) {
+        apartmentDailyStatsRepository.incrementAll(nightDeltas.entrySet().stream()
+                .map(night -> ApartmentDailyStats.builder()
+                        .apartment(night.getKey().getApartment())
+                        .night(night.getKey().getNight())
+                        .revenue(night.getValue().revenue)
+                        .bookedNights(night.getValue().bookedNights)
+                        .guestNights(night.getValue().guestNights)
+                        .build())
+                .toList());
+    }
+
+    // Night totals per apartment and night, sorted like the other upserts
+    static Map<ApartmentNightId, NightDelta> newNightDeltas() {
+        return new TreeMap<>(APARTMENT_NIGHT_ORDER);
+    }
+
+    // Spreads the price evenly over the reservationLength nights from check-in, the nights the
+    // apartment stats count as booked days; the rounding remainder goes to the last night so the
+    // nights add up to the exact total. A same-day reservation books no night: its price goes to
+    // the check-in date.
+    static void splitIntoNights(ReservationReporting reservation, Map<ApartmentNightId, NightDelta> nightDeltas) {
+
+        LocalDate checkIn = reservation.getCheckInDate();
+        long bookedNights = reservation.getReservationLength();
+        int nights = (int) Math.max(1, bookedNights);
+        BigDecimal price = reservation.getTotalPrice();
+        BigDecimal perNight = price.divide(BigDecimal.valueOf(nights), Math.max(price.scale(), 2), RoundingMode.DOWN);
+        BigDecimal lastNight = price.subtract(perNight.multiply(BigDecimal.valueOf(nights - 1L)));
+
+        for (int i = 0; i < nights; i++) {
+            NightDelta delta = nightDeltas.computeIfAbsent(
+                    new ApartmentNightId(reservation.getApartment(), checkIn.plusDays(i)), key -> new NightDelta());
+            delta.revenue = delta.revenue.add(i == nights - 1 ? lastNight : perNight);
+            if (i < bookedNights) {
+                delta.bookedNights++;
+                delta.guestNights += reservation.getGuests();
+            }
+        }
+    }
+
+    /**
+     * Raises the guest sketch registers, one upsert each. Raising a register to a value it already
+     * has changes nothing, so the backfill in {@link StatsReconciliationService} may repeat them.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void raiseGuestSketches(Map<ApartmentGuestSketchId, Integer> sketchRegisters) {
+        sketchRegisters.forEach((key, value) -> apartmentGuestSketchRepository.raise(
+                key.getApartment(),
+                key.getCheckInMonth(),
+                key.getRegisterIndex(),
+                value));
+    }
+
+    // Register values per apartment, check-in month and register, sorted like the other upserts
+    static Map<ApartmentGuestSketchId, Integer> newSketchRegisters() {
+        return new TreeMap<>(SKETCH_REGISTER_ORDER);
+    }
+
+    // The guest raises one register of the sketch of the apartment and check-in month
+    static void addGuest(String apartment, LocalDate checkInDate, String user,
+                         Map<ApartmentGuestSketchId, Integer> sketchRegisters) {
+        long hash = HyperLogLog.hash(user);
+        ApartmentGuestSketchId key = new ApartmentGuestSketchId(apartment, checkInDate.withDayOfMonth(1),
+                (short) HyperLogLog.registerIndex(hash));
+        sketchRegisters.merge(key, HyperLogLog.registerValue(hash), Math::max);
+    }
+
+    private static class StatsDelta {
+
+        private final String apartment;
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private long bookedDays;
+        private long guests;
+        private long reservations;
+        private LocalDateTime updatedOn;
+
+        private StatsDelta(String apartment) {
+            this.apartment = apartment;
+        }
+
+        private void add(ReservationReporting reservation) {
+            revenue = revenue.add(reservation.getTotalPrice());
+            bookedDays += reservation.getReservationLength();
+            guests += reservation.getGuests();
+            reservations++;
+            if (updatedOn == null || reservation.getUpdatedOn().isAfter(updatedOn)) {
+                updatedOn = reservation.getUpdatedOn();
+            }
+        }
+    }
+
+    static class NightDelta {
+
+        BigDecimal revenue = BigDecimal.ZERO;
+        long bookedNights;
+        long guestNights;
+    }
+}
@@ -0,0 +1,99 @@
+package app.service;
+
+import java.math.BigDecimal;
+
+/**
+ * Mutable running totals for one aggregation key. Revenue is summed as whole cents in a
+ * {@code long}; amounts with sub-cent digits, and any sum that would overflow, are carried
+ * exactly in a {@link BigDecimal} instead, so the result never loses precision.
+ */
+public final class StatsAccumulator {
+
+    private static final int CENTS_SCALE = 2;
+
+    // Integer digits that still leave room for the cents inside a long
+    private static final int MAX_WHOLE_DIGITS = 16;
+
+    private long revenueCents;
+    private BigDecimal revenueOverflow;
+    private long bookedDays;
+    private long guests;
+    private long reservations;
+
+    public void add(BigDecimal revenue, long bookedDays, long guests) {
+        addRevenue(revenue);
+        addCounters(bookedDays, guests, 1);
+    }
+
+    // Totals of several reservations summed elsewhere, e.g. by the database
+    public void addTotals(BigDecimal revenue, long bookedDays, long guests, long reservations) {
+        addRevenue(revenue);
+        addCounters(bookedDays, guests, reservations);
+    }
+
+    public void addCents(long cents, long bookedDays, long guests) {
+        addRevenueCents(cents);
+        addCounters(bookedDays, guests, 1);
+    }
+
+    public void merge(StatsAccumulator other) {
+        addRevenueCents(other.revenueCents);
+        if (other.revenueOverflow != null) {
+            addRevenueExact(other.revenueOverflow);
+        }
+        addCounters(other.bookedDays, other.guests, other.reservations);
+    }
+
+    public void reset() {
+        revenueCents = 0;
+        revenueOverflow = null;
+        bookedDays = 0;
+        guests = 0;
+        reservations = 0;
+    }
+
+    public BigDecimal revenue() {
+        BigDecimal cents = BigDecimal.valueOf(revenueCents, CENTS_SCALE);
+        return revenueOverflow == null ? cents : cents.add(revenueOverflow);
+    }
+
+    public long bookedDays() {
+        return bookedDays;
+    }
+
+    public long guests() {
+        return guests;
+    }
+
+    public long reservations() {
+        return reservations;
+    }
+
+    private void addRevenue(BigDecimal revenue) {
+        if (revenue.scale() <= CENTS_SCALE && revenue.precision() - revenue.scale() <= MAX_WHOLE_DIGITS) {
+            addRevenueCents(revenue.movePointRight(CENTS_SCALE).longValue());
+        } else {
+            addRevenueExact(revenue);
+        }
+    }
+
+    private void addRevenueCents(long cents) {
+        long sum = revenueCents + cents;
+        if (((revenueCents ^ sum) & (cents ^ sum)) < 0) {
+            // The long would wrap: move what we have into the exact sum and start over
+            addRevenueExact(BigDecimal.valueOf(revenueCents, CENTS_SCALE));
+            sum = cents;
+        }
+        revenueCents = sum;
+    }
+
+    private void addRevenueExact(BigDecimal amount) {
+        revenueOverflow = revenueOverflow == null ? amount : revenueOverflow.add(amount);
+    }
+
+    private void addCounters(long bookedDays, long guests, long reservations) {
+        this.bookedDays = Math.addExact(this.bookedDays, bookedDays);
+        this.guests = Math.addExact(this.guests, guests);
+        this.reservations = Math.addExact(this.reservations, reservations);
+    }
+}
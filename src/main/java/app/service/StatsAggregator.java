@@ -0,0 +1,148 @@
+package app.service;
+
+import app.model.ApartmentSummary;
+import app.model.ReservationReporting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * In-memory per-apartment totals for the paths that still aggregate in Java. Each apartment gets
+ * one {@link StatsAccumulator} that is updated in place, so adding a row allocates nothing beyond
+ * the first row of a new apartment. Not thread-safe; aggregate per thread and {@link #merge}.
+ * <p>
+ * Rows loaded from the table carry their apartment's dimension key and are grouped on it, in an
+ * array indexed by the key, without hashing the name. Rows without a key (archived, or built in
+ * memory) and totals added by name are grouped by name; the two meet in {@link #summaries()}.
+ */
+public final class StatsAggregator {
+
+    private StatsAccumulator[] byKey = new StatsAccumulator[0];
+    private String[] keyNames = new String[0];
+    private final Map<String, StatsAccumulator> byName = new HashMap<>();
+
+    public static StatsAggregator of(Iterable<ReservationReporting> reservations) {
+        StatsAggregator aggregator = new StatsAggregator();
+        for (ReservationReporting reservation : reservations) {
+            aggregator.add(reservation);
+        }
+        return aggregator;
+    }
+
+    /**
+     * Splits the rows into ranges of at most {@code leafSize} and aggregates them on the given pool,
+     * each leaf into its own aggregator, merging the partial results on the way back up.
+     */
+    public static StatsAggregator parallel(List<ReservationReporting> reservations, ForkJoinPool pool, int leafSize) {
+        return pool.invoke(new RangeTask(reservations, 0, reservations.size(), leafSize));
+    }
+
+    public void add(ReservationReporting reservation) {
+        Integer key = reservation.getApartmentKey();
+        StatsAccumulator accumulator = key == null
+                ? accumulator(reservation.getApartment())
+                : accumulator(key, reservation.getApartment());
+        accumulator.add(reservation.getTotalPrice(), reservation.getReservationLength(), reservation.getGuests());
+    }
+
+    public StatsAccumulator accumulator(int key, String apartment) {
+        if (key >= byKey.length) {
+            int length = Math.max(key + 1, byKey.length * 2);
+            byKey = Arrays.copyOf(byKey, length);
+            keyNames = Arrays.copyOf(keyNames, length);
+        }
+        StatsAccumulator accumulator = byKey[key];
+        if (accumulator == null) {
+            accumulator = new StatsAccumulator();
+            byKey[key] = accumulator;
+            keyNames[key] = apartment;
+        }
+        return accumulator;
+    }
+
+    public StatsAccumulator accumulator(String apartment) {
+        return byName.computeIfAbsent(apartment, key -> new StatsAccumulator());
+    }
+
+    public StatsAggregator merge(StatsAggregator other) {
+        for (int key = 0; key < other.byKey.length; key++) {
+            if (other.byKey[key] != null) {
+                accumulator(key, other.keyNames[key]).merge(other.byKey[key]);
+            }
+        }
+        other.byName.forEach((apartment, accumulator) -> accumulator(apartment).merge(accumulator));
+        return this;
+    }
+
+    public int size() {
+        return byApartment().size();
+    }
+
+    // Sorted by apartment, like the stats endpoint
+    public List<ApartmentSummary> summaries() {
+        Map<String, StatsAccumulator> byApartment = byApartment();
+        List<ApartmentSummary> summaries = new ArrayList<>(byApartment.size());
+        byApartment.forEach((apartment, accumulator) -> summaries.add(new ApartmentSummary(
+                apartment,
+                accumulator.revenue(),
+                accumulator.bookedDays(),
+                accumulator.guests(),
+                accumulator.reservations())));
+        summaries.sort(Comparator.comparing(ApartmentSummary::getApartment));
+        return summaries;
+    }
+
+    // One entry per apartment, keyed rows and rows grouped by name combined
+    private Map<String, StatsAccumulator> byApartment() {
+        Map<String, StatsAccumulator> byApartment = new HashMap<>(byName);
+        for (int key = 0; key < byKey.length; key++) {
+            StatsAccumulator accumulator = byKey[key];
+            if (accumulator != null) {
+                byApartment.merge(keyNames[key], accumulator, (named, keyed) -> {
+                    StatsAccumulator combined = new StatsAccumulator();
+                    combined.merge(named);
+                    combined.merge(keyed);
+                    return combined;
+                });
+            }
+        }
+        return byApartment;
+    }
+
+    private static final class RangeTask extends RecursiveTask<StatsAggregator> {
+
+        private final List<ReservationReporting> reservations;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        RangeTask(List<ReservationReporting> reservations, int from, int to, int leafSize) {
+            this.reservations = reservations;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected StatsAggregator compute() {
+            if (to - from <= leafSize) {
+                StatsAggregator aggregator = new StatsAggregator();
+                for (int i = from; i < to; i++) {
+                    aggregator.add(reservations.get(i));
+                }
+                return aggregator;
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask left = new RangeTask(reservations, from, middle, leafSize);
+            left.fork();
+            StatsAggregator right = new RangeTask(reservations, middle, to, leafSize).compute();
+            return left.join().merge(right);
+        }
+    }
+}
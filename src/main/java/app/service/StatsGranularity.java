@@ -0,0 +1,30 @@
+package app.service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+
+public enum StatsGranularity {
+
+    DAY {
+        @Override
+        public LocalDate bucketStart(LocalDate night) {
+            return night;
+        }
+    },
+    // ISO weeks, starting on Monday
+    WEEK {
+        @Override
+        public LocalDate bucketStart(LocalDate night) {
+            return night.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+    },
+    MONTH {
+        @Override
+        public LocalDate bucketStart(LocalDate night) {
+            return night.withDayOfMonth(1);
+        }
+    };
+
+    public abstract LocalDate bucketStart(LocalDate night);
+}
@@ -0,0 +1,331 @@
+package app.service;
+
+import app.archive.ReservationArchive;
+import app.model.ApartmentGuestSketchId;
+import app.model.ApartmentNightId;
+import app.model.ApartmentStats;
+import app.model.ApartmentSummary;
+import app.model.ProjectionCheckpoint;
+import app.model.ReservationReporting;
+import app.repository.ApartmentDailyStatsRepository;
+import app.repository.ApartmentGuestSketchRepository;
+import app.repository.ApartmentStatsRepository;
+import app.repository.ProjectionCheckpointRepository;
+import app.repository.ReservationRepository;
+import app.web.dto.ApartmentStatsDrift;
+import app.web.dto.StatsReconciliationReport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Recomputes the materialized {@link ApartmentStats} from the reservation table and the archive, and
+ * repairs any drift. The daily stats of every apartment are checked against its totals, and rebuilt
+ * where they do not add up, or all of them once for reservations stored before they existed. Also
+ * fills the guest sketches once for reservations stored before they existed, after the stats
+ * transaction has committed.
+ */
+@Service
+@Slf4j
+public class StatsReconciliationService {
+
+    // Projection checkpoint recording that the guest sketches were backfilled; its position is unused
+    public static final String GUEST_SKETCH_BACKFILL = "guest-sketch-backfill";
+
+    // Projection checkpoint recording that the daily stats were backfilled; its position is unused
+    public static final String DAILY_STATS_BACKFILL = "daily-stats-backfill";
+
+    // Distinct registers held in memory before they are written
+    private static final int SKETCH_FLUSH_SIZE = 10_000;
+
+    // Apartment nights held in memory before they are written
+    private static final int NIGHT_FLUSH_SIZE = 10_000;
+
+    private final ReservationRepository reservationRepository;
+    private final ApartmentStatsRepository apartmentStatsRepository;
+    private final ApartmentDailyStatsRepository apartmentDailyStatsRepository;
+    private final ApartmentGuestSketchRepository apartmentGuestSketchRepository;
+    private final ReservationProjectionService reservationProjectionService;
+    private final ReportingCache reportingCache;
+    private final ReservationArchive reservationArchive;
+    private final ProjectionCheckpointRepository projectionCheckpointRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public StatsReconciliationService(ReservationRepository reservationRepository,
+                                      ApartmentStatsRepository apartmentStatsRepository,
+                                      ApartmentDailyStatsRepository apartmentDailyStatsRepository,
+                                      ApartmentGuestSketchRepository apartmentGuestSketchRepository,
+                                      ReservationProjectionService reservationProjectionService,
+                                      ReportingCache reportingCache,
+                                      ReservationArchive reservationArchive,
+                                      ProjectionCheckpointRepository projectionCheckpointRepository,
+                                      PlatformTransactionManager transactionManager) {
+        this.reservationRepository = reservationRepository;
+        this.apartmentStatsRepository = apartmentStatsRepository;
+        this.apartmentDailyStatsRepository = apartmentDailyStatsRepository;
+        this.apartmentGuestSketchRepository = apartmentGuestSketchRepository;
+        this.reservationProjectionService = reservationProjectionService;
+        this.reportingCache = reportingCache;
+        this.reservationArchive = reservationArchive;
+        this.projectionCheckpointRepository = projectionCheckpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${reporting.stats.reconcile-cron:-}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    public StatsReconciliationReport reconcile() {
+        StatsReconciliationReport report = transactionTemplate.execute(status -> reconcileStats());
+        // Not under the stats locks: the backfill reads every reservation, and writers would wait for it
+        transactionTemplate.executeWithoutResult(status -> backfillGuestSketches());
+        return report;
+    }
+
+    // The stats rows are locked before the reservation table is aggregated, so writers that are
+    // mid-transaction wait for the rebuild and apply their increment on top of it afterwards.
+    private StatsReconciliationReport reconcileStats() {
+
+        Map<String, ApartmentStats> actual = apartmentStatsRepository.findAllForUpdate()
+                .stream()
+                .collect(Collectors.toMap(ApartmentStats::getApartment, Function.identity()));
+
+        // Archived reservations count towards the stats as well
+        StatsAggregator totals = new StatsAggregator();
+        Map<String, Long> guestNights = new HashMap<>();
+        reservationArchive.forEachCheckingIn(null, null, null, (apartment, user, price, bookedDays, guests) -> {
+            totals.accumulator(apartment).add(price, bookedDays, guests);
+            guestNights.merge(apartment, guests * bookedDays, Long::sum);
+        });
+        for (Object[] row : reservationRepository.sumGuestNightsByApartment()) {
+            guestNights.merge((String) row[0], ((Number) row[1]).longValue(), Long::sum);
+        }
+        reservationRepository.summarizeByApartment().forEach(summary -> totals.accumulator(summary.getApartment())
+                .addTotals(summary.getTotalRevenue(), summary.getTotalBookedDays(), summary.getTotalGuestsVisited(),
+                        summary.getReservationCount()));
+        Map<String, ApartmentSummary> expected = totals.summaries()
+                .stream()
+                .collect(Collectors.toMap(ApartmentSummary::getApartment, Function.identity()));
+
+        TreeSet<String> apartments = new TreeSet<>(actual.keySet());
+        apartments.addAll(expected.keySet());
+
+        LocalDateTime now = LocalDateTime.now();
+        List<ApartmentStatsDrift> drifts = new ArrayList<>();
+
+        for (String apartment : apartments) {
+            ApartmentSummary summary = expected.get(apartment);
+            ApartmentStats stats = actual.get(apartment);
+
+            ApartmentStatsDrift drift = ApartmentStatsDrift.builder()
+                    .apartment(apartment)
+                    .expectedRevenue(summary == null ? BigDecimal.ZERO : summary.getTotalRevenue())
+                    .actualRevenue(stats == null ? BigDecimal.ZERO : stats.getTotalRevenue())
+                    .expectedBookedDays(summary == null ? 0 : summary.getTotalBookedDays())
+                    .actualBookedDays(stats == null ? 0 : stats.getTotalBookedDays())
+                    .expectedGuestsVisited(summary == null ? 0 : summary.getTotalGuestsVisited())
+                    .actualGuestsVisited(stats == null ? 0 : stats.getTotalGuestsVisited())
+                    .expectedReservations(summary == null ? 0 : summary.getReservationCount())
+                    .actualReservations(stats == null ? 0 : stats.getReservationCount())
+                    .build();
+
+            if (stats != null && summary != null && !isDrifted(drift)) {
+                continue;
+            }
+
+            drifts.add(drift);
+
+            if (summary == null) {
+                apartmentStatsRepository.delete(stats);
+                continue;
+            }
+
+            apartmentStatsRepository.save(ApartmentStats.builder()
+                    .apartment(apartment)
+                    .totalRevenue(summary.getTotalRevenue())
+                    .totalBookedDays(summary.getTotalBookedDays())
+                    .totalGuestsVisited(summary.getTotalGuestsVisited())
+                    .reservationCount(summary.getReservationCount())
+                    .updatedOn(now)
+                    .build());
+        }
+
+        if (drifts.isEmpty()) {
+            log.info("Apartment stats reconciled: {} apartments, no drift", apartments.size());
+        } else {
+            reportingCache.clearStats();
+            log.warn("Apartment stats reconciled: {} of {} apartments drifted and were rebuilt: {}",
+                    drifts.size(), apartments.size(), drifts);
+        }
+
+        return StatsReconciliationReport.builder()
+                .apartmentsChecked(apartments.size())
+                .drifts(drifts)
+                .dailyStatsRebuilt(reconcileDailyStats(expected, guestNights))
+                .build();
+    }
+
+    // Under the stats locks like the totals: a rebuilt apartment's rows are replaced, and its
+    // writers must add their nights afterwards. Returns the apartments rebuilt.
+    private List<String> reconcileDailyStats(Map<String, ApartmentSummary> expected, Map<String, Long> guestNights) {
+
+        Map<String, ApartmentSummary> actual = apartmentDailyStatsRepository.summarizeByApartment()
+                .stream()
+                .collect(Collectors.toMap(ApartmentSummary::getApartment, Function.identity()));
+        boolean backfilled = projectionCheckpointRepository.existsById(DAILY_STATS_BACKFILL);
+
+        TreeSet<String> apartments = new TreeSet<>(actual.keySet());
+        apartments.addAll(expected.keySet());
+        TreeSet<String> drifted = new TreeSet<>();
+        for (String apartment : apartments) {
+            ApartmentSummary summary = expected.get(apartment);
+            ApartmentSummary nights = actual.get(apartment);
+            if (!backfilled || summary == null || nights == null
+                    || summary.getTotalRevenue().compareTo(nights.getTotalRevenue()) != 0
+                    || !summary.getTotalBookedDays().equals(nights.getTotalBookedDays())
+                    || guestNights.getOrDefault(apartment, 0L).longValue() != nights.getTotalGuestsVisited()) {
+                drifted.add(apartment);
+            }
+        }
+
+        if (!drifted.isEmpty()) {
+            rebuildDailyStats(drifted, !backfilled);
+        }
+        if (!backfilled) {
+            projectionCheckpointRepository.save(ProjectionCheckpoint.builder()
+                    .name(DAILY_STATS_BACKFILL)
+                    .position(0)
+                    .updatedOn(LocalDateTime.now())
+                    .build());
+            log.info("Daily stats backfilled for {} apartments", drifted.size());
+        } else if (!drifted.isEmpty()) {
+            log.warn("Daily stats of {} apartments did not add up to their totals and were rebuilt: {}",
+                    drifted.size(), drifted);
+        }
+        return List.copyOf(drifted);
+    }
+
+    // The apartments' rows are dropped and their stored and archived reservations split into nights again
+    private void rebuildDailyStats(Set<String> apartments, boolean all) {
+        if (all) {
+            apartmentDailyStatsRepository.deleteAllInBatch();
+        } else {
+            apartmentDailyStatsRepository.deleteForApartments(apartments);
+        }
+        Map<ApartmentNightId, ReservationProjectionService.NightDelta> nights = ReservationProjectionService.newNightDeltas();
+        try (Stream<Object[]> rows = reservationRepository.streamColumns()) {
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                if (apartments.contains((String) row[5])) {
+                    ReservationProjectionService.splitIntoNights(ReservationReporting.builder()
+                            .checkInDate((LocalDate) row[1])
+                            .guests(((Number) row[2]).intValue())
+                            .reservationLength(((Number) row[3]).longValue())
+                            .totalPrice((BigDecimal) row[4])
+                            .apartment((String) row[5])
+                            .build(), nights);
+                    flushNightsWhenFull(nights);
+                }
+            }
+        }
+        try (Stream<ReservationReporting> archived = reservationArchive.stream()) {
+            Iterator<ReservationReporting> iterator = archived.iterator();
+            while (iterator.hasNext()) {
+                ReservationReporting reservation = iterator.next();
+                if (apartments.contains(reservation.getApartment())) {
+                    ReservationProjectionService.splitIntoNights(reservation, nights);
+                    flushNightsWhenFull(nights);
+                }
+            }
+        }
+        reservationProjectionService.incrementDailyStats(nights);
+        reportingCache.clearStats();
+    }
+
+    // The sketches are only maintained for reservations saved since they were introduced: until the
+    // backfill is recorded as done, or whenever the sketches are empty, every stored and archived
+    // guest is added. Registers are merged by maximum, so a guest added twice, by a save or by
+    // another instance backfilling at the same time, changes nothing.
+    private void backfillGuestSketches() {
+        if (projectionCheckpointRepository.existsById(GUEST_SKETCH_BACKFILL) && apartmentGuestSketchRepository.count() > 0) {
+            return;
+        }
+        long stored = reservationRepository.count();
+        long archivedCount = reservationArchive.size();
+        if (stored + archivedCount == 0) {
+            recordGuestSketchBackfill();
+            return;
+        }
+        Map<ApartmentGuestSketchId, Integer> registers = ReservationProjectionService.newSketchRegisters();
+        try (Stream<Object[]> rows = reservationRepository.streamColumns()) {
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                ReservationProjectionService.addGuest((String) row[5], (LocalDate) row[1], (String) row[6], registers);
+                flushWhenFull(registers);
+            }
+        }
+        try (Stream<ReservationReporting> archived = reservationArchive.stream()) {
+            Iterator<ReservationReporting> iterator = archived.iterator();
+            while (iterator.hasNext()) {
+                ReservationReporting reservation = iterator.next();
+                ReservationProjectionService.addGuest(reservation.getApartment(), reservation.getCheckInDate(),
+                        reservation.getUser(), registers);
+                flushWhenFull(registers);
+            }
+        }
+        reservationProjectionService.raiseGuestSketches(registers);
+        recordGuestSketchBackfill();
+        log.info("Guest sketches backfilled from {} stored and {} archived reservations", stored, archivedCount);
+    }
+
+    private void recordGuestSketchBackfill() {
+        projectionCheckpointRepository.save(ProjectionCheckpoint.builder()
+                .name(GUEST_SKETCH_BACKFILL)
+                .position(0)
+                .updatedOn(LocalDateTime.now())
+                .build());
+    }
+
+    private void flushWhenFull(Map<ApartmentGuestSketchId, Integer> registers) {
+        if (registers.size() >= SKETCH_FLUSH_SIZE) {
+            reservationProjectionService.raiseGuestSketches(registers);
+            registers.clear();
+        }
+    }
+
+    // Every reservation is split once after the rows were dropped, so partial sums add up
+    private void flushNightsWhenFull(Map<ApartmentNightId, ReservationProjectionService.NightDelta> nights) {
+        if (nights.size() >= NIGHT_FLUSH_SIZE) {
+            reservationProjectionService.incrementDailyStats(nights);
+            nights.clear();
+        }
+    }
+
+    private static boolean isDrifted(ApartmentStatsDrift drift) {
+        return drift.getExpectedRevenue().compareTo(drift.getActualRevenue()) != 0
+                || drift.getExpectedBookedDays() != drift.getActualBookedDays()
+                || drift.getExpectedGuestsVisited() != drift.getActualGuestsVisited()
+                || drift.getExpectedReservations() != drift.getActualReservations();
+    }
+}
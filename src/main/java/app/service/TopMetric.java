@@ -0,0 +1,23 @@
+package app.service;
+
+import app.model.GroupSummary;
+
+import java.util.Comparator;
+
+// What a top-N query ranks groups by, highest first; equal totals are ordered by key
+public enum TopMetric {
+
+    REVENUE(Comparator.comparing(GroupSummary::getTotalRevenue)),
+    NIGHTS(Comparator.comparing(GroupSummary::getTotalBookedDays));
+
+    private final Comparator<GroupSummary> ranking;
+
+    TopMetric(Comparator<GroupSummary> byMetric) {
+        this.ranking = byMetric.reversed().thenComparing(GroupSummary::getKey);
+    }
+
+    // Best group first
+    public Comparator<GroupSummary> ranking() {
+        return ranking;
+    }
+}
@@ -0,0 +1,39 @@
+package app.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Partial selection of the first {@code n} elements of a collection in a given order, without
+ * sorting all of it: a heap of at most {@code n} candidates whose head is the worst one kept, so
+ * each further element costs one comparison, or O(log n) when it displaces the head.
+ */
+final class TopN {
+
+    private TopN() {
+    }
+
+    // The n first elements in order, best first; all of them, sorted, when there are fewer
+    static <T> List<T> select(Collection<T> elements, int n, Comparator<? super T> order) {
+        if (n < 1) {
+            return List.of();
+        }
+        Comparator<? super T> worstFirst = order.reversed();
+        PriorityQueue<T> kept = new PriorityQueue<>(Math.min(n, Math.max(1, elements.size())), worstFirst);
+        for (T element : elements) {
+            if (kept.size() < n) {
+                kept.add(element);
+            } else if (order.compare(element, kept.peek()) < 0) {
+                kept.poll();
+                kept.add(element);
+            }
+        }
+
+        List<T> selected = new ArrayList<>(kept);
+        selected.sort(order);
+        return selected;
+    }
+}
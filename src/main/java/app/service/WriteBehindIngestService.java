@@ -0,0 +1,283 @@
+package app.service;
+
+import app.IngestQueueFullException;
+import app.InvalidReservationException;
+import app.web.dto.BatchItemResult;
+import app.web.dto.BatchItemStatus;
+import app.web.dto.ReservationDetails;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional write-behind mode for {@code POST /reservations}: a reservation is validated, appended
+ * to the local {@link IngestJournal} and queued, and the request returns before anything touches
+ * the database. A single writer thread drains the queue in batches through
+ * {@link ReservationIngestService}, so bursts become a few chunked transactions instead of one
+ * commit per request. When the queue is full the request is rejected with 429.
+ * <p>
+ * Entries are acknowledged in the journal only after their batch commits; whatever was queued
+ * when the process died is replayed on the next start.
+ */
+@Service
+@Slf4j
+public class WriteBehindIngestService implements SmartLifecycle {
+
+    private final ReservationIngestService reservationIngestService;
+    private final ObjectWriter reservationWriter;
+    private final ObjectReader reservationReader;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final Path journalDirectory;
+    private final boolean fsync;
+    private final int maxAttempts;
+
+    // Unbounded so a replayed journal always fits; capacity is enforced on enqueue
+    private final BlockingQueue<QueuedReservation> queue = new LinkedBlockingQueue<>();
+    private final ReentrantLock enqueueLock = new ReentrantLock();
+
+    private IngestJournal journal;
+    private Thread writer;
+    private volatile boolean running;
+    private volatile QueuedReservation writing;
+    private Counter rejected;
+    private Counter written;
+
+    private record QueuedReservation(long journalOffset, ReservationDetails details, long enqueuedAtNanos) {
+    }
+
+    @Autowired
+    public WriteBehindIngestService(ReservationIngestService reservationIngestService,
+                                    ObjectMapper objectMapper,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${reporting.ingest.write-behind.enabled:false}") boolean enabled,
+                                    @Value("${reporting.ingest.write-behind.capacity:10000}") int capacity,
+                                    @Value("${reporting.ingest.write-behind.batch-size:500}") int batchSize,
+                                    @Value("${reporting.ingest.write-behind.journal-dir:./data/ingest-journal}") Path journalDirectory,
+                                    @Value("${reporting.ingest.write-behind.fsync:true}") boolean fsync,
+                                    @Value("${reporting.ingest.write-behind.max-attempts:10}") int maxAttempts) {
+        this.reservationIngestService = reservationIngestService;
+        this.reservationWriter = objectMapper.writerFor(ReservationDetails.class);
+        this.reservationReader = objectMapper.readerFor(ReservationDetails.class);
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.journalDirectory = journalDirectory;
+        this.fsync = fsync;
+        this.maxAttempts = maxAttempts;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void enqueue(ReservationDetails reservationDetails) {
+
+        if (!running) {
+            throw new IngestQueueFullException("Write-behind queue is not accepting reservations");
+        }
+        String violation = reservationIngestService.validate(reservationDetails);
+        if (violation != null) {
+            throw new InvalidReservationException(violation);
+        }
+
+        byte[] entry;
+        try {
+            entry = reservationWriter.writeValueAsBytes(reservationDetails);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Only enqueuers add, so checking the size under this lock cannot overshoot the capacity
+        enqueueLock.lock();
+        try {
+            if (queue.size() >= capacity) {
+                rejected.increment();
+                throw new IngestQueueFullException("Write-behind queue is full (" + capacity + " reservations)");
+            }
+            long offset = journal.append(entry);
+            queue.add(new QueuedReservation(offset, reservationDetails, System.nanoTime()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not journal reservation " + reservationDetails.getReservationId(), e);
+        } finally {
+            enqueueLock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    // Age of the oldest reservation that is accepted but not yet committed
+    public long getLagNanos() {
+        QueuedReservation oldest = writing != null ? writing : queue.peek();
+        return oldest == null ? 0 : System.nanoTime() - oldest.enqueuedAtNanos();
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            journal = new IngestJournal(journalDirectory, fsync);
+            List<IngestJournal.Entry> replay = journal.unacknowledged();
+            long now = System.nanoTime();
+            for (IngestJournal.Entry entry : replay) {
+                queue.add(new QueuedReservation(entry.endOffset(), reservationReader.readValue(entry.line()), now));
+            }
+            if (!replay.isEmpty()) {
+                log.info("Replaying {} journaled reservations from {}", replay.size(), journalDirectory);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the ingest journal in " + journalDirectory, e);
+        }
+
+        Gauge.builder("reporting.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Reservations accepted but not yet written")
+                .register(meterRegistry);
+        Gauge.builder("reporting.ingest.queue.remaining.capacity", queue, q -> Math.max(0, capacity - q.size()))
+                .register(meterRegistry);
+        TimeGauge.builder("reporting.ingest.queue.lag", this, TimeUnit.NANOSECONDS, WriteBehindIngestService::getLagNanos)
+                .description("Age of the oldest uncommitted reservation")
+                .register(meterRegistry);
+        rejected = Counter.builder("reporting.ingest.queue.rejected")
+                .description("Reservations refused with 429 because the queue was full")
+                .register(meterRegistry);
+        written = Counter.builder("reporting.ingest.queue.written")
+                .register(meterRegistry);
+
+        running = true;
+        writer = Thread.ofPlatform().name("write-behind-ingest").start(this::drain);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+            journal.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Could not close the ingest journal: {}", e.getMessage());
+        }
+        log.info("Write-behind ingest stopped, {} reservations left in the journal for the next start", queue.size());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Stop after the web server stops taking requests, and start before it does
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void drain() {
+        List<QueuedReservation> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                QueuedReservation first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                writing = first;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                if (!write(batch)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+                writing = null;
+            }
+        }
+    }
+
+    /**
+     * Writes the batch and acknowledges it. Items that fail are retried with backoff, since a failed
+     * item usually means the database is unavailable; after max-attempts they are moved to the
+     * dead-letter file rather than blocking the queue. Returns false when shutdown interrupts the
+     * batch, which then stays in the journal.
+     */
+    private boolean write(List<QueuedReservation> batch) throws InterruptedException {
+        List<QueuedReservation> pending = batch;
+        long backoffMillis = 100;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<BatchItemResult> results = reservationIngestService.ingest(pending.stream()
+                        .map(QueuedReservation::details)
+                        .toList());
+                List<QueuedReservation> failed = new ArrayList<>();
+                for (BatchItemResult result : results) {
+                    if (result.getStatus() == BatchItemStatus.FAILED) {
+                        failed.add(pending.get(result.getIndex()));
+                    }
+                }
+                written.increment(pending.size() - failed.size());
+                if (failed.isEmpty()) {
+                    break;
+                }
+                if (attempt >= maxAttempts) {
+                    for (QueuedReservation reservation : failed) {
+                        log.error("Giving up on reservation [{}] after {} attempts, moved to {}",
+                                reservation.details().getReservationId(), attempt, IngestJournal.DEAD_LETTER_FILE);
+                        journal.deadLetter(reservationWriter.writeValueAsBytes(reservation.details()));
+                    }
+                    break;
+                }
+                log.warn("{} of {} queued reservations failed, retrying in {} ms: {}", failed.size(), pending.size(),
+                        backoffMillis, results.stream().filter(r -> r.getStatus() == BatchItemStatus.FAILED)
+                                .findFirst().map(BatchItemResult::getError).orElse(""));
+                pending = failed;
+            } catch (RuntimeException | IOException e) {
+                log.warn("Write-behind batch of {} failed, retrying in {} ms: {}", pending.size(), backoffMillis, e.getMessage());
+            }
+            if (!running) {
+                log.warn("Write-behind batch of {} not written before shutdown", pending.size());
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(backoffMillis);
+            backoffMillis = Math.min(backoffMillis * 2, 5_000);
+        }
+
+        try {
+            journal.acknowledge(batch.get(batch.size() - 1).journalOffset());
+        } catch (IOException e) {
+            // Not fatal: the committed batch is replayed, and skipped as duplicates, after a restart
+            log.warn("Could not acknowledge write-behind batch: {}", e.getMessage());
+        }
+        return true;
+    }
+}
@@ -1,16 +1,47 @@
 package app.web;
 
+import app.InvalidReservationException;
+import app.model.DataVersion;
 import app.model.ReservationReporting;
+import app.service.AnalyticsDimension;
+import app.service.ExportFormat;
 import app.service.ReportingService;
+import app.service.ReservationArchiver;
+import app.service.ReservationEventProjector;
+import app.service.ReservationExportService;
+import app.service.ReservationIngestService;
+import app.service.StatsGranularity;
+import app.service.StatsReconciliationService;
+import app.service.TopMetric;
+import app.service.WriteBehindIngestService;
+import app.web.dto.AnalyticsResponse;
+import app.web.dto.ArchiveReport;
+import app.web.dto.BatchItemResult;
+import app.web.dto.EventLogReplayReport;
 import app.web.dto.ReservationDetails;
+import app.web.dto.ReservationHistoryPage;
 import app.web.dto.ReservationResponse;
 import app.web.dto.ReservationStatsResponse;
+import app.web.dto.StatsReconciliationReport;
+import app.web.dto.StatsTimeseriesPoint;
+import app.web.dto.UniqueGuestsResponse;
+import app.web.dto.UserReservationSummary;
 import app.web.mapper.DtoMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
 import java.util.UUID;
 
@@ -18,16 +49,49 @@ import java.util.UUID;
 @RequestMapping("/api/v1/admin/reporting")
 public class ReportingController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     private final ReportingService reportingService;
+    private final StatsReconciliationService statsReconciliationService;
+    private final ReservationExportService reservationExportService;
+    private final ReservationIngestService reservationIngestService;
+    private final WriteBehindIngestService writeBehindIngestService;
+    private final ReservationEventProjector reservationEventProjector;
+    private final ReservationArchiver reservationArchiver;
 
     @Autowired
-    public ReportingController(ReportingService reportingService) {
+    public ReportingController(ReportingService reportingService,
+                               StatsReconciliationService statsReconciliationService,
+                               ReservationExportService reservationExportService,
+                               ReservationIngestService reservationIngestService,
+                               WriteBehindIngestService writeBehindIngestService,
+                               ReservationEventProjector reservationEventProjector,
+                               ReservationArchiver reservationArchiver) {
         this.reportingService = reportingService;
+        this.statsReconciliationService = statsReconciliationService;
+        this.reservationExportService = reservationExportService;
+        this.reservationIngestService = reservationIngestService;
+        this.writeBehindIngestService = writeBehindIngestService;
+        this.reservationEventProjector = reservationEventProjector;
+        this.reservationArchiver = reservationArchiver;
     }
 
     @PostMapping("/reservations")
     ResponseEntity<ReservationResponse> saveReservationDetails(@RequestBody ReservationDetails reservationDetails) {
 
+        // Write-behind mode: journaled and queued, written to the database by a background batch
+        if (writeBehindIngestService.isEnabled()) {
+            writeBehindIngestService.enqueue(reservationDetails);
+            return ResponseEntity
+                    .status(HttpStatus.ACCEPTED)
+                    .body(DtoMapper.fromReservation(DtoMapper.fromReservationDetails(reservationDetails)));
+        }
+
+        String violation = reservationIngestService.validate(reservationDetails);
+        if (violation != null) {
+            throw new InvalidReservationException(violation);
+        }
         ReservationReporting reservation = reportingService.saveReservation(reservationDetails);
 
         ReservationResponse reservationResponse = DtoMapper.fromReservation(reservation);
@@ -37,33 +101,245 @@ public class ReportingController {
                 .body(reservationResponse);
     }
 
+    @PostMapping(value = "/reservations/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BatchItemResult>> saveReservationBatch(@RequestBody List<ReservationDetails> reservations) {
+
+        List<BatchItemResult> results = reservationIngestService.ingest(reservations);
+
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(results);
+    }
+
+    @PostMapping(value = "/reservations/batch", consumes = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<BatchItemResult>> saveReservationStream(HttpServletRequest request) throws IOException {
+
+        List<BatchItemResult> results = reservationIngestService.ingestNdjson(request.getInputStream());
+
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(results);
+    }
+
     @GetMapping
-    public ResponseEntity<List<ReservationResponse>> getReservationHistory() {
+    public ResponseEntity<List<ReservationResponse>> getReservationHistory(
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            WebRequest webRequest) {
 
-        List<ReservationResponse> reservationHistory = reportingService.getReservationHistory()
+        if (isNotModified(webRequest)) {
+            return null;
+        }
+
+        ReservationHistoryPage page = reportingService.getReservationHistoryPage(limit, cursor);
+
+        List<ReservationResponse> reservationHistory = page.getReservations()
                 .stream()
                 .map(DtoMapper::fromReservation)
                 .toList();
 
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK).cacheControl(CacheControl.noCache());
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+
+        return response.body(reservationHistory);
+    }
+
+    @GetMapping("/users/{user}/reservations")
+    public ResponseEntity<List<ReservationResponse>> getUserReservationHistory(
+            @PathVariable("user") String user,
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            WebRequest webRequest) {
+
+        if (isNotModified(webRequest)) {
+            return null;
+        }
+
+        ReservationHistoryPage page = reportingService.getUserReservationHistoryPage(user, limit, cursor);
+
+        List<ReservationResponse> reservationHistory = page.getReservations()
+                .stream()
+                .map(DtoMapper::fromReservation)
+                .toList();
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.OK).cacheControl(CacheControl.noCache());
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+
+        return response.body(reservationHistory);
+    }
+
+    @GetMapping("/users/{user}/summary")
+    public ResponseEntity<UserReservationSummary> getUserSummary(@PathVariable("user") String user,
+                                                                 WebRequest webRequest) {
+
+        if (isNotModified(webRequest)) {
+            return null;
+        }
+
+        UserReservationSummary summary = reportingService.getUserSummary(user);
+
         return ResponseEntity
                 .status(HttpStatus.OK)
-                .body(reservationHistory);
+                .cacheControl(CacheControl.noCache())
+                .body(summary);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportReservationHistory(
+            @RequestParam(value = "format", defaultValue = "ndjson") String format) {
+
+        ExportFormat exportFormat = ExportFormat.fromParameter(format);
+
+        StreamingResponseBody body = outputStream -> reservationExportService.export(exportFormat, outputStream);
+
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .contentType(exportFormat.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"reservations." + exportFormat.getFileExtension() + "\"")
+                .body(body);
     }
 
     @GetMapping("/stats")
-    public ResponseEntity<List<ReservationStatsResponse>> getSummaryStatsPerApartment() {
+    public ResponseEntity<List<ReservationStatsResponse>> getSummaryStatsPerApartment(
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "apartment", required = false) String apartment,
+            @RequestParam(value = "recompute", defaultValue = "false") boolean recompute,
+            WebRequest webRequest) {
+
+        // A recompute is asked for to verify the stored stats, so it always runs
+        if (recompute) {
+            return ResponseEntity
+                    .status(HttpStatus.OK)
+                    .body(reportingService.recomputeStats(from, to, apartment));
+        }
+        if (isNotModified(webRequest)) {
+            return null;
+        }
 
-        List<ReservationStatsResponse> stats = reportingService.getStats();
+        List<ReservationStatsResponse> stats = reportingService.getStats(from, to, apartment);
 
         return ResponseEntity
                 .status(HttpStatus.OK)
+                .cacheControl(CacheControl.noCache())
                 .body(stats);
     }
 
+    @GetMapping("/stats/timeseries")
+    public ResponseEntity<List<StatsTimeseriesPoint>> getStatsTimeseries(
+            @RequestParam(value = "granularity", defaultValue = "DAY") StatsGranularity granularity,
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "apartment", required = false) String apartment,
+            WebRequest webRequest) {
+
+        if (isNotModified(webRequest)) {
+            return null;
+        }
+
+        List<StatsTimeseriesPoint> series = reportingService.getStatsTimeseries(granularity, from, to, apartment);
+
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .cacheControl(CacheControl.noCache())
+                .body(series);
+    }
+
+    @GetMapping("/analytics")
+    public ResponseEntity<AnalyticsResponse> getAnalytics(
+            @RequestParam(value = "groupBy", defaultValue = "APARTMENT") AnalyticsDimension groupBy,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "apartment", required = false) String apartment) {
+
+        AnalyticsResponse analytics = reportingService.queryAnalytics(groupBy, from, to, apartment);
+
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(analytics);
+    }
+
+    // The best apartments or users by revenue or nights, best first, instead of every group
+    @GetMapping("/stats/top")
+    public ResponseEntity<AnalyticsResponse> getTopStats(
+            @RequestParam(value = "groupBy", defaultValue = "APARTMENT") AnalyticsDimension groupBy,
+            @RequestParam(value = "metric", defaultValue = "REVENUE") TopMetric metric,
+            @RequestParam(value = "limit", defaultValue = "10") int limit,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+
+        AnalyticsResponse top = reportingService.queryTop(groupBy, metric, limit, from, to);
+
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(top);
+    }
+
+    // Approximate distinct guests per apartment for check-in months [from, to), e.g. from=2025-01&to=2025-04
+    @GetMapping("/stats/unique-guests")
+    public ResponseEntity<UniqueGuestsResponse> getUniqueGuests(
+            @RequestParam(value = "from", required = false) YearMonth from,
+            @RequestParam(value = "to", required = false) YearMonth to,
+            @RequestParam(value = "apartment", required = false) String apartment) {
+
+        UniqueGuestsResponse uniqueGuests = reportingService.getUniqueGuests(from, to, apartment);
+
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(uniqueGuests);
+    }
+
+    @PostMapping("/stats/reconcile")
+    public ResponseEntity<StatsReconciliationReport> reconcileStats() {
+
+        StatsReconciliationReport report = statsReconciliationService.reconcile();
+
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(report);
+    }
+
+    // Recovery: empties the reservation and stats tables and replays the event log into them
+    @PostMapping("/eventlog/rebuild")
+    public ResponseEntity<EventLogReplayReport> rebuildFromEventLog() {
+
+        EventLogReplayReport report = reservationEventProjector.rebuild();
+
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(report);
+    }
+
+    // Runs the scheduled archival now: reservations past the horizon move from the table to segment files
+    @PostMapping("/archive")
+    public ResponseEntity<ArchiveReport> archiveReservations() {
+
+        ArchiveReport report = reservationArchiver.archive();
+
+        return ResponseEntity
+                .status(HttpStatus.OK)
+                .body(report);
+    }
+
     @GetMapping("/query")
     public ResponseEntity<ReservationResponse> getReservationDetails(@RequestParam("reservationId") String reservationId) {
         UUID uuid = UUID.fromString(reservationId);  // Convert to UUID
         ReservationResponse reservationResponse = reportingService.getReservationDetails(uuid);
         return ResponseEntity.status(HttpStatus.OK).body(reservationResponse);
     }
+
+    /**
+     * Conditional GET: compares If-None-Match / If-Modified-Since with the current
+     * {@link DataVersion} and, on a match, answers 304 before the query runs or anything is
+     * serialized. Otherwise the validators are added to the response.
+     */
+    private boolean isNotModified(WebRequest webRequest) {
+        DataVersion version = reportingService.getDataVersion();
+        return webRequest.checkNotModified(version.toETag(), version.toEpochMilli());
+    }
 }
@@ -0,0 +1,146 @@
+package app.web;
+
+import app.web.dto.ReservationResponse;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Writes a list of reservations as one JSON object of columns instead of an array of objects:
+ * every field name appears once, and users and apartments are sent once each, with an index per
+ * reservation into {@code userNames} / {@code apartmentNames}.
+ * <pre>
+ * {"size":2,"reservationId":[...],"checkInDate":[...],...,"user":[0,0],"userNames":["Petar123"],...}
+ * </pre>
+ * Negotiated with {@code Accept: application/vnd.reporting.columnar+json}; write only.
+ */
+public class ReservationColumnarJsonConverter extends AbstractGenericHttpMessageConverter<List<ReservationResponse>> {
+
+    public static final String APPLICATION_COLUMNAR_JSON_VALUE = "application/vnd.reporting.columnar+json";
+    public static final MediaType APPLICATION_COLUMNAR_JSON = MediaType.parseMediaType(APPLICATION_COLUMNAR_JSON_VALUE);
+
+    private final JsonFactory jsonFactory;
+
+    public ReservationColumnarJsonConverter(JsonFactory jsonFactory) {
+        super(APPLICATION_COLUMNAR_JSON);
+        this.jsonFactory = jsonFactory;
+    }
+
+    // Only for a declared List<ReservationResponse>, so no other response is offered in this layout
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        return type != null
+                && ResolvableType.forType(type).asCollection().resolveGeneric(0) == ReservationResponse.class
+                && canWrite(mediaType);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return false;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public List<ReservationResponse> read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("The columnar layout is write only", inputMessage);
+    }
+
+    @Override
+    protected List<ReservationResponse> readInternal(Class<? extends List<ReservationResponse>> clazz,
+                                                     HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("The columnar layout is write only", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(List<ReservationResponse> reservations, Type type, HttpOutputMessage outputMessage)
+            throws IOException {
+
+        try (JsonGenerator generator = jsonFactory.createGenerator(
+                StreamUtils.nonClosing(outputMessage.getBody()), JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeNumberField("size", reservations.size());
+
+            writeStrings(generator, "reservationId", reservations, ReservationResponse::getReservationId);
+            writeStrings(generator, "checkInDate", reservations, ReservationResponse::getCheckInDate);
+            writeStrings(generator, "checkOutDate", reservations, ReservationResponse::getCheckOutDate);
+
+            generator.writeArrayFieldStart("guests");
+            for (ReservationResponse reservation : reservations) {
+                generator.writeNumber(reservation.getGuests());
+            }
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("reservationLength");
+            for (ReservationResponse reservation : reservations) {
+                generator.writeNumber(reservation.getReservationLength());
+            }
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("totalPrice");
+            for (ReservationResponse reservation : reservations) {
+                generator.writeNumber(reservation.getTotalPrice());
+            }
+            generator.writeEndArray();
+
+            writeDictionary(generator, "user", "userNames", reservations, ReservationResponse::getUser);
+            writeDictionary(generator, "apartment", "apartmentNames", reservations, ReservationResponse::getApartment);
+
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeStrings(JsonGenerator generator, String field, List<ReservationResponse> reservations,
+                                     Function<ReservationResponse, Object> column) throws IOException {
+        generator.writeArrayFieldStart(field);
+        for (ReservationResponse reservation : reservations) {
+            Object value = column.apply(reservation);
+            if (value == null) {
+                generator.writeNull();
+            } else {
+                generator.writeString(value.toString());
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    // Indexes in the order the names first appear, then the names themselves
+    private static void writeDictionary(JsonGenerator generator, String field, String namesField,
+                                        List<ReservationResponse> reservations,
+                                        Function<ReservationResponse, String> column) throws IOException {
+        Map<String, Integer> indexes = new LinkedHashMap<>();
+        generator.writeArrayFieldStart(field);
+        for (ReservationResponse reservation : reservations) {
+            String name = column.apply(reservation);
+            if (name == null) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(indexes.computeIfAbsent(name, key -> indexes.size()));
+            }
+        }
+        generator.writeEndArray();
+
+        generator.writeArrayFieldStart(namesField);
+        for (String name : indexes.keySet()) {
+            generator.writeString(name);
+        }
+        generator.writeEndArray();
+    }
+}
@@ -0,0 +1,17 @@
+package app.web.dto;
+
+import app.model.GroupSummary;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class AnalyticsResponse {
+
+    // "snapshot" or "database": where the totals were computed
+    private String source;
+
+    private List<GroupSummary> groups;
+}
@@ -0,0 +1,29 @@
+package app.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+public class ApartmentStatsDrift {
+
+    private String apartment;
+
+    private BigDecimal expectedRevenue;
+
+    private BigDecimal actualRevenue;
+
+    private long expectedBookedDays;
+
+    private long actualBookedDays;
+
+    private long expectedGuestsVisited;
+
+    private long actualGuestsVisited;
+
+    private long expectedReservations;
+
+    private long actualReservations;
+}
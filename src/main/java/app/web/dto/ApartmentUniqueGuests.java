@@ -0,0 +1,13 @@
+package app.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ApartmentUniqueGuests {
+
+    private String apartment;
+
+    private long estimatedGuests;
+}
@@ -0,0 +1,20 @@
+package app.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class ArchiveReport {
+
+    // Reservations created before this were archived
+    private LocalDateTime cutoff;
+
+    private int segmentsWritten;
+
+    private long reservationsArchived;
+
+    private long durationMillis;
+}
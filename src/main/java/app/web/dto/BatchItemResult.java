@@ -0,0 +1,20 @@
+package app.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+@Data
+@Builder
+public class BatchItemResult {
+
+    // Position of the item in the submitted array or NDJSON stream
+    private int index;
+
+    private UUID reservationId;
+
+    private BatchItemStatus status;
+
+    private String error;
+}
@@ -0,0 +1,8 @@
+package app.web.dto;
+
+public enum BatchItemStatus {
+    CREATED,
+    // Already stored under the same reservationId, only updatedOn was refreshed
+    DUPLICATE,
+    FAILED
+}
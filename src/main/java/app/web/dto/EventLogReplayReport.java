@@ -0,0 +1,20 @@
+package app.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class EventLogReplayReport {
+
+    private long fromPosition;
+
+    private long toPosition;
+
+    private long eventsReplayed;
+
+    // Reservations that were in the log but not in the table
+    private long reservationsInserted;
+
+    private long durationMillis;
+}
@@ -0,0 +1,17 @@
+package app.web.dto;
+
+import app.model.ReservationReporting;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ReservationHistoryPage {
+
+    private List<ReservationReporting> reservations;
+
+    // Opaque token for the next page, null when this is the last one
+    private String nextCursor;
+}
@@ -0,0 +1,18 @@
+package app.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class StatsReconciliationReport {
+
+    private int apartmentsChecked;
+
+    private List<ApartmentStatsDrift> drifts;
+
+    // Apartments whose daily stats did not add up to their totals and were rebuilt
+    private List<String> dailyStatsRebuilt;
+}
@@ -0,0 +1,23 @@
+package app.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Builder
+public class StatsTimeseriesPoint {
+
+    private String apartment;
+
+    // First night of the day/week/month bucket
+    private LocalDate bucketStart;
+
+    private BigDecimal revenue;
+
+    private long bookedNights;
+
+    private long guestNights;
+}
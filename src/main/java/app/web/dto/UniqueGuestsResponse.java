@@ -0,0 +1,19 @@
+package app.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class UniqueGuestsResponse {
+
+    // Relative standard error of every estimate below, see HyperLogLog for the bounds
+    private double relativeStandardError;
+
+    private List<ApartmentUniqueGuests> apartments;
+
+    // Distinct guests over all the apartments above: a guest of several apartments counts once
+    private long estimatedGuests;
+}
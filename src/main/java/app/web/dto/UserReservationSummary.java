@@ -0,0 +1,19 @@
+package app.web.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+public class UserReservationSummary {
+
+    private String user;
+
+    private BigDecimal totalSpend;
+
+    private long totalNights;
+
+    private long reservationCount;
+}
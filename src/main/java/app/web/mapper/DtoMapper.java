@@ -1,8 +1,13 @@
 package app.web.mapper;
 
+import app.model.ApartmentStats;
+import app.model.ApartmentSummary;
+import app.model.GroupSummary;
 import app.model.ReservationReporting;
 import app.web.dto.ReservationDetails;
 import app.web.dto.ReservationResponse;
+import app.web.dto.ReservationStatsResponse;
+import app.web.dto.UserReservationSummary;
 import lombok.experimental.UtilityClass;
 
 import java.time.LocalDateTime;
@@ -43,4 +48,35 @@ public class DtoMapper {
                 .updatedOn(LocalDateTime.now())
                 .build();
     }
+
+    // Building Stats DTO from the per-apartment aggregate
+
+    public static ReservationStatsResponse fromApartmentSummary(ApartmentSummary apartmentSummary) {
+        return ReservationStatsResponse.builder()
+                .apartment(apartmentSummary.getApartment())
+                .totalRevenue(apartmentSummary.getTotalRevenue())
+                .totalBookedDays(String.valueOf(apartmentSummary.getTotalBookedDays()))
+                .totalGuestsVisited(String.valueOf(apartmentSummary.getTotalGuestsVisited()))
+                .build();
+    }
+
+    public static ReservationStatsResponse fromApartmentStats(ApartmentStats apartmentStats) {
+        return ReservationStatsResponse.builder()
+                .apartment(apartmentStats.getApartment())
+                .totalRevenue(apartmentStats.getTotalRevenue())
+                .totalBookedDays(String.valueOf(apartmentStats.getTotalBookedDays()))
+                .totalGuestsVisited(String.valueOf(apartmentStats.getTotalGuestsVisited()))
+                .build();
+    }
+
+    // Building the per-user DTO from its aggregate
+
+    public static UserReservationSummary fromUserSummary(GroupSummary userSummary) {
+        return UserReservationSummary.builder()
+                .user(userSummary.getKey())
+                .totalSpend(userSummary.getTotalRevenue())
+                .totalNights(userSummary.getTotalBookedDays())
+                .reservationCount(userSummary.getReservationCount())
+                .build();
+    }
 }
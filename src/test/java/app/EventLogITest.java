@@ -0,0 +1,226 @@
+package app;
+
+import app.eventlog.ReservationEventLog;
+import app.eventlog.ReservationLookupIndex;
+import app.model.ApartmentStats;
+import app.model.ProjectionCheckpoint;
+import app.model.ReservationReporting;
+import app.repository.ApartmentDailyStatsRepository;
+import app.repository.ApartmentStatsRepository;
+import app.repository.ProjectionCheckpointRepository;
+import app.repository.ReservationRepository;
+import app.service.ReportingService;
+import app.service.ReservationEventProjector;
+import app.web.dto.EventLogReplayReport;
+import app.web.dto.ReservationDetails;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// The event log end to end: writes are logged with their transaction, lookups are served from the
+// log, and the reservation and stats tables can be restored by replaying it
+@ActiveProfiles("test")
+@DirtiesContext
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:eventlogdb;MODE=MYSQL",
+        "reporting.event-log.enabled=true",
+        // Small segments, so the tests replay across several of them
+        "reporting.event-log.segment-size=16KB",
+        "reporting.event-log.checkpoint-interval=PT1H"
+})
+public class EventLogITest {
+
+    private static final Path LOG_DIRECTORY = temporaryDirectory();
+
+    @Autowired
+    private ReportingService reportingService;
+
+    @Autowired
+    private ReservationEventLog reservationEventLog;
+
+    @Autowired
+    private ReservationLookupIndex reservationLookupIndex;
+
+    @Autowired
+    private ReservationEventProjector reservationEventProjector;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ApartmentStatsRepository apartmentStatsRepository;
+
+    @Autowired
+    private ApartmentDailyStatsRepository apartmentDailyStatsRepository;
+
+    @Autowired
+    private ProjectionCheckpointRepository projectionCheckpointRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void logDirectory(DynamicPropertyRegistry registry) {
+        registry.add("reporting.event-log.directory", LOG_DIRECTORY::toString);
+    }
+
+    @Test
+    void savedReservation_shouldBeServedFromTheLookupIndex() {
+
+        // Given
+        ReservationDetails details = ReservationReportingITest.reservationDetails(
+                "Apartment L", "Ivancho", LocalDate.of(2025, 3, 28), 2, 3, new BigDecimal("150.00"));
+
+        // When
+        reportingService.saveReservation(details);
+
+        // Then
+        ReservationReporting logged = reservationLookupIndex.find(details.getReservationId()).orElseThrow();
+        assertThat(logged.getApartment()).isEqualTo("Apartment L");
+        assertThat(logged.getUser()).isEqualTo("Ivancho");
+        assertThat(logged.getTotalPrice()).isEqualByComparingTo("150.00");
+    }
+
+    @Test
+    void reservationRolledBackAfterItWasLogged_shouldNotBeReplayed() {
+
+        // Given
+        ReservationDetails details = ReservationReportingITest.reservationDetails(
+                "Apartment R", "Maria", LocalDate.of(2025, 4, 1), 1, 1, new BigDecimal("80.00"));
+        long end = reservationEventLog.end();
+
+        // When: the commit fails after the reservation was appended to the log
+        assertThatThrownBy(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            reportingService.saveReservation(details);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    throw new IllegalStateException("Commit failed");
+                }
+            });
+        })).isInstanceOf(IllegalStateException.class);
+        reservationEventProjector.rebuild();
+
+        // Then
+        assertThat(reservationEventLog.end()).isGreaterThan(end);
+        assertThat(reservationLookupIndex.find(details.getReservationId())).isEmpty();
+        assertThat(reservationRepository.findByReservationId(details.getReservationId())).isNull();
+        assertThat(apartmentStatsRepository.findById("Apartment R")).isEmpty();
+    }
+
+    @Test
+    void rebuild_shouldRestoreReservationsAndStats() {
+
+        // Given
+        for (int i = 0; i < 200; i++) {
+            reportingService.saveReservation(ReservationReportingITest.reservationDetails(
+                    "Apartment B", "user-" + i, LocalDate.of(2025, 5, 1).plusDays(i % 30), 2, 2, new BigDecimal("99.99")));
+        }
+        long reservations = reservationRepository.count();
+        ApartmentStats before = apartmentStatsRepository.findById("Apartment B").orElseThrow();
+
+        // When
+        EventLogReplayReport report = reservationEventProjector.rebuild();
+
+        // Then
+        assertThat(report.getReservationsInserted()).isEqualTo(reservations);
+        assertThat(reservationRepository.count()).isEqualTo(reservations);
+        ApartmentStats after = apartmentStatsRepository.findById("Apartment B").orElseThrow();
+        assertThat(after.getReservationCount()).isEqualTo(200);
+        assertThat(after.getTotalRevenue()).isEqualByComparingTo(before.getTotalRevenue());
+        assertThat(after.getTotalBookedDays()).isEqualTo(before.getTotalBookedDays());
+        assertThat(after.getTotalGuestsVisited()).isEqualTo(before.getTotalGuestsVisited());
+    }
+
+    @Test
+    void catchUp_shouldReplayOnlyTheTailAfterTheCheckpoint() {
+
+        // Given
+        reservationEventProjector.checkpoint();
+        long checkpoint = reservationEventLog.lowWaterMark();
+        List<ReservationDetails> tail = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ReservationDetails details = ReservationReportingITest.reservationDetails(
+                    "Apartment C", "user-" + i, LocalDate.of(2025, 6, 1), 3, 2, new BigDecimal("120.00"));
+            reportingService.saveReservation(details);
+            tail.add(details);
+        }
+        // The tail reached the log but, as after a crash before the commit, not the tables
+        tail.forEach(details -> reservationRepository.delete(reservationRepository.findByReservationId(details.getReservationId())));
+        apartmentStatsRepository.deleteById("Apartment C");
+        apartmentDailyStatsRepository.deleteAll(apartmentDailyStatsRepository.findForApartmentBetween(
+                "Apartment C", LocalDate.of(2025, 1, 1), LocalDate.of(2026, 1, 1)));
+        projectionCheckpointRepository.save(ProjectionCheckpoint.builder()
+                .name(reservationEventProjector.checkpointName())
+                .position(checkpoint)
+                .updatedOn(LocalDateTime.now())
+                .build());
+
+        // When
+        EventLogReplayReport report = reservationEventProjector.catchUp();
+
+        // Then
+        assertThat(report.getFromPosition()).isEqualTo(checkpoint);
+        assertThat(report.getEventsReplayed()).isEqualTo(50);
+        assertThat(report.getReservationsInserted()).isEqualTo(50);
+        ApartmentStats stats = apartmentStatsRepository.findById("Apartment C").orElseThrow();
+        assertThat(stats.getReservationCount()).isEqualTo(50);
+        assertThat(stats.getTotalRevenue()).isEqualByComparingTo("6000.00");
+        assertThat(projectionCheckpointRepository.findById(reservationEventProjector.checkpointName()).orElseThrow().getPosition())
+                .isEqualTo(reservationEventLog.end());
+    }
+
+    @Test
+    void rebuild_whenAnotherInstancesLogHasACheckpoint_shouldBeRefused() {
+
+        // Given
+        reportingService.saveReservation(ReservationReportingITest.reservationDetails(
+                "Apartment O", "Maria", LocalDate.of(2025, 7, 1), 2, 2, new BigDecimal("100.00")));
+        String otherLog = ReservationEventProjector.CHECKPOINT_PREFIX + "other-instance";
+        projectionCheckpointRepository.save(ProjectionCheckpoint.builder()
+                .name(otherLog)
+                .position(42)
+                .updatedOn(LocalDateTime.now())
+                .build());
+        long reservations = reservationRepository.count();
+
+        try {
+            // When / Then
+            assertThatThrownBy(() -> reservationEventProjector.rebuild())
+                    .isInstanceOf(InvalidReportingQueryException.class)
+                    .hasMessageContaining(otherLog);
+            assertThat(reservationRepository.count()).isEqualTo(reservations);
+        } finally {
+            projectionCheckpointRepository.deleteById(otherLog);
+        }
+    }
+
+    private static Path temporaryDirectory() {
+        try {
+            return Files.createTempDirectory("event-log");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package app;
+
+import app.model.ReservationReporting;
+import app.service.ReportingService;
+import org.h2.api.Trigger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures the p99 latency of {@code GET /query} while slow history calls are in flight. The history
+ * query itself is made slow: an H2 {@code BEFORE SELECT} trigger on the reservation table blocks
+ * inside the JDBC call, as a long MySQL query would, so the test shows whether the request threads
+ * stay available for fast calls and whether a virtual thread waiting on JDBC pins its carrier.
+ * {@code /query} is served from the cache once warmed up and does not select from the table.
+ * <p>
+ * Latencies are compared with the measured duration of the slow calls rather than with fixed
+ * thresholds, so a slower machine does not change the outcome.
+ */
+abstract class HistoryLoadITestSupport {
+
+    static final String BASE_PATH = "/api/v1/admin/reporting";
+    static final int TOMCAT_THREADS = 8;
+    static final long SLOW_HISTORY_MS = 1500;
+    static final int SLOW_HISTORY_CALLS = 40;
+    static final int QUERY_CALLS = 100;
+
+    static final AtomicInteger historyInFlight = new AtomicInteger();
+    static volatile boolean slowSelects;
+
+    // Query p99 under load, and the fastest of the slow history calls for comparison
+    record LoadResult(long queryP99Ms, long fastestHistoryMs) {
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ReportingService reportingService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private UUID reservationId;
+
+    @BeforeEach
+    void seed() {
+        ReservationReporting reservation = reportingService.saveReservation(ReservationReportingITest.reservationDetails(
+                "Apartment 1", "Petar123", LocalDate.of(2025, 3, 1), 2, 2, new BigDecimal("200.00")));
+        reservationId = reservation.getReservationId();
+        jdbcTemplate.execute("CREATE TRIGGER IF NOT EXISTS slow_history_select BEFORE SELECT ON reservation_reporting"
+                + " CALL \"" + SlowSelectTrigger.class.getName() + "\"");
+    }
+
+    @AfterEach
+    void stopSlowSelects() {
+        slowSelects = false;
+    }
+
+    LoadResult queryP99UnderSlowHistoryLoad(int expectedHistoryInFlight) throws Exception {
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder()
+                    .executor(clients)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+
+            // Warm up the query path (and its cache) before any slow call occupies the server
+            assertThat(send(http, BASE_PATH + "/query?reservationId=" + reservationId).statusCode()).isEqualTo(200);
+            slowSelects = true;
+
+            List<CompletableFuture<Long>> slowCalls = new ArrayList<>();
+            for (int i = 0; i < SLOW_HISTORY_CALLS; i++) {
+                slowCalls.add(CompletableFuture.supplyAsync(() -> {
+                    long started = System.nanoTime();
+                    assertThat(send(http, BASE_PATH + "?limit=10").statusCode()).isEqualTo(200);
+                    return (System.nanoTime() - started) / 1_000_000;
+                }, clients));
+            }
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (historyInFlight.get() < expectedHistoryInFlight && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(historyInFlight.get()).isGreaterThanOrEqualTo(expectedHistoryInFlight);
+
+            List<CompletableFuture<Long>> queries = new ArrayList<>();
+            for (int i = 0; i < QUERY_CALLS; i++) {
+                queries.add(CompletableFuture.supplyAsync(() -> {
+                    long started = System.nanoTime();
+                    HttpResponse<Void> response = send(http, BASE_PATH + "/query?reservationId=" + reservationId);
+                    assertThat(response.statusCode()).isEqualTo(200);
+                    return (System.nanoTime() - started) / 1_000_000;
+                }, clients));
+            }
+
+            List<Long> latencies = new ArrayList<>();
+            for (CompletableFuture<Long> query : queries) {
+                latencies.add(query.get());
+            }
+            long fastestHistory = Long.MAX_VALUE;
+            for (CompletableFuture<Long> slowCall : slowCalls) {
+                fastestHistory = Math.min(fastestHistory, slowCall.get());
+            }
+
+            latencies.sort(null);
+            return new LoadResult(latencies.get((int) Math.ceil(latencies.size() * 0.99) - 1), fastestHistory);
+        }
+    }
+
+    private HttpResponse<Void> send(HttpClient http, String path) {
+        try {
+            return http.send(request(path), HttpResponse.BodyHandlers.discarding());
+        } catch (Exception e) {
+            throw new IllegalStateException("Request to " + path + " failed", e);
+        }
+    }
+
+    private HttpRequest request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+
+    // Blocks every query on the reservation table while the load runs, on the calling thread, inside H2
+    public static class SlowSelectTrigger implements Trigger {
+
+        @Override
+        public void fire(Connection connection, Object[] oldRow, Object[] newRow) {
+            if (!slowSelects) {
+                return;
+            }
+            historyInFlight.incrementAndGet();
+            try {
+                Thread.sleep(SLOW_HISTORY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                historyInFlight.decrementAndGet();
+            }
+        }
+    }
+}
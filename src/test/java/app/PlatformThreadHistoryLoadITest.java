@@ -0,0 +1,29 @@
+package app;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Baseline for VirtualThreadHistoryLoadITest: slow history queries hold every Tomcat worker
+@ActiveProfiles("test")
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.threads.virtual.enabled=false",
+        "server.tomcat.threads.max=" + HistoryLoadITestSupport.TOMCAT_THREADS,
+        // A connection for every slow history query, so they all block in the database at once
+        "spring.datasource.hikari.maximum-pool-size=" + (HistoryLoadITestSupport.SLOW_HISTORY_CALLS + 2)
+})
+public class PlatformThreadHistoryLoadITest extends HistoryLoadITestSupport {
+
+    @Test
+    void queryP99_shouldQueueBehindSlowHistoryCalls() throws Exception {
+
+        LoadResult result = queryP99UnderSlowHistoryLoad(TOMCAT_THREADS);
+
+        // Fast calls wait for a worker that a slow call holds
+        assertThat(result.queryP99Ms()).isGreaterThanOrEqualTo(result.fastestHistoryMs() / 2);
+    }
+}
@@ -0,0 +1,197 @@
+package app;
+
+import app.model.DataVersion;
+import app.model.ReservationReporting;
+import app.repository.ApartmentStatsRepository;
+import app.repository.ReservationRepository;
+import app.service.ReportingCache;
+import app.service.ReportingService;
+import app.web.dto.ReservationHistoryPage;
+import app.web.dto.ReservationStatsResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two H2 databases as primary and replica; "replication" copies the primary's script into the replica
+@ActiveProfiles("test")
+@DirtiesContext
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadReplicaRoutingITest.PRIMARY_URL,
+        "reporting.datasource.read-replicas.enabled=true",
+        "reporting.datasource.read-replicas.pools[0].jdbc-url=" + ReadReplicaRoutingITest.REPLICA_URL,
+        "reporting.datasource.read-replicas.pools[0].username=sa",
+        "reporting.datasource.read-replicas.pools[0].password=password",
+        "reporting.datasource.read-replicas.max-lag=PT5S",
+        // Checked by the tests only
+        "reporting.datasource.read-replicas.check-interval=PT1H"
+})
+public class ReadReplicaRoutingITest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:primarydb;MODE=MYSQL";
+    static final String REPLICA_URL = "jdbc:h2:mem:replicadb;MODE=MYSQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private ReportingService reportingService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ApartmentStatsRepository apartmentStatsRepository;
+
+    @Autowired
+    private ReportingCache reportingCache;
+
+    @Autowired
+    private ReadWriteRoutingDataSource readWriteRoutingDataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", "password"));
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", "password"));
+
+    @BeforeEach
+    void clean() {
+        reservationRepository.deleteAll();
+        apartmentStatsRepository.deleteAll();
+        reportingCache.clearStats();
+        replica.execute("DROP ALL OBJECTS");
+        readWriteRoutingDataSource.checkReplicas();
+    }
+
+    @Test
+    void readOnlyReads_shouldBeServedByAReplicaWithinTheLag() {
+
+        // Given
+        ReservationReporting replicated = save("Apartment 1", LocalDate.of(2025, 5, 1));
+        replicate();
+        save("Apartment 2", LocalDate.of(2025, 5, 2));
+        double replicaConnections = routed("replica-0");
+
+        // When
+        ReservationHistoryPage history = reportingService.getReservationHistoryPage(10, null);
+
+        // Then
+        assertThat(readWriteRoutingDataSource.hasReplicaWithinLag()).isTrue();
+        assertThat(history.getReservations())
+                .extracting(ReservationReporting::getReservationId)
+                .containsExactly(replicated.getReservationId());
+        assertThat(routed("replica-0")).isGreaterThan(replicaConnections);
+        assertThat(primary.queryForObject("SELECT COUNT(*) FROM reservation_reporting", Long.class)).isEqualTo(2);
+    }
+
+    @Test
+    void readOnlyReads_shouldFallBackToThePrimaryWhenTheReplicaLags() {
+
+        // Given
+        save("Apartment 1", LocalDate.of(2025, 5, 1));
+        replicate();
+        save("Apartment 2", LocalDate.of(2025, 5, 2));
+        replica.update("UPDATE replication_heartbeat SET beat_at = ?", LocalDateTime.now().minusMinutes(1));
+        readWriteRoutingDataSource.checkReplicas();
+        double fallbacks = meterRegistry.get("reporting.datasource.replica.fallbacks").counter().count();
+
+        // When
+        ReservationHistoryPage history = reportingService.getReservationHistoryPage(10, null);
+
+        // Then
+        assertThat(readWriteRoutingDataSource.hasReplicaWithinLag()).isFalse();
+        assertThat(history.getReservations()).hasSize(2);
+        assertThat(meterRegistry.get("reporting.datasource.replica.fallbacks").counter().count()).isGreaterThan(fallbacks);
+        assertThat(meterRegistry.get("reporting.datasource.replica.lag").tag("pool", "replica-0").timeGauge()
+                .value()).isGreaterThanOrEqualTo(60_000);
+    }
+
+    @Test
+    void cachedStats_shouldBeReadFromThePrimaryWhileTheReplicaIsBehind() {
+
+        // Given: the replica is within the lag, but has not seen the second reservation yet
+        save("Apartment 1", LocalDate.of(2025, 5, 1));
+        replicate();
+        save("Apartment 1", LocalDate.of(2025, 5, 2));
+
+        // When
+        List<ReservationStatsResponse> stats = reportingService.getStats(null, null, null);
+        replicate();
+        List<ReservationStatsResponse> cached = reportingService.getStats(null, null, null);
+
+        // Then
+        assertThat(readWriteRoutingDataSource.hasReplicaWithinLag()).isTrue();
+        assertThat(stats).extracting(s -> s.getTotalRevenue().intValue()).containsExactly(400);
+        assertThat(cached).extracting(s -> s.getTotalRevenue().intValue()).containsExactly(400);
+    }
+
+    @Test
+    void dataVersion_shouldBeReadFromThePrimaryWhileTheReplicaIsBehind() {
+
+        // Given: the replica is within the lag, but has not seen the second reservation yet
+        save("Apartment 1", LocalDate.of(2025, 5, 1));
+        replicate();
+        save("Apartment 2", LocalDate.of(2025, 5, 2));
+        double replicaConnections = routed("replica-0");
+
+        // When
+        DataVersion version = reportingService.getDataVersion();
+
+        // Then
+        assertThat(readWriteRoutingDataSource.hasReplicaWithinLag()).isTrue();
+        assertThat(version.getReservationCount()).isEqualTo(2);
+        assertThat(routed("replica-0")).isEqualTo(replicaConnections);
+    }
+
+    @Test
+    void writes_shouldGoToThePrimaryEvenWhenAReplicaIsAvailable() {
+
+        // Given
+        replicate();
+
+        // When
+        save("Apartment 1", LocalDate.of(2025, 5, 1));
+
+        // Then
+        assertThat(readWriteRoutingDataSource.hasReplicaWithinLag()).isTrue();
+        assertThat(primary.queryForObject("SELECT COUNT(*) FROM reservation_reporting", Long.class)).isEqualTo(1);
+        assertThat(replica.queryForObject("SELECT COUNT(*) FROM reservation_reporting", Long.class)).isZero();
+    }
+
+    @Test
+    void everyPool_shouldPublishItsOwnHikariMeters() {
+        for (String pool : List.of("primary", "replica-0")) {
+            assertThat(meterRegistry.find("hikaricp.connections.max").tag("pool", pool).gauge())
+                    .as("hikaricp.connections.max of %s", pool)
+                    .isNotNull();
+        }
+    }
+
+    // Brings the replica up to the primary's current state, heartbeat included
+    private void replicate() {
+        readWriteRoutingDataSource.checkReplicas();
+        List<String> script = primary.queryForList("SCRIPT", String.class);
+        replica.execute("DROP ALL OBJECTS");
+        script.forEach(replica::execute);
+        readWriteRoutingDataSource.checkReplicas();
+    }
+
+    private ReservationReporting save(String apartment, LocalDate checkIn) {
+        return reportingService.saveReservation(ReservationReportingITest.reservationDetails(
+                apartment, "Petar123", checkIn, 2, 2, new BigDecimal("200.00")));
+    }
+
+    private double routed(String pool) {
+        return meterRegistry.get("reporting.datasource.connections.routed").tag("pool", pool).counter().count();
+    }
+}
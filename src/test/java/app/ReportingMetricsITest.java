@@ -0,0 +1,131 @@
+package app;
+
+import app.repository.ReservationRepository;
+import app.service.ReportingCache;
+import app.service.ReservationIngestService;
+import app.web.dto.ReservationDetails;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// SQL statement budgets of the read endpoints, and the meters behind the Prometheus endpoint
+@ActiveProfiles("test")
+@DirtiesContext
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:metricsdb;MODE=MYSQL")
+public class ReportingMetricsITest {
+
+    private static final String BASE_PATH = "/api/v1/admin/reporting";
+
+    // Every read also loads the data version for its validators
+    private static final long HISTORY_PAGE_BUDGET = 2;
+    private static final long STATS_BUDGET = 2;
+    private static final long USER_PAGE_BUDGET = 2;
+    private static final long USER_SUMMARY_BUDGET = 2;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ReservationIngestService reservationIngestService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ReportingCache reportingCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private SqlStatementCounter sqlStatementCounter;
+
+    @BeforeEach
+    void seed() {
+        reservationRepository.deleteAll();
+        reportingCache.clearStats();
+
+        List<ReservationDetails> reservations = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            LocalDate checkIn = LocalDate.of(2025, 1, 1).plusDays(i);
+            reservations.add(ReservationDetails.builder()
+                    .reservationId(UUID.randomUUID())
+                    .checkInDate(checkIn)
+                    .checkOutDate(checkIn.plusDays(2))
+                    .guests(2)
+                    .reservationLength(2)
+                    .totalPrice(new BigDecimal("150.00"))
+                    .user("user-" + (i % 10))
+                    .apartment("Apartment " + (i % 5))
+                    .build());
+        }
+        reservationIngestService.ingest(reservations);
+
+        sqlStatementCounter = new SqlStatementCounter(entityManagerFactory);
+    }
+
+    @Test
+    void historyPage_shouldStayWithinItsStatementBudget() throws Exception {
+        sqlStatementCounter.assertAtMost(HISTORY_PAGE_BUDGET, "a history page of 100",
+                () -> mockMvc.perform(get(BASE_PATH).param("limit", "100")).andExpect(status().isOk()));
+    }
+
+    @Test
+    void stats_shouldStayWithinItsStatementBudget() throws Exception {
+        sqlStatementCounter.assertAtMost(STATS_BUDGET, "GET /stats",
+                () -> mockMvc.perform(get(BASE_PATH + "/stats")).andExpect(status().isOk()));
+        sqlStatementCounter.assertAtMost(STATS_BUDGET, "GET /stats with a range",
+                () -> mockMvc.perform(get(BASE_PATH + "/stats")
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-03-01")).andExpect(status().isOk()));
+    }
+
+    @Test
+    void userReads_shouldStayWithinTheirStatementBudgets() throws Exception {
+        sqlStatementCounter.assertAtMost(USER_PAGE_BUDGET, "a user's history page",
+                () -> mockMvc.perform(get(BASE_PATH + "/users/user-3/reservations")).andExpect(status().isOk()));
+        sqlStatementCounter.assertAtMost(USER_SUMMARY_BUDGET, "a user's summary",
+                () -> mockMvc.perform(get(BASE_PATH + "/users/user-3/summary")).andExpect(status().isOk()));
+    }
+
+    @Test
+    void prometheusEndpoint_shouldExposeEndpointServiceHibernateAndPoolMeters() throws Exception {
+
+        // Given
+        mockMvc.perform(get(BASE_PATH + "/stats")).andExpect(status().isOk());
+
+        // When
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // Then
+        assertThat(scrape)
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("uri=\"/api/v1/admin/reporting/stats\"")
+                .contains("reporting_service_seconds_count{")
+                .contains("method=\"getStats\"")
+                .contains("hibernate_query_executions_total")
+                .contains("hibernate_entities_loads_total")
+                .contains("hibernate_flushes_total")
+                .contains("hikaricp_connections_active");
+    }
+}
@@ -0,0 +1,300 @@
+package app;
+
+import app.archive.ReservationArchive;
+import app.model.ReservationReporting;
+import app.repository.ApartmentDailyStatsRepository;
+import app.repository.ApartmentStatsRepository;
+import app.repository.ArchivedReservationRepository;
+import app.repository.ArchivedSegmentRepository;
+import app.repository.ReservationRepository;
+import app.service.ReportingCache;
+import app.service.ReportingService;
+import app.service.ReservationArchiver;
+import app.service.ReservationIngestService;
+import app.service.StatsGranularity;
+import app.service.StatsReconciliationService;
+import app.web.dto.ArchiveReport;
+import app.web.dto.BatchItemResult;
+import app.web.dto.BatchItemStatus;
+import app.web.dto.ReservationDetails;
+import app.web.dto.ReservationHistoryPage;
+import app.web.dto.ReservationStatsResponse;
+import app.web.dto.StatsReconciliationReport;
+import app.web.dto.StatsTimeseriesPoint;
+import app.web.dto.UserReservationSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Reservations moved to archive segments must look exactly as before to every read
+@ActiveProfiles("test")
+@DirtiesContext
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:archivedb;MODE=MYSQL",
+        "reporting.archive.enabled=true",
+        // Everything stored before the run is archived, two reservations per segment
+        "reporting.archive.horizon=0s",
+        "reporting.archive.segment-rows=2",
+        "reporting.archive.cron=-"
+})
+public class ReservationArchiveITest {
+
+    private static final Path ARCHIVE_DIRECTORY = temporaryDirectory();
+    private static final LocalDate FROM = LocalDate.of(2025, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2026, 1, 1);
+
+    @Autowired
+    private ReportingService reportingService;
+
+    @Autowired
+    private ReservationArchiver reservationArchiver;
+
+    @Autowired
+    private ReservationArchive reservationArchive;
+
+    @Autowired
+    private ReservationIngestService reservationIngestService;
+
+    @Autowired
+    private StatsReconciliationService statsReconciliationService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ApartmentStatsRepository apartmentStatsRepository;
+
+    @Autowired
+    private ApartmentDailyStatsRepository apartmentDailyStatsRepository;
+
+    @Autowired
+    private ArchivedSegmentRepository archivedSegmentRepository;
+
+    @Autowired
+    private ArchivedReservationRepository archivedReservationRepository;
+
+    @Autowired
+    private ReportingCache reportingCache;
+
+    @DynamicPropertySource
+    static void archiveDirectory(DynamicPropertyRegistry registry) {
+        registry.add("reporting.archive.directory", ARCHIVE_DIRECTORY::toString);
+    }
+
+    @BeforeEach
+    void clean() {
+        reservationRepository.deleteAll();
+        apartmentStatsRepository.deleteAll();
+        apartmentDailyStatsRepository.deleteAll();
+        archivedSegmentRepository.deleteAll();
+        archivedReservationRepository.deleteAll();
+        reservationArchive.refresh();
+        reportingCache.clearStats();
+    }
+
+    @Test
+    void archivedReservations_shouldStillBeServedByHistoryLookupsAndStats() {
+
+        // Given
+        List<ReservationReporting> old = List.of(
+                save("Apartment 1", "Petar123", LocalDate.of(2025, 3, 1), "100.00"),
+                save("Apartment 2", "Maria", LocalDate.of(2025, 3, 5), "250.50"),
+                save("Apartment 1", "Maria", LocalDate.of(2025, 4, 1), "80.25"),
+                save("Apartment 3", "Petar123", LocalDate.of(2025, 6, 1), "300.00"),
+                save("Apartment 2", "Petar123", LocalDate.of(2025, 7, 1), "99.99"));
+        List<ReservationStatsResponse> statsBefore = reportingService.getStats(FROM, TO, null);
+        List<ReservationStatsResponse> apartmentStatsBefore = reportingService.getStats(FROM, TO, "Apartment 2");
+        UserReservationSummary petarBefore = reportingService.getUserSummary("Petar123");
+
+        // When
+        ArchiveReport report = reservationArchiver.archive();
+        ReservationReporting hot = save("Apartment 1", "Petar123", LocalDate.of(2026, 3, 1), "120.00");
+
+        // Then
+        assertThat(report.getReservationsArchived()).isEqualTo(5);
+        assertThat(report.getSegmentsWritten()).isEqualTo(3);
+        assertThat(reservationRepository.count()).isEqualTo(1);
+        assertThat(reservationArchive.size()).isEqualTo(5);
+
+        List<UUID> expectedHistory = new ArrayList<>(old.stream().map(ReservationReporting::getReservationId).toList());
+        expectedHistory.add(hot.getReservationId());
+        assertThat(pageThroughHistory(null, 2)).containsExactlyElementsOf(expectedHistory);
+        assertThat(pageThroughHistory("Petar123", 1)).containsExactly(old.get(0).getReservationId(),
+                old.get(3).getReservationId(), old.get(4).getReservationId(), hot.getReservationId());
+
+        assertThat(reportingService.getReservationDetails(old.get(1).getReservationId()).getApartment())
+                .isEqualTo("Apartment 2");
+
+        assertThat(reportingService.getStats(FROM, TO, null))
+                .usingRecursiveComparison()
+                .withComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                .isEqualTo(statsBefore);
+        assertThat(reportingService.getStats(FROM, TO, "Apartment 2"))
+                .usingRecursiveComparison()
+                .withComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                .isEqualTo(apartmentStatsBefore);
+        UserReservationSummary petar = reportingService.getUserSummary("Petar123");
+        assertThat(petar.getTotalSpend()).isEqualByComparingTo(petarBefore.getTotalSpend().add(new BigDecimal("120.00")));
+        assertThat(petar.getReservationCount()).isEqualTo(petarBefore.getReservationCount() + 1);
+        assertThat(statsReconciliationService.reconcile().getDrifts()).isEmpty();
+    }
+
+    @Test
+    void reconcile_shouldRebuildLostDailyStatsFromArchivedReservations() {
+
+        // Given: archived reservations whose nights are missing from the daily stats
+        save("Apartment 1", "Petar123", LocalDate.of(2025, 3, 1), "100.00");
+        save("Apartment 1", "Maria", LocalDate.of(2025, 3, 10), "60.00");
+        reservationArchiver.archive();
+        apartmentDailyStatsRepository.deleteAll();
+
+        // When
+        StatsReconciliationReport report = statsReconciliationService.reconcile();
+
+        // Then
+        assertThat(reservationRepository.count()).isZero();
+        assertThat(report.getDailyStatsRebuilt()).containsExactly("Apartment 1");
+        List<StatsTimeseriesPoint> daily = reportingService.getStatsTimeseries(StatsGranularity.DAY, FROM, TO, "Apartment 1");
+        assertThat(daily).extracting(StatsTimeseriesPoint::getBucketStart).containsExactly(
+                LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 2), LocalDate.of(2025, 3, 10), LocalDate.of(2025, 3, 11));
+        assertThat(daily).extracting(point -> point.getRevenue().toPlainString())
+                .containsExactly("50.00", "50.00", "30.00", "30.00");
+    }
+
+    @Test
+    void redeliveredArchivedReservation_shouldNotBeStoredAgain() {
+
+        // Given
+        ReservationDetails details = ReservationReportingITest.reservationDetails(
+                "Apartment 9", "Ivancho", LocalDate.of(2025, 5, 1), 2, 2, new BigDecimal("150.00"));
+        reportingService.saveReservation(details);
+        reservationArchiver.archive();
+
+        // When
+        ReservationReporting redelivered = reportingService.saveReservation(details);
+        List<BatchItemResult> batch = reservationIngestService.ingest(List.of(details));
+
+        // Then
+        assertThat(redelivered.getReservationId()).isEqualTo(details.getReservationId());
+        assertThat(batch).extracting(BatchItemResult::getStatus).containsExactly(BatchItemStatus.DUPLICATE);
+        assertThat(reservationRepository.count()).isZero();
+        assertThat(apartmentStatsRepository.findById("Apartment 9").orElseThrow().getReservationCount()).isEqualTo(1);
+    }
+
+    @Test
+    void segmentArchivedSinceTheLastRefresh_shouldBeServedAndRecognizedRightAway() {
+
+        // Given: the archiver leaves refreshing to the readers, like an archival run on another instance
+        ReservationDetails details = ReservationReportingITest.reservationDetails(
+                "Apartment 1", "Petar123", LocalDate.of(2025, 3, 1), 2, 2, new BigDecimal("100.00"));
+        reportingService.saveReservation(details);
+        save("Apartment 1", "Maria", LocalDate.of(2025, 3, 5), "50.00");
+        List<ReservationStatsResponse> statsBefore = reportingService.recomputeStats(FROM, TO, null);
+        reservationArchiver.archive();
+        assertThat(reservationArchive.segmentCount()).isZero();
+
+        // When
+        List<UUID> history = pageThroughHistory(null, 10);
+        ReservationReporting redelivered = reportingService.saveReservation(details);
+        List<BatchItemResult> batch = reservationIngestService.ingest(List.of(details));
+
+        // Then
+        assertThat(history).hasSize(2);
+        assertThat(reservationArchive.segmentCount()).isEqualTo(1);
+        assertThat(redelivered.getReservationId()).isEqualTo(details.getReservationId());
+        assertThat(batch).extracting(BatchItemResult::getStatus).containsExactly(BatchItemStatus.DUPLICATE);
+        assertThat(reservationRepository.count()).isZero();
+        assertThat(apartmentStatsRepository.findById("Apartment 1").orElseThrow().getReservationCount()).isEqualTo(2);
+        assertThat(reportingService.recomputeStats(FROM, TO, null))
+                .usingRecursiveComparison()
+                .withComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                .isEqualTo(statsBefore);
+    }
+
+    @Test
+    void segmentFileWithoutManifestEntry_shouldBeDeletedOnStartOncePastTheGracePeriod() throws IOException {
+
+        // Given: a leftover of an archival run that did not commit, and one still being written
+        save("Apartment 1", "Petar123", LocalDate.of(2025, 3, 1), "100.00");
+        reservationArchiver.archive();
+        Path orphan = Files.writeString(ARCHIVE_DIRECTORY.resolve("segment-orphan.seg.uncommitted"), "uncommitted");
+        Files.setLastModifiedTime(orphan, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+        Path inFlight = Files.writeString(ARCHIVE_DIRECTORY.resolve("segment-in-flight.seg.uncommitted.tmp"), "uncommitted");
+
+        // When
+        reservationArchive.start();
+
+        // Then
+        assertThat(orphan).doesNotExist();
+        assertThat(inFlight).exists();
+        assertThat(reservationArchive.segmentCount()).isEqualTo(1);
+        assertThat(reservationArchive.size()).isEqualTo(1);
+    }
+
+    @Test
+    void listedSegmentNotYetPublished_shouldBePublishedByTheNextRead() throws IOException {
+
+        // Given: the archival transaction committed, but the instance stopped before the rename
+        save("Apartment 1", "Petar123", LocalDate.of(2025, 3, 1), "100.00");
+        reservationArchiver.archive();
+        String name = archivedSegmentRepository.findAll().get(0).getName();
+        Path published = ARCHIVE_DIRECTORY.resolve(name);
+        Files.move(published, ARCHIVE_DIRECTORY.resolve(name + ReservationArchive.UNCOMMITTED_SUFFIX));
+        Files.setLastModifiedTime(ARCHIVE_DIRECTORY.resolve(name + ReservationArchive.UNCOMMITTED_SUFFIX),
+                FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+
+        // When
+        reservationArchive.start();
+
+        // Then
+        assertThat(published).exists();
+        assertThat(reservationArchive.segmentCount()).isEqualTo(1);
+        assertThat(reservationArchive.size()).isEqualTo(1);
+    }
+
+    private List<UUID> pageThroughHistory(String user, int limit) {
+        List<UUID> reservationIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            ReservationHistoryPage page = user == null
+                    ? reportingService.getReservationHistoryPage(limit, cursor)
+                    : reportingService.getUserReservationHistoryPage(user, limit, cursor);
+            page.getReservations().forEach(reservation -> reservationIds.add(reservation.getReservationId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return reservationIds;
+    }
+
+    private ReservationReporting save(String apartment, String user, LocalDate checkIn, String price) {
+        return reportingService.saveReservation(ReservationReportingITest.reservationDetails(
+                apartment, user, checkIn, 2, 2, new BigDecimal(price)));
+    }
+
+    private static Path temporaryDirectory() {
+        try {
+            return Files.createTempDirectory("archive");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
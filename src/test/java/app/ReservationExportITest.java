@@ -0,0 +1,135 @@
+package app;
+
+import app.repository.DimensionDictionary;
+import app.service.ExportFormat;
+import app.service.ReservationExportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Lazy query execution lets H2 stream the result set instead of buffering it, like a MySQL cursor fetch
+@ActiveProfiles("test")
+@DirtiesContext
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:exportdb;MODE=MYSQL;LAZY_QUERY_EXECUTION=TRUE")
+public class ReservationExportITest {
+
+    private static final int ROWS = 100_000;
+
+    // 100k hydrated entities in a persistence context retain well above this
+    private static final long MAX_RETAINED_HEAP_GROWTH = 32L * 1024 * 1024;
+
+    @Autowired
+    private ReservationExportService reservationExportService;
+
+    @Autowired
+    private DimensionDictionary dimensionDictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void insertRows() {
+        jdbcTemplate.update("DELETE FROM reservation_reporting");
+
+        LocalDate checkIn = LocalDate.of(2024, 1, 1);
+        LocalDateTime createdOn = LocalDateTime.of(2024, 1, 1, 0, 0);
+        List<Object[]> batch = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            batch.add(new Object[]{
+                    UUID.randomUUID(), UUID.randomUUID(),
+                    checkIn.plusDays(i % 365), checkIn.plusDays(i % 365 + 3),
+                    2, 3L, new BigDecimal("300.00"),
+                    dimensionDictionary.userId("user-" + (i % 1000)),
+                    dimensionDictionary.apartmentId("Apartment " + (i % 50)),
+                    Timestamp.valueOf(createdOn.plusSeconds(i)), Timestamp.valueOf(createdOn.plusSeconds(i))
+            });
+            if (batch.size() == 5_000) {
+                insert(batch);
+                batch.clear();
+            }
+        }
+        insert(batch);
+    }
+
+    @Test
+    void exportCsv_shouldStreamEveryRowWithFlatHeap() throws Exception {
+
+        // Given
+        HeapSamplingOutputStream out = new HeapSamplingOutputStream();
+
+        // When
+        long exported = reservationExportService.export(ExportFormat.CSV, out);
+
+        // Then
+        assertThat(exported).isEqualTo(ROWS);
+        assertThat(out.lines).isEqualTo(ROWS + 1);
+        assertThat(out.maxRetainedGrowth).isLessThan(MAX_RETAINED_HEAP_GROWTH);
+    }
+
+    @Test
+    void exportNdjson_shouldStreamEveryRowWithFlatHeap() throws Exception {
+
+        // Given
+        HeapSamplingOutputStream out = new HeapSamplingOutputStream();
+
+        // When
+        long exported = reservationExportService.export(ExportFormat.NDJSON, out);
+
+        // Then
+        assertThat(exported).isEqualTo(ROWS);
+        assertThat(out.lines).isEqualTo(ROWS);
+        assertThat(out.maxRetainedGrowth).isLessThan(MAX_RETAINED_HEAP_GROWTH);
+    }
+
+    private void insert(List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO reservation_reporting
+                    (id, reservation_id, check_in_date, check_out_date, guests, reservation_length,
+                     total_price, user_id, apartment_id, created_on, updated_on)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """, batch);
+    }
+
+    // Discards the export and samples the live heap after a GC every 20k lines
+    private static class HeapSamplingOutputStream extends OutputStream {
+
+        private final long baseline = retainedHeap();
+        private long lines;
+        private long maxRetainedGrowth;
+
+        @Override
+        public void write(int b) {
+            if (b == '\n' && ++lines % 20_000 == 0) {
+                maxRetainedGrowth = Math.max(maxRetainedGrowth, retainedHeap() - baseline);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        private static long retainedHeap() {
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+}
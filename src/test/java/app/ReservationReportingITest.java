@@ -1,22 +1,56 @@
 package app;
 
+import app.model.ApartmentStats;
+import app.model.DataVersion;
+import app.model.GroupSummary;
 import app.model.ReservationReporting;
+import app.repository.ApartmentDailyStatsRepository;
+import app.repository.ApartmentGuestSketchRepository;
+import app.repository.ApartmentStatsRepository;
+import app.repository.DimensionDictionary;
+import app.repository.ProjectionCheckpointRepository;
 import app.repository.ReservationRepository;
+import app.service.AnalyticsDimension;
+import app.service.ReportingCache;
 import app.service.ReportingService;
+import app.service.ReservationIngestService;
+import app.service.StatsGranularity;
+import app.service.StatsReconciliationService;
+import app.service.TopMetric;
+import app.web.dto.AnalyticsResponse;
+import app.web.dto.BatchItemResult;
+import app.web.dto.BatchItemStatus;
 import app.web.dto.ReservationDetails;
+import app.web.dto.ReservationHistoryPage;
+import app.web.dto.ReservationStatsResponse;
+import app.web.dto.StatsReconciliationReport;
+import app.web.dto.StatsTimeseriesPoint;
+import app.web.dto.Summary;
+import app.web.dto.UniqueGuestsResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 
 @ActiveProfiles("test")
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
@@ -29,9 +63,39 @@ public class ReservationReportingITest {
     @Autowired
     private ReservationRepository reservationRepository;
 
+    @Autowired
+    private ApartmentStatsRepository apartmentStatsRepository;
+
+    @Autowired
+    private ApartmentGuestSketchRepository apartmentGuestSketchRepository;
+
+    @Autowired
+    private ApartmentDailyStatsRepository apartmentDailyStatsRepository;
+
+    @Autowired
+    private StatsReconciliationService statsReconciliationService;
+
+    @Autowired
+    private ProjectionCheckpointRepository projectionCheckpointRepository;
+
+    @Autowired
+    private ReservationIngestService reservationIngestService;
+
+    @Autowired
+    private DimensionDictionary dimensionDictionary;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @BeforeEach
     void clean() {
         reservationRepository.deleteAll();
+        apartmentStatsRepository.deleteAll();
+        apartmentGuestSketchRepository.deleteAll();
+        apartmentDailyStatsRepository.deleteAll();
     }
 
     @Test
@@ -60,7 +124,7 @@ public class ReservationReportingITest {
 
         // When
         ReservationReporting saved = reportingService.saveReservation(reservationDetails);
-        List<ReservationReporting> history = reportingService.getReservationHistory();
+        List<ReservationReporting> history = reportingService.getReservationHistoryPage(100, null).getReservations();
 
         // Then
         assertThat(saved).isNotNull();
@@ -86,5 +150,532 @@ public class ReservationReportingITest {
         assertThat(historyReservationReporting.getUser()).isEqualTo(expectedUser);
         assertThat(historyReservationReporting.getApartment()).isEqualTo(expectedApartment);
     }
-}
 
+    @Test
+    void getStats_shouldMatchInMemoryAggregationOfAllReservations() {
+
+        // Given
+        LocalDate checkIn = LocalDate.of(2025, 4, 1);
+        saveReservation("Apartment 1", "Petar123", checkIn, 3, 2, new BigDecimal("300.50"));
+        saveReservation("Apartment 1", "Maria", checkIn.plusDays(5), 2, 4, new BigDecimal("199.99"));
+        saveReservation("Apartment 2", "Dimitar", checkIn, 7, 1, new BigDecimal("1000.00"));
+        saveReservation("Apartment 3", "Ivancho", checkIn.plusDays(1), 1, 3, new BigDecimal("80.00"));
+        saveReservation("Apartment 3", "Petar123", checkIn.plusDays(9), 4, 2, new BigDecimal("420.10"));
+
+        // The previous implementation: hydrate every row and reduce per apartment in Java
+        Map<String, Summary> expected = reservationRepository.findAll()
+                .stream()
+                .collect(Collectors.groupingBy(
+                        ReservationReporting::getApartment,
+                        Collectors.reducing(
+                                new Summary(BigDecimal.ZERO, 0, 0),
+                                r -> new Summary(r.getTotalPrice(), (int) r.getReservationLength(), r.getGuests()),
+                                Summary::combine
+                        )
+                ));
+
+        // When
+        List<ReservationStatsResponse> stats = reportingService.getStats(null, null, null);
+
+        // Then
+        assertThat(stats).hasSize(expected.size());
+        for (ReservationStatsResponse stat : stats) {
+            Summary summary = expected.get(stat.getApartment());
+            assertThat(summary).isNotNull();
+            assertThat(stat.getTotalRevenue()).isEqualByComparingTo(summary.getTotalRevenue());
+            assertThat(stat.getTotalBookedDays()).isEqualTo(String.valueOf(summary.getTotalBookedDays()));
+            assertThat(stat.getTotalGuestsVisited()).isEqualTo(String.valueOf(summary.getTotalGuestsVisited()));
+        }
+    }
+
+    @Test
+    void reconcile_shouldReportAndRepairDriftInMaterializedStats() {
+
+        // Given
+        LocalDate checkIn = LocalDate.of(2025, 5, 1);
+        saveReservation("Apartment 1", "Petar123", checkIn, 3, 2, new BigDecimal("300.00"));
+        saveReservation("Apartment 1", "Maria", checkIn.plusDays(4), 2, 1, new BigDecimal("150.00"));
+        saveReservation("Apartment 2", "Dimitar", checkIn, 5, 4, new BigDecimal("800.00"));
+
+        ApartmentStats corrupted = apartmentStatsRepository.findById("Apartment 1").orElseThrow();
+        corrupted.setTotalRevenue(new BigDecimal("1.00"));
+        corrupted.setTotalBookedDays(99);
+        apartmentStatsRepository.save(corrupted);
+        apartmentStatsRepository.save(new ApartmentStats("Ghost", BigDecimal.TEN, 1, 1, 1, corrupted.getUpdatedOn()));
+
+        // When
+        StatsReconciliationReport report = statsReconciliationService.reconcile();
+
+        // Then
+        assertThat(report.getApartmentsChecked()).isEqualTo(3);
+        assertThat(report.getDrifts())
+                .extracting(drift -> drift.getApartment())
+                .containsExactly("Apartment 1", "Ghost");
+        assertThat(apartmentStatsRepository.findById("Ghost")).isEmpty();
+
+        ApartmentStats repaired = apartmentStatsRepository.findById("Apartment 1").orElseThrow();
+        assertThat(repaired.getTotalRevenue()).isEqualByComparingTo("450.00");
+        assertThat(repaired.getTotalBookedDays()).isEqualTo(5);
+        assertThat(repaired.getTotalGuestsVisited()).isEqualTo(3);
+        assertThat(repaired.getReservationCount()).isEqualTo(2);
+
+        assertThat(statsReconciliationService.reconcile().getDrifts()).isEmpty();
+    }
+
+    @Test
+    void getReservationHistoryPage_shouldWalkAllRowsInKeysetOrderWithoutGapsOrDuplicates() {
+
+        // Given
+        LocalDate checkIn = LocalDate.of(2025, 6, 1);
+        for (int i = 0; i < 5; i++) {
+            saveReservation("Apartment " + i, "Petar123", checkIn, 2, 2, new BigDecimal("100.00"));
+        }
+
+        // When
+        List<ReservationReporting> walked = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            ReservationHistoryPage page = reportingService.getReservationHistoryPage(2, cursor);
+            walked.addAll(page.getReservations());
+            pageSizes.add(page.getReservations().size());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        // Then
+        assertThat(pageSizes).containsExactly(2, 2, 1);
+        assertThat(walked)
+                .extracting(ReservationReporting::getId)
+                .doesNotHaveDuplicates()
+                .containsExactlyInAnyOrderElementsOf(reservationRepository.findAll()
+                        .stream()
+                        .map(ReservationReporting::getId)
+                        .toList());
+        assertThat(walked)
+                .extracting(ReservationReporting::getCreatedOn)
+                .isSorted();
+    }
+
+    @Test
+    void ingest_shouldPersistValidItemsInChunksAndReportInvalidOnes() {
+
+        // Given
+        LocalDate checkIn = LocalDate.of(2025, 7, 1);
+        List<ReservationDetails> batch = new ArrayList<>();
+        for (int i = 0; i < 1_200; i++) {
+            batch.add(reservationDetails("Apartment " + (i % 3), "user-" + i, checkIn, 2, 2, new BigDecimal("100.00")));
+        }
+        batch.set(600, ReservationDetails.builder().apartment("Apartment 1").build());
+        batch.set(700, reservationDetails("Apartment 1", "user-700", checkIn, -2, 2, new BigDecimal("100.00")));
+        batch.set(800, reservationDetails("Apartment 1", "user-800", checkIn, 400, 2, new BigDecimal("100.00")));
+
+        // When
+        List<BatchItemResult> results = reservationIngestService.ingest(batch);
+
+        // Then
+        assertThat(results).hasSize(1_200);
+        assertThat(results).extracting(BatchItemResult::getIndex).isSorted();
+        assertThat(results.get(600).getStatus()).isEqualTo(BatchItemStatus.FAILED);
+        assertThat(results.get(600).getError()).contains("reservationId");
+        assertThat(results.get(700).getError()).isEqualTo("checkOutDate must not be before checkInDate");
+        assertThat(results.get(800).getError()).isEqualTo("checkOutDate must be at most 366 nights after checkInDate");
+        assertThat(results).filteredOn(result -> result.getStatus() == BatchItemStatus.CREATED).hasSize(1_197);
+        assertThat(reservationRepository.count()).isEqualTo(1_197);
+        assertThat(statsReconciliationService.reconcile().getDrifts()).isEmpty();
+    }
+
+    @Test
+    void ingestNdjson_shouldSkipMalformedLinesAndPersistTheRest() throws Exception {
+
+        // Given
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        String ndjson = """
+                {"reservationId":"%s","checkInDate":"2025-07-01","checkOutDate":"2025-07-03","guests":2,"reservationLength":2,"totalPrice":200.00,"user":"Petar123","apartment":"Apartment 1"}
+                {"reservationId": not json
+                {"reservationId":"%s","checkInDate":"2025-07-05","checkOutDate":"2025-07-06","guests":1,"reservationLength":1,"totalPrice":90.00,"user":"Maria","apartment":"Apartment 2"}
+                """.formatted(first, second);
+
+        // When
+        List<BatchItemResult> results = reservationIngestService.ingestNdjson(
+                new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+
+        // Then
+        assertThat(results).extracting(BatchItemResult::getStatus)
+                .containsExactly(BatchItemStatus.CREATED, BatchItemStatus.FAILED, BatchItemStatus.CREATED);
+        assertThat(reservationRepository.findByReservationId(first)).isNotNull();
+        assertThat(reservationRepository.findByReservationId(second)).isNotNull();
+        assertThat(apartmentStatsRepository.findById("Apartment 2").orElseThrow().getTotalRevenue())
+                .isEqualByComparingTo("90.00");
+    }
+
+    @Test
+    void saveReservation_withRedeliveredReservationId_shouldKeepOneRowAndCountStatsOnce() {
+
+        // Given
+        ReservationDetails details = reservationDetails("Apartment 1", "Petar123", LocalDate.of(2025, 8, 1),
+                3, 2, new BigDecimal("300.00"));
+        ReservationReporting first = reportingService.saveReservation(details);
+
+        // When
+        ReservationReporting redelivered = reportingService.saveReservation(details);
+
+        // Then
+        assertThat(reservationRepository.count()).isEqualTo(1);
+        assertThat(redelivered.getId()).isEqualTo(first.getId());
+        assertThat(redelivered.getUpdatedOn()).isAfterOrEqualTo(first.getUpdatedOn());
+        ApartmentStats stats = apartmentStatsRepository.findById("Apartment 1").orElseThrow();
+        assertThat(stats.getReservationCount()).isEqualTo(1);
+        assertThat(stats.getTotalRevenue()).isEqualByComparingTo("300.00");
+    }
+
+    @Test
+    void ingest_withRedeliveredReservations_shouldReportDuplicatesAndNotInflateStats() {
+
+        // Given
+        LocalDate checkIn = LocalDate.of(2025, 8, 1);
+        ReservationDetails stored = reservationDetails("Apartment 1", "Petar123", checkIn, 2, 2, new BigDecimal("200.00"));
+        reportingService.saveReservation(stored);
+        ReservationDetails fresh = reservationDetails("Apartment 1", "Maria", checkIn, 1, 1, new BigDecimal("100.00"));
+
+        // When
+        List<BatchItemResult> results = reservationIngestService.ingest(List.of(stored, fresh, fresh));
+
+        // Then
+        assertThat(results).extracting(BatchItemResult::getStatus)
+                .containsExactly(BatchItemStatus.DUPLICATE, BatchItemStatus.CREATED, BatchItemStatus.DUPLICATE);
+        assertThat(reservationRepository.count()).isEqualTo(2);
+        ApartmentStats stats = apartmentStatsRepository.findById("Apartment 1").orElseThrow();
+        assertThat(stats.getReservationCount()).isEqualTo(2);
+        assertThat(stats.getTotalRevenue()).isEqualByComparingTo("300.00");
+    }
+
+    @Test
+    void getReservationDetails_shouldBeServedFromCacheAfterFirstLookup() {
+
+        // Given
+        ReservationReporting saved = saveReservation("Apartment 1", "Petar123", LocalDate.of(2025, 9, 1),
+                2, 2, new BigDecimal("200.00"));
+        CaffeineCache cache = (CaffeineCache) cacheManager.getCache(ReportingCache.RESERVATIONS);
+
+        // When
+        reportingService.getReservationDetails(saved.getReservationId());
+        reportingService.getReservationDetails(saved.getReservationId());
+
+        // Then
+        assertThat(cache.getNativeCache().stats().missCount()).isEqualTo(1);
+        assertThat(cache.getNativeCache().stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void saveReservation_shouldEvictCachedStatsOfAffectedApartment() {
+
+        // Given
+        LocalDate checkIn = LocalDate.of(2025, 9, 1);
+        saveReservation("Apartment 1", "Petar123", checkIn, 2, 2, new BigDecimal("200.00"));
+        assertThat(reportingService.getStats(null, null, null)).hasSize(1);
+        assertThat(cacheManager.getCache(ReportingCache.STATS).get(ReportingCache.ALL_APARTMENTS)).isNotNull();
+
+        // When
+        saveReservation("Apartment 2", "Maria", checkIn, 1, 1, new BigDecimal("90.00"));
+
+        // Then
+        assertThat(cacheManager.getCache(ReportingCache.STATS).get(ReportingCache.ALL_APARTMENTS)).isNull();
+        assertThat(reportingService.getStats(null, null, null))
+                .extracting(ReservationStatsResponse::getApartment)
+                .containsExactly("Apartment 1", "Apartment 2");
+    }
+
+    @Test
+    void statsCache_shouldExpireSoonerThanTheReservationsCache() {
+
+        // Given
+        CaffeineCache stats = (CaffeineCache) cacheManager.getCache(ReportingCache.STATS);
+        CaffeineCache reservations = (CaffeineCache) cacheManager.getCache(ReportingCache.RESERVATIONS);
+
+        // When
+        Duration statsExpiry = stats.getNativeCache().policy().expireAfterWrite().orElseThrow().getExpiresAfter();
+        Duration reservationsExpiry = reservations.getNativeCache().policy().expireAfterWrite().orElseThrow()
+                .getExpiresAfter();
+
+        // Then
+        assertThat(statsExpiry).isEqualTo(Duration.ofSeconds(30));
+        assertThat(reservationsExpiry).isEqualTo(Duration.ofMinutes(10));
+        assertThat(stats.getNativeCache().policy().isRecordingStats()).isTrue();
+    }
+
+    @Test
+    void getStats_forAnApartmentNamedLikeTheAllApartmentsKey_shouldNotShareItsCacheEntry() {
+
+        // Given
+        LocalDate checkIn = LocalDate.of(2025, 9, 1);
+        saveReservation(ReportingCache.ALL_APARTMENTS, "Petar123", checkIn, 2, 2, new BigDecimal("200.00"));
+        saveReservation("Apartment 1", "Maria", checkIn, 1, 1, new BigDecimal("80.00"));
+
+        // When
+        List<ReservationStatsResponse> all = reportingService.getStats(null, null, null);
+        List<ReservationStatsResponse> named = reportingService.getStats(null, null, ReportingCache.ALL_APARTMENTS);
+        List<ReservationStatsResponse> allAgain = reportingService.getStats(null, null, null);
+
+        // Then
+        assertThat(all).extracting(ReservationStatsResponse::getApartment)
+                .containsExactly("Apartment 1", ReportingCache.ALL_APARTMENTS);
+        assertThat(named).extracting(ReservationStatsResponse::getApartment).containsExactly(ReportingCache.ALL_APARTMENTS);
+        assertThat(allAgain).hasSize(2);
+    }
+
+    @Test
+    void getStatsTimeseries_shouldSplitStaysAcrossTheNightsTheyCover() {
+
+        // Given: three nights over a month boundary and a single night in February
+        saveReservation("Apartment 1", "Petar123", LocalDate.of(2025, 1, 30), 3, 2, new BigDecimal("100.00"));
+        saveReservation("Apartment 1", "Maria", LocalDate.of(2025, 2, 10), 1, 1, new BigDecimal("80.00"));
+        LocalDate from = LocalDate.of(2025, 1, 1);
+        LocalDate to = LocalDate.of(2025, 3, 1);
+
+        // When
+        List<StatsTimeseriesPoint> daily = reportingService.getStatsTimeseries(StatsGranularity.DAY, from, to, null);
+        List<StatsTimeseriesPoint> monthly = reportingService.getStatsTimeseries(StatsGranularity.MONTH, from, to, "Apartment 1");
+
+        // Then
+        assertThat(daily).extracting(StatsTimeseriesPoint::getBucketStart).containsExactly(
+                LocalDate.of(2025, 1, 30), LocalDate.of(2025, 1, 31), LocalDate.of(2025, 2, 1), LocalDate.of(2025, 2, 10));
+        assertThat(daily).extracting(point -> point.getRevenue().toPlainString())
+                .containsExactly("33.33", "33.33", "33.34", "80.00");
+        assertThat(daily).extracting(StatsTimeseriesPoint::getGuestNights).containsExactly(2L, 2L, 2L, 1L);
+
+        assertThat(monthly).hasSize(2);
+        assertThat(monthly.get(0).getRevenue()).isEqualByComparingTo("66.66");
+        assertThat(monthly.get(0).getBookedNights()).isEqualTo(2);
+        assertThat(monthly.get(1).getRevenue()).isEqualByComparingTo("113.34");
+        assertThat(monthly.get(1).getBookedNights()).isEqualTo(2);
+    }
+
+    @Test
+    void getStatsTimeseries_shouldBookTheSameNightsAsTheApartmentStats() {
+
+        // Given: a same-day stay and a stay whose dates span more nights than it was booked for
+        saveReservation("Apartment 1", "Petar123", LocalDate.of(2025, 3, 5), 0, 2, new BigDecimal("40.00"));
+        ReservationDetails details = reservationDetails("Apartment 1", "Maria", LocalDate.of(2025, 3, 10), 2, 1,
+                new BigDecimal("100.00"));
+        details.setCheckOutDate(LocalDate.of(2025, 3, 13));
+        reportingService.saveReservation(details);
+
+        // When
+        List<StatsTimeseriesPoint> daily = reportingService.getStatsTimeseries(StatsGranularity.DAY,
+                LocalDate.of(2025, 3, 1), LocalDate.of(2025, 4, 1), "Apartment 1");
+        ReservationStatsResponse stats = reportingService.getStats(null, null, "Apartment 1").get(0);
+
+        // Then
+        assertThat(daily).extracting(StatsTimeseriesPoint::getBucketStart).containsExactly(
+                LocalDate.of(2025, 3, 5), LocalDate.of(2025, 3, 10), LocalDate.of(2025, 3, 11));
+        assertThat(daily).extracting(StatsTimeseriesPoint::getBookedNights).containsExactly(0L, 1L, 1L);
+        assertThat(daily).extracting(StatsTimeseriesPoint::getGuestNights).containsExactly(0L, 1L, 1L);
+        assertThat(daily.stream().mapToLong(StatsTimeseriesPoint::getBookedNights).sum())
+                .isEqualTo(Long.parseLong(stats.getTotalBookedDays()));
+        assertThat(daily.stream().map(StatsTimeseriesPoint::getRevenue).reduce(BigDecimal.ZERO, BigDecimal::add))
+                .isEqualByComparingTo(stats.getTotalRevenue());
+    }
+
+    @Test
+    void savedReservations_shouldStoreApartmentAndUserAsDimensionKeys() {
+
+        // Given
+        LocalDate checkIn = LocalDate.of(2025, 5, 1);
+        reservationIngestService.ingest(List.of(
+                reservationDetails("Apartment 1", "Petar123", checkIn, 2, 2, new BigDecimal("100.00")),
+                reservationDetails("Apartment 1", "Maria", checkIn, 1, 1, new BigDecimal("50.00"))));
+        saveReservation("Apartment 2", "Petar123", checkIn, 3, 2, new BigDecimal("300.00"));
+
+        // When
+        List<ReservationStatsResponse> stats = reportingService.getStats(checkIn, checkIn.plusDays(1), null);
+        List<ReservationReporting> history = reportingService.getReservationHistoryPage(100, null).getReservations();
+
+        // Then
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM apartment", Long.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM reservation_user", Long.class)).isEqualTo(2);
+        assertThat(jdbcTemplate.queryForList("""
+                SELECT r.apartment_id FROM reservation_reporting r JOIN apartment a ON a.id = r.apartment_id
+                WHERE a.name = 'Apartment 1'
+                """, Integer.class)).hasSize(2);
+        assertThat(stats).extracting(ReservationStatsResponse::getApartment)
+                .containsExactly("Apartment 1", "Apartment 2");
+        assertThat(stats.get(0).getTotalBookedDays()).isEqualTo("3");
+        assertThat(history).extracting(ReservationReporting::getUser)
+                .containsExactlyInAnyOrder("Petar123", "Maria", "Petar123");
+        assertThat(reportingService.getStats(checkIn, checkIn.plusDays(1), "Apartment 9")).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM apartment", Long.class)).isEqualTo(2);
+    }
+
+    @Test
+    void queryTop_shouldRankGroupsInTheDatabaseAndReturnOnlyTheFirstOnes() {
+
+        // Given
+        LocalDate checkIn = LocalDate.of(2025, 7, 1);
+        saveReservation("Apartment 1", "Petar123", checkIn, 2, 2, new BigDecimal("200.00"));
+        saveReservation("Apartment 1", "Maria", checkIn.plusDays(3), 1, 1, new BigDecimal("150.00"));
+        saveReservation("Apartment 2", "Dimitar", checkIn, 9, 2, new BigDecimal("300.00"));
+        saveReservation("Apartment 3", "Petar123", checkIn.plusDays(5), 4, 3, new BigDecimal("90.00"));
+        saveReservation("Apartment 3", "Ivancho", checkIn.minusMonths(2), 5, 2, new BigDecimal("999.00"));
+
+        // When
+        AnalyticsResponse apartmentsByRevenue = reportingService.queryTop(AnalyticsDimension.APARTMENT, TopMetric.REVENUE,
+                2, checkIn, checkIn.plusMonths(1));
+        AnalyticsResponse usersByNights = reportingService.queryTop(AnalyticsDimension.USER, TopMetric.NIGHTS,
+                2, checkIn, null);
+
+        // Then
+        assertThat(apartmentsByRevenue.getSource()).isEqualTo("database");
+        assertThat(apartmentsByRevenue.getGroups()).extracting(GroupSummary::getKey)
+                .containsExactly("Apartment 1", "Apartment 2");
+        assertThat(apartmentsByRevenue.getGroups().get(0).getTotalRevenue()).isEqualByComparingTo("350.00");
+        assertThat(usersByNights.getGroups()).extracting(GroupSummary::getKey)
+                .containsExactly("Dimitar", "Petar123");
+        assertThat(usersByNights.getGroups().get(1).getTotalBookedDays()).isEqualTo(6);
+    }
+
+    @Test
+    void queryTop_withTiedTotals_shouldBreakTheTieByNameLikeTheInMemoryRanking() {
+
+        // Given: "Zora" and "Apartment Z" get the lower dimension keys, so key order is the reverse of name order
+        LocalDate checkIn = LocalDate.of(2025, 7, 1);
+        saveReservation("Apartment Z", "Zora", checkIn, 2, 2, new BigDecimal("200.00"));
+        saveReservation("Apartment A", "Ana", checkIn.plusDays(3), 2, 2, new BigDecimal("200.00"));
+
+        // When
+        AnalyticsResponse apartments = reportingService.queryTop(AnalyticsDimension.APARTMENT, TopMetric.REVENUE,
+                1, checkIn, checkIn.plusMonths(1));
+        AnalyticsResponse users = reportingService.queryTop(AnalyticsDimension.USER, TopMetric.NIGHTS,
+                1, checkIn, checkIn.plusMonths(1));
+
+        // Then
+        assertThat(dimensionDictionary.apartmentId("Apartment Z")).isLessThan(dimensionDictionary.apartmentId("Apartment A"));
+        assertThat(apartments.getSource()).isEqualTo("database");
+        assertThat(apartments.getGroups()).extracting(GroupSummary::getKey).containsExactly("Apartment A");
+        assertThat(users.getGroups()).extracting(GroupSummary::getKey).containsExactly("Ana");
+    }
+
+    @Test
+    void getUniqueGuests_shouldCountEachGuestOncePerApartmentAndOnceOverall() {
+
+        // Given: Petar123 stays twice in Apartment 1 and once in Apartment 2, Maria in January and February
+        saveReservation("Apartment 1", "Petar123", LocalDate.of(2025, 1, 5), 2, 2, new BigDecimal("200.00"));
+        saveReservation("Apartment 1", "Maria", LocalDate.of(2025, 1, 20), 1, 1, new BigDecimal("80.00"));
+        saveReservation("Apartment 1", "Petar123", LocalDate.of(2025, 1, 28), 2, 2, new BigDecimal("200.00"));
+        saveReservation("Apartment 1", "Maria", LocalDate.of(2025, 2, 3), 3, 1, new BigDecimal("240.00"));
+        saveReservation("Apartment 1", "Dimitar", LocalDate.of(2025, 2, 14), 2, 2, new BigDecimal("180.00"));
+        saveReservation("Apartment 2", "Petar123", LocalDate.of(2025, 2, 20), 4, 2, new BigDecimal("300.00"));
+        saveReservation("Apartment 2", "Ivancho", LocalDate.of(2025, 4, 1), 1, 1, new BigDecimal("90.00"));
+
+        // When
+        UniqueGuestsResponse firstQuarter = reportingService.getUniqueGuests(YearMonth.of(2025, 1), YearMonth.of(2025, 4), null);
+        UniqueGuestsResponse january = reportingService.getUniqueGuests(YearMonth.of(2025, 1), YearMonth.of(2025, 2), "Apartment 1");
+
+        // Then
+        assertThat(firstQuarter.getApartments()).extracting(a -> a.getApartment() + "=" + a.getEstimatedGuests())
+                .containsExactly("Apartment 1=3", "Apartment 2=1");
+        assertThat(firstQuarter.getEstimatedGuests()).isEqualTo(3);
+        assertThat(january.getApartments()).hasSize(1);
+        assertThat(january.getEstimatedGuests()).isEqualTo(2);
+
+        // When: sketches lost or never written are rebuilt from the stored reservations
+        apartmentGuestSketchRepository.deleteAll();
+        statsReconciliationService.reconcile();
+
+        // Then
+        assertThat(reportingService.getUniqueGuests(YearMonth.of(2025, 1), YearMonth.of(2025, 4), null))
+                .usingRecursiveComparison()
+                .isEqualTo(firstQuarter);
+        assertThat(reportingService.getUniqueGuests(null, null, null).getEstimatedGuests()).isEqualTo(4);
+    }
+
+    @Test
+    void reconcile_shouldBackfillGuestSketchesOnceEvenWhenSavesWroteSomeFirst() {
+
+        // Given: reservations stored before the sketches existed, then one saved since
+        saveReservation("Apartment 1", "Petar123", LocalDate.of(2025, 1, 28), 2, 2, new BigDecimal("200.00"));
+        saveReservation("Apartment 1", "Maria", LocalDate.of(2025, 2, 3), 3, 1, new BigDecimal("240.00"));
+        apartmentGuestSketchRepository.deleteAll();
+        projectionCheckpointRepository.deleteById(StatsReconciliationService.GUEST_SKETCH_BACKFILL);
+        saveReservation("Apartment 1", "Dimitar", LocalDate.of(2025, 2, 14), 2, 2, new BigDecimal("180.00"));
+        assertThat(reportingService.getUniqueGuests(null, null, null).getEstimatedGuests()).isEqualTo(1);
+
+        // When
+        statsReconciliationService.reconcile();
+
+        // Then
+        assertThat(reportingService.getUniqueGuests(null, null, null).getEstimatedGuests()).isEqualTo(3);
+        assertThat(projectionCheckpointRepository.existsById(StatsReconciliationService.GUEST_SKETCH_BACKFILL)).isTrue();
+    }
+
+    @Test
+    void reconcile_shouldBackfillDailyStatsOnceAndRebuildApartmentsThatDrift() {
+
+        // Given: reservations stored before the daily stats existed
+        saveReservation("Apartment 1", "Petar123", LocalDate.of(2025, 4, 1), 2, 2, new BigDecimal("200.00"));
+        saveReservation("Apartment 2", "Maria", LocalDate.of(2025, 4, 3), 1, 1, new BigDecimal("90.00"));
+        apartmentDailyStatsRepository.deleteAll();
+        projectionCheckpointRepository.deleteById(StatsReconciliationService.DAILY_STATS_BACKFILL);
+        LocalDate from = LocalDate.of(2025, 4, 1);
+        LocalDate to = LocalDate.of(2025, 5, 1);
+
+        // When
+        StatsReconciliationReport backfill = statsReconciliationService.reconcile();
+        jdbcTemplate.update("UPDATE apartment_daily_stats SET revenue = revenue + 1 WHERE apartment = 'Apartment 2'");
+        StatsReconciliationReport repair = statsReconciliationService.reconcile();
+        StatsReconciliationReport clean = statsReconciliationService.reconcile();
+
+        // Then
+        assertThat(projectionCheckpointRepository.existsById(StatsReconciliationService.DAILY_STATS_BACKFILL)).isTrue();
+        assertThat(backfill.getDailyStatsRebuilt()).containsExactly("Apartment 1", "Apartment 2");
+        assertThat(repair.getDailyStatsRebuilt()).containsExactly("Apartment 2");
+        assertThat(clean.getDailyStatsRebuilt()).isEmpty();
+        assertThat(reportingService.getStatsTimeseries(StatsGranularity.DAY, from, to, null))
+                .extracting(StatsTimeseriesPoint::getBucketStart, point -> point.getRevenue().toPlainString())
+                .containsExactly(
+                        tuple(LocalDate.of(2025, 4, 1), "100.00"),
+                        tuple(LocalDate.of(2025, 4, 2), "100.00"),
+                        tuple(LocalDate.of(2025, 4, 3), "90.00"));
+    }
+
+    @Test
+    void getDataVersion_shouldChangeWithEveryStoredReservationButNotWithRedeliveries() {
+
+        // Given
+        DataVersion empty = reportingService.getDataVersion();
+        ReservationDetails details = reservationDetails("Apartment 1", "Petar123", LocalDate.of(2025, 6, 1),
+                2, 2, new BigDecimal("200.00"));
+
+        // When
+        reportingService.saveReservation(details);
+        DataVersion afterSave = reportingService.getDataVersion();
+        reportingService.saveReservation(details);
+        DataVersion afterRedelivery = reportingService.getDataVersion();
+
+        // Then
+        assertThat(empty.getLastModified()).isNull();
+        assertThat(empty.toEpochMilli()).isEqualTo(-1);
+        assertThat(afterSave.getReservationCount()).isEqualTo(1);
+        assertThat(afterSave.toETag()).isNotEqualTo(empty.toETag());
+        assertThat(afterRedelivery.toETag()).isEqualTo(afterSave.toETag());
+    }
+
+    private ReservationReporting saveReservation(String apartment, String user, LocalDate checkIn,
+                                                 long nights, int guests, BigDecimal price) {
+        return reportingService.saveReservation(reservationDetails(apartment, user, checkIn, nights, guests, price));
+    }
+
+    static ReservationDetails reservationDetails(String apartment, String user, LocalDate checkIn,
+                                                 long nights, int guests, BigDecimal price) {
+        return ReservationDetails.builder()
+                .reservationId(UUID.randomUUID())
+                .checkInDate(checkIn)
+                .checkOutDate(checkIn.plusDays(nights))
+                .guests(guests)
+                .reservationLength(nights)
+                .totalPrice(price)
+                .user(user)
+                .apartment(apartment)
+                .build();
+    }
+}
@@ -0,0 +1,213 @@
+package app;
+
+import app.repository.ApartmentStatsRepository;
+import app.repository.DimensionDictionary;
+import app.repository.ReservationRepository;
+import app.service.AnalyticsDimension;
+import app.service.ReportingService;
+import app.service.ReservationColumnarSnapshot;
+import app.service.ReservationIngestService;
+import app.web.dto.AnalyticsResponse;
+import app.web.dto.ReservationDetails;
+import app.web.dto.ReservationStatsResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Date-range and apartment filtered stats, and the indexes behind them (H2 in MySQL mode)
+@ActiveProfiles("test")
+@DirtiesContext
+@SpringBootTest(properties = {
+        "reporting.analytics.snapshot.enabled=true",
+        // The plans below are of the SQL Hibernate generates for the repository queries
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=app.SqlCapture"
+})
+public class ReservationStatsQueryITest {
+
+    private static final int APARTMENTS = 20;
+    private static final LocalDate FIRST_CHECK_IN = LocalDate.of(2025, 1, 1);
+
+    @Autowired
+    private ReportingService reportingService;
+
+    @Autowired
+    private ReservationIngestService reservationIngestService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ApartmentStatsRepository apartmentStatsRepository;
+
+    @Autowired
+    private ReservationColumnarSnapshot reservationColumnarSnapshot;
+
+    @Autowired
+    private DimensionDictionary dimensionDictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // One reservation per day and apartment for a year, each worth 100.00, 1 night and 2 guests
+    @BeforeEach
+    void seed() {
+        reservationRepository.deleteAll();
+        apartmentStatsRepository.deleteAll();
+
+        List<ReservationDetails> reservations = new ArrayList<>();
+        for (int day = 0; day < 365; day++) {
+            for (int apartment = 0; apartment < APARTMENTS; apartment++) {
+                LocalDate checkIn = FIRST_CHECK_IN.plusDays(day);
+                reservations.add(ReservationDetails.builder()
+                        .reservationId(UUID.randomUUID())
+                        .checkInDate(checkIn)
+                        .checkOutDate(checkIn.plusDays(1))
+                        .guests(2)
+                        .reservationLength(1)
+                        .totalPrice(new BigDecimal("100.00"))
+                        .user("user-" + day)
+                        .apartment(apartmentName(apartment))
+                        .build());
+            }
+        }
+        reservationIngestService.ingest(reservations);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void getStats_forOneMonth_shouldCountOnlyCheckInsWithinTheRange() {
+
+        // When
+        List<ReservationStatsResponse> stats = reportingService.getStats(
+                LocalDate.of(2025, 2, 1), LocalDate.of(2025, 3, 1), null);
+
+        // Then
+        assertThat(stats).hasSize(APARTMENTS);
+        assertThat(stats).allSatisfy(stat -> {
+            assertThat(stat.getTotalRevenue()).isEqualByComparingTo("2800.00");
+            assertThat(stat.getTotalBookedDays()).isEqualTo("28");
+            assertThat(stat.getTotalGuestsVisited()).isEqualTo("56");
+        });
+    }
+
+    @Test
+    void getStats_forOneApartmentAndQuarter_shouldReturnOnlyThatApartment() {
+
+        // When
+        List<ReservationStatsResponse> stats = reportingService.getStats(
+                LocalDate.of(2025, 1, 1), LocalDate.of(2025, 4, 1), apartmentName(3));
+
+        // Then
+        assertThat(stats).hasSize(1);
+        assertThat(stats.get(0).getApartment()).isEqualTo(apartmentName(3));
+        assertThat(stats.get(0).getTotalBookedDays()).isEqualTo("90");
+    }
+
+    @Test
+    void getStats_withOnlyLowerBound_shouldIncludeEverythingAfterIt() {
+
+        // When
+        List<ReservationStatsResponse> stats = reportingService.getStats(LocalDate.of(2025, 12, 1), null, apartmentName(0));
+
+        // Then
+        assertThat(stats.get(0).getTotalBookedDays()).isEqualTo("31");
+    }
+
+    @Test
+    void recomputeStats_shouldMatchDatabaseAggregation() {
+
+        // When
+        List<ReservationStatsResponse> expected = reportingService.getStats(LocalDate.of(2025, 1, 15), LocalDate.of(2025, 11, 3), null);
+        List<ReservationStatsResponse> recomputed = reportingService.recomputeStats(LocalDate.of(2025, 1, 15), LocalDate.of(2025, 11, 3), null);
+        List<ReservationStatsResponse> unbounded = reportingService.recomputeStats(null, null, apartmentName(7));
+
+        // Then
+        assertThat(recomputed).usingRecursiveComparison()
+                .withComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                .isEqualTo(expected);
+        assertThat(unbounded).hasSize(1);
+        assertThat(unbounded.get(0).getTotalRevenue()).isEqualByComparingTo("36500.00");
+        assertThat(unbounded.get(0).getTotalBookedDays()).isEqualTo("365");
+    }
+
+    @Test
+    void analyticsFromSnapshot_shouldMatchDatabaseAggregation() {
+
+        // Given
+        reservationColumnarSnapshot.reload();
+
+        // When
+        AnalyticsResponse byApartment = reportingService.queryAnalytics(
+                AnalyticsDimension.APARTMENT, LocalDate.of(2025, 1, 15), LocalDate.of(2025, 11, 3), null);
+        AnalyticsResponse byUser = reportingService.queryAnalytics(AnalyticsDimension.USER, null, null, apartmentName(7));
+        reservationColumnarSnapshot.invalidate();
+        AnalyticsResponse byApartmentFromDatabase = reportingService.queryAnalytics(
+                AnalyticsDimension.APARTMENT, LocalDate.of(2025, 1, 15), LocalDate.of(2025, 11, 3), null);
+        AnalyticsResponse byUserFromDatabase = reportingService.queryAnalytics(AnalyticsDimension.USER, null, null, apartmentName(7));
+
+        // Then
+        assertThat(byApartment.getSource()).isEqualTo("snapshot");
+        assertThat(byApartmentFromDatabase.getSource()).isEqualTo("database");
+        assertThat(byApartment.getGroups()).hasSize(APARTMENTS);
+        assertThat(byApartment.getGroups()).usingRecursiveComparison()
+                .withComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                .isEqualTo(byApartmentFromDatabase.getGroups());
+        assertThat(byUser.getGroups()).hasSize(365);
+        assertThat(byUser.getGroups()).usingRecursiveComparison()
+                .withComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                .isEqualTo(byUserFromDatabase.getGroups());
+    }
+
+    @Test
+    void apartmentAndDateRangeQueries_shouldUseCompositeIndex() throws Exception {
+
+        // Given: the statements the repository sends for one apartment over a quarter
+        String apartment = apartmentName(3);
+        LocalDate from = LocalDate.of(2025, 1, 1);
+        LocalDate to = LocalDate.of(2025, 4, 1);
+        String summarySql = SqlCapture.captureOne(() ->
+                reservationRepository.summarizeApartmentBetween(apartment, from, to));
+        String rowsSql = SqlCapture.captureOne(() ->
+                reservationRepository.findForApartmentCheckingInBetween(apartment, from, to));
+        int apartmentKey = dimensionDictionary.apartmentId(apartment);
+
+        // When
+        String summaryPlan = SqlCapture.explainAnalyze(jdbcTemplate, summarySql, apartmentKey, from, to);
+        String rowsPlan = SqlCapture.explainAnalyze(jdbcTemplate, rowsSql, apartmentKey, from, to);
+
+        // Then
+        assertThat(summaryPlan).containsIgnoringCase("IDX_RESERVATION_APARTMENT_CHECK_IN");
+        assertThat(rowsPlan).containsIgnoringCase("IDX_RESERVATION_APARTMENT_CHECK_IN");
+    }
+
+    @Test
+    void dateRangeQuery_shouldUseCheckInIndex() throws Exception {
+
+        // Given
+        LocalDate from = LocalDate.of(2025, 2, 1);
+        LocalDate to = LocalDate.of(2025, 3, 1);
+        String sql = SqlCapture.captureOne(() -> reservationRepository.summarizeByApartmentBetween(from, to));
+
+        // When
+        String plan = SqlCapture.explainAnalyze(jdbcTemplate, sql, from, to);
+
+        // Then
+        assertThat(plan).containsIgnoringCase("IDX_RESERVATION_CHECK_IN");
+    }
+
+    private static String apartmentName(int apartment) {
+        return String.format("Apartment %02d", apartment);
+    }
+}
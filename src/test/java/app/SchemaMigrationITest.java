@@ -0,0 +1,153 @@
+package app;
+
+import app.model.ReservationReporting;
+import app.repository.ApartmentRepository;
+import app.repository.ReservationRepository;
+import app.repository.ReservationUserRepository;
+import app.service.ReportingService;
+import app.service.StatsReconciliationService;
+import app.web.dto.ReservationDetails;
+import app.web.dto.ReservationStatsResponse;
+import app.web.dto.UserReservationSummary;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+// Starts on a reservation table as the first version created it, with rows in it, and ddl-auto update as in production
+@ActiveProfiles("test")
+@DirtiesContext
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + SchemaMigrationITest.URL,
+        "spring.jpa.hibernate.ddl-auto=update"
+})
+@ContextConfiguration(initializers = SchemaMigrationITest.BaselineSchema.class)
+public class SchemaMigrationITest {
+
+    static final String URL = "jdbc:h2:mem:baselinedb;MODE=MYSQL;DB_CLOSE_DELAY=-1";
+
+    // Stored twice by a version without the unique key, once redelivered a day later
+    static final UUID REDELIVERED = UUID.randomUUID();
+
+    @Autowired
+    private ReportingService reportingService;
+
+    @Autowired
+    private StatsReconciliationService statsReconciliationService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ApartmentRepository apartmentRepository;
+
+    @Autowired
+    private ReservationUserRepository reservationUserRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    static class BaselineSchema implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+        @Override
+        public void initialize(ConfigurableApplicationContext applicationContext) {
+            JdbcTemplate baseline = new JdbcTemplate(new DriverManagerDataSource(URL, "sa", "password"));
+            baseline.execute("DROP ALL OBJECTS");
+            baseline.execute("""
+                    CREATE TABLE reservation_reporting (
+                        id UUID NOT NULL PRIMARY KEY,
+                        reservation_id UUID NOT NULL,
+                        check_in_date DATE NOT NULL,
+                        check_out_date DATE NOT NULL,
+                        guests INTEGER NOT NULL,
+                        reservation_length BIGINT NOT NULL,
+                        total_price NUMERIC(38,2) NOT NULL,
+                        "user" VARCHAR(255) NOT NULL,
+                        apartment VARCHAR(255) NOT NULL,
+                        created_on TIMESTAMP(6) NOT NULL,
+                        updated_on TIMESTAMP(6) NOT NULL
+                    )""");
+            insert(baseline, REDELIVERED, "Apartment 1", "Petar123", LocalDate.of(2025, 1, 10), 3, 2, "300.00", 0);
+            insert(baseline, UUID.randomUUID(), "Apartment 2", "Maria", LocalDate.of(2025, 2, 1), 2, 1, "150.00", 0);
+            insert(baseline, UUID.randomUUID(), "Apartment 1", "Maria", LocalDate.of(2025, 3, 5), 1, 2, "80.00", 0);
+            insert(baseline, REDELIVERED, "Apartment 1", "Petar123", LocalDate.of(2025, 1, 10), 3, 2, "300.00", 1);
+        }
+
+        private static void insert(JdbcTemplate baseline, UUID reservationId, String apartment, String user,
+                                   LocalDate checkIn, long nights, int guests, String price, int daysLater) {
+            LocalDateTime createdOn = checkIn.atStartOfDay().minusDays(30).plusDays(daysLater);
+            baseline.update("INSERT INTO reservation_reporting (id, reservation_id, check_in_date, check_out_date,"
+                            + " guests, reservation_length, total_price, \"user\", apartment, created_on, updated_on)"
+                            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                    UUID.randomUUID(), reservationId, checkIn, checkIn.plusDays(nights), guests, nights,
+                    new BigDecimal(price), user, apartment, createdOn, createdOn);
+        }
+    }
+
+    @Test
+    void baselineRows_shouldBeMovedToDimensionKeysAndStayReadableAndWritable() {
+
+        // Then: the name columns are gone and every row points at its dimension row
+        List<String> columns = jdbcTemplate.queryForList("SELECT LOWER(COLUMN_NAME) FROM INFORMATION_SCHEMA.COLUMNS"
+                + " WHERE TABLE_NAME = 'RESERVATION_REPORTING'", String.class);
+        assertThat(columns).contains("apartment_id", "user_id").doesNotContain("apartment", "user");
+        assertThat(apartmentRepository.count()).isEqualTo(2);
+        assertThat(reservationUserRepository.count()).isEqualTo(2);
+
+        // Then: one row per reservationId, keeping the first stored with the latest updatedOn, and the key is in place
+        ReservationReporting redelivered = reservationRepository.findByReservationId(REDELIVERED);
+        assertThat(redelivered.getCreatedOn()).isEqualTo(LocalDate.of(2025, 1, 10).atStartOfDay().minusDays(30));
+        assertThat(redelivered.getUpdatedOn()).isEqualTo(LocalDate.of(2025, 1, 10).atStartOfDay().minusDays(29));
+        assertThatThrownBy(() -> jdbcTemplate.update("INSERT INTO reservation_reporting (id, reservation_id,"
+                        + " check_in_date, check_out_date, guests, reservation_length, total_price, user_id, apartment_id,"
+                        + " created_on, updated_on) SELECT ?, reservation_id, check_in_date, check_out_date, guests,"
+                        + " reservation_length, total_price, user_id, apartment_id, created_on, updated_on"
+                        + " FROM reservation_reporting WHERE reservation_id = ?", UUID.randomUUID(), REDELIVERED))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        assertThat(reservationRepository.findAll())
+                .extracting(r -> r.getApartment() + "/" + r.getUser())
+                .containsExactlyInAnyOrder("Apartment 1/Petar123", "Apartment 2/Maria", "Apartment 1/Maria");
+
+        // When
+        ReservationReporting saved = reportingService.saveReservation(
+                ReservationReportingITest.reservationDetails("Apartment 2", "Petar123", LocalDate.of(2025, 4, 1),
+                        2, 2, new BigDecimal("200.00")));
+        ReservationDetails redelivery = ReservationReportingITest.reservationDetails("Apartment 1", "Petar123",
+                LocalDate.of(2025, 1, 10), 3, 2, new BigDecimal("300.00"));
+        redelivery.setReservationId(REDELIVERED);
+        ReservationReporting redeliveredAgain = reportingService.saveReservation(redelivery);
+        statsReconciliationService.reconcile();
+
+        // Then
+        assertThat(reservationRepository.findByReservationId(saved.getReservationId()).getApartment())
+                .isEqualTo("Apartment 2");
+        assertThat(apartmentRepository.count()).isEqualTo(2);
+        assertThat(redeliveredAgain.getId()).isEqualTo(redelivered.getId());
+        assertThat(reportingService.getStats(null, null, null))
+                .extracting(ReservationStatsResponse::getApartment, s -> s.getTotalRevenue().intValue())
+                .containsExactly(
+                        tuple("Apartment 1", 380),
+                        tuple("Apartment 2", 350));
+        UserReservationSummary maria = reportingService.getUserSummary("Maria");
+        assertThat(maria.getReservationCount()).isEqualTo(2);
+        assertThat(maria.getTotalSpend()).isEqualByComparingTo("230.00");
+        assertThat(statsReconciliationService.reconcile().getDrifts()).isEmpty();
+    }
+}
@@ -0,0 +1,58 @@
+package app;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Captures the SQL Hibernate generates while an action runs on the current thread, so a test can
+ * EXPLAIN the statement the application actually sends instead of a hand-written copy of it.
+ * Registered as the session factory's statement inspector:
+ * {@code spring.jpa.properties.hibernate.session_factory.statement_inspector=app.SqlCapture}.
+ */
+public class SqlCapture implements StatementInspector {
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    private static final ThreadLocal<List<String>> captured = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        List<String> statements = captured.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+
+    // The one statement the action sent
+    public static String captureOne(Action action) throws Exception {
+        captured.set(new ArrayList<>());
+        try {
+            action.run();
+            List<String> statements = captured.get();
+            assertThat(statements).as("statements sent").hasSize(1);
+            return statements.get(0);
+        } finally {
+            captured.remove();
+        }
+    }
+
+    /**
+     * Runs the statement under H2's EXPLAIN ANALYZE with the given parameter values, in the order
+     * of its placeholders, and returns the plan with the rows read.
+     */
+    public static String explainAnalyze(JdbcTemplate jdbcTemplate, String sql, Object... parameters) {
+        assertThat(sql.chars().filter(c -> c == '?').count())
+                .as("placeholders in %s", sql)
+                .isEqualTo(parameters.length);
+        return String.join("\n", jdbcTemplate.queryForList("EXPLAIN ANALYZE " + sql, String.class, parameters));
+    }
+}
@@ -0,0 +1,43 @@
+package app;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the JDBC statements Hibernate prepares while an action runs, read from its statistics
+ * (hibernate.generate_statistics). The statistics are shared by every thread, so statements of the
+ * stats workers count too, and nothing else may use the database while measuring.
+ */
+public class SqlStatementCounter {
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    private final Statistics statistics;
+
+    public SqlStatementCounter(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        assertThat(statistics.isStatisticsEnabled())
+                .as("hibernate.generate_statistics must be on to count statements")
+                .isTrue();
+    }
+
+    public long count(Action action) throws Exception {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    // Fails when the action needs more statements than its budget, e.g. after an N+1 slipped in
+    public void assertAtMost(long budget, String description, Action action) throws Exception {
+        long statements = count(action);
+        assertThat(statements)
+                .as("SQL statements for %s", description)
+                .isLessThanOrEqualTo(budget);
+    }
+}
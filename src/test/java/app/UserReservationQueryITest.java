@@ -0,0 +1,167 @@
+package app;
+
+import app.model.ReservationReporting;
+import app.repository.DimensionDictionary;
+import app.repository.ReservationRepository;
+import app.service.ReportingService;
+import app.service.ReservationIngestService;
+import app.web.dto.ReservationDetails;
+import app.web.dto.ReservationHistoryPage;
+import app.web.dto.UserReservationSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Per-user history and totals, and proof that they read only that user's rows (H2 in MySQL mode)
+@ActiveProfiles("test")
+@DirtiesContext
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:userdb;MODE=MYSQL",
+        // The plans below are of the SQL Hibernate generates for the repository queries
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=app.SqlCapture"
+})
+public class UserReservationQueryITest {
+
+    private static final int USERS = 200;
+    private static final int RESERVATIONS_PER_USER = 15;
+    private static final Pattern SCAN_COUNT = Pattern.compile("scanCount: (\\d+)");
+
+    @Autowired
+    private ReportingService reportingService;
+
+    @Autowired
+    private ReservationIngestService reservationIngestService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private DimensionDictionary dimensionDictionary;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Users take turns, so each user's rows are spread over the whole table
+    @BeforeEach
+    void seed() {
+        reservationRepository.deleteAll();
+
+        List<ReservationDetails> reservations = new ArrayList<>();
+        for (int i = 0; i < RESERVATIONS_PER_USER; i++) {
+            for (int user = 0; user < USERS; user++) {
+                LocalDate checkIn = LocalDate.of(2025, 1, 1).plusDays(i);
+                reservations.add(ReservationDetails.builder()
+                        .reservationId(UUID.randomUUID())
+                        .checkInDate(checkIn)
+                        .checkOutDate(checkIn.plusDays(2))
+                        .guests(2)
+                        .reservationLength(2)
+                        .totalPrice(new BigDecimal("150.00"))
+                        .user(userName(user))
+                        .apartment("Apartment " + (user % 10))
+                        .build());
+            }
+        }
+        reservationIngestService.ingest(reservations);
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void getUserReservationHistoryPage_shouldWalkOnlyThatUsersReservations() {
+
+        // When
+        List<ReservationReporting> walked = new ArrayList<>();
+        String cursor = null;
+        do {
+            ReservationHistoryPage page = reportingService.getUserReservationHistoryPage(userName(42), 4, cursor);
+            walked.addAll(page.getReservations());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        // Then
+        assertThat(walked).hasSize(RESERVATIONS_PER_USER);
+        assertThat(walked).extracting(ReservationReporting::getUser).containsOnly(userName(42));
+        assertThat(walked).extracting(ReservationReporting::getId).doesNotHaveDuplicates();
+        assertThat(walked).extracting(ReservationReporting::getCreatedOn).isSorted();
+    }
+
+    @Test
+    void getUserSummary_shouldTotalThatUsersSpendNightsAndReservations() {
+
+        // When
+        UserReservationSummary summary = reportingService.getUserSummary(userName(7));
+        UserReservationSummary unknown = reportingService.getUserSummary("nobody");
+
+        // Then
+        assertThat(summary.getTotalSpend()).isEqualByComparingTo("2250.00");
+        assertThat(summary.getTotalNights()).isEqualTo(30);
+        assertThat(summary.getReservationCount()).isEqualTo(RESERVATIONS_PER_USER);
+        assertThat(unknown.getReservationCount()).isZero();
+        assertThat(dimensionDictionary.findUserId("nobody")).isEmpty();
+    }
+
+    @Test
+    void userHistoryPageQueries_shouldScanOnlyOnePageOfThatUsersIndexRange() throws Exception {
+
+        // Given: the statements the repository sends for the first page and the one after it
+        String user = userName(42);
+        List<ReservationReporting> firstPage = new ArrayList<>();
+        String firstPageSql = SqlCapture.captureOne(() ->
+                firstPage.addAll(reservationRepository.findFirstPageForUser(user, PageRequest.ofSize(5))));
+        ReservationReporting last = firstPage.get(firstPage.size() - 1);
+        String nextPageSql = SqlCapture.captureOne(() -> reservationRepository.findPageForUserAfter(
+                user, last.getCreatedOn(), last.getId(), PageRequest.ofSize(5)));
+        int userKey = dimensionDictionary.userId(user);
+
+        // When
+        String firstPagePlan = SqlCapture.explainAnalyze(jdbcTemplate, firstPageSql, userKey, 5);
+        String nextPagePlan = SqlCapture.explainAnalyze(jdbcTemplate, nextPageSql,
+                userKey, last.getCreatedOn(), last.getCreatedOn(), last.getId(), 5);
+
+        // Then
+        assertThat(firstPagePlan).containsIgnoringCase("IDX_RESERVATION_USER_CREATED_ON_ID");
+        assertThat(scanCount(firstPagePlan)).isLessThanOrEqualTo(RESERVATIONS_PER_USER + 1);
+        assertThat(nextPagePlan).containsIgnoringCase("IDX_RESERVATION_USER_CREATED_ON_ID");
+        assertThat(scanCount(nextPagePlan)).isLessThanOrEqualTo(RESERVATIONS_PER_USER + 1);
+    }
+
+    @Test
+    void userSummaryQuery_shouldScanOnlyThatUsersRows() throws Exception {
+
+        // Given
+        String sql = SqlCapture.captureOne(() -> reservationRepository.summarizeUser(userName(7)));
+
+        // When
+        String plan = SqlCapture.explainAnalyze(jdbcTemplate, sql, dimensionDictionary.userId(userName(7)));
+
+        // Then
+        assertThat(plan).containsIgnoringCase("IDX_RESERVATION_USER_CREATED_ON_ID");
+        assertThat(scanCount(plan)).isLessThanOrEqualTo(RESERVATIONS_PER_USER + 1);
+    }
+
+    // Rows H2 read from the table, against the USERS * RESERVATIONS_PER_USER rows it holds
+    private static long scanCount(String plan) {
+        Matcher matcher = SCAN_COUNT.matcher(plan);
+        assertThat(matcher.find()).as("scan count in plan: %s", plan).isTrue();
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private static String userName(int user) {
+        return String.format("user-%03d", user);
+    }
+}
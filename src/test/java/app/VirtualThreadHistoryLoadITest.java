@@ -0,0 +1,42 @@
+package app;
+
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Every slow history call gets its own virtual thread, so /query never waits for a worker
+@ActiveProfiles("test")
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.threads.virtual.enabled=true",
+        "server.tomcat.threads.max=" + HistoryLoadITestSupport.TOMCAT_THREADS,
+        // A connection for every slow history query, so they all block in the database at once
+        "spring.datasource.hikari.maximum-pool-size=" + (HistoryLoadITestSupport.SLOW_HISTORY_CALLS + 2)
+})
+public class VirtualThreadHistoryLoadITest extends HistoryLoadITestSupport {
+
+    @Test
+    void queryP99_shouldNotWaitForSlowHistoryCalls() throws Exception {
+
+        AtomicInteger pinned = new AtomicInteger();
+        try (RecordingStream recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ofMillis(20)).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", event -> pinned.incrementAndGet());
+            recording.startAsync();
+
+            // All slow calls are in flight at once, well beyond the Tomcat thread limit
+            LoadResult result = queryP99UnderSlowHistoryLoad(SLOW_HISTORY_CALLS);
+
+            assertThat(result.queryP99Ms()).isLessThan(result.fastestHistoryMs() / 3);
+        }
+
+        assertThat(pinned.get()).as("virtual threads pinned to their carrier while blocking").isZero();
+    }
+}
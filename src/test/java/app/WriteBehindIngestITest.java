@@ -0,0 +1,96 @@
+package app;
+
+import app.model.ApartmentStats;
+import app.repository.ApartmentStatsRepository;
+import app.repository.ReservationRepository;
+import app.service.WriteBehindIngestService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+// Write-behind mode end to end: a journal left behind by a crash is replayed on startup, and queued
+// reservations reach the reservation table and the materialized stats
+@ActiveProfiles("test")
+@DirtiesContext
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:writebehinddb;MODE=MYSQL",
+        "reporting.ingest.write-behind.enabled=true",
+        "reporting.ingest.write-behind.fsync=false",
+        "reporting.ingest.write-behind.batch-size=50"
+})
+public class WriteBehindIngestITest {
+
+    private static final Path JOURNAL_DIRECTORY = leftoverJournal();
+    private static final UUID REPLAYED_RESERVATION_ID = UUID.fromString("0b6d1f7e-3c1a-4f5e-9d2b-7a8c6e4f1a20");
+
+    @Autowired
+    private WriteBehindIngestService writeBehindIngestService;
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private ApartmentStatsRepository apartmentStatsRepository;
+
+    @DynamicPropertySource
+    static void journalDirectory(DynamicPropertyRegistry registry) {
+        registry.add("reporting.ingest.write-behind.journal-dir", JOURNAL_DIRECTORY::toString);
+    }
+
+    @Test
+    void leftoverJournal_shouldBeReplayedOnStartup() {
+        await().atMost(Duration.ofSeconds(10))
+                .until(() -> reservationRepository.findByReservationId(REPLAYED_RESERVATION_ID) != null);
+    }
+
+    @Test
+    void queuedReservations_shouldBeWrittenInBatches() {
+
+        // When
+        for (int i = 0; i < 300; i++) {
+            writeBehindIngestService.enqueue(ReservationReportingITest.reservationDetails(
+                    "Apartment 7", "user-" + i, LocalDate.of(2025, 6, 1), 2, 2, new BigDecimal("150.00")));
+        }
+
+        // Then
+        await().atMost(Duration.ofSeconds(20)).untilAsserted(() -> {
+            ApartmentStats stats = apartmentStatsRepository.findById("Apartment 7").orElseThrow();
+            assertThat(stats.getReservationCount()).isEqualTo(300);
+            assertThat(stats.getTotalRevenue()).isEqualByComparingTo("45000.00");
+        });
+        assertThat(writeBehindIngestService.getQueueDepth()).isZero();
+    }
+
+    // A journal with one committed-never entry and a torn final line, as a crash would leave it
+    private static Path leftoverJournal() {
+        try {
+            Path directory = Files.createTempDirectory("ingest-journal");
+            String entry = """
+                    {"reservationId":"0b6d1f7e-3c1a-4f5e-9d2b-7a8c6e4f1a20","checkInDate":"2025-05-01",\
+                    "checkOutDate":"2025-05-03","guests":2,"reservationLength":2,"totalPrice":180.00,\
+                    "user":"Maria","apartment":"Apartment 9"}
+                    {"reservationId":"9c""";
+            Files.writeString(directory.resolve("reservations.journal"), entry, StandardCharsets.UTF_8);
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package app.archive;
+
+import app.model.ReservationReporting;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArchiveSegmentFileUTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void writtenSegment_shouldReadBackEveryColumnInHistoryOrder() throws IOException {
+
+        // Given
+        List<ReservationReporting> reservations = randomReservations(2000);
+        reservations.get(17).setTotalPrice(new BigDecimal("123456789012345678901234.50"));
+        reservations.get(18).setTotalPrice(new BigDecimal("0.001"));
+        Path path = directory.resolve("segment-1.seg");
+
+        // When
+        ArchiveSegmentFile.write(path, reservations);
+        ArchiveSegment segment = ArchiveSegmentFile.read(path);
+
+        // Then
+        List<ReservationReporting> expected = new ArrayList<>(reservations);
+        expected.sort(ReservationArchive.HISTORY_ORDER);
+        assertEquals(expected, segment.rows().toList());
+        assertFalse(Files.exists(directory.resolve("segment-1.seg.tmp")));
+    }
+
+    @Test
+    void header_shouldDescribeTheRangesAndApartmentsOfTheSegment() throws IOException {
+
+        // Given
+        List<ReservationReporting> reservations = randomReservations(500);
+        Path path = directory.resolve("segment-2.seg");
+        ArchiveSegmentFile.write(path, reservations);
+
+        // When
+        SegmentMetadata metadata = ArchiveSegmentFile.readMetadata(path);
+
+        // Then
+        assertEquals(500, metadata.rows());
+        assertEquals(reservations.stream().map(ReservationReporting::getCheckInDate).min(LocalDate::compareTo).orElseThrow(),
+                metadata.minCheckIn());
+        assertEquals(reservations.stream().map(ReservationReporting::getCreatedOn).max(LocalDateTime::compareTo).orElseThrow(),
+                metadata.maxCreatedOn());
+        assertTrue(metadata.overlapsCheckIn(metadata.maxCheckIn(), null));
+        assertFalse(metadata.overlapsCheckIn(null, metadata.minCheckIn()));
+        assertFalse(metadata.overlapsCheckIn(metadata.maxCheckIn().plusDays(1), metadata.maxCheckIn().plusDays(30)));
+        assertTrue(metadata.mayContainApartment("Apartment 3"));
+        assertFalse(metadata.mayContainApartment("Apartment 99"));
+        reservations.forEach(reservation -> {
+            assertTrue(metadata.mayContainReservation(reservation.getReservationId()));
+            assertTrue(metadata.mayContainUser(reservation.getUser()));
+        });
+    }
+
+    @Test
+    void bloomFilter_shouldRejectMostReservationIdsItDoesNotHold() throws IOException {
+
+        // Given
+        Path path = directory.resolve("segment-3.seg");
+        ArchiveSegmentFile.write(path, randomReservations(5000));
+        SegmentMetadata metadata = ArchiveSegmentFile.readMetadata(path);
+
+        // When
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (metadata.mayContainReservation(UUID.randomUUID())) {
+                falsePositives++;
+            }
+        }
+
+        // Then: about 1% expected at 10 bits per id
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void lookups_shouldFindReservationsAndKeysetPositions() throws IOException {
+
+        // Given: two rows created at the same instant, ordered by id as unsigned bytes
+        LocalDateTime createdOn = LocalDateTime.of(2024, 2, 1, 9, 30, 0, 123_456_789);
+        ReservationReporting low = reservation(new UUID(0x1L, 1), createdOn, "Apartment 1", "user-1");
+        ReservationReporting high = reservation(new UUID(0x8000000000000000L, 1), createdOn, "Apartment 2", "user-2");
+        ReservationReporting later = reservation(UUID.randomUUID(), createdOn.plusSeconds(1), "Apartment 1", "user-1");
+        Path path = directory.resolve("segment-4.seg");
+        ArchiveSegmentFile.write(path, List.of(later, high, low));
+
+        // When
+        ArchiveSegment segment = ArchiveSegmentFile.read(path);
+
+        // Then
+        assertEquals(List.of(low, high, later), segment.rows().toList());
+        assertEquals(1, segment.find(high.getReservationId()));
+        assertEquals(-1, segment.find(UUID.randomUUID()));
+        assertEquals(0, segment.firstAfter(null, null));
+        assertEquals(1, segment.firstAfter(createdOn, low.getId()));
+        assertEquals(2, segment.firstAfter(createdOn, high.getId()));
+        assertEquals(3, segment.firstAfter(later.getCreatedOn(), later.getId()));
+        assertEquals(-1, segment.userCode("user-3"));
+    }
+
+    @Test
+    void fileThatIsNotASegment_shouldBeRejected() throws IOException {
+
+        // Given
+        Path path = directory.resolve("segment-5.seg");
+        Files.writeString(path, "not a segment");
+
+        // When/Then
+        assertThrows(IOException.class, () -> ArchiveSegmentFile.readMetadata(path));
+    }
+
+    private static List<ReservationReporting> randomReservations(int count) {
+        Random random = new Random(11);
+        LocalDateTime start = LocalDateTime.of(2023, 1, 1, 0, 0);
+        List<ReservationReporting> reservations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDate checkIn = LocalDate.of(2023, 1, 1).plusDays(random.nextInt(365));
+            LocalDateTime createdOn = start.plusSeconds(random.nextInt(30 * 24 * 3600)).withNano(random.nextInt(1_000_000_000));
+            reservations.add(ReservationReporting.builder()
+                    .id(new UUID(random.nextLong(), random.nextLong()))
+                    .reservationId(new UUID(random.nextLong(), random.nextLong()))
+                    .checkInDate(checkIn)
+                    .checkOutDate(checkIn.plusDays(1 + random.nextInt(14)))
+                    .guests(1 + random.nextInt(6))
+                    .reservationLength(1 + random.nextInt(14))
+                    .totalPrice(BigDecimal.valueOf(random.nextInt(1_000_000), 2))
+                    .user("user-" + random.nextInt(300))
+                    .apartment("Apartment " + random.nextInt(20))
+                    .createdOn(createdOn)
+                    .updatedOn(createdOn.plusMinutes(random.nextInt(3)))
+                    .build());
+        }
+        return reservations;
+    }
+
+    private static ReservationReporting reservation(UUID id, LocalDateTime createdOn, String apartment, String user) {
+        return ReservationReporting.builder()
+                .id(id)
+                .reservationId(UUID.randomUUID())
+                .checkInDate(LocalDate.of(2024, 3, 1))
+                .checkOutDate(LocalDate.of(2024, 3, 3))
+                .guests(2)
+                .reservationLength(2)
+                .totalPrice(new BigDecimal("240.00"))
+                .user(user)
+                .apartment(apartment)
+                .createdOn(createdOn)
+                .updatedOn(createdOn)
+                .build();
+    }
+}
@@ -0,0 +1,88 @@
+package app.eventlog;
+
+import app.model.ReservationReporting;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReservationEventCodecUTest {
+
+    @Test
+    void createdEvent_shouldRoundTrip() {
+
+        // Given
+        ReservationReporting reservation = reservation(new BigDecimal("1234.56"));
+
+        // When
+        ReservationEvent decoded = ReservationEventCodec.decode(ByteBuffer.wrap(
+                ReservationEventCodec.encode(ReservationEvent.created(reservation))));
+
+        // Then
+        assertEquals(ReservationEventType.CREATED, decoded.type());
+        assertEquals(reservation, decoded.reservation());
+    }
+
+    @Test
+    void priceBeyondLongRange_shouldRoundTripExactly() {
+
+        // Given
+        ReservationReporting reservation = reservation(new BigDecimal("123456789012345678901234567890.123"));
+
+        // When
+        ReservationEvent decoded = ReservationEventCodec.decode(ByteBuffer.wrap(
+                ReservationEventCodec.encode(ReservationEvent.created(reservation))));
+
+        // Then
+        assertEquals(reservation.getTotalPrice(), decoded.reservation().getTotalPrice());
+    }
+
+    @Test
+    void touchedEvent_shouldRoundTrip() {
+
+        // Given
+        UUID reservationId = UUID.randomUUID();
+        LocalDateTime updatedOn = LocalDateTime.of(2025, 4, 1, 9, 30, 15, 123_456_789);
+
+        // When
+        ReservationEvent decoded = ReservationEventCodec.decode(ByteBuffer.wrap(
+                ReservationEventCodec.encode(ReservationEvent.touched(reservationId, updatedOn))));
+
+        // Then
+        assertEquals(ReservationEventType.TOUCHED, decoded.type());
+        assertEquals(reservationId, decoded.reservation().getReservationId());
+        assertEquals(updatedOn, decoded.reservation().getUpdatedOn());
+    }
+
+    @Test
+    void abortedRecord_shouldListThePositions() {
+
+        // Given
+        ByteBuffer payload = ByteBuffer.wrap(ReservationEventCodec.encodeAborted(new long[]{0, 96, 1L << 40}));
+
+        // When/Then
+        assertEquals(ReservationEventCodec.ABORTED, ReservationEventCodec.kind(payload));
+        assertArrayEquals(new long[]{0, 96, 1L << 40}, ReservationEventCodec.decodeAborted(payload));
+    }
+
+    private static ReservationReporting reservation(BigDecimal totalPrice) {
+        return ReservationReporting.builder()
+                .id(UUID.randomUUID())
+                .reservationId(UUID.randomUUID())
+                .checkInDate(LocalDate.of(2025, 3, 28))
+                .checkOutDate(LocalDate.of(2025, 3, 30))
+                .guests(3)
+                .reservationLength(2)
+                .totalPrice(totalPrice)
+                .user("Ivancho")
+                .apartment("Апартамент 1")
+                .createdOn(LocalDateTime.of(2025, 3, 1, 12, 0, 0, 500))
+                .updatedOn(LocalDateTime.of(2025, 3, 2, 8, 15))
+                .build();
+    }
+}
@@ -0,0 +1,111 @@
+package app.eventlog;
+
+import app.model.ReservationReporting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReservationEventLogUTest {
+
+    @TempDir
+    Path directory;
+
+    private ReservationEventLog reservationEventLog;
+
+    @BeforeEach
+    void setUp() {
+        reservationEventLog = new ReservationEventLog(true, directory, DataSize.ofKilobytes(16), false);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        reservationEventLog.close();
+    }
+
+    @Test
+    void eventAbortedWhileALaterTransactionIsInFlight_shouldNotBeReplayed() {
+
+        // Given: the first transaction appends and rolls back while the second one has appended and not completed
+        ReservationReporting rolledBack = reservation("Apartment 1");
+        ReservationReporting committed = reservation("Apartment 2");
+        List<TransactionSynchronization> first = appendInTransaction(rolledBack);
+        List<TransactionSynchronization> second = appendInTransaction(committed);
+        first.forEach(synchronization -> synchronization.beforeCommit(false));
+        second.forEach(synchronization -> synchronization.beforeCommit(false));
+        first.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        // When: replayed while the abort lies past the low-water mark, then once the second one commits
+        List<UUID> beforeCommit = new ArrayList<>();
+        long checkpoint = reservationEventLog.replay(0, (position, event) -> beforeCommit.add(event.reservation().getReservationId()));
+        second.forEach(TransactionSynchronization::afterCommit);
+        second.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        List<UUID> afterCommit = new ArrayList<>();
+        reservationEventLog.replay(checkpoint, (position, event) -> afterCommit.add(event.reservation().getReservationId()));
+        List<UUID> all = new ArrayList<>();
+        reservationEventLog.replay(0, (position, event) -> all.add(event.reservation().getReservationId()));
+
+        // Then
+        assertTrue(checkpoint < reservationEventLog.end());
+        assertEquals(List.of(), beforeCommit);
+        assertEquals(List.of(committed.getReservationId()), afterCommit);
+        assertEquals(List.of(committed.getReservationId()), all);
+    }
+
+    @Test
+    void secondLogOnTheSameDirectory_shouldFailToOpen() throws IOException {
+
+        // Given
+        String logId = reservationEventLog.getLogId();
+
+        // When / Then
+        assertThrows(IllegalStateException.class,
+                () -> new ReservationEventLog(true, directory, DataSize.ofKilobytes(16), false));
+        reservationEventLog.close();
+        reservationEventLog = new ReservationEventLog(true, directory, DataSize.ofKilobytes(16), false);
+        assertEquals(logId, reservationEventLog.getLogId());
+    }
+
+    // The synchronizations the append registered, to be completed by the test
+    private List<TransactionSynchronization> appendInTransaction(ReservationReporting reservation) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            reservationEventLog.append(List.of(ReservationEvent.created(reservation)));
+            return TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static ReservationReporting reservation(String apartment) {
+        LocalDate checkIn = LocalDate.of(2025, 3, 1);
+        LocalDateTime createdOn = LocalDateTime.of(2025, 2, 1, 12, 0);
+        return ReservationReporting.builder()
+                .id(UUID.randomUUID())
+                .reservationId(UUID.randomUUID())
+                .apartment(apartment)
+                .user("Maria")
+                .checkInDate(checkIn)
+                .checkOutDate(checkIn.plusDays(2))
+                .guests(2)
+                .reservationLength(2)
+                .totalPrice(new BigDecimal("200.00"))
+                .createdOn(createdOn)
+                .updatedOn(createdOn)
+                .build();
+    }
+}
@@ -0,0 +1,126 @@
+package app.eventlog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentedLogUTest {
+
+    private static final int SEGMENT_SIZE = 128;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void appendsBeyondOneSegment_shouldRollAndReplayInOrder() throws IOException {
+
+        // Given
+        List<Long> positions = new ArrayList<>();
+        try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+            for (int i = 0; i < 20; i++) {
+                positions.add(log.append(record(i)));
+            }
+
+            // When
+            List<String> replayed = new ArrayList<>();
+            log.replay(0, (position, payload) -> replayed.add(text(payload)));
+
+            // Then
+            assertTrue(log.segmentCount() > 1);
+            assertEquals(20, replayed.size());
+            assertEquals("record-0", replayed.get(0));
+            assertEquals("record-19", replayed.get(19));
+            assertEquals("record-7", text(log.read(positions.get(7))));
+        }
+    }
+
+    @Test
+    void replayFromPosition_shouldStartAtThatRecord() throws IOException {
+
+        // Given
+        List<Long> positions = new ArrayList<>();
+        try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+            for (int i = 0; i < 20; i++) {
+                positions.add(log.append(record(i)));
+            }
+
+            // When
+            List<Long> replayed = new ArrayList<>();
+            log.replay(positions.get(12), (position, payload) -> replayed.add(position));
+
+            // Then
+            assertEquals(positions.subList(12, 20), replayed);
+        }
+    }
+
+    @Test
+    void reopenedLog_shouldContinueAfterItsLastRecord() throws IOException {
+
+        // Given
+        long end;
+        try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(record(i));
+            }
+            end = log.end();
+        }
+
+        // When
+        try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+            long position = log.append(record(10));
+
+            // Then
+            assertEquals(end, position);
+            List<String> replayed = new ArrayList<>();
+            log.replay(0, (p, payload) -> replayed.add(text(payload)));
+            assertEquals(11, replayed.size());
+            assertEquals("record-10", replayed.get(10));
+        }
+    }
+
+    @Test
+    void tornRecord_shouldBeDroppedOnReopen() throws IOException {
+
+        // Given
+        long tornPosition;
+        try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+            log.append(record(0));
+            tornPosition = log.append(record(1));
+        }
+        // A crash in the middle of the second append: its length is written but the payload is not
+        try (FileChannel segment = FileChannel.open(directory.resolve(String.format("%020d.log", 0)), StandardOpenOption.WRITE)) {
+            segment.write(ByteBuffer.wrap(new byte[]{0, 0}), tornPosition + SegmentedLog.HEADER_SIZE);
+        }
+
+        // When
+        try (SegmentedLog log = new SegmentedLog(directory, SEGMENT_SIZE)) {
+
+            // Then
+            assertEquals(tornPosition, log.end());
+            assertEquals(tornPosition, log.append(record(2)));
+            List<String> replayed = new ArrayList<>();
+            log.replay(0, (p, payload) -> replayed.add(text(payload)));
+            assertEquals(List.of("record-0", "record-2"), replayed);
+        }
+    }
+
+    private static byte[] record(int i) {
+        return ("record-" + i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
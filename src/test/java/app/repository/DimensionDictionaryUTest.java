@@ -0,0 +1,188 @@
+package app.repository;
+
+import app.model.ReservationReporting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DimensionDictionaryUTest {
+
+    private static final String SELECT_APARTMENT_ID = "SELECT id FROM apartment WHERE name = ?";
+    private static final String LOCK_APARTMENT_ID = "SELECT id FROM apartment WHERE name = ? FOR UPDATE";
+    private static final String INSERT_APARTMENT = "INSERT IGNORE INTO apartment (name) VALUES (?)";
+    private static final String SELECT_USER_ID = "SELECT id FROM reservation_user WHERE name = ?";
+    private static final String LOCK_USER_ID = "SELECT id FROM reservation_user WHERE name = ? FOR UPDATE";
+    private static final String INSERT_USER = "INSERT IGNORE INTO reservation_user (name) VALUES (?)";
+    private static final String SELECT_USER_NAME = "SELECT name FROM reservation_user WHERE id = ?";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private DimensionDictionary dimensionDictionary;
+
+    @BeforeEach
+    void setUp() {
+        dimensionDictionary = new DimensionDictionary(jdbcTemplate, transactionManager);
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void givenStoredApartment_thenResolveItsIdOnceAndServeRepeatsFromTheCache() {
+        // Given
+        when(jdbcTemplate.queryForList(SELECT_APARTMENT_ID, Integer.class, "Apartment 1")).thenReturn(List.of(7));
+
+        // When
+        int first = dimensionDictionary.apartmentId("Apartment 1");
+        int second = dimensionDictionary.apartmentId("Apartment 1");
+
+        // Then
+        assertEquals(7, first);
+        assertEquals(7, second);
+        assertEquals("Apartment 1", dimensionDictionary.apartmentName(7));
+        verify(jdbcTemplate, times(1)).queryForList(SELECT_APARTMENT_ID, Integer.class, "Apartment 1");
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+        verify(jdbcTemplate, never()).queryForList(startsWith("SELECT name"), eq(String.class), any(Object[].class));
+    }
+
+    @Test
+    void givenNewUser_thenInsertItAndCacheTheGeneratedId() {
+        // Given
+        when(jdbcTemplate.queryForList(SELECT_USER_ID, Integer.class, "Maria")).thenReturn(List.of());
+        when(jdbcTemplate.update(INSERT_USER, "Maria")).thenReturn(1);
+        when(jdbcTemplate.queryForList(LOCK_USER_ID, Integer.class, "Maria")).thenReturn(List.of(3));
+
+        // When
+        int id = dimensionDictionary.userId("Maria");
+
+        // Then
+        assertEquals(3, id);
+        assertEquals(3, dimensionDictionary.userId("Maria"));
+        verify(jdbcTemplate, times(1)).update(INSERT_USER, "Maria");
+    }
+
+    @Test
+    void givenApartmentInsertedConcurrently_thenReadTheWinningRow() {
+        // Given
+        when(jdbcTemplate.queryForList(SELECT_APARTMENT_ID, Integer.class, "Apartment 2")).thenReturn(List.of());
+        when(jdbcTemplate.update(INSERT_APARTMENT, "Apartment 2")).thenReturn(0);
+        when(jdbcTemplate.queryForList(LOCK_APARTMENT_ID, Integer.class, "Apartment 2")).thenReturn(List.of(11));
+
+        // When
+        int id = dimensionDictionary.apartmentId("Apartment 2");
+
+        // Then
+        assertEquals(11, id);
+    }
+
+    @Test
+    void givenUnknownApartment_thenFindDoesNotInsertIt() {
+        // Given
+        when(jdbcTemplate.queryForList(SELECT_APARTMENT_ID, Integer.class, "Ghost")).thenReturn(List.of());
+
+        // When
+        Optional<Integer> id = dimensionDictionary.findApartmentId("Ghost");
+
+        // Then
+        assertTrue(id.isEmpty());
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void givenIdLoadedTwice_thenReturnTheSameNameInstance() {
+        // Given
+        when(jdbcTemplate.queryForList(SELECT_USER_NAME, String.class, 5)).thenReturn(List.of(new String("Petar123")));
+
+        // When
+        String first = dimensionDictionary.userName(5);
+        String second = dimensionDictionary.userName(5);
+
+        // Then
+        assertSame(first, second);
+        assertEquals(5, dimensionDictionary.userId(new String("Petar123")));
+        verify(jdbcTemplate, times(1)).queryForList(SELECT_USER_NAME, String.class, 5);
+        verify(jdbcTemplate, never()).queryForList(eq(SELECT_USER_ID), eq(Integer.class), any(Object[].class));
+    }
+
+    @Test
+    void givenNameInsertedByARolledBackTransaction_thenDoNotCacheItsId() {
+        // Given
+        TransactionSynchronizationManager.initSynchronization();
+        when(jdbcTemplate.queryForList(SELECT_APARTMENT_ID, Integer.class, "Apartment 3")).thenReturn(List.of());
+        when(jdbcTemplate.update(INSERT_APARTMENT, "Apartment 3")).thenReturn(1);
+        when(jdbcTemplate.queryForList(LOCK_APARTMENT_ID, Integer.class, "Apartment 3"))
+                .thenReturn(List.of(4))
+                .thenReturn(List.of(9));
+
+        // When: the id is reused within the transaction, then the transaction rolls back
+        int inserted = dimensionDictionary.apartmentId("Apartment 3");
+        int reused = dimensionDictionary.apartmentId("Apartment 3");
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        TransactionSynchronizationManager.initSynchronization();
+        int retried = dimensionDictionary.apartmentId("Apartment 3");
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        // Then
+        assertEquals(4, inserted);
+        assertEquals(4, reused);
+        assertEquals(9, retried);
+        assertEquals(9, dimensionDictionary.apartmentId("Apartment 3"));
+        verify(jdbcTemplate, times(2)).update(INSERT_APARTMENT, "Apartment 3");
+    }
+
+    @Test
+    void givenReservationsWithNewNames_whenRegister_thenInsertThemSortedAndSetTheKeys() {
+        // Given
+        ReservationReporting first = ReservationReporting.builder().apartment("Apartment B").user("Maria").build();
+        ReservationReporting second = ReservationReporting.builder().apartment("Apartment A").user("Maria").build();
+        when(jdbcTemplate.queryForList(eq(SELECT_APARTMENT_ID), eq(Integer.class), anyString())).thenReturn(List.of());
+        when(jdbcTemplate.update(eq(INSERT_APARTMENT), anyString())).thenReturn(1);
+        when(jdbcTemplate.queryForList(LOCK_APARTMENT_ID, Integer.class, "Apartment A")).thenReturn(List.of(1));
+        when(jdbcTemplate.queryForList(LOCK_APARTMENT_ID, Integer.class, "Apartment B")).thenReturn(List.of(2));
+        when(jdbcTemplate.queryForList(SELECT_USER_ID, Integer.class, "Maria")).thenReturn(List.of(6));
+
+        // When
+        dimensionDictionary.register(List.of(first, second));
+
+        // Then
+        var inOrder = inOrder(jdbcTemplate);
+        inOrder.verify(jdbcTemplate).update(INSERT_APARTMENT, "Apartment A");
+        inOrder.verify(jdbcTemplate).update(INSERT_APARTMENT, "Apartment B");
+        assertEquals(2, first.getApartmentKey());
+        assertEquals(1, second.getApartmentKey());
+        assertEquals(6, first.getUserKey());
+        assertEquals(6, second.getUserKey());
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+}
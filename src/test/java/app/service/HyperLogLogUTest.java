@@ -0,0 +1,99 @@
+package app.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HyperLogLogUTest {
+
+    // The documented worst relative standard error, where linear counting hands over to the harmonic mean
+    private static final double WORST_STANDARD_ERROR = 0.027;
+
+    @Test
+    void estimates_shouldStayWithinThreeStandardErrorsAtEveryCardinality() {
+
+        for (int n : new int[]{1_000, 4_500, 5_500, 10_000, 100_000}) {
+            for (int seed = 0; seed < 5; seed++) {
+                // When
+                long estimate = sketchOf("guest-" + seed + "-", 0, n).estimate();
+
+                // Then
+                double error = Math.abs(estimate - n) / (double) n;
+                assertTrue(error <= 3 * WORST_STANDARD_ERROR, "n=" + n + " seed=" + seed + " error=" + error);
+            }
+        }
+    }
+
+    @Test
+    void estimates_shouldHaveTheDocumentedStandardError() {
+
+        // Given
+        int n = 20_000;
+        int sketches = 50;
+
+        // When
+        double squares = 0;
+        for (int seed = 0; seed < sketches; seed++) {
+            double error = (sketchOf("user-" + seed + "-", 0, n).estimate() - n) / (double) n;
+            squares += error * error;
+        }
+
+        // Then: 1.04 / sqrt(2048), with room for the spread of 50 samples
+        assertEquals(0.023, HyperLogLog.RELATIVE_STANDARD_ERROR, 0.0005);
+        assertTrue(Math.sqrt(squares / sketches) <= 1.25 * HyperLogLog.RELATIVE_STANDARD_ERROR);
+    }
+
+    @Test
+    void smallSets_shouldBeCountedWithinOne() {
+
+        assertEquals(0, new HyperLogLog().estimate());
+        for (int n = 1; n <= 40; n++) {
+            long estimate = sketchOf("guest-", 0, n).estimate();
+            assertTrue(Math.abs(estimate - n) <= 1, "n=" + n + " estimate=" + estimate);
+        }
+    }
+
+    @Test
+    void mergedSketches_shouldEqualTheSketchOfTheUnion() {
+
+        // Given: overlapping sets, so the shared guests must count once
+        HyperLogLog union = sketchOf("guest-", 0, 30_000);
+
+        // When
+        HyperLogLog merged = sketchOf("guest-", 0, 20_000).merge(sketchOf("guest-", 10_000, 30_000));
+
+        // Then
+        assertEquals(union, merged);
+        assertEquals(union.estimate(), merged.estimate());
+    }
+
+    @Test
+    void sketchRebuiltFromItsRegisters_shouldEqualTheOriginal() {
+
+        // Given
+        HyperLogLog original = new HyperLogLog();
+        HyperLogLog rebuilt = new HyperLogLog();
+
+        // When: what is stored is one (register, value) pair per guest, merged with MAX
+        for (int i = 0; i < 5000; i++) {
+            String guest = "guest-" + i;
+            original.add(guest);
+            long hash = HyperLogLog.hash(guest);
+            rebuilt.set(HyperLogLog.registerIndex(hash), HyperLogLog.registerValue(hash));
+            rebuilt.set(HyperLogLog.registerIndex(hash), 1);
+        }
+
+        // Then
+        assertEquals(original, rebuilt);
+        original.add("guest-1");
+        assertEquals(rebuilt, original);
+    }
+
+    private static HyperLogLog sketchOf(String prefix, int from, int to) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < to; i++) {
+            sketch.add(prefix + i);
+        }
+        return sketch;
+    }
+}
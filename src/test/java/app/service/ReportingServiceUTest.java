@@ -1,26 +1,52 @@
 package app.service;
 
+import app.InvalidReportingQueryException;
 import app.ReservationNotFoundException;
+import app.archive.ReservationArchive;
+import app.eventlog.ReservationLookupIndex;
+import app.model.ApartmentDailyStats;
+import app.model.ApartmentStats;
+import app.model.ApartmentSummary;
+import app.model.GroupSummary;
 import app.model.ReservationReporting;
+import app.repository.ApartmentDailyStatsRepository;
+import app.repository.ApartmentGuestSketchRepository;
+import app.repository.ApartmentStatsRepository;
+import app.repository.ArchivedReservationRepository;
+import app.repository.DimensionDictionary;
 import app.repository.ReservationRepository;
+import app.web.dto.AnalyticsResponse;
 import app.web.dto.ReservationDetails;
+import app.web.dto.ReservationHistoryPage;
 import app.web.dto.ReservationResponse;
 import app.web.dto.ReservationStatsResponse;
+import app.web.dto.StatsTimeseriesPoint;
+import app.web.dto.UniqueGuestsResponse;
+import app.web.dto.UserReservationSummary;
 import app.web.mapper.DtoMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -29,6 +55,42 @@ public class ReportingServiceUTest {
     @Mock
     private ReservationRepository reservationRepository;
 
+    @Mock
+    private ApartmentStatsRepository apartmentStatsRepository;
+
+    @Mock
+    private ApartmentDailyStatsRepository apartmentDailyStatsRepository;
+
+    @Mock
+    private ReservationProjectionService reservationProjectionService;
+
+    @Mock
+    private ParallelStatsAggregationService parallelStatsAggregationService;
+
+    @Mock
+    private ReportingCache reportingCache;
+
+    @Mock
+    private ReservationLookupIndex reservationLookupIndex;
+
+    @Mock
+    private ReservationColumnarSnapshot reservationColumnarSnapshot;
+
+    @Mock
+    private DimensionDictionary dimensionDictionary;
+
+    @Mock
+    private ReservationArchive reservationArchive;
+
+    @Mock
+    private ApartmentGuestSketchRepository apartmentGuestSketchRepository;
+
+    @Mock
+    private ArchivedReservationRepository archivedReservationRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private ReportingService reportingService;
 
@@ -47,8 +109,7 @@ public class ReportingServiceUTest {
                 .user("Ivancho")
                 .apartment("Apartment 1")
                 .build();
-        ReservationReporting reservationReporting = DtoMapper.fromReservationDetails(reservationDetails);
-        when(reservationRepository.save(any(ReservationReporting.class))).thenReturn(reservationReporting);
+        when(reservationRepository.upsert(any(ReservationReporting.class))).thenReturn(1);
 
         // When
         ReservationReporting returnedReservationReporting = reportingService.saveReservation(reservationDetails);
@@ -62,12 +123,44 @@ public class ReportingServiceUTest {
         assertTrue(reservationDetails.getTotalPrice().compareTo(returnedReservationReporting.getTotalPrice()) == 0);
         assertEquals(reservationDetails.getUser(), returnedReservationReporting.getUser());
         assertEquals(reservationDetails.getApartment(), returnedReservationReporting.getApartment());
-        verify(reservationRepository, times(1)).save(any(ReservationReporting.class));
+        assertNotNull(returnedReservationReporting.getId());
+        verify(reservationRepository, times(1)).upsert(returnedReservationReporting);
+        verify(reservationProjectionService, times(1)).apply(List.of(returnedReservationReporting));
+        verify(reservationRepository, never()).touch(any(), any());
+    }
+
+    @Test
+    void givenAlreadyStoredReservationId_thenRefreshUpdatedOnWithoutTouchingStats() {
+
+        // Given
+        UUID reservationId = UUID.randomUUID();
+        ReservationDetails reservationDetails = ReservationDetails.builder()
+                .reservationId(reservationId)
+                .checkInDate(LocalDate.of(2025, 3, 28))
+                .checkOutDate(LocalDate.of(2025, 3, 30))
+                .reservationLength(2)
+                .totalPrice(BigDecimal.ONE)
+                .user("Ivancho")
+                .apartment("Apartment 1")
+                .build();
+        ReservationReporting stored = DtoMapper.fromReservationDetails(reservationDetails);
+        when(reservationRepository.upsert(any(ReservationReporting.class))).thenReturn(2);
+        when(reservationRepository.findByReservationId(reservationId)).thenReturn(stored);
+
+        // When
+        ReservationReporting returned = reportingService.saveReservation(reservationDetails);
+
+        // Then
+        assertSame(stored, returned);
+        verify(reservationRepository, never()).touch(any(), any());
+        verify(reservationProjectionService, times(1)).recordTouched(eq(List.of(reservationId)), any(LocalDateTime.class));
+        verify(reportingCache, times(1)).evictReservations(List.of(reservationId));
+        verify(reservationProjectionService, never()).apply(any());
     }
 
-    // 2. getReservationHistory
+    // 2. getReservationHistoryPage
     @Test
-    void givenNoParametersProvided_thenReturnAListOfReservationReportingWhenGetReservationHistoryRequested() {
+    void givenFewerRowsThanLimit_thenReturnThemAllWithoutNextCursorWhenGetReservationHistoryPageRequested() {
 
         // Given
         ReservationReporting reservationReporting1 = ReservationReporting.builder()
@@ -96,10 +189,12 @@ public class ReportingServiceUTest {
                 .updatedOn(LocalDateTime.now())
                 .build();
 
-        when(reservationRepository.findAll()).thenReturn(List.of(reservationReporting1, reservationReporting2));
+        when(reservationRepository.findFirstPage(any(Pageable.class)))
+                .thenReturn(List.of(reservationReporting1, reservationReporting2));
 
         // When
-        List<ReservationReporting> returnedReservationHistory = reportingService.getReservationHistory();
+        ReservationHistoryPage page = reportingService.getReservationHistoryPage(10, null);
+        List<ReservationReporting> returnedReservationHistory = page.getReservations();
 
         // Then
         assertEquals(2, returnedReservationHistory.size());
@@ -107,10 +202,118 @@ public class ReportingServiceUTest {
         assertEquals(reservationReporting2.getReservationId(), returnedReservationHistory.get(1).getReservationId());
         assertEquals(reservationReporting1.getUser(), returnedReservationHistory.get(0).getUser());
         assertEquals(reservationReporting2.getUser(), returnedReservationHistory.get(1).getUser());
-        verify(reservationRepository, times(1)).findAll();
+        assertNull(page.getNextCursor());
+        verify(reservationRepository, times(1)).findFirstPage(Pageable.ofSize(11));
+        verify(reservationRepository, never()).findAll();
+    }
+
+    @Test
+    void givenMoreRowsThanLimit_thenReturnPageWithCursorToTheLastRow() {
+
+        // Given
+        LocalDateTime createdOn = LocalDateTime.of(2025, 4, 1, 10, 0);
+        List<ReservationReporting> rows = List.of(
+                ReservationReporting.builder().id(UUID.randomUUID()).createdOn(createdOn).build(),
+                ReservationReporting.builder().id(UUID.randomUUID()).createdOn(createdOn.plusMinutes(1)).build(),
+                ReservationReporting.builder().id(UUID.randomUUID()).createdOn(createdOn.plusMinutes(2)).build());
+        when(reservationRepository.findFirstPage(any(Pageable.class))).thenReturn(rows);
+
+        // When
+        ReservationHistoryPage page = reportingService.getReservationHistoryPage(2, null);
+
+        // Then
+        assertEquals(2, page.getReservations().size());
+        ReservationCursor cursor = ReservationCursor.decode(page.getNextCursor());
+        assertEquals(rows.get(1).getCreatedOn(), cursor.createdOn());
+        assertEquals(rows.get(1).getId(), cursor.id());
+        verify(reservationRepository).findFirstPage(Pageable.ofSize(3));
+    }
+
+    @Test
+    void givenCursor_thenReturnRowsAfterItWithoutNextCursorOnLastPage() {
+
+        // Given
+        ReservationCursor cursor = new ReservationCursor(LocalDateTime.of(2025, 4, 1, 10, 0), UUID.randomUUID());
+        ReservationReporting last = ReservationReporting.builder()
+                .id(UUID.randomUUID())
+                .createdOn(LocalDateTime.of(2025, 4, 1, 11, 0))
+                .build();
+        when(reservationRepository.findPageAfter(cursor.createdOn(), cursor.id(), Pageable.ofSize(3)))
+                .thenReturn(List.of(last));
+
+        // When
+        ReservationHistoryPage page = reportingService.getReservationHistoryPage(2, cursor.encode());
+
+        // Then
+        assertEquals(List.of(last), page.getReservations());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void givenInvalidPageArguments_thenThrowInvalidReportingQueryException() {
+        assertThrows(InvalidReportingQueryException.class, () -> reportingService.getReservationHistoryPage(0, null));
+        assertThrows(InvalidReportingQueryException.class, () -> reportingService.getReservationHistoryPage(10, "not-a-cursor"));
+        verifyNoInteractions(reservationRepository);
     }
 
     // 3. getReservationDetails
+    @Test
+    void givenStoredUser_thenReturnPageOfThatUsersReservationsOnly() {
+
+        // Given
+        LocalDateTime createdOn = LocalDateTime.of(2025, 4, 1, 10, 0);
+        List<ReservationReporting> rows = List.of(
+                ReservationReporting.builder().id(UUID.randomUUID()).user("Ivancho").createdOn(createdOn).build(),
+                ReservationReporting.builder().id(UUID.randomUUID()).user("Ivancho").createdOn(createdOn.plusMinutes(1)).build(),
+                ReservationReporting.builder().id(UUID.randomUUID()).user("Ivancho").createdOn(createdOn.plusMinutes(2)).build());
+        when(dimensionDictionary.findUserId("Ivancho")).thenReturn(Optional.of(4));
+        when(reservationRepository.findFirstPageForUser(eq("Ivancho"), any(Pageable.class))).thenReturn(rows);
+
+        // When
+        ReservationHistoryPage page = reportingService.getUserReservationHistoryPage("Ivancho", 2, null);
+
+        // Then
+        assertEquals(2, page.getReservations().size());
+        assertEquals(ReservationCursor.after(rows.get(1)).encode(), page.getNextCursor());
+        verify(reservationRepository, never()).findFirstPage(any());
+    }
+
+    @Test
+    void givenUserThatWasNeverStored_thenReturnEmptyHistoryAndZeroSummaryWithoutQuerying() {
+
+        // Given
+        when(dimensionDictionary.findUserId("Ghost")).thenReturn(Optional.empty());
+
+        // When
+        ReservationHistoryPage page = reportingService.getUserReservationHistoryPage("Ghost", 10, null);
+        UserReservationSummary summary = reportingService.getUserSummary("Ghost");
+
+        // Then
+        assertTrue(page.getReservations().isEmpty());
+        assertNull(page.getNextCursor());
+        assertEquals("Ghost", summary.getUser());
+        assertEquals(0, BigDecimal.ZERO.compareTo(summary.getTotalSpend()));
+        assertEquals(0, summary.getReservationCount());
+        verifyNoInteractions(reservationRepository);
+    }
+
+    @Test
+    void givenStoredUser_thenReturnTotalSpendNightsAndReservations() {
+
+        // Given
+        when(dimensionDictionary.findUserId("Ivancho")).thenReturn(Optional.of(4));
+        when(reservationRepository.summarizeUser("Ivancho"))
+                .thenReturn(new GroupSummary("Ivancho", new BigDecimal("450.00"), 5L, 7L, 2L));
+
+        // When
+        UserReservationSummary summary = reportingService.getUserSummary("Ivancho");
+
+        // Then
+        assertEquals(new BigDecimal("450.00"), summary.getTotalSpend());
+        assertEquals(5, summary.getTotalNights());
+        assertEquals(2, summary.getReservationCount());
+    }
+
     @Test
     void givenReservationIdThatIsCorrectInTheDatabase_thenReturnReservationResponse() {
 
@@ -146,6 +349,34 @@ public class ReportingServiceUTest {
         verify(reservationRepository, times(1)).findByReservationId(reservationId);
     }
 
+    @Test
+    void givenReservationIdInTheLookupIndex_thenReturnReservationResponseWithoutQueryingTheDatabase() {
+
+        // Given
+        UUID reservationId = UUID.randomUUID();
+        ReservationReporting logged = ReservationReporting.builder()
+                .reservationId(reservationId)
+                .checkInDate(LocalDate.of(2025, 3, 28))
+                .checkOutDate(LocalDate.of(2025, 3, 30))
+                .guests(3)
+                .reservationLength(2)
+                .totalPrice(BigDecimal.valueOf(150))
+                .user("Ivancho")
+                .apartment("Apartment 1")
+                .createdOn(LocalDateTime.now())
+                .updatedOn(LocalDateTime.now())
+                .build();
+        when(reservationLookupIndex.find(reservationId)).thenReturn(Optional.of(logged));
+
+        // When
+        ReservationResponse returned = reportingService.getReservationDetails(reservationId);
+
+        // Then
+        assertEquals(reservationId, returned.getReservationId());
+        assertEquals("Apartment 1", returned.getApartment());
+        verifyNoInteractions(reservationRepository);
+    }
+
     @Test
     void givenNonExistentReservationId_thenThrowReservationNotFoundException() {
 
@@ -168,71 +399,318 @@ public class ReportingServiceUTest {
 
     // 4. getStats
     @Test
-    void givenReservationHistory_thenReturnStatsForEachApartment() {
+    void givenMaterializedApartmentStats_thenReturnStatsForEachApartment() {
         // Given
-        ReservationReporting reservation1 = ReservationReporting.builder()
-                .reservationId(UUID.randomUUID())
-                .checkInDate(LocalDate.of(2025, 3, 28))
-                .checkOutDate(LocalDate.of(2025, 3, 30))
-                .guests(3)
-                .reservationLength(2)
-                .totalPrice(BigDecimal.valueOf(150))
-                .user("Ivancho")
-                .apartment("Apartment 1")
-                .createdOn(LocalDateTime.now())
-                .updatedOn(LocalDateTime.now())
-                .build();
+        when(apartmentStatsRepository.findAll(any(Sort.class))).thenReturn(List.of(
+                new ApartmentStats("Apartment 1", BigDecimal.valueOf(350), 4, 5, 2, LocalDateTime.now()),
+                new ApartmentStats("Apartment 2", BigDecimal.valueOf(100), 2, 4, 1, LocalDateTime.now())
+        ));
 
-        ReservationReporting reservation2 = ReservationReporting.builder()
-                .reservationId(UUID.randomUUID())
-                .checkInDate(LocalDate.of(2025, 3, 29))
-                .checkOutDate(LocalDate.of(2025, 3, 31))
-                .guests(2)
-                .reservationLength(2)
-                .totalPrice(BigDecimal.valueOf(200))
-                .user("Maria")
-                .apartment("Apartment 1")
-                .createdOn(LocalDateTime.now())
-                .updatedOn(LocalDateTime.now())
-                .build();
+        // When
+        List<ReservationStatsResponse> returnedStats = reportingService.getStats(null, null, null);
 
-        ReservationReporting reservation3 = ReservationReporting.builder()
-                .reservationId(UUID.randomUUID())
-                .checkInDate(LocalDate.of(2025, 3, 28))
-                .checkOutDate(LocalDate.of(2025, 3, 30))
-                .guests(4)
-                .reservationLength(2)
-                .totalPrice(BigDecimal.valueOf(100))
-                .user("Dimitar")
-                .apartment("Apartment 2")
-                .createdOn(LocalDateTime.now())
-                .updatedOn(LocalDateTime.now())
-                .build();
+        // Then
+        assertEquals(2, returnedStats.size());
+        assertEquals("Apartment 1", returnedStats.get(0).getApartment());
+        assertEquals(0, BigDecimal.valueOf(350).compareTo(returnedStats.get(0).getTotalRevenue()));
+        assertEquals("4", returnedStats.get(0).getTotalBookedDays());
+        assertEquals("5", returnedStats.get(0).getTotalGuestsVisited());
+        assertEquals("Apartment 2", returnedStats.get(1).getApartment());
+        assertEquals("2", returnedStats.get(1).getTotalBookedDays());
+        assertEquals("4", returnedStats.get(1).getTotalGuestsVisited());
+        // Served from the materialized table, the reservation table is not touched
+        verifyNoInteractions(reservationRepository);
+    }
 
-        // Mock repository to return the mock data
-        when(reservationRepository.findAll()).thenReturn(List.of(reservation1, reservation2, reservation3));
-
-        // Expected statistics for each apartment
-        List<ReservationStatsResponse> expectedStats = List.of(
-                ReservationStatsResponse.builder()
-                        .apartment("Apartment 1")
-                        .totalRevenue(BigDecimal.valueOf(350))                        .totalBookedDays("4")  // 2 + 2
-                        .totalGuestsVisited("5") // 3 + 2
-                        .build(),
-                ReservationStatsResponse.builder()
-                        .apartment("Apartment 2")
-                        .totalRevenue(BigDecimal.valueOf(100))                        .totalBookedDays("2")
-                        .totalGuestsVisited("4")
-                        .build()
-        );
+    @Test
+    void givenDateRangeAndApartment_thenAggregateInTheDatabaseForThatApartmentOnly() {
+        // Given
+        LocalDate from = LocalDate.of(2025, 4, 1);
+        LocalDate to = LocalDate.of(2025, 5, 1);
+        when(dimensionDictionary.findApartmentId("Apartment 1")).thenReturn(Optional.of(1));
+        when(reservationRepository.summarizeApartmentBetween("Apartment 1", from, to)).thenReturn(List.of(
+                new ApartmentSummary("Apartment 1", BigDecimal.valueOf(200), 3L, 4L, 2L)));
+
+        // When
+        List<ReservationStatsResponse> returnedStats = reportingService.getStats(from, to, "Apartment 1");
+
+        // Then
+        assertEquals(1, returnedStats.size());
+        assertEquals("3", returnedStats.get(0).getTotalBookedDays());
+        verifyNoInteractions(apartmentStatsRepository);
+    }
+
+    @Test
+    void givenOpenEndedDateRange_thenUseSentinelBounds() {
+        // Given
+        LocalDate from = LocalDate.of(2025, 4, 1);
+        when(reservationRepository.summarizeByApartmentBetween(from, ReportingService.MAX_DATE)).thenReturn(List.of(
+                new ApartmentSummary("Apartment 2", BigDecimal.TEN, 1L, 1L, 1L),
+                new ApartmentSummary("Apartment 1", BigDecimal.ONE, 2L, 2L, 1L)));
+
+        // When
+        List<ReservationStatsResponse> returnedStats = reportingService.getStats(from, null, null);
+
+        // Then
+        assertEquals("Apartment 1", returnedStats.get(0).getApartment());
+        assertEquals("Apartment 2", returnedStats.get(1).getApartment());
+    }
+
+    @Test
+    void givenApartmentWithoutDates_thenReadItsMaterializedRow() {
+        // Given
+        when(apartmentStatsRepository.findById("Apartment 1")).thenReturn(Optional.of(
+                new ApartmentStats("Apartment 1", BigDecimal.valueOf(350), 4, 5, 2, LocalDateTime.now())));
+
+        // When
+        List<ReservationStatsResponse> returnedStats = reportingService.getStats(null, null, "Apartment 1");
+
+        // Then
+        assertEquals(1, returnedStats.size());
+        assertEquals("5", returnedStats.get(0).getTotalGuestsVisited());
+        verifyNoInteractions(reservationRepository);
+    }
+
+    @Test
+    void givenApartmentThatWasNeverStored_thenReturnNoStatsWithoutQueryingIt() {
+        // Given
+        when(dimensionDictionary.findApartmentId("Apartment 9")).thenReturn(Optional.empty());
+
+        // When
+        List<ReservationStatsResponse> returnedStats = reportingService.getStats(
+                LocalDate.of(2025, 4, 1), LocalDate.of(2025, 5, 1), "Apartment 9");
+
+        // Then
+        assertTrue(returnedStats.isEmpty());
+        verifyNoInteractions(reservationRepository);
+    }
+
+    @Test
+    void givenFromNotBeforeTo_thenThrowInvalidReportingQueryException() {
+        LocalDate day = LocalDate.of(2025, 4, 1);
+        assertThrows(InvalidReportingQueryException.class, () -> reportingService.getStats(day, day, null));
+    }
+
+    @Test
+    void givenRecompute_thenAggregateRawRowsInProcess() {
+
+        // Given
+        LocalDate from = LocalDate.of(2025, 4, 1);
+        LocalDate to = LocalDate.of(2025, 5, 1);
+        StatsAggregator aggregator = new StatsAggregator();
+        aggregator.accumulator("Apartment 2").add(new BigDecimal("80.00"), 2, 3);
+        aggregator.accumulator("Apartment 1").add(new BigDecimal("120.50"), 4, 1);
+        when(parallelStatsAggregationService.aggregateStored(from, to, null)).thenReturn(aggregator);
+
+        // When
+        List<ReservationStatsResponse> returnedStats = reportingService.recomputeStats(from, to, null);
+
+        // Then
+        assertEquals(2, returnedStats.size());
+        assertEquals("Apartment 1", returnedStats.get(0).getApartment());
+        assertEquals(new BigDecimal("120.50"), returnedStats.get(0).getTotalRevenue());
+        assertEquals("4", returnedStats.get(0).getTotalBookedDays());
+        verifyNoInteractions(reservationRepository, apartmentStatsRepository);
+    }
+
+    @Test
+    void givenRecomputeWithFromNotBeforeTo_thenThrowInvalidReportingQueryException() {
+        LocalDate day = LocalDate.of(2025, 4, 1);
+        assertThrows(InvalidReportingQueryException.class, () -> reportingService.recomputeStats(day, day, null));
+        verifyNoInteractions(parallelStatsAggregationService);
+    }
+
+    @Test
+    void givenFreshSnapshot_thenAnswerAnalyticsFromItWithoutQueryingTheDatabase() {
+        // Given
+        LocalDate from = LocalDate.of(2025, 4, 1);
+        List<GroupSummary> groups = List.of(new GroupSummary("Ivancho", BigDecimal.TEN, 2L, 3L, 1L));
+        when(reservationColumnarSnapshot.query(AnalyticsDimension.USER, from, ReportingService.MAX_DATE, null))
+                .thenReturn(Optional.of(groups));
+
+        // When
+        AnalyticsResponse response = reportingService.queryAnalytics(AnalyticsDimension.USER, from, null, null);
+
+        // Then
+        assertEquals("snapshot", response.getSource());
+        assertEquals(groups, response.getGroups());
+        verifyNoInteractions(reservationRepository);
+    }
+
+    @Test
+    void givenStaleSnapshot_thenAggregateAnalyticsInTheDatabase() {
+        // Given
+        LocalDate from = LocalDate.of(2025, 4, 1);
+        LocalDate to = LocalDate.of(2025, 5, 1);
+        when(reservationColumnarSnapshot.query(AnalyticsDimension.APARTMENT, from, to, null)).thenReturn(Optional.empty());
+        when(reservationRepository.summarizeByApartmentBetween(from, to)).thenReturn(List.of(
+                new ApartmentSummary("Apartment 2", BigDecimal.TEN, 1L, 1L, 1L),
+                new ApartmentSummary("Apartment 1", BigDecimal.ONE, 2L, 2L, 1L)));
 
         // When
-        List<ReservationStatsResponse> returnedStats = reportingService.getStats();
+        AnalyticsResponse response = reportingService.queryAnalytics(AnalyticsDimension.APARTMENT, from, to, null);
 
         // Then
-        // Verify the statistics for each apartment
-        assertEquals(expectedStats.size(), returnedStats.size());
-        // Verify the repository's findAll method was called once
-        verify(reservationRepository, times(1)).findAll();
+        assertEquals("database", response.getSource());
+        assertEquals("Apartment 1", response.getGroups().get(0).getKey());
+        assertEquals(2L, response.getGroups().get(0).getTotalBookedDays());
+    }
+
+    @Test
+    void givenStaleSnapshotAndNoArchivedRowsInRange_thenLetTheDatabaseRankAndLimitTheGroups() {
+        // Given
+        LocalDate from = LocalDate.of(2025, 1, 1);
+        List<GroupSummary> top = List.of(new GroupSummary("Ivancho", new BigDecimal("900.00"), 6L, 2L, 2L));
+        when(reservationColumnarSnapshot.queryTop(AnalyticsDimension.USER, TopMetric.REVENUE, 1, from, ReportingService.MAX_DATE))
+                .thenReturn(Optional.empty());
+        when(reservationArchive.mayHaveCheckInsBetween(from, ReportingService.MAX_DATE)).thenReturn(false);
+        when(reservationRepository.findTopUsersByRevenueBetween(eq(from), eq(ReportingService.MAX_DATE), any(Pageable.class)))
+                .thenReturn(top);
+
+        // When
+        AnalyticsResponse response = reportingService.queryTop(AnalyticsDimension.USER, TopMetric.REVENUE, 1, from, null);
+
+        // Then
+        assertEquals("database", response.getSource());
+        assertEquals(top, response.getGroups());
+        verify(reservationRepository).findTopUsersByRevenueBetween(from, ReportingService.MAX_DATE, PageRequest.ofSize(1));
+        verify(reservationRepository, never()).summarizeByUserBetween(any(), any());
+    }
+
+    @Test
+    void givenArchivedRowsInRange_thenMergeThemAndPickTheTopGroupsInMemory() {
+        // Given
+        LocalDate from = LocalDate.of(2024, 1, 1);
+        LocalDate to = LocalDate.of(2025, 1, 1);
+        when(reservationColumnarSnapshot.queryTop(AnalyticsDimension.APARTMENT, TopMetric.NIGHTS, 2, from, to))
+                .thenReturn(Optional.empty());
+        when(reservationArchive.mayHaveCheckInsBetween(from, to)).thenReturn(true);
+        when(reservationRepository.summarizeByApartmentBetween(from, to)).thenReturn(List.of(
+                new ApartmentSummary("Apartment 1", BigDecimal.TEN, 5L, 2L, 1L),
+                new ApartmentSummary("Apartment 2", BigDecimal.ONE, 4L, 2L, 1L),
+                new ApartmentSummary("Apartment 3", BigDecimal.ONE, 1L, 2L, 1L)));
+        doAnswer(invocation -> {
+            ReservationArchive.StatsVisitor visitor = invocation.getArgument(3);
+            visitor.visit("Apartment 3", "Maria", new BigDecimal("50.00"), 7L, 2);
+            return null;
+        }).when(reservationArchive).forEachCheckingIn(eq(from), eq(to), isNull(), any());
+
+        // When
+        AnalyticsResponse response = reportingService.queryTop(AnalyticsDimension.APARTMENT, TopMetric.NIGHTS, 2, from, to);
+
+        // Then
+        assertEquals("database", response.getSource());
+        assertEquals(List.of("Apartment 3", "Apartment 1"), response.getGroups().stream().map(GroupSummary::getKey).toList());
+        assertEquals(8L, response.getGroups().get(0).getTotalBookedDays());
+        verify(reservationRepository, never()).findTopApartmentsByNightsBetween(any(), any(), any());
+    }
+
+    @Test
+    void givenFreshSnapshot_thenAnswerTopFromItWithoutQueryingTheDatabase() {
+        // Given
+        List<GroupSummary> top = List.of(new GroupSummary("Apartment 1", BigDecimal.TEN, 2L, 3L, 1L));
+        when(reservationColumnarSnapshot.queryTop(AnalyticsDimension.APARTMENT, TopMetric.REVENUE,
+                ReportingService.MAX_PAGE_SIZE, ReportingService.MIN_DATE, ReportingService.MAX_DATE))
+                .thenReturn(Optional.of(top));
+
+        // When
+        AnalyticsResponse response = reportingService.queryTop(AnalyticsDimension.APARTMENT, TopMetric.REVENUE,
+                ReportingService.MAX_PAGE_SIZE + 1, null, null);
+
+        // Then
+        assertEquals("snapshot", response.getSource());
+        assertEquals(top, response.getGroups());
+        verifyNoInteractions(reservationRepository);
+    }
+
+    @Test
+    void givenNonPositiveTopLimit_thenThrowInvalidReportingQueryException() {
+        assertThrows(InvalidReportingQueryException.class,
+                () -> reportingService.queryTop(AnalyticsDimension.USER, TopMetric.NIGHTS, 0, null, null));
+    }
+
+    // 5. getStatsTimeseries
+    @Test
+    void givenNightlyRollups_thenSumThemIntoMonthlyBucketsPerApartment() {
+        // Given
+        LocalDate from = LocalDate.of(2025, 1, 1);
+        LocalDate to = LocalDate.of(2025, 3, 1);
+        when(apartmentDailyStatsRepository.findBetween(from, to)).thenReturn(List.of(
+                new ApartmentDailyStats("Apartment 1", LocalDate.of(2025, 1, 30), new BigDecimal("33.33"), 1, 2),
+                new ApartmentDailyStats("Apartment 1", LocalDate.of(2025, 1, 31), new BigDecimal("33.33"), 1, 2),
+                new ApartmentDailyStats("Apartment 1", LocalDate.of(2025, 2, 1), new BigDecimal("33.34"), 1, 2),
+                new ApartmentDailyStats("Apartment 2", LocalDate.of(2025, 1, 5), new BigDecimal("50.00"), 1, 1)));
+
+        // When
+        List<StatsTimeseriesPoint> series = reportingService.getStatsTimeseries(StatsGranularity.MONTH, from, to, null);
+
+        // Then
+        assertEquals(3, series.size());
+        assertEquals("Apartment 1", series.get(0).getApartment());
+        assertEquals(LocalDate.of(2025, 1, 1), series.get(0).getBucketStart());
+        assertEquals(0, new BigDecimal("66.66").compareTo(series.get(0).getRevenue()));
+        assertEquals(2, series.get(0).getBookedNights());
+        assertEquals(4, series.get(0).getGuestNights());
+        assertEquals(LocalDate.of(2025, 2, 1), series.get(1).getBucketStart());
+        assertEquals(1, series.get(1).getBookedNights());
+        assertEquals("Apartment 2", series.get(2).getApartment());
+        verifyNoInteractions(reservationRepository);
+    }
+
+    @Test
+    void givenWeekGranularity_thenBucketsStartOnMonday() {
+        assertEquals(LocalDate.of(2025, 1, 27), StatsGranularity.WEEK.bucketStart(LocalDate.of(2025, 2, 1)));
+        assertEquals(LocalDate.of(2025, 1, 27), StatsGranularity.WEEK.bucketStart(LocalDate.of(2025, 1, 27)));
+    }
+
+    // 6. getUniqueGuests
+    @Test
+    void givenSketchRegistersOfSeveralApartments_thenEstimateEachAndCountSharedGuestsOnce() {
+        // Given: what the database returns, each apartment's registers merged over the months
+        List<Object[]> registers = new ArrayList<>();
+        addGuests(registers, "Apartment 1", "Ivancho", "Maria", "Petar123");
+        addGuests(registers, "Apartment 2", "Maria", "Dimitar");
+        LocalDate from = LocalDate.of(2025, 1, 1);
+        LocalDate to = LocalDate.of(2025, 4, 1);
+        when(apartmentGuestSketchRepository.mergeBetween(from, to)).thenReturn(registers);
+
+        // When
+        UniqueGuestsResponse response = reportingService.getUniqueGuests(YearMonth.of(2025, 1), YearMonth.of(2025, 4), null);
+
+        // Then
+        assertEquals(2, response.getApartments().size());
+        assertEquals("Apartment 1", response.getApartments().get(0).getApartment());
+        assertEquals(3, response.getApartments().get(0).getEstimatedGuests());
+        assertEquals(2, response.getApartments().get(1).getEstimatedGuests());
+        assertEquals(4, response.getEstimatedGuests());
+        assertEquals(HyperLogLog.RELATIVE_STANDARD_ERROR, response.getRelativeStandardError());
+    }
+
+    @Test
+    void givenApartmentAndOpenRange_thenMergeOnlyThatApartmentsSketchOverSentinelBounds() {
+        // Given
+        when(apartmentGuestSketchRepository.mergeForApartmentBetween("Apartment 9", ReportingService.MIN_DATE,
+                LocalDate.of(2025, 2, 1))).thenReturn(List.of());
+
+        // When
+        UniqueGuestsResponse response = reportingService.getUniqueGuests(null, YearMonth.of(2025, 2), "Apartment 9");
+
+        // Then
+        assertTrue(response.getApartments().isEmpty());
+        assertEquals(0, response.getEstimatedGuests());
+    }
+
+    @Test
+    void givenFromMonthNotBeforeToMonth_thenThrowInvalidReportingQueryException() {
+        assertThrows(InvalidReportingQueryException.class,
+                () -> reportingService.getUniqueGuests(YearMonth.of(2025, 3), YearMonth.of(2025, 3), null));
+    }
+
+    private static void addGuests(List<Object[]> registers, String apartment, String... users) {
+        for (String user : users) {
+            long hash = HyperLogLog.hash(user);
+            registers.add(new Object[]{apartment, (short) HyperLogLog.registerIndex(hash),
+                    (byte) HyperLogLog.registerValue(hash)});
+        }
     }
 }
@@ -0,0 +1,214 @@
+package app.service;
+
+import app.archive.ReservationArchive;
+import app.model.GroupSummary;
+import app.model.ReservationReporting;
+import app.repository.ReservationRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ReservationColumnarSnapshotUTest {
+
+    private static final LocalDate MIN = LocalDate.of(1, 1, 1);
+    private static final LocalDate MAX = LocalDate.of(9999, 12, 31);
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private ReservationArchive reservationArchive;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void query_shouldMatchStatsAggregatorOnTheSameRows() {
+
+        // Given
+        List<ReservationReporting> reservations = randomReservations(20_000);
+        ReservationColumnarSnapshot snapshot = loaded(reservations);
+        LocalDate from = LocalDate.of(2025, 3, 1);
+        LocalDate to = LocalDate.of(2025, 9, 1);
+
+        // When
+        List<GroupSummary> groups = snapshot.query(AnalyticsDimension.APARTMENT, from, to, null).orElseThrow();
+
+        // Then
+        List<ReservationReporting> inRange = reservations.stream()
+                .filter(r -> !r.getCheckInDate().isBefore(from) && r.getCheckInDate().isBefore(to))
+                .toList();
+        List<GroupSummary> expected = StatsAggregator.of(inRange).summaries().stream()
+                .map(s -> new GroupSummary(s.getApartment(), s.getTotalRevenue(), s.getTotalBookedDays(),
+                        s.getTotalGuestsVisited(), s.getReservationCount()))
+                .toList();
+        assertThat(groups).usingRecursiveComparison()
+                .withComparatorForType(BigDecimal::compareTo, BigDecimal.class)
+                .isEqualTo(expected);
+    }
+
+    @Test
+    void query_shouldIncludeTheLowerBoundAndExcludeTheUpperBound() {
+
+        // Given
+        ReservationColumnarSnapshot snapshot = loaded(List.of(
+                reservation("A", "u1", LocalDate.of(2025, 1, 1), new BigDecimal("10.00")),
+                reservation("A", "u1", LocalDate.of(2025, 1, 31), new BigDecimal("20.00")),
+                reservation("A", "u2", LocalDate.of(2025, 2, 1), new BigDecimal("40.00"))));
+
+        // When
+        List<GroupSummary> january = snapshot.query(AnalyticsDimension.USER,
+                LocalDate.of(2025, 1, 1), LocalDate.of(2025, 2, 1), null).orElseThrow();
+
+        // Then
+        assertThat(january).hasSize(1);
+        assertThat(january.get(0).getKey()).isEqualTo("u1");
+        assertThat(january.get(0).getTotalRevenue()).isEqualByComparingTo("30.00");
+        assertThat(january.get(0).getReservationCount()).isEqualTo(2);
+    }
+
+    @Test
+    void query_withApartmentFilter_shouldGroupOnlyThatApartmentsRows() {
+
+        // Given
+        ReservationColumnarSnapshot snapshot = loaded(List.of(
+                reservation("A", "u1", LocalDate.of(2025, 1, 1), new BigDecimal("10.00")),
+                reservation("B", "u1", LocalDate.of(2025, 1, 2), new BigDecimal("20.00")),
+                reservation("A", "u2", LocalDate.of(2025, 1, 3), new BigDecimal("40.00"))));
+
+        // When
+        List<GroupSummary> users = snapshot.query(AnalyticsDimension.USER, MIN, MAX, "A").orElseThrow();
+        List<GroupSummary> unknown = snapshot.query(AnalyticsDimension.USER, MIN, MAX, "Z").orElseThrow();
+
+        // Then
+        assertThat(users).extracting(GroupSummary::getKey).containsExactly("u1", "u2");
+        assertThat(users.get(0).getTotalRevenue()).isEqualByComparingTo("10.00");
+        assertThat(unknown).isEmpty();
+    }
+
+    @Test
+    void queryTop_shouldReturnTheSameGroupsAsSortingTheFullQuery() {
+
+        // Given
+        ReservationColumnarSnapshot snapshot = loaded(randomReservations(20_000));
+        LocalDate from = LocalDate.of(2025, 2, 1);
+        LocalDate to = LocalDate.of(2025, 6, 1);
+
+        for (TopMetric metric : TopMetric.values()) {
+            // When
+            List<GroupSummary> top = snapshot.queryTop(AnalyticsDimension.USER, metric, 5, from, to).orElseThrow();
+
+            // Then
+            List<GroupSummary> expected = snapshot.query(AnalyticsDimension.USER, from, to, null).orElseThrow()
+                    .stream()
+                    .sorted(metric.ranking())
+                    .limit(5)
+                    .toList();
+            assertThat(top).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void pricesWithSubCentDigits_shouldBeSummedExactly() {
+
+        // Given
+        ReservationColumnarSnapshot snapshot = loaded(List.of(
+                reservation("A", "u1", LocalDate.of(2025, 1, 1), new BigDecimal("0.005")),
+                reservation("A", "u1", LocalDate.of(2025, 1, 2), new BigDecimal("12345678901234567890.10")),
+                reservation("A", "u1", LocalDate.of(2025, 1, 3), new BigDecimal("1.00"))));
+
+        // When
+        List<GroupSummary> groups = snapshot.query(AnalyticsDimension.APARTMENT, MIN, MAX, null).orElseThrow();
+
+        // Then
+        assertThat(groups.get(0).getTotalRevenue()).isEqualByComparingTo("12345678901234567891.105");
+    }
+
+    @Test
+    void appendedRows_shouldBeVisibleToTheNextQuery() {
+
+        // Given
+        ReservationColumnarSnapshot snapshot = loaded(List.of(
+                reservation("A", "u1", LocalDate.of(2025, 1, 1), new BigDecimal("10.00"))));
+        List<ReservationReporting> inserted = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            inserted.add(reservation("B", "u" + i, LocalDate.of(2025, 1, 1), new BigDecimal("1.00")));
+        }
+
+        // When
+        snapshot.append(inserted);
+
+        // Then
+        assertThat(snapshot.size()).isEqualTo(3001);
+        List<GroupSummary> groups = snapshot.query(AnalyticsDimension.APARTMENT, MIN, MAX, null).orElseThrow();
+        assertThat(groups).extracting(GroupSummary::getReservationCount).containsExactly(1L, 3000L);
+    }
+
+    @Test
+    void staleOrUnloadedSnapshot_shouldNotAnswer() {
+
+        // Given
+        ReservationColumnarSnapshot unloaded = new ReservationColumnarSnapshot(
+                reservationRepository, reservationArchive, transactionManager, true, Duration.ofMinutes(30));
+        ReservationColumnarSnapshot expired = new ReservationColumnarSnapshot(
+                reservationRepository, reservationArchive, transactionManager, true, Duration.ZERO);
+        when(reservationRepository.streamColumns()).thenReturn(Stream.empty());
+        expired.reload();
+
+        // When/Then
+        assertThat(unloaded.query(AnalyticsDimension.APARTMENT, MIN, MAX, null)).isEmpty();
+        assertThat(expired.query(AnalyticsDimension.APARTMENT, MIN, MAX, null)).isEmpty();
+    }
+
+    private ReservationColumnarSnapshot loaded(List<ReservationReporting> reservations) {
+        when(reservationRepository.streamColumns()).thenReturn(reservations.stream()
+                .map(r -> new Object[]{r.getReservationId(), r.getCheckInDate(), r.getGuests(),
+                        r.getReservationLength(), r.getTotalPrice(), r.getApartment(), r.getUser()}));
+        ReservationColumnarSnapshot snapshot = new ReservationColumnarSnapshot(
+                reservationRepository, reservationArchive, transactionManager, true, Duration.ofMinutes(30));
+        snapshot.reload();
+        return snapshot;
+    }
+
+    private static List<ReservationReporting> randomReservations(int count) {
+        Random random = new Random(7);
+        List<ReservationReporting> reservations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            reservations.add(reservation("Apartment " + random.nextInt(50), "user-" + random.nextInt(2000),
+                    LocalDate.of(2025, 1, 1).plusDays(random.nextInt(365)),
+                    BigDecimal.valueOf(random.nextInt(100_000), 2)));
+        }
+        return reservations;
+    }
+
+    private static ReservationReporting reservation(String apartment, String user, LocalDate checkIn, BigDecimal price) {
+        return ReservationReporting.builder()
+                .reservationId(UUID.randomUUID())
+                .checkInDate(checkIn)
+                .checkOutDate(checkIn.plusDays(2))
+                .guests(2)
+                .reservationLength(2)
+                .totalPrice(price)
+                .user(user)
+                .apartment(apartment)
+                .createdOn(LocalDateTime.now())
+                .updatedOn(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,184 @@
+package app.service;
+
+import app.model.ApartmentSummary;
+import app.model.ReservationReporting;
+import app.web.dto.Summary;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatsAggregatorUTest {
+
+    @Test
+    void givenRandomReservations_whenAggregate_thenMatchesSummaryReduction() {
+
+        // Given
+        Random random = new Random(7);
+        List<ReservationReporting> reservations = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            reservations.add(reservation("Apartment " + random.nextInt(25),
+                    BigDecimal.valueOf(random.nextInt(500_000), random.nextInt(3)),
+                    1 + random.nextInt(30), 1 + random.nextInt(6)));
+        }
+        Map<String, Summary> expected = reservations.stream()
+                .collect(Collectors.groupingBy(
+                        ReservationReporting::getApartment,
+                        Collectors.reducing(
+                                new Summary(BigDecimal.ZERO, 0, 0),
+                                r -> new Summary(r.getTotalPrice(), (int) r.getReservationLength(), r.getGuests()),
+                                Summary::combine
+                        )
+                ));
+
+        // When
+        List<ApartmentSummary> summaries = StatsAggregator.of(reservations).summaries();
+
+        // Then
+        assertEquals(expected.size(), summaries.size());
+        for (ApartmentSummary summary : summaries) {
+            Summary reference = expected.get(summary.getApartment());
+            assertEquals(0, reference.getTotalRevenue().compareTo(summary.getTotalRevenue()));
+            assertEquals(reference.getTotalBookedDays(), summary.getTotalBookedDays());
+            assertEquals(reference.getTotalGuestsVisited(), summary.getTotalGuestsVisited());
+        }
+        assertEquals(reservations.size(), summaries.stream().mapToLong(ApartmentSummary::getReservationCount).sum());
+        assertEquals("Apartment 0", summaries.get(0).getApartment());
+    }
+
+    @Test
+    void givenSumBeyondLongCents_whenAggregate_thenRevenueStaysExact() {
+
+        // Given
+        BigDecimal large = new BigDecimal("90000000000000000.00");
+        StatsAccumulator accumulator = new StatsAccumulator();
+
+        // When
+        accumulator.add(large, 1, 1);
+        accumulator.addCents(Long.MAX_VALUE, 1, 1);
+        accumulator.add(new BigDecimal("0.01"), 1, 1);
+
+        // Then
+        BigDecimal expected = large.add(BigDecimal.valueOf(Long.MAX_VALUE, 2)).add(new BigDecimal("0.01"));
+        assertEquals(0, expected.compareTo(accumulator.revenue()));
+        assertEquals(3, accumulator.reservations());
+    }
+
+    @Test
+    void givenSubCentAmounts_whenAggregate_thenFractionIsKept() {
+
+        // Given
+        StatsAccumulator accumulator = new StatsAccumulator();
+
+        // When
+        accumulator.add(new BigDecimal("10.005"), 2, 1);
+        accumulator.add(new BigDecimal("0.10"), 1, 1);
+
+        // Then
+        assertEquals(new BigDecimal("10.105"), accumulator.revenue());
+        assertEquals(3, accumulator.bookedDays());
+    }
+
+    @Test
+    void givenBookedDaysBeyondInt_whenAggregate_thenNoNarrowing() {
+
+        // Given
+        StatsAggregator aggregator = new StatsAggregator();
+
+        // When
+        aggregator.add(reservation("Apartment 1", BigDecimal.ONE, Integer.MAX_VALUE, 1));
+        aggregator.add(reservation("Apartment 1", BigDecimal.ONE, Integer.MAX_VALUE, 1));
+
+        // Then
+        assertEquals(2L * Integer.MAX_VALUE, aggregator.summaries().get(0).getTotalBookedDays());
+    }
+
+    @Test
+    void givenTwoPartialAggregates_whenMerge_thenEqualsSingleAggregate() {
+
+        // Given
+        List<ReservationReporting> first = List.of(
+                reservation("Apartment 1", new BigDecimal("100.00"), 2, 2),
+                reservation("Apartment 2", new BigDecimal("50.50"), 1, 1));
+        List<ReservationReporting> second = List.of(
+                reservation("Apartment 1", new BigDecimal("0.005"), 3, 4),
+                reservation("Apartment 3", new BigDecimal("75"), 5, 1));
+
+        // When
+        StatsAggregator merged = StatsAggregator.of(first).merge(StatsAggregator.of(second));
+
+        // Then
+        List<ApartmentSummary> summaries = merged.summaries();
+        assertEquals(3, summaries.size());
+        assertEquals(new BigDecimal("100.005"), summaries.get(0).getTotalRevenue());
+        assertEquals(5, summaries.get(0).getTotalBookedDays());
+        assertEquals(6, summaries.get(0).getTotalGuestsVisited());
+        assertEquals(2, summaries.get(0).getReservationCount());
+        assertEquals(new BigDecimal("75.00"), summaries.get(2).getTotalRevenue());
+    }
+
+    @Test
+    void givenKeyedAndUnkeyedRowsOfOneApartment_whenAggregate_thenOneSummary() {
+
+        // Given: loaded rows carry the dimension key, archived ones and totals only the name
+        ReservationReporting stored = reservation("Apartment 1", new BigDecimal("100.00"), 2, 2);
+        stored.setApartmentKey(7);
+        ReservationReporting otherStored = reservation("Apartment 2", new BigDecimal("40.00"), 1, 1);
+        otherStored.setApartmentKey(3);
+        ReservationReporting archived = reservation("Apartment 1", new BigDecimal("20.50"), 1, 3);
+
+        // When
+        StatsAggregator aggregator = StatsAggregator.of(List.of(stored, otherStored));
+        aggregator.merge(StatsAggregator.of(List.of(archived)));
+        aggregator.accumulator("Apartment 2").addTotals(new BigDecimal("10.00"), 4, 2, 2);
+
+        // Then
+        List<ApartmentSummary> summaries = aggregator.summaries();
+        assertEquals(2, aggregator.size());
+        assertEquals(new ApartmentSummary("Apartment 1", new BigDecimal("120.50"), 3L, 5L, 2L), summaries.get(0));
+        assertEquals(new ApartmentSummary("Apartment 2", new BigDecimal("50.00"), 5L, 3L, 3L), summaries.get(1));
+    }
+
+    @Test
+    void givenForkJoinPool_whenAggregateInParallel_thenEqualsSequentialAggregate() {
+
+        // Given
+        Random random = new Random(11);
+        List<ReservationReporting> reservations = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            reservations.add(reservation("Apartment " + random.nextInt(40),
+                    BigDecimal.valueOf(random.nextInt(100_000), 2), 1 + random.nextInt(10), 1 + random.nextInt(4)));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        // When
+        List<ApartmentSummary> parallel;
+        try {
+            parallel = StatsAggregator.parallel(reservations, pool, 1_000).summaries();
+        } finally {
+            pool.shutdown();
+        }
+
+        // Then
+        assertEquals(StatsAggregator.of(reservations).summaries(), parallel);
+    }
+
+    private static ReservationReporting reservation(String apartment, BigDecimal price, long nights, int guests) {
+        return ReservationReporting.builder()
+                .apartment(apartment)
+                .totalPrice(price)
+                .reservationLength(nights)
+                .guests(guests)
+                .checkInDate(LocalDate.of(2025, 1, 1))
+                .checkOutDate(LocalDate.of(2025, 1, 1).plusDays(nights))
+                .build();
+    }
+}
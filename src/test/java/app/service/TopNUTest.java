@@ -0,0 +1,66 @@
+package app.service;
+
+import app.model.GroupSummary;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopNUTest {
+
+    @Test
+    void givenManyElements_thenSelectTheSameFirstOnesAsAFullSort() {
+
+        // Given: plenty of ties, so the order must fall back to the key
+        Random random = new Random(5);
+        List<GroupSummary> groups = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            groups.add(new GroupSummary("user-" + i, BigDecimal.valueOf(random.nextInt(500), 2),
+                    (long) random.nextInt(50), 1L, 1L));
+        }
+
+        for (TopMetric metric : TopMetric.values()) {
+            // When
+            List<GroupSummary> top = TopN.select(groups, 10, metric.ranking());
+
+            // Then
+            assertEquals(groups.stream().sorted(metric.ranking()).limit(10).toList(), top);
+        }
+    }
+
+    @Test
+    void givenFewerElementsThanN_thenReturnAllOfThemSorted() {
+
+        // Given
+        List<Integer> elements = List.of(3, 9, 1);
+
+        // When
+        List<Integer> top = TopN.select(elements, 10, Comparator.reverseOrder());
+
+        // Then
+        assertEquals(List.of(9, 3, 1), top);
+        assertEquals(List.of(), TopN.select(List.<Integer>of(), 10, Comparator.reverseOrder()));
+    }
+
+    @Test
+    void givenRevenueMetric_thenRankHighestRevenueFirstAndTiesByKey() {
+
+        // Given
+        GroupSummary low = new GroupSummary("Apartment 1", new BigDecimal("10.00"), 9L, 1L, 1L);
+        GroupSummary highB = new GroupSummary("Apartment 3", new BigDecimal("20.0"), 1L, 1L, 1L);
+        GroupSummary highA = new GroupSummary("Apartment 2", new BigDecimal("20.00"), 2L, 1L, 1L);
+
+        // When
+        List<GroupSummary> byRevenue = TopN.select(List.of(low, highB, highA), 2, TopMetric.REVENUE.ranking());
+        List<GroupSummary> byNights = TopN.select(List.of(low, highB, highA), 1, TopMetric.NIGHTS.ranking());
+
+        // Then
+        assertEquals(List.of(highA, highB), byRevenue);
+        assertEquals(List.of(low), byNights);
+    }
+}
@@ -0,0 +1,176 @@
+package app.service;
+
+import app.IngestQueueFullException;
+import app.web.dto.BatchItemResult;
+import app.web.dto.BatchItemStatus;
+import app.web.dto.ReservationDetails;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class WriteBehindIngestServiceUTest {
+
+    @TempDir
+    private Path journalDirectory;
+
+    @Mock
+    private ReservationIngestService reservationIngestService;
+
+    // Same modules as the application's ObjectMapper
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<WriteBehindIngestService> started = new ArrayList<>();
+
+    @AfterEach
+    void stopAll() {
+        started.forEach(WriteBehindIngestService::stop);
+    }
+
+    @Test
+    void givenFullQueue_whenEnqueue_thenRejectAndCountBackpressure() throws Exception {
+
+        // Given: the writer blocks on its first batch, so the queue can only fill up
+        CountDownLatch databaseReleased = new CountDownLatch(1);
+        when(reservationIngestService.ingest(anyList())).thenAnswer(invocation -> {
+            databaseReleased.await();
+            return created(invocation.getArgument(0));
+        });
+        WriteBehindIngestService service = start(2, 3);
+        service.enqueue(reservation());
+        await().atMost(Duration.ofSeconds(5)).until(() -> service.getQueueDepth() == 0);
+
+        // When
+        service.enqueue(reservation());
+        service.enqueue(reservation());
+
+        // Then
+        assertThrows(IngestQueueFullException.class, () -> service.enqueue(reservation()));
+        assertEquals(1, meterRegistry.get("reporting.ingest.queue.rejected").counter().count());
+        assertEquals(2, meterRegistry.get("reporting.ingest.queue.depth").gauge().value());
+        assertTrue(service.getLagNanos() > 0);
+
+        databaseReleased.countDown();
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> meterRegistry.get("reporting.ingest.queue.written").counter().count() == 3);
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> Files.size(journalDirectory.resolve(IngestJournal.JOURNAL_FILE)) == 0);
+        assertEquals(0, service.getLagNanos());
+    }
+
+    @Test
+    void givenDatabaseDownUntilShutdown_whenRestarted_thenReplayJournal() throws Exception {
+
+        // Given
+        AtomicBoolean databaseUp = new AtomicBoolean(false);
+        List<UUID> written = new CopyOnWriteArrayList<>();
+        when(reservationIngestService.ingest(anyList())).thenAnswer(invocation -> {
+            if (!databaseUp.get()) {
+                throw new IllegalStateException("Connection refused");
+            }
+            List<ReservationDetails> batch = invocation.getArgument(0);
+            batch.forEach(details -> written.add(details.getReservationId()));
+            return created(batch);
+        });
+        ReservationDetails first = reservation();
+        ReservationDetails second = reservation();
+        WriteBehindIngestService crashed = start(10, 3);
+        crashed.enqueue(first);
+        crashed.enqueue(second);
+        crashed.stop();
+
+        // When
+        databaseUp.set(true);
+        start(10, 3);
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).until(() -> written.size() == 2);
+        assertEquals(List.of(first.getReservationId(), second.getReservationId()), written);
+    }
+
+    @Test
+    void givenReservationThatKeepsFailing_whenAttemptsExhausted_thenMoveToDeadLetterFile() throws Exception {
+
+        // Given
+        when(reservationIngestService.ingest(anyList())).thenAnswer(invocation -> {
+            List<ReservationDetails> batch = invocation.getArgument(0);
+            List<BatchItemResult> results = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                results.add(BatchItemResult.builder()
+                        .index(i)
+                        .reservationId(batch.get(i).getReservationId())
+                        .status(BatchItemStatus.FAILED)
+                        .error("Data truncation: apartment")
+                        .build());
+            }
+            return results;
+        });
+        ReservationDetails poison = reservation();
+        WriteBehindIngestService service = start(10, 2);
+
+        // When
+        service.enqueue(poison);
+
+        // Then
+        Path deadLetters = journalDirectory.resolve(IngestJournal.DEAD_LETTER_FILE);
+        await().atMost(Duration.ofSeconds(5)).until(() -> Files.exists(deadLetters)
+                && Files.size(journalDirectory.resolve(IngestJournal.JOURNAL_FILE)) == 0);
+        assertTrue(Files.readString(deadLetters).contains(poison.getReservationId().toString()));
+    }
+
+    private WriteBehindIngestService start(int capacity, int maxAttempts) {
+        WriteBehindIngestService service = new WriteBehindIngestService(reservationIngestService, objectMapper,
+                meterRegistry, true, capacity, 10, journalDirectory, false, maxAttempts);
+        service.start();
+        started.add(service);
+        return service;
+    }
+
+    private static List<BatchItemResult> created(List<ReservationDetails> batch) {
+        List<BatchItemResult> results = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            results.add(BatchItemResult.builder()
+                    .index(i)
+                    .reservationId(batch.get(i).getReservationId())
+                    .status(BatchItemStatus.CREATED)
+                    .build());
+        }
+        return results;
+    }
+
+    private static ReservationDetails reservation() {
+        return ReservationDetails.builder()
+                .reservationId(UUID.randomUUID())
+                .checkInDate(LocalDate.of(2025, 4, 1))
+                .checkOutDate(LocalDate.of(2025, 4, 3))
+                .guests(2)
+                .reservationLength(2)
+                .totalPrice(new BigDecimal("200.00"))
+                .user("Petar123")
+                .apartment("Apartment 1")
+                .build();
+    }
+}
@@ -1,32 +1,74 @@
 package app.web;
 
+import app.IngestQueueFullException;
+import app.InvalidReportingQueryException;
+import app.InvalidReservationException;
+import app.model.DataVersion;
+import app.model.GroupSummary;
 import app.model.ReservationReporting;
 import app.repository.ReservationRepository;
+import app.service.AnalyticsDimension;
+import app.service.ExportFormat;
 import app.service.ReportingService;
+import app.service.ReservationArchiver;
+import app.service.ReservationEventProjector;
+import app.service.ReservationExportService;
+import app.service.ReservationIngestService;
+import app.service.StatsGranularity;
+import app.service.StatsReconciliationService;
+import app.service.TopMetric;
+import app.service.WriteBehindIngestService;
+import app.web.dto.AnalyticsResponse;
+import app.web.dto.ApartmentUniqueGuests;
+import app.web.dto.ArchiveReport;
+import app.web.dto.BatchItemResult;
+import app.web.dto.BatchItemStatus;
+import app.web.dto.EventLogReplayReport;
 import app.web.dto.ReservationDetails;
+import app.web.dto.ReservationHistoryPage;
 import app.web.dto.ReservationResponse;
 import app.web.dto.ReservationStatsResponse;
+import app.web.dto.StatsTimeseriesPoint;
+import app.web.dto.UniqueGuestsResponse;
+import app.web.dto.UserReservationSummary;
 import app.web.mapper.DtoMapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.YearMonth;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.UUID;
 
 import static app.web.TestBuilder.*;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.RequestEntity.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -40,9 +82,48 @@ public class ReportingControllerApiTest {
     @MockitoBean
     private ReservationRepository reservationRepository;
 
+    @MockitoBean
+    private StatsReconciliationService statsReconciliationService;
+
+    @MockitoBean
+    private ReservationExportService reservationExportService;
+
+    @MockitoBean
+    private ReservationIngestService reservationIngestService;
+
+    @MockitoBean
+    private WriteBehindIngestService writeBehindIngestService;
+
+    @MockitoBean
+    private ReservationEventProjector reservationEventProjector;
+
+    @MockitoBean
+    private ReservationArchiver reservationArchiver;
+
     @Autowired
     private MockMvc mockMvc;
 
+    private static final DataVersion DATA_VERSION = new DataVersion(LocalDateTime.of(2025, 4, 1, 10, 0, 0), 42L);
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    @BeforeEach
+    void stubDataVersion() {
+        when(reportingService.getDataVersion()).thenReturn(DATA_VERSION);
+    }
+
+    private static final String RESERVATION_JSON = """
+            {
+                "reservationId": "6f1c2f0e-8a4b-4c47-9a57-2a8f3e1d9b10",
+                "user": "Ivancho",
+                "apartment": "Apartment 1",
+                "checkInDate": "2025-04-01",
+                "checkOutDate": "2025-04-05",
+                "guests": 3,
+                "reservationLength": 4,
+                "totalPrice": 500.00
+            }
+            """;
+
     // 1. saveReservationDetails
 
     @Test
@@ -95,6 +176,114 @@ public class ReportingControllerApiTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void saveReservationDetails_withInvalidStay_shouldReturn400WithoutSaving() throws Exception {
+
+        // Given
+        when(reservationIngestService.validate(any(ReservationDetails.class)))
+                .thenReturn("checkOutDate must not be before checkInDate");
+
+        // When/Then
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/admin/reporting/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(RESERVATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("checkOutDate must not be before checkInDate"));
+
+        verify(reportingService, never()).saveReservation(any());
+    }
+
+    @Test
+    void saveReservationDetails_inWriteBehindMode_shouldReturn202WithoutSaving() throws Exception {
+
+        // Given
+        when(writeBehindIngestService.isEnabled()).thenReturn(true);
+
+        // When/Then
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/admin/reporting/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(RESERVATION_JSON))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.user").value("Ivancho"));
+
+        verify(writeBehindIngestService).enqueue(any(ReservationDetails.class));
+        verify(reportingService, never()).saveReservation(any());
+    }
+
+    @Test
+    void saveReservationDetails_whenWriteBehindQueueIsFull_shouldReturn429() throws Exception {
+
+        // Given
+        when(writeBehindIngestService.isEnabled()).thenReturn(true);
+        doThrow(new IngestQueueFullException("Write-behind queue is full (10000 reservations)"))
+                .when(writeBehindIngestService).enqueue(any(ReservationDetails.class));
+
+        // When/Then
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/admin/reporting/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(RESERVATION_JSON))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+
+    @Test
+    void saveReservationDetails_inWriteBehindModeWithInvalidReservation_shouldReturn400() throws Exception {
+
+        // Given
+        when(writeBehindIngestService.isEnabled()).thenReturn(true);
+        doThrow(new InvalidReservationException("guests must be greater than 0"))
+                .when(writeBehindIngestService).enqueue(any(ReservationDetails.class));
+
+        // When/Then
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/admin/reporting/reservations")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(RESERVATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("guests must be greater than 0"));
+    }
+
+    @Test
+    void saveReservationBatch_shouldReturnPerItemResults() throws Exception {
+
+        // Given
+        UUID reservationId = UUID.randomUUID();
+        when(reservationIngestService.ingest(any())).thenReturn(List.of(
+                BatchItemResult.builder().index(0).reservationId(reservationId).status(BatchItemStatus.CREATED).build(),
+                BatchItemResult.builder().index(1).status(BatchItemStatus.FAILED).error("user must not be null").build()));
+
+        // When/Then
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/admin/reporting/reservations/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                [
+                    {"reservationId": "%s", "user": "Ivancho", "apartment": "Apartment 1",
+                     "checkInDate": "2025-04-01", "checkOutDate": "2025-04-05", "guests": 3,
+                     "reservationLength": 4, "totalPrice": 500.00},
+                    {"apartment": "Apartment 1"}
+                ]
+                """.formatted(reservationId)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[0].reservationId").value(reservationId.toString()))
+                .andExpect(jsonPath("$[1].status").value("FAILED"))
+                .andExpect(jsonPath("$[1].error").value("user must not be null"));
+    }
+
+    @Test
+    void saveReservationStream_withNdjson_shouldDelegateToStreamingIngest() throws Exception {
+
+        // Given
+        when(reservationIngestService.ingestNdjson(any())).thenReturn(List.of(
+                BatchItemResult.builder().index(0).status(BatchItemStatus.CREATED).build()));
+
+        // When/Then
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/admin/reporting/reservations/batch")
+                        .contentType(ReportingController.APPLICATION_NDJSON_VALUE)
+                        .content("{\"apartment\": \"Apartment 1\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("CREATED"));
+    }
 
     // 2. getReservationDetails
     @Test
@@ -127,13 +316,15 @@ public class ReportingControllerApiTest {
         // 1. Build Request
         ReservationReporting reservationReportingOne = getReservationReporting();
         ReservationReporting reservationReportingTwo = getReservationReporting();
-        when(reportingService.getReservationHistory()).thenReturn(
-                List.of(reservationReportingOne, reservationReportingTwo));
+        when(reportingService.getReservationHistoryPage(100, null)).thenReturn(ReservationHistoryPage.builder()
+                .reservations(List.of(reservationReportingOne, reservationReportingTwo))
+                .build());
 
         // 2. Send Request
         mockMvc.perform(get("/api/v1/admin/reporting"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().doesNotExist(ReportingController.NEXT_CURSOR_HEADER))
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$.length()").value(2))
                 .andExpect(jsonPath("$[0].user").value("Ivancho"))
@@ -142,6 +333,158 @@ public class ReportingControllerApiTest {
                 .andExpect(jsonPath("$[1].reservationLength").value(2));
     }
 
+    @Test
+    void getReservationHistory_withLimitAndCursor_shouldReturnNextCursorHeader() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.getReservationHistoryPage(1, "abc")).thenReturn(ReservationHistoryPage.builder()
+                .reservations(List.of(getReservationReporting()))
+                .nextCursor("next-token")
+                .build());
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting")
+                        .param("limit", "1")
+                        .param("cursor", "abc"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ReportingController.NEXT_CURSOR_HEADER, "next-token"))
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void getUserReservationHistory_shouldReturnThatUsersPageWithNextCursorHeader() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.getUserReservationHistoryPage("Ivancho", 1, null)).thenReturn(ReservationHistoryPage.builder()
+                .reservations(List.of(getReservationReporting()))
+                .nextCursor("next-token")
+                .build());
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting/users/Ivancho/reservations")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ReportingController.NEXT_CURSOR_HEADER, "next-token"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].user").value("Ivancho"));
+    }
+
+    @Test
+    void getReservationHistory_withColumnarAccept_shouldReturnColumnsAndDictionaries() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.getReservationHistoryPage(100, null)).thenReturn(ReservationHistoryPage.builder()
+                .reservations(List.of(getReservationReporting(), getReservationReporting()))
+                .nextCursor("next-token")
+                .build());
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting")
+                        .accept(ReservationColumnarJsonConverter.APPLICATION_COLUMNAR_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(ReservationColumnarJsonConverter.APPLICATION_COLUMNAR_JSON))
+                .andExpect(header().string(ReportingController.NEXT_CURSOR_HEADER, "next-token"))
+                .andExpect(header().string(HttpHeaders.ETAG, DATA_VERSION.toETag()))
+                .andExpect(jsonPath("$.size").value(2))
+                .andExpect(jsonPath("$.guests[1]").value(3))
+                .andExpect(jsonPath("$.reservationLength[0]").value(2))
+                .andExpect(jsonPath("$.user[0]").value(0))
+                .andExpect(jsonPath("$.user[1]").value(0))
+                .andExpect(jsonPath("$.userNames.length()").value(1))
+                .andExpect(jsonPath("$.userNames[0]").value("Ivancho"))
+                .andExpect(jsonPath("$.apartmentNames[0]").value("Apartment 1"));
+    }
+
+    @Test
+    void getReservationHistory_withSmileAccept_shouldReturnSmile() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.getReservationHistoryPage(100, null)).thenReturn(ReservationHistoryPage.builder()
+                .reservations(List.of(getReservationReporting()))
+                .build());
+
+        // 2. Send Request
+        MvcResult result = mockMvc.perform(get("/api/v1/admin/reporting")
+                        .accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE))
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn();
+
+        // 3. Decode
+        JsonNode history = new SmileMapper().readTree(result.getResponse().getContentAsByteArray());
+        assertThat(history.size()).isEqualTo(1);
+        assertThat(history.get(0).get("user").asText()).isEqualTo("Ivancho");
+        assertThat(history.get(0).get("checkInDate").isTextual()).isTrue();
+    }
+
+    @Test
+    void getSummaryStatsPerApartment_withColumnarAccept_shouldReturn406() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/reporting/stats")
+                        .accept(ReservationColumnarJsonConverter.APPLICATION_COLUMNAR_JSON))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void getUserSummary_shouldReturnSpendNightsAndReservations() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.getUserSummary("Ivancho")).thenReturn(UserReservationSummary.builder()
+                .user("Ivancho")
+                .totalSpend(new BigDecimal("450.00"))
+                .totalNights(5)
+                .reservationCount(2)
+                .build());
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting/users/Ivancho/summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.user").value("Ivancho"))
+                .andExpect(jsonPath("$.totalSpend").value(450.00))
+                .andExpect(jsonPath("$.totalNights").value(5))
+                .andExpect(jsonPath("$.reservationCount").value(2));
+    }
+
+    @Test
+    void getReservationHistory_withInvalidCursor_shouldReturn400() throws Exception {
+
+        when(reportingService.getReservationHistoryPage(100, "broken"))
+                .thenThrow(new InvalidReportingQueryException("Invalid cursor: broken"));
+
+        mockMvc.perform(get("/api/v1/admin/reporting")
+                        .param("cursor", "broken"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid cursor: broken"));
+    }
+
+    @Test
+    void exportReservationHistory_asCsv_shouldStreamServiceOutput() throws Exception {
+
+        // 1. Build Request
+        when(reservationExportService.export(eq(ExportFormat.CSV), any(OutputStream.class))).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(1);
+            out.write("reservationId\n".getBytes(StandardCharsets.UTF_8));
+            return 0L;
+        });
+
+        // 2. Send Request
+        MvcResult result = mockMvc.perform(get("/api/v1/admin/reporting/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"reservations.csv\""))
+                .andExpect(content().string("reservationId\n"));
+    }
+
+    @Test
+    void exportReservationHistory_withUnknownFormat_shouldReturn400() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/reporting/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
     // 4. getSummaryStatsPerApartment
     @Test
     void getSummaryStatsPerApartment_shouldReturn200WithStats() throws Exception {
@@ -151,7 +494,7 @@ public class ReportingControllerApiTest {
         ReservationStatsResponse stat2 = getReservationStatsResponse();
         List<ReservationStatsResponse> mockStats = List.of(stat1, stat2);
 
-        when(reportingService.getStats()).thenReturn(mockStats);
+        when(reportingService.getStats(null, null, null)).thenReturn(mockStats);
 
         // 2. Send Request
         mockMvc.perform(get("/api/v1/admin/reporting/stats"))
@@ -166,6 +509,286 @@ public class ReportingControllerApiTest {
 
     }
 
+    @Test
+    void getSummaryStatsPerApartment_withFilters_shouldPassThemToService() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.getStats(LocalDate.of(2025, 4, 1), LocalDate.of(2025, 5, 1), "Apartment 1"))
+                .thenReturn(List.of(getReservationStatsResponse()));
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting/stats")
+                        .param("from", "2025-04-01")
+                        .param("to", "2025-05-01")
+                        .param("apartment", "Apartment 1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].apartment").value("Apartment 1"));
+    }
+
+    @Test
+    void getSummaryStatsPerApartment_withRecompute_shouldUseInProcessAggregation() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.recomputeStats(null, null, "Apartment 1"))
+                .thenReturn(List.of(getReservationStatsResponse()));
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting/stats")
+                        .param("apartment", "Apartment 1")
+                        .param("recompute", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].apartment").value("Apartment 1"));
+
+        verify(reportingService, never()).getStats(any(), any(), any());
+    }
+
+    @Test
+    void getReservationHistory_shouldSendValidatorsAndNoCacheDirective() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.getReservationHistoryPage(100, null)).thenReturn(ReservationHistoryPage.builder()
+                .reservations(List.of(getReservationReporting()))
+                .build());
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, DATA_VERSION.toETag()))
+                .andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, DATA_VERSION.toEpochMilli()))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"));
+    }
+
+    @Test
+    void getReservationHistory_withCurrentETag_shouldReturn304WithoutQuerying() throws Exception {
+
+        mockMvc.perform(get("/api/v1/admin/reporting")
+                        .header(HttpHeaders.IF_NONE_MATCH, DATA_VERSION.toETag()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(content().string(""));
+
+        verify(reportingService, never()).getReservationHistoryPage(anyInt(), any());
+    }
+
+    @Test
+    void getSummaryStatsPerApartment_withCurrentIfModifiedSince_shouldReturn304WithoutQuerying() throws Exception {
+
+        String lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                ZonedDateTime.of(DATA_VERSION.getLastModified(), ZoneId.systemDefault()).withZoneSameInstant(ZoneId.of("GMT")));
+
+        mockMvc.perform(get("/api/v1/admin/reporting/stats")
+                        .header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified());
+
+        verify(reportingService, never()).getStats(any(), any(), any());
+    }
+
+    @Test
+    void getSummaryStatsPerApartment_withStaleETag_shouldReturnFreshStats() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.getStats(null, null, null)).thenReturn(List.of(getReservationStatsResponse()));
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting/stats")
+                        .header(HttpHeaders.IF_NONE_MATCH, "W/\"41-0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, DATA_VERSION.toETag()))
+                .andExpect(jsonPath("$[0].apartment").value("Apartment 1"));
+    }
+
+    @Test
+    void getSummaryStatsPerApartment_withRecompute_shouldIgnoreValidators() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.recomputeStats(null, null, null)).thenReturn(List.of(getReservationStatsResponse()));
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting/stats")
+                        .param("recompute", "true")
+                        .header(HttpHeaders.IF_NONE_MATCH, DATA_VERSION.toETag()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].apartment").value("Apartment 1"));
+    }
+
+    @Test
+    void getSummaryStatsPerApartment_withMalformedDate_shouldReturn400() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/reporting/stats").param("from", "April"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getStatsTimeseries_shouldReturnBucketsForGranularity() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.getStatsTimeseries(StatsGranularity.WEEK, LocalDate.of(2025, 1, 1),
+                LocalDate.of(2025, 2, 1), null)).thenReturn(List.of(StatsTimeseriesPoint.builder()
+                .apartment("Apartment 1")
+                .bucketStart(LocalDate.of(2024, 12, 30))
+                .revenue(new BigDecimal("100.00"))
+                .bookedNights(2)
+                .guestNights(4)
+                .build()));
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting/stats/timeseries")
+                        .param("granularity", "WEEK")
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-02-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].bucketStart").value("2024-12-30"))
+                .andExpect(jsonPath("$[0].bookedNights").value(2));
+    }
+
+    @Test
+    void getAnalytics_shouldGroupByRequestedDimension() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.queryAnalytics(AnalyticsDimension.USER, LocalDate.of(2025, 1, 1), null, "Apartment 1"))
+                .thenReturn(AnalyticsResponse.builder()
+                        .source("snapshot")
+                        .groups(List.of(new GroupSummary("Ivancho", new BigDecimal("100.00"), 2L, 4L, 1L)))
+                        .build());
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting/analytics")
+                        .param("groupBy", "USER")
+                        .param("from", "2025-01-01")
+                        .param("apartment", "Apartment 1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.source").value("snapshot"))
+                .andExpect(jsonPath("$.groups[0].key").value("Ivancho"))
+                .andExpect(jsonPath("$.groups[0].totalBookedDays").value(2));
+    }
+
+    @Test
+    void getTopStats_shouldPassDimensionMetricAndLimitToService() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.queryTop(AnalyticsDimension.USER, TopMetric.NIGHTS, 3, LocalDate.of(2025, 1, 1), null))
+                .thenReturn(AnalyticsResponse.builder()
+                        .source("database")
+                        .groups(List.of(
+                                new GroupSummary("Maria", new BigDecimal("300.00"), 9L, 4L, 3L),
+                                new GroupSummary("Ivancho", new BigDecimal("500.00"), 4L, 2L, 1L)))
+                        .build());
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting/stats/top")
+                        .param("groupBy", "USER")
+                        .param("metric", "NIGHTS")
+                        .param("limit", "3")
+                        .param("from", "2025-01-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.source").value("database"))
+                .andExpect(jsonPath("$.groups[0].key").value("Maria"))
+                .andExpect(jsonPath("$.groups[1].totalBookedDays").value(4));
+    }
+
+    @Test
+    void getTopStats_withDefaults_shouldAskForTopTenApartmentsByRevenue() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.queryTop(AnalyticsDimension.APARTMENT, TopMetric.REVENUE, 10, null, null))
+                .thenReturn(AnalyticsResponse.builder()
+                        .source("snapshot")
+                        .groups(List.of())
+                        .build());
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting/stats/top"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.source").value("snapshot"));
+    }
+
+    @Test
+    void getUniqueGuests_shouldParseMonthsAndReturnEstimates() throws Exception {
+
+        // 1. Build Request
+        when(reportingService.getUniqueGuests(YearMonth.of(2025, 1), YearMonth.of(2025, 4), "Apartment 1"))
+                .thenReturn(UniqueGuestsResponse.builder()
+                        .relativeStandardError(0.023)
+                        .apartments(List.of(ApartmentUniqueGuests.builder()
+                                .apartment("Apartment 1")
+                                .estimatedGuests(1250)
+                                .build()))
+                        .estimatedGuests(1250)
+                        .build());
+
+        // 2. Send Request
+        mockMvc.perform(get("/api/v1/admin/reporting/stats/unique-guests")
+                        .param("from", "2025-01")
+                        .param("to", "2025-04")
+                        .param("apartment", "Apartment 1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.relativeStandardError").value(0.023))
+                .andExpect(jsonPath("$.apartments[0].apartment").value("Apartment 1"))
+                .andExpect(jsonPath("$.apartments[0].estimatedGuests").value(1250))
+                .andExpect(jsonPath("$.estimatedGuests").value(1250));
+    }
+
+    @Test
+    void rebuildFromEventLog_shouldReturnReplayReport() throws Exception {
+
+        // Given
+        when(reservationEventProjector.rebuild()).thenReturn(EventLogReplayReport.builder()
+                .fromPosition(0)
+                .toPosition(4096)
+                .eventsReplayed(40)
+                .reservationsInserted(38)
+                .durationMillis(12)
+                .build());
+
+        // When/Then
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/admin/reporting/eventlog/rebuild"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.eventsReplayed").value(40))
+                .andExpect(jsonPath("$.reservationsInserted").value(38));
+    }
+
+    @Test
+    void rebuildFromEventLog_whenEventLogIsDisabled_shouldReturn400() throws Exception {
+
+        // Given
+        when(reservationEventProjector.rebuild())
+                .thenThrow(new InvalidReportingQueryException("The event log is disabled, there is nothing to rebuild from"));
+
+        // When/Then
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/admin/reporting/eventlog/rebuild"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void archiveReservations_shouldReturnArchiveReport() throws Exception {
+
+        // Given
+        when(reservationArchiver.archive()).thenReturn(ArchiveReport.builder()
+                .cutoff(LocalDateTime.of(2024, 5, 1, 4, 0))
+                .segmentsWritten(2)
+                .reservationsArchived(75_000)
+                .durationMillis(830)
+                .build());
+
+        // When/Then
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/admin/reporting/archive"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.segmentsWritten").value(2))
+                .andExpect(jsonPath("$.reservationsArchived").value(75_000));
+    }
+
+    @Test
+    void archiveReservations_whenArchiveIsDisabled_shouldReturn400() throws Exception {
+
+        // Given
+        when(reservationArchiver.archive())
+                .thenThrow(new InvalidReportingQueryException("The archive is disabled, see reporting.archive.enabled"));
+
+        // When/Then
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/admin/reporting/archive"))
+                .andExpect(status().isBadRequest());
+    }
+
     // 6. getReservationDetails
     @Test
     void getReservationDetails_withValidId_shouldReturn200() throws Exception {